@@ -0,0 +1,44 @@
+package com.slimgears.rxrepo.apt;
+
+import com.google.auto.service.AutoService;
+import com.google.common.collect.ImmutableMap;
+import com.slimgears.util.autovalue.apt.Context;
+import com.slimgears.util.autovalue.apt.PropertyInfo;
+import com.slimgears.util.autovalue.apt.extensions.Extension;
+
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.type.TypeKind;
+import java.util.Map;
+
+@AutoService(Extension.class)
+@SupportedAnnotationTypes("com.slimgears.rxrepo.annotations.UseLazyView")
+public class LazyViewExtension implements Extension {
+    public static class LazyViewUtils {
+        private final static Map<TypeKind, String> primitiveDefaults = ImmutableMap.<TypeKind, String>builder()
+                .put(TypeKind.INT, "0")
+                .put(TypeKind.LONG, "0L")
+                .put(TypeKind.SHORT, "(short)0")
+                .put(TypeKind.BYTE, "(byte)0")
+                .put(TypeKind.CHAR, "'\\0'")
+                .put(TypeKind.FLOAT, "0f")
+                .put(TypeKind.DOUBLE, "0d")
+                .put(TypeKind.BOOLEAN, "false")
+                .build();
+
+        public boolean isPrimitive(PropertyInfo property) {
+            return property.propertyType().getKind().isPrimitive();
+        }
+
+        public String defaultValue(PropertyInfo property) {
+            return primitiveDefaults.get(property.propertyType().getKind());
+        }
+    }
+
+    @Override
+    public String generateClassBody(Context context) {
+        return context
+                .evaluatorForResource("lazy-view-body.java.vm")
+                .variable("lazyViewUtils", new LazyViewUtils())
+                .evaluate();
+    }
+}
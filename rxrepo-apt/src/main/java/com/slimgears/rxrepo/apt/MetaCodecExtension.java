@@ -0,0 +1,42 @@
+package com.slimgears.rxrepo.apt;
+
+import com.google.auto.service.AutoService;
+import com.google.common.collect.ImmutableMap;
+import com.slimgears.util.autovalue.apt.Context;
+import com.slimgears.util.autovalue.apt.PropertyInfo;
+import com.slimgears.util.autovalue.apt.extensions.Extension;
+
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.type.TypeKind;
+import java.util.Map;
+
+@AutoService(Extension.class)
+@SupportedAnnotationTypes("com.slimgears.rxrepo.annotations.UseMetaCodec")
+public class MetaCodecExtension implements Extension {
+    public static class CodecUtils {
+        private final static Map<TypeKind, String> primitiveTypeNames = ImmutableMap.<TypeKind, String>builder()
+                .put(TypeKind.INT, "Int")
+                .put(TypeKind.LONG, "Long")
+                .put(TypeKind.SHORT, "Short")
+                .put(TypeKind.FLOAT, "Float")
+                .put(TypeKind.DOUBLE, "Double")
+                .put(TypeKind.BOOLEAN, "Boolean")
+                .build();
+
+        public boolean isDirectPrimitive(PropertyInfo property) {
+            return primitiveTypeNames.containsKey(property.propertyType().getKind());
+        }
+
+        public String primitiveTypeName(PropertyInfo property) {
+            return primitiveTypeNames.get(property.propertyType().getKind());
+        }
+    }
+
+    @Override
+    public String generateClassBody(Context context) {
+        return context
+                .evaluatorForResource("meta-codec-body.java.vm")
+                .variable("codecUtils", new CodecUtils())
+                .evaluate();
+    }
+}
@@ -5,7 +5,9 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.google.common.collect.ImmutableList;
 import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.encoding.adapter.BinaryAdapter;
 import com.slimgears.rxrepo.encoding.adapter.JacksonAdapter;
+import com.slimgears.rxrepo.encoding.codecs.GeneratedMetaClassCodec;
 import com.slimgears.rxrepo.queries.TestEntity;
 import com.slimgears.rxrepo.queries.TestEntityPrototype;
 import com.slimgears.rxrepo.queries.TestKey;
@@ -15,6 +17,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 
 public class MetaClassCodecTest {
     private final MetaCodecProvider codecProvider = MetaCodecs.builder()
@@ -49,6 +52,22 @@ public class MetaClassCodecTest {
         }
     }
 
+    @Test
+    public void testGeneratedCodecIsPreferred() {
+        MetaCodec<TestEntity> codec = codecProvider.resolve(TestEntity.metaClass.asType());
+        Assert.assertTrue(codec instanceof GeneratedMetaClassCodec);
+    }
+
+    @Test
+    public void testMetaObjectBinaryEncodingDecoding() {
+        BinaryAdapter.FieldNames fieldNames = BinaryAdapter.FieldNames.of(TestEntity.metaClass);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        context.write(BinaryAdapter.writer(buffer, fieldNames), testEntity);
+        buffer.flip();
+        TestEntity decodedEntity = context.read(BinaryAdapter.reader(buffer, fieldNames), TestEntity.metaClass.asType());
+        Assert.assertEquals(testEntity, decodedEntity);
+    }
+
     @Test
     public void testToDocumentFromDocument() {
         MetaDocument doc = MetaDocuments.toDocument(testEntity);
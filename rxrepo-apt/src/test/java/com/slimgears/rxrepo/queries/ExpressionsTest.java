@@ -9,6 +9,7 @@ import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.filters.ComparableFilter;
 import com.slimgears.rxrepo.filters.ComparableFilter;
 import com.slimgears.rxrepo.filters.StringFilter;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
 import com.slimgears.rxrepo.util.Expressions;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import org.junit.Assert;
@@ -498,6 +499,34 @@ public class ExpressionsTest {
         Assert.assertNull(exp.apply(testEntity1));
     }
 
+    @Test
+    public void testSpecializedCompilerMatchesClosureCompiler() {
+        List<ObjectExpression<TestEntity, Boolean>> predicates = ImmutableList.of(
+                TestEntity.$.number.lessThan(5),
+                TestEntity.$.number.greaterThan(2),
+                TestEntity.$.number.eq(3),
+                TestEntity.$.number.eq(3).not(),
+                TestEntity.$.number.greaterOrEqual(3).and(TestEntity.$.text.contains("ity")),
+                TestEntity.$.refEntity.id.eq(10).or(TestEntity.$.address.isNull()),
+                TestEntity.$.code.lessThan(TestEntity.$.number),
+                TestEntity.$.code.eq(TestEntity.$.code).not(),
+                TestEntity.$.optionalRefEntity.text.eq("Description 1"),
+                TestEntity.$.text.in("Entity 1", "Entity 3", "Entity 4", "Entity 5", "Entity 6", "Entity 7", "Entity 8", "Entity 9"),
+                TestEntity.$.address.eq("Address").not());
+
+        predicates.forEach(predicate -> {
+            Predicate<TestEntity> specialized = ExpressionCompiler.compilePredicate(predicate);
+            Predicate<TestEntity> closure = Expressions.compilePredicate(predicate);
+            Assert.assertSame(specialized, ExpressionCompiler.compilePredicate(predicate));
+            Assert.assertEquals(closure.test(testEntity1), specialized.test(testEntity1));
+            Assert.assertEquals(closure.test(testEntity2), specialized.test(testEntity2));
+        });
+
+        Assert.assertEquals(
+                Expressions.compile(TestEntity.$.refEntity.text).apply(testEntity2),
+                ExpressionCompiler.compile(TestEntity.$.refEntity.text).apply(testEntity2));
+    }
+
     @Test
     public void testPropertyExpressionEquality() {
         Assert.assertEquals(TestEntity.$.refEntity.id, PropertyExpressions.fromPath(TestEntity.class, "refEntity.id"));
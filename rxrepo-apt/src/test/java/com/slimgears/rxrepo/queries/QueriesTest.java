@@ -1,6 +1,11 @@
 package com.slimgears.rxrepo.queries;
 
+import com.google.common.collect.ImmutableSet;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.util.LazyEntityViews;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.rxrepo.util.PropertyResolvers;
 import com.slimgears.rxrepo.util.Queries;
 import io.reactivex.Observable;
 import org.junit.Assert;
@@ -32,6 +37,34 @@ public class QueriesTest {
         Assert.assertEquals(530, list.get(3).number());
     }
 
+    @Test
+    public void testLazyEntityView() {
+        TestEntity entity = createTestEntities(10).skip(5).blockingFirst();
+        TestEntity view = LazyEntityViews.toObject(PropertyResolver.fromObject(TestEntity.metaClass, entity), TestEntity.metaClass.asType());
+
+        Assert.assertTrue(view instanceof TestEntity.LazyView);
+        Assert.assertEquals(5, view.number());
+        Assert.assertEquals(entity.refEntity(), view.refEntity());
+        Assert.assertEquals(entity, view);
+        Assert.assertEquals(entity.hashCode(), view.hashCode());
+    }
+
+    @Test
+    public void testLazyEntityViewRetainsPropertiesOfCreationScope() {
+        TestEntity entity = createTestEntities(10).skip(5).blockingFirst()
+                .toBuilder()
+                .address("Address 5")
+                .code(5)
+                .build();
+        TestEntity view = PropertyResolvers.withProperties(
+                ImmutableSet.<PropertyExpression<TestEntity, ?, ?>>of(TestEntity.$.address),
+                () -> LazyEntityViews.toObject(PropertyResolver.fromObject(TestEntity.metaClass, entity), TestEntity.metaClass.asType()));
+
+        Assert.assertEquals("Address 5", view.address());
+        Assert.assertNull(view.code());
+        Assert.assertEquals(entity.toBuilder().code(null).build(), view);
+    }
+
     private static Observable<TestEntity> createTestEntities(int count) {
         return Observable.range(0, count)
                 .map(i -> TestEntity.builder()
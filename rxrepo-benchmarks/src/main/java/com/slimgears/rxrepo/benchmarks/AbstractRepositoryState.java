@@ -0,0 +1,50 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+@State(Scope.Benchmark)
+public abstract class AbstractRepositoryState {
+    @Param({"Memory", "OrientDb"})
+    public RepositoryBackend backend;
+
+    protected Repository repository;
+    protected EntitySet<UniqueId, Product> products;
+
+    @Setup(Level.Trial)
+    public void setUpRepository() {
+        repository = backend.createRepository();
+        products = repository.entities(Product.metaClass);
+        int count = initialCount();
+        if (count > 0) {
+            products.update(Products.createMany(count)).blockingAwait();
+        }
+        onSetUp();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownRepository() {
+        onTearDown();
+        repository.clear().blockingAwait();
+        repository.close();
+    }
+
+    protected int initialCount() {
+        return 0;
+    }
+
+    protected void onSetUp() {
+    }
+
+    protected void onTearDown() {
+    }
+}
@@ -0,0 +1,37 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.test.Product;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Latch of a single benchmark invocation: it is only counted down by callbacks which observe
+ * the price written by this invocation, so late callbacks of previous invocations are ignored
+ */
+class ExpectedUpdate {
+    private final int price;
+    private final CountDownLatch latch;
+
+    private ExpectedUpdate(int price, int count) {
+        this.price = price;
+        this.latch = new CountDownLatch(count);
+    }
+
+    static ExpectedUpdate create(int price, int count) {
+        return new ExpectedUpdate(price, count);
+    }
+
+    int price() {
+        return price;
+    }
+
+    void onUpdated(Product product) {
+        if (product != null && product.price() == price) {
+            latch.countDown();
+        }
+    }
+
+    void await() throws InterruptedException {
+        latch.await();
+    }
+}
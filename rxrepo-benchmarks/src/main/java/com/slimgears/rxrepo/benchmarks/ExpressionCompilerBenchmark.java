@@ -0,0 +1,55 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
+import com.slimgears.rxrepo.util.Expressions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionCompilerBenchmark {
+    @Param({"Closure", "Specialized"})
+    public ExpressionCompiler.Mode mode;
+
+    private final ObjectExpression<Product, Boolean> expression = Product.$.price.betweenInclusive(110, 120)
+            .and(Product.$.inventory.name.eq("Inventory 5").or(Product.$.type.in(Product.Type.ComputeHardware, Product.Type.ComputerSoftware)));
+    private List<Product> products;
+    private Predicate<Product> predicate;
+
+    @Setup
+    public void setUp() {
+        products = ImmutableList.copyOf(Products.createMany(10000));
+        predicate = mode == ExpressionCompiler.Mode.Closure
+                ? Expressions.compilePredicate(expression)
+                : ExpressionCompiler.compilePredicate(expression);
+    }
+
+    @Benchmark
+    public long evaluatePredicate() {
+        long count = 0;
+        for (Product product : products) {
+            if (predicate.test(product)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public Predicate<Product> compilePredicate() {
+        return mode == ExpressionCompiler.Mode.Closure
+                ? Expressions.compilePredicate(expression)
+                : ExpressionCompiler.compilePredicate(expression);
+    }
+}
@@ -0,0 +1,56 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import io.reactivex.disposables.CompositeDisposable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LiveNotificationBenchmark extends AbstractRepositoryState {
+    @Param({"1", "10", "100"})
+    public int subscribers;
+
+    private final CompositeDisposable subscriptions = new CompositeDisposable();
+    private final AtomicReference<ExpectedUpdate> expected = new AtomicReference<>(ExpectedUpdate.create(-1, 0));
+    private final AtomicInteger price = new AtomicInteger();
+    private Product product;
+
+    @Override
+    protected int initialCount() {
+        return 1000;
+    }
+
+    @Override
+    protected void onSetUp() {
+        product = Products.createOne(0);
+        for (int i = 0; i < subscribers; ++i) {
+            subscriptions.add(products.observe().subscribe(n -> expected.get().onUpdated(n.newValue())));
+        }
+    }
+
+    @Override
+    protected void onTearDown() {
+        subscriptions.dispose();
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareInvocation() {
+        expected.set(ExpectedUpdate.create(price.incrementAndGet(), subscribers));
+    }
+
+    @Benchmark
+    public void notificationFanOut() throws InterruptedException {
+        ExpectedUpdate update = expected.get();
+        products.update(product.toBuilder().price(update.price()).build()).blockingGet();
+        update.await();
+    }
+}
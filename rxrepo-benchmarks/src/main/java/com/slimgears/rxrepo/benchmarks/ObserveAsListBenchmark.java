@@ -0,0 +1,73 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.query.Notifications;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import io.reactivex.disposables.Disposable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ObserveAsListBenchmark extends AbstractRepositoryState {
+    @Param({"1000", "10000"})
+    public int count;
+
+    private final AtomicReference<ExpectedUpdate> expected = new AtomicReference<>();
+    private final AtomicInteger price = new AtomicInteger();
+    private Disposable subscription;
+    private Product product;
+
+    @Override
+    protected int initialCount() {
+        return count;
+    }
+
+    @Override
+    protected void onSetUp() {
+        product = Products.createOne(0);
+        ExpectedUpdate initialized = ExpectedUpdate.create(product.price(), 1);
+        expected.set(initialized);
+        subscription = products.query()
+                .orderBy(Product.$.price)
+                .liveSelect()
+                .observeAs(Notifications.<Product>toList())
+                .subscribe(list -> list.stream()
+                        .filter(p -> p.key().equals(product.key()))
+                        .findFirst()
+                        .ifPresent(p -> expected.get().onUpdated(p)));
+        awaitUninterruptibly(initialized);
+    }
+
+    @Override
+    protected void onTearDown() {
+        subscription.dispose();
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareInvocation() {
+        expected.set(ExpectedUpdate.create(price.incrementAndGet(), 1));
+    }
+
+    @Benchmark
+    public void updateObservedList() throws InterruptedException {
+        ExpectedUpdate update = expected.get();
+        products.update(product.toBuilder().price(update.price()).build()).blockingGet();
+        update.await();
+    }
+
+    private static void awaitUninterruptibly(ExpectedUpdate update) {
+        try {
+            update.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
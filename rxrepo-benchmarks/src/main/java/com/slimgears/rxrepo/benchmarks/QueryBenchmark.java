@@ -0,0 +1,65 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.UniqueId;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class QueryBenchmark extends AbstractRepositoryState {
+    @Param({"10000"})
+    public int count;
+
+    @Override
+    protected int initialCount() {
+        return count;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Product findByKey() {
+        return products
+                .find(UniqueId.productId(ThreadLocalRandom.current().nextInt(count)))
+                .blockingGet();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public List<Product> filteredQuery() {
+        return products.query()
+                .where(Product.$.price.betweenInclusive(110, 115).and(Product.$.type.eq(Product.Type.ComputeHardware)))
+                .retrieve()
+                .toList()
+                .blockingGet();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Notification<Product> queryAndObserveFirstItem() {
+        return products.query()
+                .where(Product.$.price.eq(100 + ThreadLocalRandom.current().nextInt(20)))
+                .liveSelect()
+                .queryAndObserve()
+                .blockingFirst();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void retrieveAll(Blackhole blackhole) {
+        products.query()
+                .retrieve()
+                .blockingForEach(blackhole::consume);
+    }
+}
@@ -0,0 +1,32 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.slimgears.rxrepo.mem.MemoryRepository;
+import com.slimgears.rxrepo.orientdb.OrientDbRepository;
+import com.slimgears.rxrepo.query.Repository;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public enum RepositoryBackend {
+    Memory {
+        @Override
+        public Repository createRepository() {
+            return MemoryRepository.create();
+        }
+    },
+    OrientDb {
+        @Override
+        public Repository createRepository() {
+            return OrientDbRepository
+                    .builder()
+                    .url("embedded:db")
+                    .type(OrientDbRepository.Type.Memory)
+                    .name("benchmark_" + dbCounter.incrementAndGet())
+                    .enableBatchSupport()
+                    .build();
+        }
+    };
+
+    private final static AtomicInteger dbCounter = new AtomicInteger();
+
+    public abstract Repository createRepository();
+}
@@ -0,0 +1,47 @@
+package com.slimgears.rxrepo.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class UpdateBenchmark extends AbstractRepositoryState {
+    private final static int batchCount = 16;
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    private List<List<Product>> batches;
+    private int nextBatch;
+
+    // Ids are bounded by batchCount * batchSize, so the table size stays the same during measurement.
+    // Each id has two versions with different prices, so every write actually modifies the entity
+    @Setup(Level.Iteration)
+    public void prepareBatches() {
+        batches = IntStream.range(0, batchCount * 2)
+                .mapToObj(i -> ImmutableList.copyOf(Products.createMany((i % batchCount) * batchSize, batchSize))
+                        .stream()
+                        .map(p -> p.toBuilder().price(p.price() + i / batchCount).build())
+                        .collect(Collectors.toList()))
+                .collect(Collectors.toList());
+        nextBatch = 0;
+    }
+
+    @Benchmark
+    public void updateIterable() {
+        List<Product> batch = batches.get(nextBatch);
+        nextBatch = (nextBatch + 1) % batches.size();
+        products.update(batch).blockingAwait();
+    }
+}
@@ -10,6 +10,8 @@ import java.lang.annotation.Target;
 
 @AutoValuePrototype(pattern = "(.*)Entity")
 @UseExpressions
+@UseMetaCodec
+@UseLazyView
 @UseCopyAnnotator
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
@@ -12,6 +12,8 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 @AutoValuePrototype(pattern = "(.*)", value = "$1Entity")
 @UseExpressions
+@UseMetaCodec
+@UseLazyView
 @UseCopyAnnotator
 public @interface EntityPrototype {
 }
@@ -40,6 +40,10 @@ public interface MetaClassFieldMapper {
         return "__version";
     }
 
+    default String sequenceNumberField() {
+        return "__seq";
+    }
+
     default <K, S> String keyField(MetaClassWithKey<K, S> metaClassWithKey) {
         return metaClassWithKey.keyProperty().name();
     }
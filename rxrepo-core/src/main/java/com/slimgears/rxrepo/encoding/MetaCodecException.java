@@ -5,4 +5,8 @@ public class MetaCodecException extends RuntimeException {
     public MetaCodecException(String message) {
         super(message);
     }
+
+    public MetaCodecException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
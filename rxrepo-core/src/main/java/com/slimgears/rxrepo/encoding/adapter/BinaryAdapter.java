@@ -0,0 +1,510 @@
+package com.slimgears.rxrepo.encoding.adapter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.encoding.MetaClassFieldMapper;
+import com.slimgears.rxrepo.encoding.MetaCodecException;
+import com.slimgears.rxrepo.encoding.MetaContexts;
+import com.slimgears.rxrepo.encoding.MetaElementType;
+import com.slimgears.rxrepo.encoding.MetaReader;
+import com.slimgears.rxrepo.encoding.MetaWriter;
+import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.generic.MoreStrings;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Compact binary encoding. Integers are written as zig-zag varints, and objects and arrays are prefixed
+ * with their encoded length, so that the reader can skip unread values without decoding them.
+ * Field names, known to {@link FieldNames}, are written as ids. Writer and reader should use the same field names.
+ */
+@SuppressWarnings("WeakerAccess")
+public class BinaryAdapter {
+    private final static byte tagNull = 0;
+    private final static byte tagFalse = 1;
+    private final static byte tagTrue = 2;
+    private final static byte tagInt = 3;
+    private final static byte tagLong = 4;
+    private final static byte tagShort = 5;
+    private final static byte tagFloat = 6;
+    private final static byte tagDouble = 7;
+    private final static byte tagString = 8;
+    private final static byte tagBinary = 9;
+    private final static byte tagBeginObject = 10;
+    private final static byte tagEndObject = 11;
+    private final static byte tagBeginArray = 12;
+    private final static byte tagEndArray = 13;
+    private final static byte tagName = 14;
+    private final static byte tagNameId = 15;
+    private final static MetaElementType[] tagToElementType = {
+            MetaElementType.Null,
+            MetaElementType.Boolean,
+            MetaElementType.Boolean,
+            MetaElementType.Integer,
+            MetaElementType.Long,
+            MetaElementType.Short,
+            MetaElementType.Float,
+            MetaElementType.Double,
+            MetaElementType.String,
+            MetaElementType.Binary,
+            MetaElementType.BeginObject,
+            MetaElementType.EndObject,
+            MetaElementType.BeginArray,
+            MetaElementType.EndArray,
+            MetaElementType.Name,
+            MetaElementType.Name
+    };
+    private final static int lengthSize = Integer.BYTES;
+
+    public static MetaWriter writer(ByteBuffer buffer) {
+        return writer(buffer, FieldNames.empty());
+    }
+
+    public static MetaWriter writer(ByteBuffer buffer, FieldNames fieldNames) {
+        return new Writer(buffer, fieldNames);
+    }
+
+    public static MetaReader reader(ByteBuffer buffer) {
+        return reader(buffer, FieldNames.empty());
+    }
+
+    public static MetaReader reader(ByteBuffer buffer, FieldNames fieldNames) {
+        return new Reader(buffer, fieldNames);
+    }
+
+    /**
+     * Field names, which are encoded as ids. Ids are assigned in order of properties of the given meta classes
+     * (including nested meta classes), so the same meta classes produce the same ids.
+     */
+    public static class FieldNames {
+        private final static FieldNames empty = new FieldNames(ImmutableList.of());
+        private final ImmutableList<String> names;
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        private FieldNames(ImmutableList<String> names) {
+            this.names = names;
+            for (int i = 0; i < names.size(); ++i) {
+                ids.putIfAbsent(names.get(i), i);
+            }
+        }
+
+        public static FieldNames empty() {
+            return empty;
+        }
+
+        public static FieldNames of(String... names) {
+            return new FieldNames(ImmutableList.copyOf(names));
+        }
+
+        public static FieldNames of(MetaClass<?>... metaClasses) {
+            return of(MetaContexts.defaultFieldMapper(), metaClasses);
+        }
+
+        public static FieldNames of(MetaClassFieldMapper fieldMapper, MetaClass<?>... metaClasses) {
+            Set<String> names = new LinkedHashSet<>();
+            Set<MetaClass<?>> visited = new LinkedHashSet<>();
+            Arrays.asList(metaClasses).forEach(metaClass -> addFieldNames(fieldMapper, metaClass, names, visited));
+            names.add(fieldMapper.searchableTextField());
+            return new FieldNames(ImmutableList.copyOf(names));
+        }
+
+        private static void addFieldNames(MetaClassFieldMapper fieldMapper, MetaClass<?> metaClass, Set<String> names, Set<MetaClass<?>> visited) {
+            if (!visited.add(metaClass)) {
+                return;
+            }
+            for (PropertyMeta<?, ?> property : metaClass.properties()) {
+                names.add(fieldMapper.toFieldName(property));
+                names.add(fieldMapper.toReferenceFieldName(property));
+            }
+            for (PropertyMeta<?, ?> property : metaClass.properties()) {
+                nestedType(property.type()).ifPresent(type -> addFieldNames(fieldMapper, MetaClasses.forTokenUnchecked(type), names, visited));
+            }
+        }
+
+        private static Optional<TypeToken<?>> nestedType(TypeToken<?> type) {
+            if (PropertyMetas.hasMetaClass(type)) {
+                return Optional.of(type);
+            }
+            if (type.isSubtypeOf(Collection.class)) {
+                return Optional.<TypeToken<?>>of(MoreTypeTokens.argType(type, Collection.class))
+                        .filter(PropertyMetas::hasMetaClass);
+            }
+            return Optional.empty();
+        }
+
+        private Integer idOf(String name) {
+            return ids.get(name);
+        }
+
+        private String nameOf(int id) {
+            if (id < 0 || id >= names.size()) {
+                throw new MetaCodecException("Unknown field id: " + id);
+            }
+            return names.get(id);
+        }
+    }
+
+    private static class Writer implements MetaWriter {
+        private final ByteBuffer buffer;
+        private final FieldNames fieldNames;
+        private final Deque<Integer> lengthPositions = new ArrayDeque<>();
+
+        private Writer(ByteBuffer buffer, FieldNames fieldNames) {
+            this.buffer = buffer;
+            this.fieldNames = fieldNames;
+        }
+
+        @Override
+        public MetaWriter writeBeginObject() {
+            return writeBegin(tagBeginObject);
+        }
+
+        @Override
+        public MetaWriter writeEndObject() {
+            return writeEnd(tagEndObject);
+        }
+
+        @Override
+        public MetaWriter writeBeginArray() {
+            return writeBegin(tagBeginArray);
+        }
+
+        @Override
+        public MetaWriter writeEndArray() {
+            return writeEnd(tagEndArray);
+        }
+
+        @Override
+        public MetaWriter writeName(String name) {
+            Integer id = fieldNames.idOf(name);
+            if (id != null) {
+                put(tagNameId);
+                putVarInt(id);
+            } else {
+                put(tagName);
+                putBytes(name.getBytes(StandardCharsets.UTF_8));
+            }
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeLong(long value) {
+            put(tagLong);
+            putVarLong(zigZag(value));
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeInt(int value) {
+            put(tagInt);
+            putVarLong(zigZag(value));
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeShort(short value) {
+            put(tagShort);
+            putVarLong(zigZag(value));
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeFloat(float value) {
+            put(tagFloat);
+            return invoke(() -> buffer.putFloat(value));
+        }
+
+        @Override
+        public MetaWriter writeDouble(double value) {
+            put(tagDouble);
+            return invoke(() -> buffer.putDouble(value));
+        }
+
+        @Override
+        public MetaWriter writeBoolean(boolean value) {
+            put(value ? tagTrue : tagFalse);
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeString(String value) {
+            put(tagString);
+            putBytes(value.getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeNull() {
+            put(tagNull);
+            return this;
+        }
+
+        @Override
+        public MetaWriter writeBytes(byte[] bytes) {
+            put(tagBinary);
+            putBytes(bytes);
+            return this;
+        }
+
+        private MetaWriter writeBegin(byte tag) {
+            put(tag);
+            lengthPositions.push(buffer.position());
+            // Length is patched once the matching end is written
+            return invoke(() -> buffer.putInt(0));
+        }
+
+        private MetaWriter writeEnd(byte tag) {
+            if (lengthPositions.isEmpty()) {
+                throw new MetaCodecException("Unexpected end of object or array");
+            }
+            put(tag);
+            int lengthPosition = lengthPositions.pop();
+            buffer.putInt(lengthPosition, buffer.position() - lengthPosition - lengthSize);
+            return this;
+        }
+
+        private void putBytes(byte[] bytes) {
+            putVarInt(bytes.length);
+            invoke(() -> buffer.put(bytes));
+        }
+
+        private void putVarInt(int value) {
+            putVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                put((byte)((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            put((byte)value);
+        }
+
+        private void put(byte value) {
+            invoke(() -> buffer.put(value));
+        }
+
+        private MetaWriter invoke(Runnable runnable) {
+            try {
+                runnable.run();
+                return this;
+            } catch (BufferOverflowException e) {
+                throw new MetaCodecException("Buffer capacity (" + buffer.capacity() + " bytes) exceeded");
+            }
+        }
+
+        private static long zigZag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+    }
+
+    private static class Reader implements MetaReader {
+        private final ByteBuffer buffer;
+        private final FieldNames fieldNames;
+
+        private Reader(ByteBuffer buffer, FieldNames fieldNames) {
+            this.buffer = buffer;
+            this.fieldNames = fieldNames;
+        }
+
+        @Override
+        public MetaElementType currentElement() {
+            if (!buffer.hasRemaining()) {
+                return MetaElementType.End;
+            }
+            byte tag = buffer.get(buffer.position());
+            if (tag < 0 || tag >= tagToElementType.length) {
+                throw new MetaCodecException("Unknown tag: " + tag);
+            }
+            return tagToElementType[tag];
+        }
+
+        @Override
+        public void readBeginObject() {
+            readTag(tagBeginObject);
+            buffer.getInt();
+        }
+
+        @Override
+        public void readEndObject() {
+            readTag(tagEndObject);
+        }
+
+        @Override
+        public void readBeginArray() {
+            readTag(tagBeginArray);
+            buffer.getInt();
+        }
+
+        @Override
+        public void readEndArray() {
+            readTag(tagEndArray);
+        }
+
+        @Override
+        public String readName() {
+            return readTag(tagNameId, tagName) == tagNameId
+                    ? fieldNames.nameOf(getVarInt())
+                    : getString();
+        }
+
+        @Override
+        public long readLong() {
+            readTag(tagLong, tagInt, tagShort);
+            return unZigZag(getVarLong());
+        }
+
+        @Override
+        public int readInt() {
+            return (int)readLong();
+        }
+
+        @Override
+        public short readShort() {
+            return (short)readLong();
+        }
+
+        @Override
+        public float readFloat() {
+            return (float)readDouble();
+        }
+
+        @Override
+        public double readDouble() {
+            return readTag(tagDouble, tagFloat) == tagDouble
+                    ? buffer.getDouble()
+                    : buffer.getFloat();
+        }
+
+        @Override
+        public boolean readBoolean() {
+            return readTag(tagTrue, tagFalse) == tagTrue;
+        }
+
+        @Override
+        public String readString() {
+            readTag(tagString);
+            return getString();
+        }
+
+        @Override
+        public void readNull() {
+            readTag(tagNull);
+        }
+
+        @Override
+        public byte[] readBytes() {
+            readTag(tagBinary);
+            byte[] bytes = new byte[getVarInt()];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        @Override
+        public void skipValue() {
+            byte tag = buffer.get(buffer.position());
+            switch (tag) {
+                case tagBeginObject:
+                case tagBeginArray:
+                    buffer.get();
+                    int length = buffer.getInt();
+                    buffer.position(buffer.position() + length);
+                    break;
+                case tagString:
+                case tagBinary:
+                    buffer.get();
+                    int size = getVarInt();
+                    buffer.position(buffer.position() + size);
+                    break;
+                case tagInt:
+                case tagLong:
+                case tagShort:
+                    buffer.get();
+                    getVarLong();
+                    break;
+                case tagFloat:
+                    buffer.position(buffer.position() + 1 + Float.BYTES);
+                    break;
+                case tagDouble:
+                    buffer.position(buffer.position() + 1 + Double.BYTES);
+                    break;
+                case tagNull:
+                case tagTrue:
+                case tagFalse:
+                    buffer.get();
+                    break;
+                default:
+                    throw new MetaCodecException("Cannot skip value at element: " + currentElement());
+            }
+        }
+
+        private byte readTag(byte... expectedTags) {
+            if (!buffer.hasRemaining()) {
+                throw new MetaCodecException("Cannot read after end");
+            }
+            byte tag = buffer.get(buffer.position());
+            for (byte expectedTag : expectedTags) {
+                if (tag == expectedTag) {
+                    buffer.get();
+                    return tag;
+                }
+            }
+            throw new IllegalStateException(MoreStrings.format("Actual element type ({}) does not match to expected ({})",
+                    currentElement(), tagToElementType[expectedTags[0]]));
+        }
+
+        private String getString() {
+            int size = getVarInt();
+            String value;
+            if (buffer.hasArray()) {
+                value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), size, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + size);
+            } else {
+                byte[] bytes = new byte[size];
+                buffer.get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return value;
+        }
+
+        private int getVarInt() {
+            return (int)getVarLong();
+        }
+
+        private long getVarLong() {
+            long value = 0;
+            int shift = 0;
+            try {
+                byte b;
+                do {
+                    b = buffer.get();
+                    value |= (long)(b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0 && shift < 64);
+            } catch (BufferUnderflowException e) {
+                throw new MetaCodecException("Unexpected end of buffer");
+            }
+            return value;
+        }
+
+        private static long unZigZag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.slimgears.rxrepo.encoding.codecs;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.encoding.*;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.*;
+import com.slimgears.util.stream.Lazy;
+
+import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Base class for codecs, generated by annotation processor for classes annotated with
+ * {@link com.slimgears.rxrepo.annotations.UseMetaCodec}. Generated code reads and writes properties
+ * through direct getter and builder setter calls, while field name mapping, references and searchable
+ * text are handled here in the same way as {@link MetaClassCodec} does.
+ */
+public abstract class GeneratedMetaClassCodec<T, B extends MetaBuilder<T>> implements MetaCodec<T> {
+    private final static String generatedClassName = "GeneratedCodec";
+    private final static Map<Class<?>, Optional<Constructor<?>>> generatedConstructors = new ConcurrentHashMap<>();
+
+    private final MetaClass<T> metaClass;
+    private final MetaObjectResolver resolver;
+    private final boolean alwaysEmbedNested;
+    private final Lazy<Optional<Function<Object, String>>> textSupplier;
+    private final Set<PropertyMeta<T, ?>> referenceProperties;
+    private volatile FieldNames fieldNames;
+
+    protected GeneratedMetaClassCodec(MetaClass<T> metaClass, MetaObjectResolver resolver) {
+        this.metaClass = metaClass;
+        this.resolver = Optional.ofNullable(resolver).orElseGet(MetaClassCodec::currentResolver);
+        this.alwaysEmbedNested = resolver == null;
+        this.textSupplier = Lazy.of(() -> MetaClassSearchableFields.searchableTextFromEntity(metaClass));
+        this.referenceProperties = metaClass.properties()
+                .stream()
+                .filter(PropertyMetas::isReference)
+                .collect(ImmutableSet.toImmutableSet());
+    }
+
+    protected abstract B createBuilder();
+    protected abstract void writeProperties(MetaContext.Writer context, T value);
+    protected abstract boolean readProperty(MetaContext.Reader context, String propertyName, boolean reference, B builder);
+
+    @Override
+    public void encode(MetaContext.Writer context, T value) {
+        context.writer().writeBeginObject();
+        writeProperties(context, value);
+        textSupplier.get()
+                .ifPresent(func -> {
+                    String text = func.apply(value);
+                    context.writer().writeName(context.fieldMapper().searchableTextField());
+                    context.writer().writeString(text);
+                });
+        context.writer().writeEndObject();
+    }
+
+    @Override
+    public T decode(MetaContext.Reader context) {
+        MetaReader reader = context.reader();
+        FieldNames names = fieldNames(context.fieldMapper());
+        reader.readBeginObject();
+        B builder = createBuilder();
+        int foundProperties = 0;
+        while (reader.currentElement() != MetaElementType.EndObject) {
+            String name = reader.readName();
+            String propertyName = names.propertyNames.get(name);
+            if (propertyName == null) {
+                reader.skipValue();
+            } else if (reader.currentElement() == MetaElementType.Null) {
+                reader.readNull();
+                ++foundProperties;
+            } else if (readProperty(context, propertyName, names.referenceNames.contains(name), builder)) {
+                ++foundProperties;
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndObject();
+        return (foundProperties > 0)
+                ? builder.build()
+                : null;
+    }
+
+    protected void writeName(MetaContext.Writer context, PropertyMeta<T, ?> propertyMeta) {
+        context.writer().writeName(context.fieldMapper().toFieldName(propertyMeta));
+    }
+
+    protected <V> void writeProperty(MetaContext.Writer context, PropertyMeta<T, V> propertyMeta, V value) {
+        if (value == null) {
+            return;
+        }
+
+        if (!alwaysEmbedNested && referenceProperties.contains(propertyMeta)) {
+            context.writer().writeName(context.fieldMapper().toReferenceFieldName(propertyMeta));
+            MetaClassWithKey<?, V> metaClass = MetaClasses.forTokenWithKeyUnchecked(propertyMeta.type());
+            writeReference(context, metaClass, value);
+        } else {
+            writeName(context, propertyMeta);
+            writeValue(context, propertyMeta.type(), value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <V> V readPropertyValue(MetaContext.Reader context, PropertyMeta<T, V> propertyMeta, boolean reference) {
+        return reference
+                ? (V)readReference(context, (MetaClassWithKey)MetaClasses.forTokenWithKeyUnchecked(propertyMeta.type()))
+                : readValue(context, propertyMeta.type());
+    }
+
+    private <K, V> void writeReference(MetaContext.Writer context, MetaClassWithKey<K, V> metaClassWithKey, V value) {
+        writeValue(context, metaClassWithKey.keyProperty().type(), metaClassWithKey.keyOf(value));
+    }
+
+    private <V> void writeValue(MetaContext.Writer context, TypeToken<V> valueType, V value) {
+        MetaCodec<V> codec = context.codecProvider().resolve(valueType);
+        codec.encode(context, value);
+    }
+
+    private <V> V readValue(MetaContext.Reader context, TypeToken<V> type) {
+        MetaCodec<V> codec = context.codecProvider().resolve(type);
+        return codec.decode(context);
+    }
+
+    private <K, S> S readReference(MetaContext.Reader context, MetaClassWithKey<K, S> metaClass) {
+        return Optional.ofNullable(readValue(context, metaClass.keyProperty().type()))
+                .flatMap(key -> resolver.resolve(metaClass, key).map(Optional::of).blockingGet(Optional.empty()))
+                .orElse(null);
+    }
+
+    private FieldNames fieldNames(MetaClassFieldMapper fieldMapper) {
+        FieldNames names = fieldNames;
+        if (names == null || names.fieldMapper != fieldMapper) {
+            names = new FieldNames(fieldMapper);
+            fieldNames = names;
+        }
+        return names;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> Optional<MetaCodec<T>> tryCreate(TypeToken<T> type, MetaObjectResolver resolver) {
+        return generatedConstructors
+                .computeIfAbsent(type.getRawType(), GeneratedMetaClassCodec::findGeneratedConstructor)
+                .map(ctor -> {
+                    try {
+                        return (MetaCodec<T>)ctor.newInstance(resolver);
+                    } catch (ReflectiveOperationException e) {
+                        throw new MetaCodecException("Could not create generated codec for " + type, e);
+                    }
+                });
+    }
+
+    private static Optional<Constructor<?>> findGeneratedConstructor(Class<?> rawType) {
+        try {
+            Class<?> codecClass = Class.forName(rawType.getName() + "$" + generatedClassName, true, rawType.getClassLoader());
+            return Optional.of(codecClass.getConstructor(MetaObjectResolver.class));
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return Optional.empty();
+        }
+    }
+
+    private class FieldNames {
+        private final MetaClassFieldMapper fieldMapper;
+        private final Map<String, String> propertyNames;
+        private final Set<String> referenceNames;
+
+        private FieldNames(MetaClassFieldMapper fieldMapper) {
+            this.fieldMapper = fieldMapper;
+            Map<String, String> propertyNames = new HashMap<>();
+            metaClass.properties().forEach(p -> propertyNames.put(fieldMapper.toFieldName(p), p.name()));
+            referenceProperties.forEach(p -> propertyNames.put(fieldMapper.toReferenceFieldName(p), p.name()));
+            this.propertyNames = ImmutableMap.copyOf(propertyNames);
+            this.referenceNames = propertyNames.keySet()
+                    .stream()
+                    .filter(fieldMapper::isReferenceFieldName)
+                    .collect(Collectors.toSet());
+        }
+    }
+}
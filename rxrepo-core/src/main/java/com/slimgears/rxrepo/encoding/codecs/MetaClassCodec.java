@@ -25,6 +25,10 @@ public class MetaClassCodec<T> implements MetaCodec<T> {
         return objectResolver.withScope(resolver, action);
     }
 
+    static MetaObjectResolver currentResolver() {
+        return objectResolver.current();
+    }
+
     private MetaClassCodec(MetaClass<T> metaClass, MetaObjectResolver resolver) {
         this.metaClass = metaClass;
         this.resolver = Optional.ofNullable(resolver).orElseGet(objectResolver::current);
@@ -143,7 +147,8 @@ public class MetaClassCodec<T> implements MetaCodec<T> {
         @Override
         public <T> MetaCodec<T> tryResolve(TypeToken<T> type) {
             return PropertyMetas.hasMetaClass(type)
-                    ? forMetaClass(MetaClasses.forTokenUnchecked(type), resolver)
+                    ? GeneratedMetaClassCodec.tryCreate(type, resolver)
+                    .orElseGet(() -> forMetaClass(MetaClasses.forTokenUnchecked(type), resolver))
                     : null;
         }
     }
@@ -0,0 +1,29 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.auto.value.AutoValue;
+
+@AutoValue
+public abstract class BulkOptions {
+    public abstract int batchSize();
+    public abstract long batchTimeoutMillis();
+    public abstract boolean recursive();
+
+    public static BulkOptions defaults() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new AutoValue_BulkOptions.Builder()
+                .batchSize(1000)
+                .batchTimeoutMillis(100)
+                .recursive(true);
+    }
+
+    @AutoValue.Builder
+    public interface Builder {
+        Builder batchSize(int batchSize);
+        Builder batchTimeoutMillis(long batchTimeoutMillis);
+        Builder recursive(boolean recursive);
+        BulkOptions build();
+    }
+}
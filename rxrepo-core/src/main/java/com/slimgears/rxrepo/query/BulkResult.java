@@ -0,0 +1,44 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+import java.util.Collection;
+
+@AutoValue
+public abstract class BulkResult<K> {
+    public abstract ImmutableList<K> insertedKeys();
+    public abstract ImmutableList<K> updatedKeys();
+    public abstract ImmutableList<K> failedKeys();
+
+    public static <K> BulkResult<K> empty() {
+        return create(ImmutableList.of(), ImmutableList.of(), ImmutableList.of());
+    }
+
+    public static <K> BulkResult<K> ofInserted(Collection<K> keys) {
+        return create(ImmutableList.copyOf(keys), ImmutableList.of(), ImmutableList.of());
+    }
+
+    public static <K> BulkResult<K> ofUpdated(Collection<K> keys) {
+        return create(ImmutableList.of(), ImmutableList.copyOf(keys), ImmutableList.of());
+    }
+
+    public static <K> BulkResult<K> ofFailed(Collection<K> keys) {
+        return create(ImmutableList.of(), ImmutableList.of(), ImmutableList.copyOf(keys));
+    }
+
+    public static <K> BulkResult<K> create(ImmutableList<K> insertedKeys, ImmutableList<K> updatedKeys, ImmutableList<K> failedKeys) {
+        return new AutoValue_BulkResult<>(insertedKeys, updatedKeys, failedKeys);
+    }
+
+    public BulkResult<K> merge(BulkResult<K> other) {
+        return create(
+                ImmutableList.<K>builder().addAll(insertedKeys()).addAll(other.insertedKeys()).build(),
+                ImmutableList.<K>builder().addAll(updatedKeys()).addAll(other.updatedKeys()).build(),
+                ImmutableList.<K>builder().addAll(failedKeys()).addAll(other.failedKeys()).build());
+    }
+
+    public int size() {
+        return insertedKeys().size() + updatedKeys().size() + failedKeys().size();
+    }
+}
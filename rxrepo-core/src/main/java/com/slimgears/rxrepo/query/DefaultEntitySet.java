@@ -1,10 +1,12 @@
 package com.slimgears.rxrepo.query;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.slimgears.rxrepo.expressions.*;
 import com.slimgears.rxrepo.expressions.internal.CollectionPropertyExpression;
 import com.slimgears.rxrepo.filters.Filter;
 import com.slimgears.rxrepo.query.provider.*;
+import com.slimgears.rxrepo.util.KeysetPagination;
 import com.slimgears.util.autovalue.annotations.HasMetaClass;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.rx.Maybes;
@@ -14,11 +16,13 @@ import io.reactivex.Observable;
 import io.reactivex.*;
 import io.reactivex.exceptions.CompositeException;
 import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -161,6 +165,8 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
             private final AtomicReference<ObjectExpression<S, Boolean>> predicate = new AtomicReference<>();
             private Long limit;
             private Long skip;
+            private S afterItem;
+            private S beforeItem;
 
             @Override
             public <V extends Comparable<V>> SelectQueryBuilder<S> orderBy(PropertyExpression<S, ?, V> field, boolean ascending) {
@@ -168,6 +174,42 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                 return this;
             }
 
+            @Override
+            public SelectQueryBuilder<S> after(S lastSeen) {
+                this.afterItem = lastSeen;
+                return this;
+            }
+
+            @Override
+            public SelectQueryBuilder<S> before(S firstSeen) {
+                this.beforeItem = firstSeen;
+                return this;
+            }
+
+            private boolean isKeyset() {
+                return afterItem != null || beforeItem != null;
+            }
+
+            private ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> keysetSorting() {
+                return isKeyset()
+                        ? KeysetPagination.withKeyTieBreaker(metaClass, sortingInfos.build())
+                        : sortingInfos.build();
+            }
+
+            private ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> retrieveSorting() {
+                return beforeItem != null
+                        ? KeysetPagination.reverse(keysetSorting())
+                        : keysetSorting();
+            }
+
+            private ObjectExpression<S, Boolean> keysetPredicate() {
+                AtomicReference<ObjectExpression<S, Boolean>> keysetPredicate = new AtomicReference<>(predicate.get());
+                ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sorting = keysetSorting();
+                Optional.ofNullable(afterItem).ifPresent(item -> updatePredicate(keysetPredicate, KeysetPagination.after(sorting, item)));
+                Optional.ofNullable(beforeItem).ifPresent(item -> updatePredicate(keysetPredicate, KeysetPagination.before(sorting, item)));
+                return keysetPredicate.get();
+            }
+
             @Override
             public SelectQuery<S> select() {
                 return select(ObjectExpression.arg(metaClass.asType()));
@@ -176,12 +218,13 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
             @Override
             public <T> SelectQuery<T> select(ObjectExpression<S, T> expression, boolean distinct) {
                 return new SelectQuery<T>() {
+                    private final boolean reversed = beforeItem != null;
                     private final QueryInfo.Builder<K, S, T> builder = QueryInfo.<K, S, T>builder()
                             .metaClass(metaClass)
-                            .predicate(predicate.get())
+                            .predicate(keysetPredicate())
                             .limit(limit)
                             .skip(skip)
-                            .sorting(sortingInfos.build())
+                            .sorting(retrieveSorting())
                             .mapping(omitEmptyMapping(expression))
                             .distinct(distinct);
 
@@ -206,9 +249,23 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                     @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
                     @Override
                     public Observable<T> retrieve() {
-                        return queryProvider
+                        Observable<T> items = queryProvider
                                 .query(builder.build())
                                 .map(Notification::newValue);
+                        return reversed
+                                ? items.toList().flattenAsObservable(Lists::reverse)
+                                : items;
+                    }
+
+                    @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
+                    @Override
+                    public Flowable<T> retrieveFlowable() {
+                        Flowable<T> items = queryProvider
+                                .queryFlowable(builder.build())
+                                .map(Notification::newValue);
+                        return reversed
+                                ? items.toList().flattenAsFlowable(Lists::reverse)
+                                : items;
                     }
                 };
             }
@@ -220,10 +277,14 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
 
             @Override
             public <T> LiveSelectQuery<T> liveSelect(ObjectExpression<S, T> expression) {
+                // Live window is always maintained in forward sorting order, so it can not end at the cursor
+                if (beforeItem != null) {
+                    throw new UnsupportedOperationException("before() is not supported for live queries, use after() instead");
+                }
                 return new LiveSelectQuery<T>() {
                     private final QueryInfo.Builder<K, S, T> builder = QueryInfo.<K, S, T>builder()
                             .metaClass(metaClass)
-                            .predicate(predicate.get())
+                            .predicate(keysetPredicate())
                             .mapping(omitEmptyMapping(expression));
 
                     @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
@@ -264,13 +325,13 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                         QueryInfo<K, S, S> retrieveQuery = observeQuery.toBuilder()
                                 .limit(limit)
                                 .skip(skip)
-                                .sortingAddAll(sortingInfos.build())
+                                .sortingAddAll(keysetSorting())
                                 .build();
 
                         QueryInfo<K, S, T> transformQuery = sourceQuery.toBuilder()
                                 .limit(limit)
                                 .skip(skip)
-                                .sortingAddAll(sortingInfos.build())
+                                .sortingAddAll(keysetSorting())
                                 .build();
 
                         return queryProvider.aggregate(observeQuery, Aggregator.count())
@@ -324,6 +385,14 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                     public Observable<Notification<T>> observe() {
                         return queryProvider.liveQuery(builder.build());
                     }
+
+                    @Override
+                    public Observable<Notification<T>> observeFrom(long sequenceNumber) {
+                        QueryInfo<K, S, T> query = builder.build();
+                        return queryProvider
+                                .liveQueryFrom(query, sequenceNumber)
+                                .doOnNext(n -> log.trace("{}", Notifications.toBriefString(metaClass, n)));
+                    }
                 };
             }
 
@@ -398,6 +467,117 @@ public class DefaultEntitySet<K, S> implements EntitySet<K, S> {
                         : Completable.error(e));
     }
 
+    @Override
+    public Flowable<BulkResult<K>> bulkWrite(Flowable<S> entities, BulkOptions options) {
+        return entities
+                .window(options.batchSize())
+                .concatMap(window -> window
+                        .buffer(options.batchTimeoutMillis(), TimeUnit.MILLISECONDS, Schedulers.computation(), options.batchSize())
+                        .filter(batch -> !batch.isEmpty())
+                        .onBackpressureBuffer()
+                        .concatMapSingle(batch -> writeBatch(batch, options.recursive()), 1), 1);
+    }
+
+    /**
+     * Splits the batch by a key-only query into new and existing entities: new ones are inserted as a batch,
+     * existing ones are updated one by one. Entities, which were inserted concurrently, fall back to per-entity writes
+     */
+    private Single<BulkResult<K>> writeBatch(List<S> batch, boolean recursive) {
+        Map<K, S> entities = batch.stream()
+                .collect(Collectors.toMap(metaClass::keyOf, entity -> entity, (first, last) -> last, LinkedHashMap::new));
+        return existingKeys(new ArrayList<>(entities.keySet()))
+                .map(existing -> entities.entrySet().stream()
+                        .collect(Collectors.partitioningBy(
+                                entry -> existing.contains(entry.getKey()),
+                                Collectors.mapping(Map.Entry::getValue, Collectors.toList()))))
+                .flatMap(partitions -> Single
+                        .concat(insertBatch(partitions.get(false), recursive), updateBatch(partitions.get(true), recursive))
+                        .reduce(BulkResult.empty(), BulkResult::merge));
+    }
+
+    private Single<Set<K>> existingKeys(List<K> keys) {
+        PropertyExpression<S, S, K> keyProperty = PropertyExpression.ofObject(metaClass.keyProperty());
+        return queryProvider
+                .query(QueryInfo.<K, S, S>builder()
+                        .metaClass(metaClass)
+                        .predicate(keyProperty.in(keys))
+                        .propertiesAddAll(Collections.<PropertyExpression<S, ?, ?>>singleton(keyProperty))
+                        .build())
+                .filter(notification -> notification.newValue() != null)
+                .map(notification -> metaClass.keyOf(notification.newValue()))
+                .collect(HashSet::new, Set::add);
+    }
+
+    private Single<BulkResult<K>> insertBatch(List<S> entities, boolean recursive) {
+        if (entities.isEmpty()) {
+            return Single.just(BulkResult.empty());
+        }
+        List<K> keys = entities.stream().map(metaClass::keyOf).collect(Collectors.toList());
+        return queryProvider.insert(metaClass, entities, recursive)
+                .toSingle(() -> BulkResult.ofInserted(keys))
+                .onErrorResumeNext(e -> {
+                    log.debug("Batch of {} {} entities could not be inserted, falling back to per-entity writes", entities.size(), metaClass.simpleName(), e);
+                    return storedEntities(keys).flatMap(stored -> Observable.fromIterable(entities)
+                            .concatMapSingle(entity -> fallbackWrite(entity, stored.get(metaClass.keyOf(entity)), recursive))
+                            .reduce(BulkResult.empty(), BulkResult::merge));
+                });
+    }
+
+    /**
+     * Batch insert may have partially succeeded: entities, already stored as they are, were inserted by the batch itself
+     */
+    private Single<BulkResult<K>> fallbackWrite(S entity, S stored, boolean recursive) {
+        if (stored == null) {
+            return writeEntity(entity, recursive);
+        }
+        return entity.equals(stored)
+                ? Single.just(BulkResult.ofInserted(Collections.singletonList(metaClass.keyOf(entity))))
+                : updateEntity(entity, recursive);
+    }
+
+    private Single<Map<K, S>> storedEntities(List<K> keys) {
+        PropertyExpression<S, S, K> keyProperty = PropertyExpression.ofObject(metaClass.keyProperty());
+        return queryProvider
+                .query(QueryInfo.<K, S, S>builder()
+                        .metaClass(metaClass)
+                        .predicate(keyProperty.in(keys))
+                        .build())
+                .filter(notification -> notification.newValue() != null)
+                .map(Notification::newValue)
+                .collect(HashMap::new, (map, entity) -> map.put(metaClass.keyOf(entity), entity));
+    }
+
+    private Single<BulkResult<K>> updateBatch(List<S> entities, boolean recursive) {
+        return Observable.fromIterable(entities)
+                .concatMapSingle(entity -> updateEntity(entity, recursive))
+                .reduce(BulkResult.empty(), BulkResult::merge);
+    }
+
+    private Single<BulkResult<K>> writeEntity(S entity, boolean recursive) {
+        List<K> key = Collections.singletonList(metaClass.keyOf(entity));
+        return queryProvider.insert(metaClass, Collections.singleton(entity), recursive)
+                .toSingle(() -> BulkResult.ofInserted(key))
+                .onErrorResumeNext(e -> isConcurrencyException(e)
+                        ? updateEntity(entity, recursive)
+                        : Single.just(failed(key, e)));
+    }
+
+    private Single<BulkResult<K>> updateEntity(S entity, boolean recursive) {
+        List<K> key = Collections.singletonList(metaClass.keyOf(entity));
+        return Single.defer(() -> queryProvider.insertOrUpdate(metaClass, entity, recursive))
+                .compose(Singles.backOffDelayRetry(
+                        DefaultEntitySet::isConcurrencyException,
+                        Duration.ofMillis(config.retryInitialDurationMillis()),
+                        config.retryCount()))
+                .map(updated -> BulkResult.ofUpdated(key))
+                .onErrorReturn(e -> failed(key, e));
+    }
+
+    private BulkResult<K> failed(List<K> key, Throwable error) {
+        log.warn("Failed to write {} {}", metaClass.simpleName(), key.get(0), error);
+        return BulkResult.ofFailed(key);
+    }
+
     @Override
     public Maybe<Supplier<S>> update(K key, Function<Maybe<S>, Maybe<S>> updater) {
         return update(key, true, updater);
@@ -3,6 +3,7 @@ package com.slimgears.rxrepo.query;
 import com.slimgears.rxrepo.query.decorator.MandatoryPropertiesQueryProviderDecorator;
 import com.slimgears.rxrepo.query.decorator.TakeUntilCloseQueryProviderDecorator;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.util.Queries;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
 import io.reactivex.subjects.CompletableSubject;
@@ -19,6 +20,7 @@ public class DefaultRepository implements Repository {
             .bufferDebounceTimeoutMillis(100)
             .aggregationDebounceTimeMillis(2000)
             .retryInitialDurationMillis(10)
+            .liveQueryBufferSize(Queries.defaultMaxBufferSize)
             .build();
 
     private final RepositoryConfigModel config;
@@ -6,6 +6,7 @@ import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.filters.Filter;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -35,6 +36,17 @@ public interface EntitySet<K, S> {
         return entities.flatMapSingle(this::update).ignoreElements();
     }
 
+    /**
+     * Writes entities in size or time bounded batches, each batch being inserted as single operation.
+     * Upstream is requested only as fast as batches are written and results are consumed,
+     * so that at most a couple of batches are held in memory at a time.
+     */
+    Flowable<BulkResult<K>> bulkWrite(Flowable<S> entities, BulkOptions options);
+
+    default Flowable<BulkResult<K>> bulkWrite(Flowable<S> entities) {
+        return bulkWrite(entities, BulkOptions.defaults());
+    }
+
     default Observable<S> findAll(PropertyExpression<S, ?, ?>... properties) {
         return findAll((BooleanExpression<S>)null, properties);
     }
@@ -0,0 +1,59 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.List;
+import java.util.function.Function;
+
+@AutoValue
+public abstract class ListChange<T> {
+    public enum Type {
+        Insert,
+        Remove,
+        Move,
+        Replace
+    }
+
+    public abstract Type type();
+    public abstract int index();
+    public abstract int toIndex();
+    public abstract T item();
+
+    public static <T> ListChange<T> inserted(int index, T item) {
+        return new AutoValue_ListChange<>(Type.Insert, index, index, item);
+    }
+
+    public static <T> ListChange<T> removed(int index, T item) {
+        return new AutoValue_ListChange<>(Type.Remove, index, index, item);
+    }
+
+    public static <T> ListChange<T> moved(int fromIndex, int toIndex, T item) {
+        return new AutoValue_ListChange<>(Type.Move, fromIndex, toIndex, item);
+    }
+
+    public static <T> ListChange<T> replaced(int index, T item) {
+        return new AutoValue_ListChange<>(Type.Replace, index, index, item);
+    }
+
+    public <R> ListChange<R> map(Function<T, R> mapper) {
+        return new AutoValue_ListChange<>(type(), index(), toIndex(), mapper.apply(item()));
+    }
+
+    public void applyTo(List<T> list) {
+        switch (type()) {
+            case Insert:
+                list.add(index(), item());
+                break;
+            case Remove:
+                list.remove(index());
+                break;
+            case Move:
+                list.remove(index());
+                list.add(toIndex(), item());
+                break;
+            case Replace:
+                list.set(index(), item());
+                break;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.function.Function;
+
+@AutoValue
+public abstract class ListDiff<T> {
+    public abstract ImmutableList<ListChange<T>> changes();
+    @Nullable public abstract ImmutableList<T> snapshot();
+
+    public static <T> ListDiff<T> ofSnapshot(List<T> items) {
+        return new AutoValue_ListDiff<>(ImmutableList.of(), ImmutableList.copyOf(items));
+    }
+
+    public static <T> ListDiff<T> ofChanges(List<ListChange<T>> changes) {
+        return new AutoValue_ListDiff<>(ImmutableList.copyOf(changes), null);
+    }
+
+    public boolean isSnapshot() {
+        return snapshot() != null;
+    }
+
+    public boolean isEmpty() {
+        return !isSnapshot() && changes().isEmpty();
+    }
+
+    public <R> ListDiff<R> map(Function<T, R> mapper) {
+        return new AutoValue_ListDiff<>(
+                changes().stream().map(change -> change.map(mapper)).collect(ImmutableList.toImmutableList()),
+                snapshot() != null ? snapshot().stream().map(mapper).collect(ImmutableList.toImmutableList()) : null);
+    }
+
+    public <L extends List<T>> L applyTo(L list) {
+        if (isSnapshot()) {
+            list.clear();
+            list.addAll(snapshot());
+        } else {
+            changes().forEach(change -> change.applyTo(list));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,214 @@
+package com.slimgears.rxrepo.query;
+
+import com.slimgears.rxrepo.expressions.BinaryOperationExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
+import com.slimgears.rxrepo.util.PropertyExpressions;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Dispatches notifications of a single shared upstream to many live query subscribers.
+ * Subscribers whose predicate contains an equality (or value-in) constraint on a property are indexed by
+ * the constrained values, so that each notification is only evaluated against candidate subscribers.
+ */
+public class LiveQueryRouter<K, S> {
+    private final static Logger log = LoggerFactory.getLogger(LiveQueryRouter.class);
+    private final MetaClassWithKey<K, S> metaClass;
+    private final Map<PropertyExpression<S, ?, ?>, PropertyIndex<S>> indices = new ConcurrentHashMap<>();
+    private final Set<Route<S>> unindexedRoutes = new CopyOnWriteArraySet<>();
+    private final Observable<Notification<S>> connection;
+
+    private LiveQueryRouter(MetaClassWithKey<K, S> metaClass, Observable<Notification<S>> upstream) {
+        this.metaClass = metaClass;
+        this.connection = upstream
+                .doOnNext(this::dispatch)
+                .doOnComplete(this::completeRoutes)
+                .ignoreElements()
+                .<Notification<S>>toObservable()
+                .share();
+    }
+
+    public static <K, S> LiveQueryRouter<K, S> create(MetaClassWithKey<K, S> metaClass, Observable<Notification<S>> upstream) {
+        return new LiveQueryRouter<>(metaClass, upstream);
+    }
+
+    public Observable<Notification<S>> route(@Nullable ObjectExpression<S, Boolean> predicate) {
+        Predicate<S> compiledPredicate = ExpressionCompiler.compilePredicate(predicate);
+        Optional<Constraint<S>> constraint = Optional.ofNullable(predicate).flatMap(this::constraintOf);
+        return Observable.<Notification<S>>create(emitter -> {
+                    Route<S> route = new Route<>(compiledPredicate, emitter.serialize());
+                    add(route, constraint.orElse(null));
+                    emitter.setCancellable(() -> remove(route, constraint.orElse(null)));
+                })
+                .mergeWith(connection);
+    }
+
+    private synchronized void add(Route<S> route, @Nullable Constraint<S> constraint) {
+        if (constraint == null) {
+            unindexedRoutes.add(route);
+            return;
+        }
+
+        log.trace("Indexing live query of {} by {} ({} values)", metaClass.simpleName(), constraint.property.path(), constraint.values.size());
+        PropertyIndex<S> index = indices.computeIfAbsent(constraint.property, PropertyIndex::new);
+        constraint.values.forEach(value -> index.routes
+                .computeIfAbsent(value, v -> ConcurrentHashMap.newKeySet())
+                .add(route));
+    }
+
+    private synchronized void remove(Route<S> route, @Nullable Constraint<S> constraint) {
+        if (constraint == null) {
+            unindexedRoutes.remove(route);
+            return;
+        }
+
+        Optional.ofNullable(indices.get(constraint.property)).ifPresent(index -> {
+            constraint.values.forEach(value -> Optional
+                    .ofNullable(index.routes.get(value))
+                    .ifPresent(routes -> {
+                        routes.remove(route);
+                        if (routes.isEmpty()) {
+                            index.routes.remove(value);
+                        }
+                    }));
+            if (index.routes.isEmpty()) {
+                indices.remove(constraint.property);
+            }
+        });
+    }
+
+    private void dispatch(Notification<S> notification) {
+        unindexedRoutes.forEach(route -> route.accept(notification));
+        if (indices.isEmpty()) {
+            return;
+        }
+
+        Set<Route<S>> candidates = new HashSet<>();
+        indices.values().forEach(index -> {
+            if (notification.isEmpty()) {
+                index.routes.values().forEach(candidates::addAll);
+            } else {
+                index.addCandidates(notification.oldValue(), candidates);
+                index.addCandidates(notification.newValue(), candidates);
+            }
+        });
+        candidates.forEach(route -> route.accept(notification));
+    }
+
+    private synchronized void completeRoutes() {
+        log.trace("Live query of {} completed, completing {} routes", metaClass.simpleName(), unindexedRoutes.size());
+        unindexedRoutes.forEach(Route::complete);
+        indices.values().forEach(index -> index.routes.values().forEach(routes -> routes.forEach(Route::complete)));
+    }
+
+    private Optional<Constraint<S>> constraintOf(ObjectExpression<S, Boolean> predicate) {
+        return constraintsOf(predicate)
+                .reduce((first, second) -> isKey(second.property) && !isKey(first.property) ? second : first);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Stream<Constraint<S>> constraintsOf(ObjectExpression<S, ?> expression) {
+        if (!(expression instanceof BinaryOperationExpression)) {
+            return Stream.empty();
+        }
+
+        BinaryOperationExpression<S, ?, ?, ?> binaryExpression = (BinaryOperationExpression<S, ?, ?, ?>)expression;
+        ObjectExpression<S, ?> left = binaryExpression.left();
+        ObjectExpression<S, ?> right = binaryExpression.right();
+
+        if (expression.type() == Expression.Type.And) {
+            return Stream.concat(constraintsOf(left), constraintsOf(right));
+        } else if (expression.type() == Expression.Type.Equals) {
+            return Stream.concat(
+                    constraintOf(left, right, Collections::singleton),
+                    constraintOf(right, left, Collections::singleton));
+        } else if (expression.type() == Expression.Type.ValueIn) {
+            return constraintOf(left, right, value -> value instanceof Collection
+                    ? new HashSet<Object>((Collection<?>)value)
+                    : null);
+        }
+        return Stream.empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Stream<Constraint<S>> constraintOf(ObjectExpression<S, ?> property, ObjectExpression<S, ?> constant, Function<Object, Set<?>> valuesOf) {
+        if (!(property instanceof PropertyExpression) || !(constant instanceof ConstantExpression)) {
+            return Stream.empty();
+        }
+
+        return Optional.ofNullable(((ConstantExpression<S, ?>)constant).value())
+                .map(valuesOf)
+                .filter(values -> !values.contains(null))
+                .map(values -> new Constraint<>((PropertyExpression<S, ?, ?>)property, values))
+                .map(Stream::of)
+                .orElseGet(Stream::empty);
+    }
+
+    private boolean isKey(PropertyExpression<S, ?, ?> property) {
+        return !PropertyExpressions.hasParent(property) && property.property().equals(metaClass.keyProperty());
+    }
+
+    private static class Constraint<S> {
+        private final PropertyExpression<S, ?, ?> property;
+        private final Set<?> values;
+
+        private Constraint(PropertyExpression<S, ?, ?> property, Set<?> values) {
+            this.property = property;
+            this.values = values;
+        }
+    }
+
+    private static class PropertyIndex<S> {
+        private final Function<S, ?> getter;
+        private final Map<Object, Set<Route<S>>> routes = new ConcurrentHashMap<>();
+
+        private PropertyIndex(PropertyExpression<S, ?, ?> property) {
+            this.getter = ExpressionCompiler.compile(property);
+        }
+
+        private void addCandidates(@Nullable S object, Set<Route<S>> candidates) {
+            Optional.ofNullable(object)
+                    .map(getter)
+                    .map(routes::get)
+                    .ifPresent(candidates::addAll);
+        }
+    }
+
+    private static class Route<S> {
+        private final Predicate<S> predicate;
+        private final ObservableEmitter<Notification<S>> emitter;
+
+        private Route(Predicate<S> predicate, ObservableEmitter<Notification<S>> emitter) {
+            this.predicate = predicate;
+            this.emitter = emitter;
+        }
+
+        private void accept(Notification<S> notification) {
+            Notifications.applyFilter(notification, predicate).ifPresent(emitter::onNext);
+        }
+
+        private void complete() {
+            emitter.onComplete();
+        }
+    }
+}
@@ -17,6 +17,13 @@ public abstract class LiveSelectQuery<T> {
     public abstract Observable<Notification<T>> queryAndObserve();
     public abstract Observable<Notification<T>> observe();
 
+    /**
+     * Replays changes since the given sequence number, followed by empty notification and live notifications.
+     * If those changes are no longer available, emits reset notification (see {@link Notification#isReset()}),
+     * meaning that previously observed results should be discarded, followed by the output of {@link #queryAndObserve()}
+     */
+    public abstract Observable<Notification<T>> observeFrom(long sequenceNumber);
+
     public Observable<Long> count() {
         return aggregate(Aggregator.count());
     }
@@ -54,6 +61,10 @@ public abstract class LiveSelectQuery<T> {
         return observeAs(Notifications.toList(), properties);
     }
 
+    public final Observable<ListDiff<T>> asListDiff() {
+        return observeAs(Notifications.toListDiff());
+    }
+
     @SafeVarargs
     public final <R> Observable<R> observeAs(QueryTransformer<T, R> transformer, PropertyExpression<T, ?, ?>... properties) {
         return properties(properties).observeAs(transformer);
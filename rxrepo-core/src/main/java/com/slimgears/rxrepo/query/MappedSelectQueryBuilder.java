@@ -32,6 +32,16 @@ class MappedSelectQueryBuilder<T, S> extends SelectQueryBuilder<T> {
         return this;
     }
 
+    @Override
+    public SelectQueryBuilder<T> after(T lastSeen) {
+        throw new UnsupportedOperationException("Keyset pagination is not supported for mapped queries");
+    }
+
+    @Override
+    public SelectQueryBuilder<T> before(T firstSeen) {
+        throw new UnsupportedOperationException("Keyset pagination is not supported for mapped queries");
+    }
+
     @Override
     public SelectQuery<T> select() {
         return underlying.select(mapper);
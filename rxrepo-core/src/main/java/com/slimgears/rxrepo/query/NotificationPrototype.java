@@ -3,6 +3,7 @@ package com.slimgears.rxrepo.query;
 import com.slimgears.rxrepo.annotations.PrototypeWithBuilder;
 
 import javax.annotation.Nullable;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
 
@@ -24,7 +25,15 @@ public interface NotificationPrototype<T> {
         return oldValue() == null && newValue() != null;
     }
 
-    default boolean isEmpty() { return oldValue() == null && newValue() == null; }
+    default boolean isEmpty() { return oldValue() == null && newValue() == null && !isReset(); }
+
+    /**
+     * Reset notification means that previously received notifications should be discarded,
+     * as the following ones describe the whole state from scratch
+     */
+    default boolean isReset() {
+        return oldValue() == null && newValue() == null && Objects.equals(sequenceNumber(), Long.MIN_VALUE);
+    }
 
     default <R> Notification<R> map(Function<T, R> mapper) {
         return Notification.ofModified(
@@ -45,6 +54,10 @@ public interface NotificationPrototype<T> {
         return Notification.create(oldObject, newObject, sequenceNum);
     }
 
+    static <T> NotificationPrototype<T> ofReset() {
+        return Notification.create(null, null, Long.MIN_VALUE);
+    }
+
     static <T> NotificationPrototype<T> ofCreated(T object) {
         return ofCreated(object, null);
     }
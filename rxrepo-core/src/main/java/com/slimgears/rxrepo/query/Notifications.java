@@ -5,13 +5,13 @@ import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.SortingInfo;
-import com.slimgears.rxrepo.util.Expressions;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
+import com.slimgears.rxrepo.util.KeysetPagination;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.generic.MoreStrings;
 import com.slimgears.util.stream.Optionals;
 import io.reactivex.Maybe;
 import io.reactivex.ObservableTransformer;
-import io.reactivex.functions.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +22,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -29,33 +30,53 @@ import static com.slimgears.util.generic.MoreStrings.lazy;
 
 public class Notifications {
     private final static Logger log = LoggerFactory.getLogger(Notifications.class);
+    private final static int defaultSnapshotInterval = 100;
+
     public static <K, S, T> ObservableTransformer<List<Notification<S>>, List<T>> toList(
             MetaClassWithKey<K, S> metaClass,
             ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos,
             @Nullable ObjectExpression<S, T> mapping,
             @Nullable Long limit) {
-        Function<S, T> mapper = Expressions.compile(mapping);
+        Function<S, T> mapper = ExpressionCompiler.compile(mapping);
         ObservableTransformer<List<Notification<S>>, List<S>> transformer = NotificationsToListTransformer.create(metaClass, sortingInfos, limit);
         return src -> src
             .compose(transformer)
             .map(objects -> objects.stream().map(mapper).collect(Collectors.toList()));
     }
 
+    @SuppressWarnings("unchecked")
     private static <K, S, T> ObservableTransformer<List<Notification<S>>, List<T>> toSlidingList(
             MetaClassWithKey<K, S> metaClass,
             ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos,
             @Nullable ObjectExpression<S, T> mapping,
             @Nullable Long limit) {
-        Function<S, T> mapper = Expressions.compile(mapping);
+        Function<S, T> mapper = ExpressionCompiler.compile(mapping);
         ObservableTransformer<List<Notification<S>>, List<S>> transformer =
                 Optional.ofNullable(sortingInfos).map(List::size).map(s -> s > 0).orElse(false)
                         ? NotificationsToSlidingListTransformer.create(metaClass, sortingInfos, limit)
                         : NotificationsToListTransformer.create(metaClass, sortingInfos, limit);
+        // Sliding list is emitted as a snapshot view, so it is not copied, unless it has to be mapped
+        if (mapping == null) {
+            return src -> src.compose(transformer).map(objects -> (List<T>)objects);
+        }
         return src -> src
             .compose(transformer)
             .map(objects -> objects.stream().map(mapper).collect(Collectors.toList()));
     }
 
+    public static <K, S, T> ObservableTransformer<List<Notification<S>>, ListDiff<T>> toListDiff(
+            MetaClassWithKey<K, S> metaClass,
+            ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos,
+            @Nullable ObjectExpression<S, T> mapping,
+            @Nullable Long limit,
+            int snapshotInterval) {
+        Function<S, T> mapper = ExpressionCompiler.compile(mapping);
+        ObservableTransformer<List<Notification<S>>, ListDiff<S>> transformer = NotificationsToListDiffTransformer.create(metaClass, sortingInfos, limit, snapshotInterval);
+        return src -> src
+            .compose(transformer)
+            .map(diff -> diff.map(mapper));
+    }
+
     public static <K, S> ObservableTransformer<List<Notification<S>>, List<S>> toList(QueryInfo<K, S, S> queryInfo, AtomicLong count) {
         return Notifications.toList(queryInfo.metaClass(), queryInfo.sorting(), queryInfo.mapping(), queryInfo.limit());
     }
@@ -82,37 +103,72 @@ public class Notifications {
         };
     }
 
+    /**
+     * Sliding list, which window starts after given keyset pagination cursor. Only applicable for non-mapped queries.
+     */
+    public static <T> QueryTransformer<T, List<T>> toSlidingList(T after) {
+        return new QueryTransformer<T, List<T>>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public <K, S> ObservableTransformer<List<Notification<S>>, List<T>> transformer(QueryInfo<K, S, T> query, AtomicLong count) {
+                if (query.mapping() != null) {
+                    throw new IllegalArgumentException("Sliding list cursor is not supported for mapped queries");
+                }
+                ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos = KeysetPagination.withKeyTieBreaker(query.metaClass(), query.sorting());
+                ObservableTransformer<List<Notification<S>>, List<S>> transformer = NotificationsToSlidingListTransformer.create(query.metaClass(), sortingInfos, query.limit(), (S)after);
+                return src -> src.compose(transformer).map(items -> (List<T>)items);
+            }
+        };
+    }
+
+    public static <T> QueryTransformer<T, ListDiff<T>> toListDiff() {
+        return toListDiff(defaultSnapshotInterval);
+    }
+
+    public static <T> QueryTransformer<T, ListDiff<T>> toListDiff(int snapshotInterval) {
+        return new QueryTransformer<T, ListDiff<T>>() {
+            @Override
+            public <K, S> ObservableTransformer<List<Notification<S>>, ListDiff<T>> transformer(QueryInfo<K, S, T> query, AtomicLong count) {
+                return toListDiff(query.metaClass(), query.sorting(), query.mapping(), query.limit(), snapshotInterval);
+            }
+        };
+    }
+
     public static <S> ObservableTransformer<Notification<S>, Notification<S>> applyFilter(ObjectExpression<S, Boolean> predicate) {
         if (predicate == null) {
             return src -> src;
         }
 
-        Predicate<S> compiledPredicate = Expressions.compileRxPredicate(predicate);
+        Predicate<S> compiledPredicate = ExpressionCompiler.compilePredicate(predicate);
         return src -> src
-                .flatMapMaybe(notification -> {
-                    if (notification.isCreate()) {
-                        if (compiledPredicate.test(notification.newValue())) {
-                            return Maybe.just(Notification.ofCreated(notification.newValue(), notification.sequenceNumber()));
-                        }
-                    } else if (notification.isDelete()) {
-                        if (compiledPredicate.test(notification.oldValue())) {
-                            return Maybe.just(Notification.ofDeleted(notification.oldValue(), notification.sequenceNumber()));
-                        }
-                    } else if (notification.isModify()) {
-                        boolean oldMatch = compiledPredicate.test(notification.oldValue());
-                        boolean newMatch = compiledPredicate.test(notification.newValue());
-                        if (oldMatch && !newMatch) {
-                            return Maybe.just(Notification.ofDeleted(notification.oldValue(), notification.sequenceNumber()));
-                        } else if (!oldMatch && newMatch) {
-                            return Maybe.just(Notification.ofCreated(notification.newValue(), notification.sequenceNumber()));
-                        } else if (oldMatch) {
-                            return Maybe.just(notification);
-                        }
-                    } else {
-                        return Maybe.just(notification);
-                    }
-                    return Maybe.empty();
-                });
+                .flatMapMaybe(notification -> applyFilter(notification, compiledPredicate)
+                        .map(Maybe::just)
+                        .orElseGet(Maybe::empty));
+    }
+
+    public static <S> Optional<Notification<S>> applyFilter(Notification<S> notification, Predicate<S> predicate) {
+        if (notification.isCreate()) {
+            if (predicate.test(notification.newValue())) {
+                return Optional.of(Notification.ofCreated(notification.newValue(), notification.sequenceNumber()));
+            }
+        } else if (notification.isDelete()) {
+            if (predicate.test(notification.oldValue())) {
+                return Optional.of(Notification.ofDeleted(notification.oldValue(), notification.sequenceNumber()));
+            }
+        } else if (notification.isModify()) {
+            boolean oldMatch = predicate.test(notification.oldValue());
+            boolean newMatch = predicate.test(notification.newValue());
+            if (oldMatch && !newMatch) {
+                return Optional.of(Notification.ofDeleted(notification.oldValue(), notification.sequenceNumber()));
+            } else if (!oldMatch && newMatch) {
+                return Optional.of(Notification.ofCreated(notification.newValue(), notification.sequenceNumber()));
+            } else if (oldMatch) {
+                return Optional.of(notification);
+            }
+        } else {
+            return Optional.of(notification);
+        }
+        return Optional.empty();
     }
 
     public static <K, S, T> ObservableTransformer<Notification<S>, Notification<T>> applyQuery(QueryInfo<K, S, T> query) {
@@ -125,13 +181,13 @@ public class Notifications {
     }
 
     public static <S, T> ObservableTransformer<Notification<S>, Notification<T>> applyMap(ObjectExpression<S, T> projection) {
-        java.util.function.Function<S, T> mapper = Expressions.compile(projection);
+        java.util.function.Function<S, T> mapper = ExpressionCompiler.compile(projection);
         return src -> src.map(n -> n.map(mapper));
     }
 
     public static <T> ObservableTransformer<Notification<T>, Notification<T>> applyFieldsFilter(Collection<PropertyExpression<T, ?, ?>> properties) {
         List<java.util.function.Function<T, ?>> propertyMetas = properties.stream()
-                .map(Expressions::compile)
+                .map(ExpressionCompiler::compile)
                 .collect(Collectors.toList());
 
         return properties.isEmpty()
@@ -0,0 +1,224 @@
+package com.slimgears.rxrepo.query;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.util.OrderStatisticTree;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Observable;
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Emits changes of the list, maintained by {@link NotificationsToListTransformer}, relative to the previously
+ * emitted one. First list, and then every {@code snapshotInterval} diffs (or when a diff would be larger
+ * than the list itself), are emitted as snapshots
+ */
+public class NotificationsToListDiffTransformer<K, T> implements ObservableTransformer<List<Notification<T>>, ListDiff<T>> {
+    private final static Logger log = LoggerFactory.getLogger(NotificationsToListDiffTransformer.class);
+    private final int snapshotInterval;
+    private final MetaClassWithKey<K, T> metaClass;
+    private final NotificationsToListTransformer<K, T> listTransformer;
+    private List<T> currentList;
+    private int diffsSinceSnapshot;
+
+    private NotificationsToListDiffTransformer(MetaClassWithKey<K, T> metaClass,
+                                               ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
+                                               @Nullable Long limit,
+                                               int snapshotInterval) {
+        log.trace("Creating instance of list diff transformer for {}", metaClass.simpleName());
+        this.metaClass = metaClass;
+        this.snapshotInterval = snapshotInterval;
+        this.listTransformer = NotificationsToListTransformer.create(metaClass, sortingInfos, limit);
+    }
+
+    public static <K, T> NotificationsToListDiffTransformer<K, T> create(
+            MetaClassWithKey<K, T> metaClass,
+            ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
+            @Nullable Long limit,
+            int snapshotInterval) {
+        return new NotificationsToListDiffTransformer<>(metaClass, sortingInfos, limit, snapshotInterval);
+    }
+
+    @Override
+    public ObservableSource<ListDiff<T>> apply(Observable<List<Notification<T>>> src) {
+        return src
+                .compose(listTransformer)
+                .map(this::toDiff)
+                .filter(diff -> !diff.isEmpty())
+                .doOnNext(diff -> log.trace("List diff: {} changes (snapshot: {})", diff.changes().size(), diff.isSnapshot()));
+    }
+
+    private synchronized ListDiff<T> toDiff(List<T> list) {
+        List<T> previousList = currentList;
+        currentList = list;
+        if (previousList == null) {
+            diffsSinceSnapshot = 0;
+            return ListDiff.ofSnapshot(list);
+        }
+
+        List<ListChange<T>> changes = diff(previousList, list);
+        if (changes != null && changes.isEmpty()) {
+            return ListDiff.ofChanges(changes);
+        }
+        if (changes == null || diffsSinceSnapshot >= snapshotInterval || changes.size() > list.size()) {
+            diffsSinceSnapshot = 0;
+            return ListDiff.ofSnapshot(list);
+        }
+        ++diffsSinceSnapshot;
+        return ListDiff.ofChanges(changes);
+    }
+
+    // Changes, applicable one after another: removals (starting from the last one), moves of retained items,
+    // which are not in the longest subsequence keeping its relative order, and then insertions and replacements.
+    // Returns null when the items can not be told apart by keys
+    private @Nullable List<ListChange<T>> diff(List<T> previousList, List<T> list) {
+        Map<K, Integer> indices = indicesOf(list);
+        Map<K, Integer> previousIndices = indicesOf(previousList);
+        if (indices == null || previousIndices == null) {
+            return null;
+        }
+
+        List<ListChange<T>> changes = new ArrayList<>();
+        for (int i = previousList.size() - 1; i >= 0; --i) {
+            T item = previousList.get(i);
+            if (!indices.containsKey(metaClass.keyOf(item))) {
+                changes.add(ListChange.removed(i, item));
+            }
+        }
+
+        List<T> retained = previousList.stream()
+                .filter(item -> indices.containsKey(metaClass.keyOf(item)))
+                .collect(Collectors.toList());
+        int[] targets = retained.stream().mapToInt(item -> indices.get(metaClass.keyOf(item))).toArray();
+        boolean[] stable = longestIncreasingSubsequence(targets);
+        Set<K> movedKeys = moveDisplaced(targets, stable, list, changes);
+
+        for (int i = 0; i < list.size(); ++i) {
+            T item = list.get(i);
+            if (!previousIndices.containsKey(metaClass.keyOf(item))) {
+                changes.add(ListChange.inserted(i, item));
+            }
+        }
+
+        for (int i = 0; i < list.size(); ++i) {
+            T item = list.get(i);
+            K key = metaClass.keyOf(item);
+            Integer previousIndex = previousIndices.get(key);
+            if (previousIndex != null && !movedKeys.contains(key) && !Objects.equals(previousList.get(previousIndex), item)) {
+                changes.add(ListChange.replaced(i, item));
+            }
+        }
+        return changes;
+    }
+
+    // Moves retained items, which are not stable, in front of the item following them in the new list
+    // (visiting the new list backwards), tracking current positions of the items with order statistic tree
+    private Set<K> moveDisplaced(int[] targets, boolean[] stable, List<T> list, List<ListChange<T>> changes) {
+        Set<K> movedKeys = new HashSet<>();
+        int[] retainedAt = new int[list.size()];
+        Arrays.fill(retainedAt, -1);
+        for (int i = 0; i < targets.length; ++i) {
+            retainedAt[targets[i]] = i;
+        }
+
+        OrderStatisticTree<Slot> slots = null;
+        Slot[] currentSlots = new Slot[targets.length];
+        for (int i = 0; i < targets.length; ++i) {
+            currentSlots[i] = new Slot(i, 0);
+        }
+
+        Slot anchor = new Slot(targets.length, 0);
+        for (int target = list.size() - 1; target >= 0; --target) {
+            int i = retainedAt[target];
+            if (i < 0) {
+                continue;
+            }
+            if (!stable[i]) {
+                if (slots == null) {
+                    slots = OrderStatisticTree.create(Slot.comparator);
+                    Arrays.stream(currentSlots).forEach(slots::add);
+                }
+                Slot slot = new Slot(anchor.major, anchor.minor - 1);
+                int from = slots.indexOf(currentSlots[i]);
+                slots.remove(currentSlots[i]);
+                int to = slots.rank(slot);
+                slots.add(slot);
+                currentSlots[i] = slot;
+                T item = list.get(target);
+                movedKeys.add(metaClass.keyOf(item));
+                changes.add(ListChange.moved(from, to, item));
+            }
+            anchor = currentSlots[i];
+        }
+        return movedKeys;
+    }
+
+    private @Nullable Map<K, Integer> indicesOf(List<T> list) {
+        Map<K, Integer> indices = new HashMap<>(list.size() * 2);
+        for (int i = 0; i < list.size(); ++i) {
+            if (indices.put(metaClass.keyOf(list.get(i)), i) != null) {
+                return null;
+            }
+        }
+        return indices;
+    }
+
+    // Marks items of the longest strictly increasing subsequence of values (patience sorting)
+    private static boolean[] longestIncreasingSubsequence(int[] values) {
+        int[] tails = new int[values.length];
+        int[] previous = new int[values.length];
+        int length = 0;
+        for (int i = 0; i < values.length; ++i) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                ++length;
+            }
+        }
+
+        boolean[] marked = new boolean[values.length];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            marked[i] = true;
+        }
+        return marked;
+    }
+
+    // Position of retained item: stable items keep (previous index, 0), moved item is placed
+    // right before its successor in the new list by taking successor's minor position minus one
+    private static class Slot {
+        private final static Comparator<Slot> comparator = Comparator
+                .<Slot>comparingInt(slot -> slot.major)
+                .thenComparingInt(slot -> slot.minor);
+        private final int major;
+        private final int minor;
+
+        private Slot(int major, int minor) {
+            this.major = major;
+            this.minor = minor;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.slimgears.rxrepo.query;
 import com.google.common.collect.ImmutableList;
 import com.slimgears.rxrepo.query.provider.SortingInfo;
 import com.slimgears.rxrepo.query.provider.SortingInfos;
+import com.slimgears.rxrepo.util.KeysetPagination;
+import com.slimgears.rxrepo.util.OrderStatisticTree;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Observable;
 import io.reactivex.ObservableSource;
@@ -15,8 +17,6 @@ import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class NotificationsToSlidingListTransformer<K, T> implements ObservableTransformer<List<Notification<T>>, List<T>> {
     private final static Logger log = LoggerFactory.getLogger(NotificationsToSlidingListTransformer.class);
@@ -24,21 +24,31 @@ public class NotificationsToSlidingListTransformer<K, T> implements ObservableTr
     private final AtomicLong firstItemIndex;
     private final AtomicReference<T> firstItem = new AtomicReference<>();
     private final Comparator<T> comparator;
-    private final Map<K, T> map = Collections.synchronizedMap(new HashMap<>());
+    private final Comparator<T> itemComparator;
+    private final @Nullable T after;
+    private final Map<K, T> map = new HashMap<>();
+    private final Map<K, Long> keyOrder = new HashMap<>();
+    private final OrderStatisticTree<T> sortedItems;
     private final MetaClassWithKey<K, T> metaClass;
-
+    private long nextKeyOrder;
 
     private NotificationsToSlidingListTransformer(MetaClassWithKey<K, T> metaClass,
                                            ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
                                            @Nullable Long limit,
-                                           AtomicLong firstItemIndex) {
+                                           AtomicLong firstItemIndex,
+                                           @Nullable T after) {
         log.trace("Creating instance of list transformer for {}", metaClass.simpleName());
         this.metaClass = metaClass;
         this.limit = limit;
         this.firstItemIndex = firstItemIndex;
+        this.after = after;
         this.comparator = Optional
                 .ofNullable(SortingInfos.toComparator(sortingInfos))
                 .orElseThrow(() -> new IllegalArgumentException("Query with sorting is expected"));
+        this.itemComparator = comparator.thenComparing(KeysetPagination
+                .keyComparator(metaClass)
+                .orElseGet(() -> Comparator.comparing(metaClass::keyOf, this::compareKeys)));
+        this.sortedItems = OrderStatisticTree.create(itemComparator);
     }
 
     public static <K, T> NotificationsToSlidingListTransformer<K, T> create(
@@ -46,7 +56,19 @@ public class NotificationsToSlidingListTransformer<K, T> implements ObservableTr
             ImmutableList<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos,
             @Nullable Long limit,
             AtomicLong firstItemIndex) {
-        return new NotificationsToSlidingListTransformer<>(metaClass, sortingInfos, limit, firstItemIndex);
+        return new NotificationsToSlidingListTransformer<>(metaClass, sortingInfos, limit, firstItemIndex, null);
+    }
+
+    /**
+     * Creates transformer, which window starts right after the keyset pagination cursor (same cursor
+     * as passed to {@link SelectQueryBuilder#after(Object)}): items which do not follow it are not included
+     */
+    public static <K, S> NotificationsToSlidingListTransformer<K, S> create(
+            MetaClassWithKey<K, S> metaClass,
+            ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos,
+            @Nullable Long limit,
+            @Nullable S after) {
+        return new NotificationsToSlidingListTransformer<>(metaClass, sortingInfos, limit, new AtomicLong(), after);
     }
 
     public static <K, S> NotificationsToSlidingListTransformer<K, S> create(
@@ -58,62 +80,60 @@ public class NotificationsToSlidingListTransformer<K, T> implements ObservableTr
 
     @Override
     public @NonNull ObservableSource<List<T>> apply(@NonNull Observable<List<Notification<T>>> src) {
-        return src
-                .doOnNext(this::updateMap)
-                .map(n -> toList());
+        return src.map(this::update);
     }
 
-    private ImmutableList<T> toList() {
-        return map.values()
-                .stream()
-                .sorted(comparator)
-                .collect(ImmutableList.toImmutableList());
-    }
-
-    private void updateMap(List<Notification<T>> notifications) {
-        notifications
-                .stream()
-                .peek(this::updateStartIndex)
-                .forEach(this::onNotification);
+    private synchronized List<T> update(List<Notification<T>> notifications) {
+        notifications.forEach(notification -> {
+            updateStartIndex(notification);
+            onNotification(notification);
+        });
 
         removeBeforeFirst();
         removeAfterLast();
         updateFirst();
+        return sortedItems.snapshot();
     }
 
     private void updateFirst() {
-        map.values()
-                .stream()
-                .min(comparator)
-                .ifPresent(item -> {
-                    log.trace("First item set: {}", item);
-                    firstItem.set(item);
-                });
+        if (!sortedItems.isEmpty()) {
+            T item = sortedItems.first();
+            log.trace("First item set: {}", item);
+            firstItem.set(item);
+        }
     }
 
     private void removeAfterLast() {
-        Optional.ofNullable(limit)
-                .map(l -> map.values()
-                        .stream()
-                        .sorted(comparator)
-                        .skip(l))
-                .orElse(Stream.empty())
-                .map(val -> metaClass.keyProperty().getValue(val))
-                .collect(Collectors.toList())
-                .forEach(map::remove);
+        if (limit == null) {
+            return;
+        }
+        while (sortedItems.size() > limit) {
+            remove(sortedItems.last());
+        }
     }
 
     private void removeBeforeFirst() {
+        if (after != null) {
+            while (!sortedItems.isEmpty() && itemComparator.compare(after, sortedItems.first()) >= 0) {
+                remove(sortedItems.first());
+            }
+        }
+
         log.trace("Trying to remove item before first ({})", firstItem.get());
-        Optional.ofNullable(firstItem.get())
-                .map(m -> map.values()
-                        .stream()
-                        .peek(val -> log.trace("Comparing items: (firstItem: {}, currentItem: {}, result: {})", m, val, comparator.compare(m, val)))
-                        .filter(val -> comparator.compare(m, val) > 0))
-                .orElse(Stream.empty())
-                .map(val -> metaClass.keyProperty().getValue(val))
-                .collect(Collectors.toList())
-                .forEach(map::remove);
+        T first = firstItem.get();
+        if (first == null) {
+            return;
+        }
+        while (!sortedItems.isEmpty() && comparator.compare(first, sortedItems.first()) > 0) {
+            remove(sortedItems.first());
+        }
+    }
+
+    private void remove(T item) {
+        sortedItems.remove(item);
+        K key = metaClass.keyOf(item);
+        map.remove(key);
+        releaseKeyOrder(key);
     }
 
     private void updateStartIndex(Notification<T> notification) {
@@ -139,12 +159,38 @@ public class NotificationsToSlidingListTransformer<K, T> implements ObservableTr
     private void onNotification(Notification<T> notification) {
         if (notification.isDelete()) {
             Optional.ofNullable(notification.oldValue())
-                    .map(val -> metaClass.keyProperty().getValue(val))
-                    .ifPresent(map::remove);
+                    .map(metaClass::keyOf)
+                    .map(map::remove)
+                    .ifPresent(this::remove);
         } else {
             Optional.ofNullable(notification.newValue())
-                    .map(val -> metaClass.keyProperty().getValue(val))
-                    .ifPresent(key -> map.put(key, notification.newValue()));
+                    .ifPresent(val -> {
+                        T oldValue = map.put(metaClass.keyProperty().getValue(val), val);
+                        if (oldValue != null) {
+                            sortedItems.remove(oldValue);
+                        }
+                        sortedItems.add(val);
+                    });
+        }
+    }
+
+    // Items with equal sorting values are ordered by key, the same way as keyset pagination does. Keys, which
+    // can not be used for keyset pagination, are ordered by the first time they were seen, so that
+    // distinct keys never compare equal (and items with equal sorting values are not collapsed)
+    private int compareKeys(K left, K right) {
+        if (Objects.equals(left, right)) {
+            return 0;
+        }
+        return Long.compare(orderOf(left), orderOf(right));
+    }
+
+    private long orderOf(K key) {
+        return keyOrder.computeIfAbsent(key, k -> nextKeyOrder++);
+    }
+
+    private void releaseKeyOrder(K key) {
+        if (after == null || !Objects.equals(metaClass.keyOf(after), key)) {
+            keyOrder.remove(key);
         }
     }
 }
@@ -12,4 +12,10 @@ public interface RepositoryConfigModel {
     int bufferDebounceTimeoutMillis();
     int aggregationDebounceTimeMillis();
     int retryInitialDurationMillis();
+
+    /**
+     * Max number of live notifications, buffered while the initial query of live query is in progress.
+     * Live query fails with {@link io.reactivex.exceptions.MissingBackpressureException} once exceeded
+     */
+    int liveQueryBufferSize();
 }
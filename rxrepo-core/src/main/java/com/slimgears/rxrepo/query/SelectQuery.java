@@ -2,6 +2,7 @@ package com.slimgears.rxrepo.query;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -19,6 +20,11 @@ public abstract class SelectQuery<T> {
         return properties(properties).retrieve();
     }
 
+    @SafeVarargs
+    public final Flowable<T> retrieveFlowable(PropertyExpression<T, ?, ?>... properties) {
+        return properties(properties).retrieveFlowable();
+    }
+
     @SafeVarargs
     public final SelectQuery<T> properties(PropertyExpression<T, ?, ?>... properties) {
         return properties(Arrays.asList(properties));
@@ -30,6 +36,11 @@ public abstract class SelectQuery<T> {
 
     public abstract Observable<T> retrieve();
 
+    /**
+     * Retrieves results with backpressure, pulling them from underlying provider on demand
+     */
+    public abstract Flowable<T> retrieveFlowable();
+
     public Single<Long> count() {
         return aggregate(Aggregator.count()).toSingle(0L);
     }
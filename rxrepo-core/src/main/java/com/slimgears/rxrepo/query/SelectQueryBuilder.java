@@ -2,6 +2,7 @@ package com.slimgears.rxrepo.query;
 
 import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -15,6 +16,20 @@ public abstract class SelectQueryBuilder<S>
 
     public abstract <V extends Comparable<V>> SelectQueryBuilder<S> orderBy(PropertyExpression<S, ?, V> field, boolean ascending);
 
+    /**
+     * Keyset pagination: restricts query to items following {@code lastSeen} in sorting order
+     * (key property is used as a tie-breaker), so next page does not require skipping previous ones.
+     * Sorting values of {@code lastSeen} should be non-null.
+     */
+    public abstract SelectQueryBuilder<S> after(S lastSeen);
+
+    /**
+     * Keyset pagination: restricts query to items preceding {@code firstSeen} in sorting order.
+     * Retrieved page consists of items nearest to {@code firstSeen}, in the query sorting order.
+     * Not supported by live queries.
+     */
+    public abstract SelectQueryBuilder<S> before(S firstSeen);
+
     public abstract SelectQuery<S> select();
 
     public abstract <T> SelectQuery<T> select(ObjectExpression<S, T> expression, boolean distinct);
@@ -62,6 +77,11 @@ public abstract class SelectQueryBuilder<S>
         return select().retrieve(properties);
     }
 
+    @SafeVarargs
+    public final Flowable<S> retrieveFlowable(PropertyExpression<S, ?, ?>... properties) {
+        return select().retrieveFlowable(properties);
+    }
+
     @SafeVarargs
     public final Observable<Notification<S>> queryAndObserve(PropertyExpression<S, ?, ?>... properties) {
         return liveSelect().queryAndObserve(properties);
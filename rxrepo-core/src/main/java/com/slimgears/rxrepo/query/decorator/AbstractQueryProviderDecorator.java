@@ -9,6 +9,7 @@ import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -63,6 +64,14 @@ public class AbstractQueryProviderDecorator implements QueryProvider {
                 .doOnComplete(() -> log.trace("query of {} complete", lazy(() -> query.metaClass().simpleName())));
     }
 
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+        return getUnderlyingProvider().queryFlowable(query)
+                .doOnSubscribe(s -> log.trace("Starting flowable query of {}", lazy(() -> query.metaClass().simpleName())))
+                .doOnError(error -> log.trace("Failed to query {}", lazy(() -> query.metaClass().simpleName()), error))
+                .doOnComplete(() -> log.trace("flowable query of {} complete", lazy(() -> query.metaClass().simpleName())));
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> queryAndObserve(QueryInfo<K, S, T> queryInfo, QueryInfo<K, S, T> observeInfo) {
         return getUnderlyingProvider().queryAndObserve(queryInfo, observeInfo)
@@ -82,6 +91,11 @@ public class AbstractQueryProviderDecorator implements QueryProvider {
 
     }
 
+    @Override
+    public <K, S> Observable<Notification<S>> changesSince(MetaClassWithKey<K, S> metaClass, long sequenceNumber) {
+        return getUnderlyingProvider().changesSince(metaClass, sequenceNumber);
+    }
+
     @Override
     public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return getUnderlyingProvider().aggregate(query, aggregator);
@@ -0,0 +1,141 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.nanometer.MetricCollector;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Keeps cached values of cache decorators consistent with their meta classes (dependencies): each dependency
+ * is observed by a live query, and has a version, which is incremented on every change.
+ * A value is only cached, if all its dependencies are observed and none of them have changed while the value
+ * was retrieved. The check and the put are done under the same lock as the changes, so a change can not
+ * slip in between them.
+ */
+class CacheDependencyTracker implements AutoCloseable {
+    private final static Logger log = LoggerFactory.getLogger(CacheDependencyTracker.class);
+    private final Function<MetaClassWithKey<?, ?>, Observable<? extends Notification<?>>> liveQuery;
+    private final BiConsumer<MetaClassWithKey<?, ?>, Notification<?>> onNotification;
+    private final Consumer<MetaClassWithKey<?, ?>> onFailure;
+    private final Map<MetaClassWithKey<?, ?>, Disposable> subscriptions = new ConcurrentHashMap<>();
+    private final Map<MetaClassWithKey<?, ?>, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final MetricCollector.Counter hits;
+    private final MetricCollector.Counter misses;
+
+    private CacheDependencyTracker(MetricCollector metrics,
+                                   Function<MetaClassWithKey<?, ?>, Observable<? extends Notification<?>>> liveQuery,
+                                   BiConsumer<MetaClassWithKey<?, ?>, Notification<?>> onNotification,
+                                   Consumer<MetaClassWithKey<?, ?>> onFailure) {
+        this.liveQuery = liveQuery;
+        this.onNotification = onNotification;
+        this.onFailure = onFailure;
+        this.hits = metrics.counter("hits");
+        this.misses = metrics.counter("misses");
+    }
+
+    /**
+     * @param liveQuery      live query of all entities of given meta class
+     * @param onNotification applies notification of a dependency to the cache (called under the lock)
+     * @param onFailure      invalidates values, which depend on a meta class, which is no longer observed (called under the lock)
+     */
+    static CacheDependencyTracker create(MetricCollector metrics,
+                                         Function<MetaClassWithKey<?, ?>, Observable<? extends Notification<?>>> liveQuery,
+                                         BiConsumer<MetaClassWithKey<?, ?>, Notification<?>> onNotification,
+                                         Consumer<MetaClassWithKey<?, ?>> onFailure) {
+        return new CacheDependencyTracker(metrics, liveQuery, onNotification, onFailure);
+    }
+
+    void recordHit() {
+        hits.inc();
+    }
+
+    /**
+     * Records cache miss and starts observing the dependencies of the value, which is about to be retrieved
+     * @return version, to be passed to {@link #putIfUnchanged}
+     */
+    long recordMiss(Collection<MetaClassWithKey<?, ?>> dependencies) {
+        misses.inc();
+        dependencies.forEach(this::subscribe);
+        return versionOf(dependencies);
+    }
+
+    long recordMiss(MetaClassWithKey<?, ?> dependency) {
+        return recordMiss(Collections.singleton(dependency));
+    }
+
+    synchronized boolean putIfUnchanged(Collection<MetaClassWithKey<?, ?>> dependencies, long version, Runnable put) {
+        if (dependencies.stream().allMatch(subscriptions::containsKey) && versionOf(dependencies) == version) {
+            put.run();
+            return true;
+        }
+        return false;
+    }
+
+    boolean putIfUnchanged(MetaClassWithKey<?, ?> dependency, long version, Runnable put) {
+        return putIfUnchanged(Collections.singleton(dependency), version, put);
+    }
+
+    synchronized void invalidate(MetaClassWithKey<?, ?> metaClass, Runnable invalidation) {
+        versionOf(metaClass).incrementAndGet();
+        invalidation.run();
+    }
+
+    synchronized void invalidateAll(Runnable invalidation) {
+        versions.values().forEach(AtomicLong::incrementAndGet);
+        invalidation.run();
+    }
+
+    @Override
+    public void close() {
+        subscriptions.values().forEach(Disposable::dispose);
+        subscriptions.clear();
+    }
+
+    private synchronized void subscribe(MetaClassWithKey<?, ?> metaClass) {
+        if (subscriptions.containsKey(metaClass)) {
+            return;
+        }
+
+        Disposable subscription = liveQuery.apply(metaClass)
+                .subscribe(
+                        notification -> onNotification(metaClass, notification),
+                        error -> onError(metaClass, error));
+        if (!subscription.isDisposed()) {
+            subscriptions.put(metaClass, subscription);
+        }
+    }
+
+    private synchronized void onNotification(MetaClassWithKey<?, ?> metaClass, Notification<?> notification) {
+        versionOf(metaClass).incrementAndGet();
+        onNotification.accept(metaClass, notification);
+    }
+
+    private synchronized void onError(MetaClassWithKey<?, ?> metaClass, Throwable error) {
+        log.warn("Live query of {} failed, dependent cached values are invalidated", metaClass.simpleName(), error);
+        subscriptions.remove(metaClass);
+        versionOf(metaClass).incrementAndGet();
+        onFailure.accept(metaClass);
+    }
+
+    private long versionOf(Collection<MetaClassWithKey<?, ?>> metaClasses) {
+        return metaClasses.stream()
+                .mapToLong(metaClass -> versionOf(metaClass).get())
+                .sum();
+    }
+
+    private AtomicLong versionOf(MetaClassWithKey<?, ?> metaClass) {
+        return versions.computeIfAbsent(metaClass, mc -> new AtomicLong());
+    }
+}
@@ -0,0 +1,112 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.ChangeLogUnavailableException;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.util.ChangeLog;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps bounded in-memory log of recent changes per entity type, for providers which do not maintain
+ * change log of their own. Logging of a type starts once it is observed, its changes are requested,
+ * or when the decorator is created (for types given to {@link #create(int, MetaClassWithKey[])}).
+ * Only changes since the first logged one can be replayed: requests for older changes fail with
+ * {@link ChangeLogUnavailableException}, so live queries resumed from those fall back to reset and full resync.
+ * The log is not persisted, so it does not survive restart, and is not shared between processes.
+ */
+public class ChangeLogQueryProviderDecorator extends AbstractQueryProviderDecorator {
+    private final int capacity;
+    private final Map<MetaClassWithKey<?, ?>, ChangeLog<?>> changeLogs = new ConcurrentHashMap<>();
+    private final Map<MetaClassWithKey<?, ?>, Disposable> subscriptions = new ConcurrentHashMap<>();
+
+    private ChangeLogQueryProviderDecorator(QueryProvider underlyingProvider, int capacity) {
+        super(underlyingProvider);
+        this.capacity = capacity;
+    }
+
+    public static QueryProvider.Decorator create(int capacity) {
+        return qp -> new ChangeLogQueryProviderDecorator(qp, capacity);
+    }
+
+    public static QueryProvider.Decorator create(int capacity, MetaClassWithKey<?, ?>... loggedMetaClasses) {
+        return qp -> {
+            ChangeLogQueryProviderDecorator decorator = new ChangeLogQueryProviderDecorator(qp, capacity);
+            Arrays.stream(loggedMetaClasses).forEach(decorator::changeLogOf);
+            return decorator;
+        };
+    }
+
+    @Override
+    public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
+        return super.liveQuery(query).doOnSubscribe(d -> changeLogOf(query.metaClass()));
+    }
+
+    @Override
+    public <K, S, T> Observable<Notification<T>> queryAndObserve(QueryInfo<K, S, T> queryInfo, QueryInfo<K, S, T> observeInfo) {
+        return super.queryAndObserve(queryInfo, observeInfo).doOnSubscribe(d -> changeLogOf(observeInfo.metaClass()));
+    }
+
+    @Override
+    public <K, S> Observable<Notification<S>> changesSince(MetaClassWithKey<K, S> metaClass, long sequenceNumber) {
+        return Observable.defer(() -> changeLogOf(metaClass)
+                .changesSince(sequenceNumber)
+                .map(Observable::fromIterable)
+                .orElseGet(() -> Observable.error(new ChangeLogUnavailableException("Changes of " + metaClass.simpleName() + " since " + sequenceNumber + " are no longer available"))));
+    }
+
+    @Override
+    public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+        return super.drop(metaClass)
+                .doFinally(() -> reset(metaClass));
+    }
+
+    @Override
+    public Completable dropAll() {
+        return super.dropAll()
+                .doFinally(() -> subscriptions.keySet().forEach(this::reset));
+    }
+
+    @Override
+    public void close() {
+        subscriptions.values().forEach(Disposable::dispose);
+        subscriptions.clear();
+        changeLogs.clear();
+        super.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <K, S> ChangeLog<S> changeLogOf(MetaClassWithKey<K, S> metaClass) {
+        ChangeLog<S> existing = (ChangeLog<S>)changeLogs.get(metaClass);
+        if (existing != null) {
+            return existing;
+        }
+
+        ChangeLog<S> changeLog = ChangeLog.createFromFirstChange(capacity);
+        Disposable subscription = super.liveQuery(QueryInfo.<K, S, S>builder().metaClass(metaClass).build())
+                .subscribe(
+                        changeLog::append,
+                        error -> {
+                            log.warn("Live query of {} failed, change log is discarded", metaClass.simpleName(), error);
+                            reset(metaClass);
+                        });
+        if (!subscription.isDisposed()) {
+            changeLogs.put(metaClass, changeLog);
+            subscriptions.put(metaClass, subscription);
+        }
+        return changeLog;
+    }
+
+    private synchronized void reset(MetaClassWithKey<?, ?> metaClass) {
+        changeLogs.remove(metaClass);
+        Optional.ofNullable(subscriptions.remove(metaClass)).ifPresent(Disposable::dispose);
+    }
+}
@@ -0,0 +1,295 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.slimgears.nanometer.MetricCollector;
+import com.slimgears.nanometer.Metrics;
+import com.slimgears.rxrepo.expressions.BinaryOperationExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.rxrepo.util.PropertyExpressions;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.stream.Streams;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.function.ToIntFunction;
+
+/**
+ * Read-through cache of entities by key. Queries, which select single entity by key equality, are served from
+ * memory. Cached entities of each type are kept up to date by the live query of that type, and are invalidated
+ * by writes done through this provider. Cached entities embed resolved references, so they are also invalidated
+ * when any of the meta classes they reference (directly or indirectly) changes.
+ */
+public class EntityCacheQueryProviderDecorator extends AbstractQueryProviderDecorator {
+    private final static MetricCollector metrics = Metrics.collector(EntityCacheQueryProviderDecorator.class);
+    private final Cache<EntryKey, Optional<Notification<?>>> cache;
+    private final CacheDependencyTracker tracker;
+    private final Set<MetaClassWithKey<?, ?>> cachedMetaClasses = ConcurrentHashMap.newKeySet();
+    private final MetricCollector.Counter evictions = metrics.counter("evictions");
+
+    private EntityCacheQueryProviderDecorator(QueryProvider underlyingProvider, CacheBuilder<Object, Object> cacheBuilder) {
+        super(underlyingProvider);
+        this.cache = cacheBuilder
+                .<EntryKey, Optional<Notification<?>>>removalListener(this::onRemoval)
+                .build();
+        this.tracker = CacheDependencyTracker.create(
+                metrics,
+                this::liveQueryOf,
+                this::onNotification,
+                this::invalidateEntriesAndDependents);
+    }
+
+    public static QueryProvider.Decorator create(long maxSize) {
+        return qp -> new EntityCacheQueryProviderDecorator(qp, CacheBuilder.newBuilder().maximumSize(maxSize));
+    }
+
+    public static QueryProvider.Decorator create(long maxWeight, ToIntFunction<Object> weigher) {
+        return qp -> new EntityCacheQueryProviderDecorator(qp, CacheBuilder.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((key, value) -> ((Optional<?>)value)
+                        .map(notification -> weigher.applyAsInt(((Notification<?>)notification).newValue()))
+                        .orElse(1)));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K, S, T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
+        return keyOf(query)
+                .map(key -> (Observable<Notification<T>>)(Observable<?>)find(query.metaClass(), key).toObservable())
+                .orElseGet(() -> super.query(query));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+        return keyOf(query)
+                .map(key -> (Flowable<Notification<T>>)(Flowable<?>)find(query.metaClass(), key).toFlowable())
+                .orElseGet(() -> super.queryFlowable(query));
+    }
+
+    @Override
+    public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+        return super.insert(metaClass, entities, recursive)
+                .doFinally(() -> entities.forEach(entity -> invalidate(metaClass, metaClass.keyOf(entity))));
+    }
+
+    @Override
+    public <K, S> Single<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
+        return super.insertOrUpdate(metaClass, entity, recursive)
+                .doFinally(() -> invalidate(metaClass, metaClass.keyOf(entity)));
+    }
+
+    @Override
+    public <K, S> Maybe<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+        return super.insertOrUpdate(metaClass, key, recursive, entityUpdater)
+                .doFinally(() -> invalidate(metaClass, key));
+    }
+
+    @Override
+    public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
+        return super.update(update)
+                .doFinally(() -> invalidateAll(update.metaClass()));
+    }
+
+    @Override
+    public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
+        return super.delete(delete)
+                .doFinally(() -> invalidateAll(delete.metaClass()));
+    }
+
+    @Override
+    public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+        return super.drop(metaClass)
+                .doFinally(() -> invalidateAll(metaClass));
+    }
+
+    @Override
+    public Completable dropAll() {
+        return super.dropAll()
+                .doFinally(() -> tracker.invalidateAll(cache::invalidateAll));
+    }
+
+    @Override
+    public void close() {
+        tracker.close();
+        cache.invalidateAll();
+        super.close();
+    }
+
+    /**
+     * Cached notifications keep the sequence number of the entity version, which they were created from
+     */
+    @SuppressWarnings("unchecked")
+    private <K, S> Maybe<Notification<S>> find(MetaClassWithKey<K, S> metaClass, K key) {
+        return Maybe.defer(() -> {
+            EntryKey entryKey = new EntryKey(metaClass, key);
+            Optional<Notification<?>> cached = cache.getIfPresent(entryKey);
+            if (cached != null) {
+                tracker.recordHit();
+                return cached.map(notification -> Maybe.just((Notification<S>)notification)).orElseGet(Maybe::empty);
+            }
+
+            Collection<MetaClassWithKey<?, ?>> dependencies = PropertyMetas.referencedMetaClasses(metaClass);
+            long version = tracker.recordMiss(dependencies);
+            return super.query(QueryInfo.<K, S, S>builder()
+                            .metaClass(metaClass)
+                            .predicate(PropertyExpressions.keyOf(metaClass).eq(key))
+                            .limit(1L)
+                            .build())
+                    .filter(notification -> notification.newValue() != null)
+                    .map(notification -> Notification.ofCreated(notification.newValue(), notification.sequenceNumber()))
+                    .firstElement()
+                    .doOnEvent((notification, error) -> {
+                        if (error == null) {
+                            tracker.putIfUnchanged(dependencies, version, () -> {
+                                cachedMetaClasses.add(metaClass);
+                                cache.put(entryKey, Optional.<Notification<?>>ofNullable(notification));
+                            });
+                        }
+                    });
+        });
+    }
+
+    private <K, S> Observable<Notification<S>> liveQueryOf(MetaClassWithKey<K, S> metaClass) {
+        return super.liveQuery(QueryInfo.<K, S, S>builder().metaClass(metaClass).build());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void onNotification(MetaClassWithKey<?, ?> metaClass, Notification<?> notification) {
+        invalidateDependentEntries(metaClass);
+        if (notification.isEmpty() || notification.isReset() || isSelfReferencing(metaClass)) {
+            invalidateEntries(metaClass);
+            return;
+        }
+
+        Object entity = notification.newValue() != null ? notification.newValue() : notification.oldValue();
+        EntryKey entryKey = new EntryKey(metaClass, ((MetaClassWithKey<?, Object>)metaClass).keyOf(entity));
+        if (cache.getIfPresent(entryKey) != null) {
+            cache.put(entryKey, Optional.ofNullable(notification.newValue())
+                    .<Notification<?>>map(newValue -> Notification.ofCreated(newValue, notification.sequenceNumber())));
+        }
+    }
+
+    private <K, S> void invalidate(MetaClassWithKey<K, S> metaClass, K key) {
+        tracker.invalidate(metaClass, () -> {
+            invalidateDependentEntries(metaClass);
+            if (isSelfReferencing(metaClass)) {
+                invalidateEntries(metaClass);
+            } else {
+                cache.invalidate(new EntryKey(metaClass, key));
+            }
+        });
+    }
+
+    private void invalidateAll(MetaClassWithKey<?, ?> metaClass) {
+        tracker.invalidate(metaClass, () -> invalidateEntriesAndDependents(metaClass));
+    }
+
+    private void invalidateEntriesAndDependents(MetaClassWithKey<?, ?> metaClass) {
+        invalidateDependentEntries(metaClass);
+        invalidateEntries(metaClass);
+    }
+
+    private void invalidateEntries(MetaClassWithKey<?, ?> metaClass) {
+        cache.asMap().keySet().removeIf(entryKey -> entryKey.metaClass.equals(metaClass));
+    }
+
+    // Invalidates cached entities of other meta classes, which embed resolved entities of given meta class
+    private void invalidateDependentEntries(MetaClassWithKey<?, ?> metaClass) {
+        Set<MetaClassWithKey<?, ?>> dependents = cachedMetaClasses.stream()
+                .filter(cached -> !cached.equals(metaClass) && PropertyMetas.referencedMetaClasses(cached).contains(metaClass))
+                .collect(Collectors.toSet());
+        if (!dependents.isEmpty()) {
+            cache.asMap().keySet().removeIf(entryKey -> dependents.contains(entryKey.metaClass));
+        }
+    }
+
+    private void onRemoval(RemovalNotification<EntryKey, Optional<Notification<?>>> notification) {
+        if (notification.wasEvicted()) {
+            evictions.inc();
+        }
+    }
+
+    // Entity, which references (directly or indirectly) entities of its own meta class, may embed any other
+    // cached entity of that meta class
+    private static boolean isSelfReferencing(MetaClassWithKey<?, ?> metaClass) {
+        return Streams.fromIterable(metaClass.properties())
+                .filter(PropertyMetas::isReference)
+                .map(property -> MetaClasses.forTokenWithKeyUnchecked(property.type()))
+                .anyMatch(referencedMetaClass -> PropertyMetas.referencedMetaClasses(referencedMetaClass).contains(metaClass));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, S, T> Optional<K> keyOf(QueryInfo<K, S, T> query) {
+        if (query.mapping() != null || !query.sorting().isEmpty() || (query.skip() != null && query.skip() > 0) || (query.limit() != null && query.limit() < 1)) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(query.predicate())
+                .filter(predicate -> predicate.type() == Expression.Type.Equals)
+                .map(predicate -> (BinaryOperationExpression<S, ?, ?, ?>)predicate)
+                .flatMap(predicate -> Optional.ofNullable(keyOf(query.metaClass(), predicate.left(), predicate.right()))
+                        .map(Optional::of)
+                        .orElseGet(() -> Optional.ofNullable(keyOf(query.metaClass(), predicate.right(), predicate.left()))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, S> K keyOf(MetaClassWithKey<K, S> metaClass, ObjectExpression<S, ?> property, ObjectExpression<S, ?> constant) {
+        if (!(property instanceof PropertyExpression) || !(constant instanceof ConstantExpression)) {
+            return null;
+        }
+        PropertyExpression<S, ?, ?> propertyExpression = (PropertyExpression<S, ?, ?>)property;
+        return !PropertyExpressions.hasParent(propertyExpression) && propertyExpression.property().equals(metaClass.keyProperty())
+                ? (K)((ConstantExpression<S, ?>)constant).value()
+                : null;
+    }
+
+    private static class EntryKey {
+        private final MetaClassWithKey<?, ?> metaClass;
+        private final Object key;
+
+        private EntryKey(MetaClassWithKey<?, ?> metaClass, Object key) {
+            this.metaClass = metaClass;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof EntryKey)) {
+                return false;
+            }
+            EntryKey entryKey = (EntryKey)o;
+            return metaClass.equals(entryKey.metaClass) && Objects.equals(key, entryKey.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(metaClass, key);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.QueryPublisher;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
 import io.reactivex.Observable;
 import io.reactivex.ObservableTransformer;
 import io.reactivex.disposables.Disposable;
@@ -37,6 +39,11 @@ public class InterceptingQueryProviderDecorator implements QueryProvider.Decorat
             return super.query(query).compose(applyOnQuery(query));
         }
 
+        @Override
+        public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+            return super.queryFlowable(query).compose(applyOnQueryFlowable(query));
+        }
+
         @Override
         public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
             return super.liveQuery(query).compose(applyOnLiveQuery(query));
@@ -54,6 +61,14 @@ public class InterceptingQueryProviderDecorator implements QueryProvider.Decorat
             };
         }
 
+        private <K, S, T> FlowableTransformer<Notification<T>, Notification<T>> applyOnQueryFlowable(QueryInfo<K, S, T> queryInfo) {
+            return source -> {
+                AtomicReference<Flowable<Notification<T>>> flowable = new AtomicReference<>(source);
+                queryListeners.forEach(l -> flowable.updateAndGet(f -> l.onQuery(queryInfo, f)));
+                return flowable.get();
+            };
+        }
+
         private <K, S, T> ObservableTransformer<Notification<T>, Notification<T>> applyOnLiveQuery(QueryInfo<K, S, T> queryInfo) {
             return source -> {
                 AtomicReference<Observable<Notification<T>>> observable = new AtomicReference<>(source);
@@ -6,102 +6,95 @@ import com.slimgears.rxrepo.query.provider.DeleteInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.rxrepo.util.AsyncSemaphore;
+import com.slimgears.rxrepo.util.LockProviders;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 
 import java.util.Collections;
-import java.util.concurrent.Semaphore;
 import java.util.function.Supplier;
 
 public class LimitConcurrentOperationsQueryProviderDecorator extends AbstractQueryProviderDecorator {
-    private final Semaphore availableOperations;
+    private final AsyncSemaphore availableOperations;
+    private final int maxOperations;
 
-    private LimitConcurrentOperationsQueryProviderDecorator(QueryProvider underlyingProvider, int maxOperations) {
+    private LimitConcurrentOperationsQueryProviderDecorator(QueryProvider underlyingProvider, int maxOperations, boolean fair, int maxQueuedOperations) {
         super(underlyingProvider);
-        this.availableOperations = new Semaphore(maxOperations);
+        this.availableOperations = AsyncSemaphore.create(maxOperations, fair, maxQueuedOperations);
+        this.maxOperations = maxOperations;
     }
 
     public static QueryProvider.Decorator create(int maxConcurrentOperations) {
-        return qp -> new LimitConcurrentOperationsQueryProviderDecorator(qp, maxConcurrentOperations);
+        return create(maxConcurrentOperations, false, Integer.MAX_VALUE);
+    }
+
+    public static QueryProvider.Decorator create(int maxConcurrentOperations, boolean fair, int maxQueuedOperationsPerType) {
+        return qp -> new LimitConcurrentOperationsQueryProviderDecorator(qp, maxConcurrentOperations, fair, maxQueuedOperationsPerType);
     }
 
     @Override
     public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
         return Observable.fromIterable(entities)
                 .flatMapCompletable(e -> super.insert(metaClass, Collections.singleton(e), recursive)
-                        .doOnSubscribe(d -> doOnSubscribe())
-                        .doFinally(this::doFinally));
+                        .compose(LockProviders.forCompletable(availableOperations.asyncLock("insert"))), false, maxOperations);
     }
 
     @Override
     public <K, S> Single<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
         return super.insertOrUpdate(metaClass, entity, recursive)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
+                .compose(LockProviders.forSingle(availableOperations.asyncLock("insertOrUpdate")));
     }
 
     @Override
     public <K, S> Maybe<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
         return super.insertOrUpdate(metaClass, key, recursive, entityUpdater)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
+                .compose(LockProviders.forMaybe(availableOperations.asyncLock("insertOrUpdate")));
     }
 
     @Override
     public <K, S, T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
         return super.query(query)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
+                .compose(LockProviders.forObservable(availableOperations.asyncLock("query")));
+    }
+
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+        return super.queryFlowable(query)
+                .compose(LockProviders.forFlowable(availableOperations.asyncLock("queryFlowable")));
     }
 
     @Override
     public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return super.aggregate(query, aggregator)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
+                .compose(LockProviders.forMaybe(availableOperations.asyncLock("aggregate")));
     }
 
     @Override
     public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
         return super.update(update)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
+                .compose(LockProviders.forSingle(availableOperations.asyncLock("update")));
     }
 
     @Override
     public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
         return super.delete(delete)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
+                .compose(LockProviders.forSingle(availableOperations.asyncLock("delete")));
     }
 
     @Override
     public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
         return super.drop(metaClass)
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
+                .compose(LockProviders.forCompletable(availableOperations.asyncLock("drop")));
     }
 
     @Override
     public Completable dropAll() {
         return super.dropAll()
-                .doOnSubscribe(d -> doOnSubscribe())
-                .doFinally(this::doFinally);
-    }
-
-    private void doOnSubscribe() {
-        try {
-            availableOperations.acquire();
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private void doFinally() {
-        availableOperations.release();
+                .compose(LockProviders.forCompletable(availableOperations.asyncLock("dropAll")));
     }
 }
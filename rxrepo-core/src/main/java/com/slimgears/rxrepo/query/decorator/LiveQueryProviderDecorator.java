@@ -2,52 +2,71 @@ package com.slimgears.rxrepo.query.decorator;
 
 import com.google.common.collect.ImmutableSet;
 import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.CollectionExpression;
 import com.slimgears.rxrepo.expressions.Expression;
 import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
 import com.slimgears.rxrepo.expressions.internal.NumericUnaryOperationExpression;
+import com.slimgears.rxrepo.query.LiveQueryRouter;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.NotificationPrototype;
 import com.slimgears.rxrepo.query.Notifications;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.QueryInfos;
 import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.util.IncrementalAggregator;
 import com.slimgears.rxrepo.util.PredicateBuilder;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.Queries;
 import com.slimgears.util.autovalue.annotations.*;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableTransformer;
+import io.reactivex.Single;
+import io.reactivex.disposables.CompositeDisposable;
 
 import javax.annotation.Nullable;
 import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
+    private final static ImmutableSet<Expression.Type> seededAggregationTypes = ImmutableSet.of(Expression.Type.Count, Expression.Type.Sum, Expression.Type.Average);
+    private final static int maxSeedAttempts = 3;
     private final Duration aggregationDebounceTime;
+    private final int maxBufferSize;
+    private final Map<MetaClass<?>, LiveQueryRouter<?, ?>> routers = new ConcurrentHashMap<>();
 
-    private LiveQueryProviderDecorator(QueryProvider upstream, Duration aggregationDebounceTime) {
+    private LiveQueryProviderDecorator(QueryProvider upstream, Duration aggregationDebounceTime, int maxBufferSize) {
         super(upstream);
         this.aggregationDebounceTime = aggregationDebounceTime;
+        this.maxBufferSize = maxBufferSize;
     }
 
     public static QueryProvider.Decorator create(Duration aggregationDebounceTime) {
-        return src -> new LiveQueryProviderDecorator(src, aggregationDebounceTime);
+        return create(aggregationDebounceTime, Queries.defaultMaxBufferSize);
+    }
+
+    /**
+     * @param maxBufferSize max number of live notifications, buffered while the initial query is in progress
+     */
+    public static QueryProvider.Decorator create(Duration aggregationDebounceTime, int maxBufferSize) {
+        return src -> new LiveQueryProviderDecorator(src, aggregationDebounceTime, maxBufferSize);
     }
 
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
-        return super.liveQuery(QueryInfo.<K, S, S>builder()
-                        .metaClass(query.metaClass())
-                        .properties(QueryInfos.allReferencedProperties(query))
-                        .build())
-                .compose(applyReferencedObserve(query))
-                .compose(Notifications.applyFilter(query.predicate()))
+        return filteredNotifications(query)
                 .compose(Notifications.applyMap(query.mapping()))
                 .compose(Notifications.applyFieldsFilter(query.properties()));
     }
@@ -56,15 +75,156 @@ public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
     public <K, S, T> Observable<Notification<T>> queryAndObserve(QueryInfo<K, S, T> queryInfo, QueryInfo<K, S, T> observeInfo) {
         return Queries.queryAndObserve(
                 query(queryInfo),
-                liveQuery(observeInfo));
+                liveQuery(observeInfo),
+                QueryInfos.keyOf(queryInfo),
+                maxBufferSize);
     }
 
     @Override
     public <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+        Expression.Type aggregationType = aggregator.apply(CollectionExpression.indirectArg(MoreTypeTokens.collection(query.objectType()))).type();
+        return Optional.of(query)
+                .filter(q -> q.limit() == null && q.skip() == null && !Boolean.TRUE.equals(q.distinct()))
+                .flatMap(q -> IncrementalAggregator.<T, R>forType(aggregationType))
+                .map(aggregatorFactory -> seededAggregationTypes.contains(aggregationType)
+                        ? liveAggregateFromSeed(query, aggregator, aggregationType)
+                        : liveAggregateIncrementally(query, aggregatorFactory))
+                .orElseGet(() -> liveAggregateByQuery(query, aggregator));
+    }
+
+    private <K, S, T, R> Observable<R> liveAggregateByQuery(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return liveQuery(query.toBuilder().predicate(null).build())
-            .throttleLatest(aggregationDebounceTime.toMillis(), TimeUnit.MILLISECONDS)
-            .switchMapMaybe(n -> aggregate(query, aggregator))
-            .distinctUntilChanged();
+                .throttleLatest(aggregationDebounceTime.toMillis(), TimeUnit.MILLISECONDS)
+                .switchMapMaybe(n -> aggregate(query, aggregator))
+                .distinctUntilChanged();
+    }
+
+    // Min and max need all the values (to fall back to the next one on removal), so the state is built from query results
+    private <K, S, T, R> Observable<R> liveAggregateIncrementally(QueryInfo<K, S, T> query, Supplier<IncrementalAggregator<T, R>> aggregatorFactory) {
+        return Observable.defer(() -> {
+            IncrementalAggregator<T, R> aggregator = aggregatorFactory.get();
+            AtomicBoolean initialized = new AtomicBoolean();
+            return queryAndObserve(query, query)
+                    .filter(n -> {
+                        if (n.isEmpty()) {
+                            initialized.set(true);
+                        } else {
+                            apply(aggregator, n);
+                        }
+                        return initialized.get();
+                    })
+                    .concatMapMaybe(n -> Maybe.fromCallable(aggregator::result))
+                    .distinctUntilChanged();
+        });
+    }
+
+    // Count, sum and average are seeded with aggregation, evaluated by underlying provider, and then updated by
+    // live notifications. Notification, received while the seed is evaluated, may or may not be reflected by it,
+    // so the seed is re-evaluated. If it does not settle in a few attempts, falls back to re-aggregation on changes
+    private <K, S, T, R> Observable<R> liveAggregateFromSeed(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator, Expression.Type aggregationType) {
+        Observable<R> seeded = Observable.create(emitter -> {
+            ObservableEmitter<R> serializedEmitter = emitter.serialize();
+            AtomicReference<IncrementalAggregator<T, R>> state = new AtomicReference<>();
+            AtomicLong received = new AtomicLong();
+            CompositeDisposable disposables = new CompositeDisposable();
+            serializedEmitter.setDisposable(disposables);
+
+            disposables.add(liveQuery(query)
+                    .filter(n -> !n.isEmpty())
+                    .subscribe(n -> {
+                        synchronized (state) {
+                            received.incrementAndGet();
+                            Optional.ofNullable(state.get()).ifPresent(a -> {
+                                apply(a, n);
+                                Optional.ofNullable(a.result()).ifPresent(serializedEmitter::onNext);
+                            });
+                        }
+                    }, serializedEmitter::onError, serializedEmitter::onComplete));
+
+            disposables.add(Single
+                    .defer(() -> {
+                        long receivedBefore = received.get();
+                        return this.<K, S, T, R>seed(query, aggregationType).doOnSuccess(a -> {
+                            synchronized (state) {
+                                if (received.get() != receivedBefore) {
+                                    throw new StaleSeedException();
+                                }
+                                state.set(a);
+                                Optional.ofNullable(a.result()).ifPresent(serializedEmitter::onNext);
+                            }
+                        });
+                    })
+                    .retry(maxSeedAttempts - 1, StaleSeedException.class::isInstance)
+                    .subscribe(a -> {}, serializedEmitter::onError));
+        });
+
+        return seeded
+                .onErrorResumeNext((Throwable error) -> error instanceof StaleSeedException
+                        ? liveAggregateByQuery(query, aggregator)
+                        : Observable.error(error))
+                .distinctUntilChanged();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private <K, S, T, R> Single<IncrementalAggregator<T, R>> seed(QueryInfo<K, S, T> query, Expression.Type aggregationType) {
+        if (aggregationType == Expression.Type.Count) {
+            return aggregate(query, Aggregator.<T, T>count())
+                    .toSingle(0L)
+                    .map(count -> (IncrementalAggregator<T, R>)IncrementalAggregator.Count.<T>of(count));
+        }
+
+        // Sum and average skip null values, so only non-null ones are counted
+        QueryInfo<K, S, T> nonNullQuery = Optional
+                .ofNullable(query.mapping())
+                .map(mapping -> query.toBuilder()
+                        .predicate(PredicateBuilder.<S>create()
+                                .and(query.predicate())
+                                .and(mapping.isNotNull())
+                                .build())
+                        .build())
+                .orElse(query);
+        Single<Long> count = aggregate(nonNullQuery, Aggregator.<T, T>count()).toSingle(0L);
+        Single<Optional<Number>> sum = aggregate(nonNullQuery, (Aggregator<T, T, Number>)(Aggregator)Aggregator.sum())
+                .map(Optional::of)
+                .toSingle(Optional.empty());
+        return Single.zip(count, sum, (c, s) -> aggregationType == Expression.Type.Sum
+                ? (IncrementalAggregator<T, R>)IncrementalAggregator.Sum.of(s.orElse(null), c)
+                : (IncrementalAggregator<T, R>)IncrementalAggregator.Average.of(s.orElse(null), c));
+    }
+
+    private static <T> void apply(IncrementalAggregator<T, ?> aggregator, Notification<T> notification) {
+        if (notification.oldValue() != null) {
+            aggregator.remove(notification.oldValue());
+        }
+        if (notification.newValue() != null) {
+            aggregator.add(notification.newValue());
+        }
+    }
+
+    private <K, S, T> Observable<Notification<S>> filteredNotifications(QueryInfo<K, S, T> query) {
+        if (query.predicate() == null || observesReferences(query)) {
+            return super.liveQuery(QueryInfo.<K, S, S>builder()
+                            .metaClass(query.metaClass())
+                            .properties(QueryInfos.allReferencedProperties(query))
+                            .build())
+                    .compose(applyReferencedObserve(query))
+                    .compose(Notifications.applyFilter(query.predicate()));
+        }
+        return routerOf(query.metaClass()).route(query.predicate());
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, S> LiveQueryRouter<K, S> routerOf(MetaClassWithKey<K, S> metaClass) {
+        return (LiveQueryRouter<K, S>)routers.computeIfAbsent(metaClass, mc -> LiveQueryRouter.create(metaClass, super.liveQuery(QueryInfo.<K, S, S>builder()
+                .metaClass(metaClass)
+                .build())));
+    }
+
+    private <K, S, T> boolean observesReferences(QueryInfo<K, S, T> query) {
+        return QueryInfos.allReferencedProperties(query)
+                .stream()
+                .map(PropertyExpressions::rootOf)
+                .anyMatch(PropertyExpressions::isReference);
     }
 
     private <K, S, T> ObservableTransformer<Notification<S>, Notification<S>> applyReferencedObserve(QueryInfo<K, S, T> query) {
@@ -163,4 +323,10 @@ public class LiveQueryProviderDecorator extends AbstractQueryProviderDecorator {
                 .properties(properties)
                 .build());
     }
+
+    private static class StaleSeedException extends RuntimeException {
+        private StaleSeedException() {
+            super("Aggregation seed is outdated by concurrent changes");
+        }
+    }
 }
@@ -5,12 +5,16 @@ import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.rxrepo.util.LockProvider;
 import com.slimgears.rxrepo.util.LockProviders;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClass;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.function.Supplier;
 
 public class LockQueryProviderDecorator extends AbstractQueryProviderDecorator {
@@ -28,37 +32,39 @@ public class LockQueryProviderDecorator extends AbstractQueryProviderDecorator {
     @Override
     public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
         return super.insert(metaClass, entities, recursive)
-                .compose(LockProviders.forCompletable(lockProvider));
+                .compose(LockProviders.forCompletable(lockProvider.asyncLock(lockedMetaClasses(metaClass, recursive))));
     }
 
     @Override
     public <K, S> Single<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
         return super.insertOrUpdate(metaClass, entity, recursive)
-                .compose(LockProviders.forSingle(lockProvider));
+                .compose(LockProviders.forSingle(lockProvider.asyncLock(lockedMetaClasses(metaClass, recursive))));
     }
 
     @Override
     public <K, S> Maybe<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+        // Referenced entities are written before the update (see UpdateReferencesFirstQueryProviderDecorator),
+        // so no other lock is acquired while the key is locked
         return super.insertOrUpdate(metaClass, key, recursive, entityUpdater)
-                .compose(LockProviders.forMaybe(lockProvider));
+                .compose(LockProviders.forMaybe(lockProvider.asyncLock(metaClass, key)));
     }
 
     @Override
     public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
         return super.update(update)
-                .compose(LockProviders.forSingle(lockProvider));
+                .compose(LockProviders.forSingle(lockProvider.asyncLock(update.metaClass())));
     }
 
     @Override
     public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
         return super.delete(delete)
-                .compose(LockProviders.forSingle(lockProvider));
+                .compose(LockProviders.forSingle(lockProvider.asyncLock(delete.metaClass())));
     }
 
     @Override
     public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
         return super.drop(metaClass)
-                .compose(LockProviders.forCompletable(lockProvider));
+                .compose(LockProviders.forCompletable(lockProvider.asyncLock(metaClass)));
     }
 
     @Override
@@ -71,4 +77,10 @@ public class LockQueryProviderDecorator extends AbstractQueryProviderDecorator {
     public void close() {
         lockProvider.withLock(super::close);
     }
+
+    private static Collection<? extends MetaClass<?>> lockedMetaClasses(MetaClassWithKey<?, ?> metaClass, boolean recursive) {
+        return recursive
+                ? PropertyMetas.referencedMetaClasses(metaClass)
+                : Collections.singleton(metaClass);
+    }
 }
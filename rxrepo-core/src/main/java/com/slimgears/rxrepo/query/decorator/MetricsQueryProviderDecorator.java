@@ -12,10 +12,13 @@ import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.util.autovalue.annotations.MetaClass;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Function;
+import io.reactivex.subjects.UnicastSubject;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -91,6 +94,11 @@ public class MetricsQueryProviderDecorator implements QueryProvider.Decorator, M
                     .compose(asyncCollector("query", query.metaClass()).forObservable());
         }
 
+        @Override
+        public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+            return collectFlowable(super.queryFlowable(query), asyncCollector("queryFlowable", query.metaClass()));
+        }
+
         @Override
         public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
             return super.liveQuery(query)
@@ -133,6 +141,22 @@ public class MetricsQueryProviderDecorator implements QueryProvider.Decorator, M
                     .compose(asyncCollector("drop", metaClass).forCompletable());
         }
 
+        /**
+         * Signals of the flowable are mirrored to the observable, collected by {@link MetricCollector.Async},
+         * so that requests of the downstream are passed to the source as is
+         */
+        private <T> Flowable<T> collectFlowable(Flowable<T> source, MetricCollector.Async collector) {
+            return Flowable.defer(() -> {
+                UnicastSubject<T> signals = UnicastSubject.create();
+                Disposable subscription = signals.compose(collector.forObservable()).subscribe(item -> {}, error -> {});
+                return source
+                        .doOnNext(signals::onNext)
+                        .doOnError(signals::onError)
+                        .doOnComplete(signals::onComplete)
+                        .doOnCancel(subscription::dispose);
+            });
+        }
+
         private MetricCollector.Async asyncCollector(String operation, MetaClass<?> metaClass) {
             return metricCollector.get()
                     .name(metaClass.simpleName())
@@ -0,0 +1,284 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableList;
+import com.slimgears.nanometer.MetricCollector;
+import com.slimgears.nanometer.Metrics;
+import com.slimgears.rxrepo.expressions.Aggregator;
+import com.slimgears.rxrepo.expressions.CollectionExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.HasMapping;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes results of {@link QueryProvider#query(QueryInfo)} and {@link QueryProvider#aggregate(QueryInfo, Aggregator)}.
+ * Each result depends on the queried meta class and all meta classes it references. A result is invalidated
+ * on any notification received from the live query of any of its dependencies, on writes done through this
+ * provider, or when its time to live expires. Cache weight is the number of cached entities.
+ * Query results are streamed as they are retrieved, and only cached when they do not exceed the maximal result size.
+ */
+public class ResultCacheQueryProviderDecorator extends AbstractQueryProviderDecorator {
+    private final static MetricCollector metrics = Metrics.collector(ResultCacheQueryProviderDecorator.class);
+    private final static int defaultMaxResultSize = 1000;
+    private final Cache<ResultKey, Object> cache;
+    private final Map<MetaClassWithKey<?, ?>, Set<ResultKey>> dependentResults = new ConcurrentHashMap<>();
+    private final CacheDependencyTracker tracker;
+    private final int maxResultSize;
+
+    private ResultCacheQueryProviderDecorator(QueryProvider underlyingProvider, Duration timeToLive, long maxWeight, int maxResultSize) {
+        super(underlyingProvider);
+        this.maxResultSize = maxResultSize;
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(timeToLive.toMillis(), TimeUnit.MILLISECONDS)
+                .maximumWeight(maxWeight)
+                .<ResultKey, Object>weigher((key, value) -> value instanceof List ? ((List<?>)value).size() + 1 : 1)
+                .removalListener(this::onRemoval)
+                .build();
+        this.tracker = CacheDependencyTracker.create(
+                metrics,
+                this::liveQueryOf,
+                (metaClass, notification) -> invalidateDependent(metaClass),
+                this::invalidateDependent);
+    }
+
+    public static QueryProvider.Decorator create(Duration timeToLive, long maxWeight) {
+        return create(timeToLive, maxWeight, defaultMaxResultSize);
+    }
+
+    /**
+     * @param maxResultSize query results with more items are streamed from the underlying provider, and are not cached
+     */
+    public static QueryProvider.Decorator create(Duration timeToLive, long maxWeight, int maxResultSize) {
+        return qp -> new ResultCacheQueryProviderDecorator(qp, timeToLive, maxWeight, maxResultSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K, S, T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
+        return Observable.defer(() -> {
+            ResultKey key = new ResultKey(query, null);
+            List<Notification<T>> cached = (List<Notification<T>>)cache.getIfPresent(key);
+            if (cached != null) {
+                tracker.recordHit();
+                return Observable.fromIterable(cached);
+            }
+            ResultCollector<Notification<T>> collector = new ResultCollector<>(key, tracker.recordMiss(key.dependencies));
+            return super.query(query)
+                    .doOnNext(collector::add)
+                    .doOnComplete(collector::complete);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+        return Flowable.defer(() -> {
+            ResultKey key = new ResultKey(query, null);
+            List<Notification<T>> cached = (List<Notification<T>>)cache.getIfPresent(key);
+            if (cached != null) {
+                tracker.recordHit();
+                return Flowable.fromIterable(cached);
+            }
+            ResultCollector<Notification<T>> collector = new ResultCollector<>(key, tracker.recordMiss(key.dependencies));
+            return super.queryFlowable(query)
+                    .doOnNext(collector::add)
+                    .doOnComplete(collector::complete);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+        return Maybe.defer(() -> {
+            ResultKey key = new ResultKey(query, aggregationTypeOf(query, aggregator));
+            Optional<R> cached = (Optional<R>)cache.getIfPresent(key);
+            if (cached != null) {
+                tracker.recordHit();
+                return cached.map(Maybe::just).orElseGet(Maybe::empty);
+            }
+            long version = tracker.recordMiss(key.dependencies);
+            return super.aggregate(query, aggregator)
+                    .doOnEvent((result, error) -> {
+                        if (error == null) {
+                            put(key, version, Optional.ofNullable(result));
+                        }
+                    });
+        });
+    }
+
+    @Override
+    public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+        return super.insert(metaClass, entities, recursive)
+                .doFinally(() -> invalidate(metaClass, recursive));
+    }
+
+    @Override
+    public <K, S> Single<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
+        return super.insertOrUpdate(metaClass, entity, recursive)
+                .doFinally(() -> invalidate(metaClass, recursive));
+    }
+
+    @Override
+    public <K, S> Maybe<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+        return super.insertOrUpdate(metaClass, key, recursive, entityUpdater)
+                .doFinally(() -> invalidate(metaClass, recursive));
+    }
+
+    @Override
+    public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
+        return super.update(update)
+                .doFinally(() -> invalidate(update.metaClass()));
+    }
+
+    @Override
+    public <K, S> Single<Integer> delete(DeleteInfo<K, S> delete) {
+        return super.delete(delete)
+                .doFinally(() -> invalidate(delete.metaClass()));
+    }
+
+    @Override
+    public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+        return super.drop(metaClass)
+                .doFinally(() -> invalidate(metaClass));
+    }
+
+    @Override
+    public Completable dropAll() {
+        return super.dropAll()
+                .doFinally(() -> tracker.invalidateAll(() -> {
+                    dependentResults.clear();
+                    cache.invalidateAll();
+                }));
+    }
+
+    @Override
+    public void close() {
+        tracker.close();
+        cache.invalidateAll();
+        super.close();
+    }
+
+    private <K, S> Observable<Notification<S>> liveQueryOf(MetaClassWithKey<K, S> metaClass) {
+        return super.liveQuery(QueryInfo.<K, S, S>builder().metaClass(metaClass).build());
+    }
+
+    private void put(ResultKey key, long version, Object result) {
+        tracker.putIfUnchanged(key.dependencies, version, () -> {
+            key.dependencies.forEach(metaClass -> dependentResults
+                    .computeIfAbsent(metaClass, mc -> ConcurrentHashMap.newKeySet())
+                    .add(key));
+            cache.put(key, result);
+        });
+    }
+
+    private void invalidate(MetaClassWithKey<?, ?> metaClass, boolean recursive) {
+        if (recursive) {
+            PropertyMetas.referencedMetaClasses(metaClass).forEach(this::invalidate);
+        } else {
+            invalidate(metaClass);
+        }
+    }
+
+    private void invalidate(MetaClassWithKey<?, ?> metaClass) {
+        tracker.invalidate(metaClass, () -> invalidateDependent(metaClass));
+    }
+
+    private void invalidateDependent(MetaClassWithKey<?, ?> metaClass) {
+        Optional.ofNullable(dependentResults.remove(metaClass)).ifPresent(cache::invalidateAll);
+    }
+
+    private void onRemoval(RemovalNotification<ResultKey, Object> notification) {
+        Optional.ofNullable(notification.getKey()).ifPresent(key -> key.dependencies.forEach(metaClass -> Optional
+                .ofNullable(dependentResults.get(metaClass))
+                .ifPresent(keys -> keys.remove(key))));
+    }
+
+    private static <K, S, T, R> Expression.Type aggregationTypeOf(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
+        return aggregator.apply(CollectionExpression.indirectArg(MoreTypeTokens.collection(HasMapping.objectType(query)))).type();
+    }
+
+    /**
+     * Collects streamed query results, until they exceed the maximal cached result size
+     */
+    private class ResultCollector<T> {
+        private final ResultKey key;
+        private final long version;
+        private List<T> items = new ArrayList<>();
+
+        private ResultCollector(ResultKey key, long version) {
+            this.key = key;
+            this.version = version;
+        }
+
+        private void add(T item) {
+            if (items != null && items.size() < maxResultSize) {
+                items.add(item);
+            } else {
+                items = null;
+            }
+        }
+
+        private void complete() {
+            if (items != null) {
+                put(key, version, ImmutableList.copyOf(items));
+            }
+        }
+    }
+
+    private static class ResultKey {
+        private final QueryInfo<?, ?, ?> query;
+        private final @Nullable Expression.Type aggregation;
+        private final Collection<MetaClassWithKey<?, ?>> dependencies;
+
+        private ResultKey(QueryInfo<?, ?, ?> query, @Nullable Expression.Type aggregation) {
+            this.query = query;
+            this.aggregation = aggregation;
+            this.dependencies = PropertyMetas.referencedMetaClasses(query.metaClass());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ResultKey)) {
+                return false;
+            }
+            ResultKey resultKey = (ResultKey)o;
+            return query.equals(resultKey.query) && aggregation == resultKey.aggregation;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, aggregation);
+        }
+    }
+}
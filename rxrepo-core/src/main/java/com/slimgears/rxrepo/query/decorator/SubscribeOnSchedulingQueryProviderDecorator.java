@@ -83,6 +83,11 @@ public class SubscribeOnSchedulingQueryProviderDecorator extends AbstractQueryPr
         return super.query(query).subscribeOn(queryScheduler);
     }
 
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+        return super.queryFlowable(query).subscribeOn(queryScheduler);
+    }
+
     @Override
     public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return super.aggregate(query, aggregator).subscribeOn(queryScheduler);
@@ -73,6 +73,11 @@ public class TakeUntilCloseQueryProviderDecorator implements QueryProvider.Decor
             return super.query(query).compose(applyTakeUntilClose());
         }
 
+        @Override
+        public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+            return super.queryFlowable(query).takeUntil(closeObservable.toFlowable(BackpressureStrategy.LATEST));
+        }
+
         @Override
         public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
             return super.liveQuery(query).compose(applyTakeUntilClose());
@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.query.decorator;
 
-import com.google.common.collect.Sets;
+import com.google.common.collect.Iterables;
+import com.google.common.reflect.TypeToken;
 import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
@@ -8,21 +9,31 @@ import com.slimgears.rxrepo.query.provider.QueryProvider;
 import com.slimgears.rxrepo.util.PropertyMetas;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.exceptions.CompositeException;
 import io.reactivex.functions.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @SuppressWarnings({"ReactiveStreamsNullableInLambdaInTransform", "UnstableApiUsage"})
 public class UpdateReferencesFirstQueryProviderDecorator extends AbstractQueryProviderDecorator {
     private final static Logger log = LoggerFactory.getLogger(UpdateReferencesFirstQueryProviderDecorator.class);
+    private final static int existenceCheckChunkSize = 500;
 
     protected UpdateReferencesFirstQueryProviderDecorator(QueryProvider underlyingProvider) {
         super(underlyingProvider);
@@ -46,24 +57,47 @@ public class UpdateReferencesFirstQueryProviderDecorator extends AbstractQueryPr
                 : super.insertOrUpdate(metaClass, entity, false);
     }
 
+    /**
+     * Updated entity is computed from the current value and its references are written before the underlying
+     * update, so no reference is written while the underlying provider holds the entity (e.g. its lock).
+     * The underlying update only writes the computed value if the entity did not change in the meantime,
+     * otherwise {@link ConcurrentModificationException} is raised, so the caller retries
+     */
     @Override
     public <K, S> Maybe<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
-        return super.insertOrUpdate(metaClass, key, recursive, maybeEntity -> entityUpdater
-                .apply(maybeEntity)
-                .flatMap(updatedEntity -> recursive
-                        ? insertReferences(metaClass, updatedEntity).andThen(Maybe.just(updatedEntity))
-                        : Maybe.just(updatedEntity)));
+        if (!recursive) {
+            return super.insertOrUpdate(metaClass, key, false, entityUpdater);
+        }
+
+        return find(metaClass, key)
+                .map(Optional::of)
+                .toSingle(Optional.empty())
+                .flatMapMaybe(snapshot -> entityUpdater
+                        .apply(snapshot.map(Maybe::just).orElseGet(Maybe::empty))
+                        .flatMap(updatedEntity -> insertReferences(metaClass, updatedEntity).andThen(Maybe.just(updatedEntity)))
+                        .map(Optional::of)
+                        .toSingle(Optional.empty())
+                        .flatMapMaybe(updatedEntity -> super.insertOrUpdate(metaClass, key, true, current -> current
+                                .map(Optional::of)
+                                .toSingle(Optional.empty())
+                                .flatMapMaybe(currentEntity -> Objects.equals(currentEntity, snapshot)
+                                        ? updatedEntity.map(Maybe::just).orElseGet(Maybe::empty)
+                                        : Maybe.<S>error(new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected"))))));
     }
 
-    private <K, S> Completable insertEntity(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
+    private <K, S> Maybe<S> find(MetaClassWithKey<K, S> metaClass, K key) {
         return query(QueryInfo
                 .<K, S, S>builder()
                 .metaClass(metaClass)
                 .limit(1L)
-                .predicate(PropertyExpression.ofObject(metaClass.keyProperty()).eq(metaClass.keyOf(entity)))
+                .predicate(PropertyExpression.ofObject(metaClass.keyProperty()).eq(key))
                 .build())
                 .firstElement()
-                .map(Notification::newValue)
+                .map(Notification::newValue);
+    }
+
+    private <K, S> Completable insertEntity(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
+        return find(metaClass, metaClass.keyOf(entity))
                 .<Supplier<S>>map(e -> () -> e)
                 .switchIfEmpty(Single.defer(() -> insertOrUpdate(metaClass, entity, recursive)))
                 .ignoreElement();
@@ -79,43 +113,70 @@ public class UpdateReferencesFirstQueryProviderDecorator extends AbstractQueryPr
     }
 
     private <K, S> Completable insertReferences(MetaClassWithKey<K, S> metaClass, Iterable<S> entities) {
-        Set<Object> isExistingCache = Sets.newConcurrentHashSet();
-        return Observable.fromIterable(metaClass.properties())
+        Map<TypeToken<?>, Map<Object, Object>> referencesByType = new LinkedHashMap<>();
+        Streams.fromIterable(metaClass.properties())
                 .filter(PropertyMetas::isReference)
-                .flatMapCompletable(p -> Observable.fromIterable(entities)
-                        .filter(e -> Optional.ofNullable(p.getValue(e)).isPresent())
+                .forEach(p -> Streams.fromIterable(entities)
                         .map(p::getValue)
-                        .flatMapMaybe(e -> isExisting(isExistingCache, MetaClasses.forTokenWithKeyUnchecked(p.type()), e)
-                                .flatMapMaybe(isExisting -> {
-                                    if (isExisting) {
-                                        return Maybe.empty();
-                                    } else {
-                                        isExistingCache.add(MetaClasses.forTokenWithKeyUnchecked(p.type()).keyOf(e));
-                                        return Maybe.just(e);
-                                    }
-                                }))
-                        .toList()
-                        .flatMapCompletable(refEntities -> refEntities.isEmpty()
-                                ? Completable.complete()
-                                : insert(MetaClasses.forTokenWithKeyUnchecked(p.type()), refEntities, true)));
+                        .filter(Objects::nonNull)
+                        .forEach(ref -> referencesByType
+                                .computeIfAbsent(p.type(), t -> new LinkedHashMap<>())
+                                .putIfAbsent(MetaClasses.forTokenWithKeyUnchecked(p.type()).keyOf(ref), ref)));
+
+        return Observable.fromIterable(referencesByType.entrySet())
+                .flatMapCompletable(entry -> insertMissing(MetaClasses.forTokenWithKeyUnchecked(entry.getKey()), entry.getValue()));
+    }
+
+    /**
+     * Missing references are inserted in a batch. Existence check and insert are not atomic, so when
+     * a reference was inserted concurrently after the check (backends report duplicate key as
+     * {@link ConcurrentModificationException}), missing references are inserted one by one, skipping existing ones
+     */
+    @SuppressWarnings("unchecked")
+    private <K, S> Completable insertMissing(MetaClassWithKey<K, S> metaClass, Map<Object, Object> referencesByKey) {
+        Map<K, S> references = (Map<K, S>)(Map<?, ?>)referencesByKey;
+        return Observable.fromIterable(Iterables.partition(references.keySet(), existenceCheckChunkSize))
+                .concatMapSingle(keys -> existingKeys(metaClass, keys))
+                .reduce(new HashSet<K>(), (existing, keys) -> {
+                    existing.addAll(keys);
+                    return existing;
+                })
+                .map(existing -> references.entrySet().stream()
+                        .filter(entry -> !existing.contains(entry.getKey()))
+                        .map(Map.Entry::getValue)
+                        .collect(Collectors.toList()))
+                .doOnSuccess(missing -> log.trace("{}: {} of {} referenced entities are missing", metaClass.simpleName(), missing.size(), references.size()))
+                .flatMapCompletable(missing -> missing.isEmpty()
+                        ? Completable.complete()
+                        : insert(metaClass, missing, true)
+                                .onErrorResumeNext(error -> isConcurrencyException(error)
+                                        ? insertEach(metaClass, missing)
+                                        : Completable.error(error)));
     }
 
-    private <K, S> Single<Boolean> isExisting(Set<Object> isExistingCache, MetaClassWithKey<K, S> metaClass, S entity) {
-        K key = metaClass.keyOf(entity);
-        return isExistingCache.contains(key) ?
-                Single.just(true) :
-                existingEntity(metaClass, entity).map(e -> true)
-                        .toSingle(false)
-                        .doOnSuccess(isExisting -> isExistingCache.add(key));
+    private <K, S> Completable insertEach(MetaClassWithKey<K, S> metaClass, List<S> entities) {
+        log.debug("{}: batch insert of {} referenced entities failed due to concurrent insert, inserting one by one", metaClass.simpleName(), entities.size());
+        return Observable.fromIterable(entities)
+                .concatMapCompletable(entity -> insertEntity(metaClass, entity, true));
     }
 
-    private <K, S> Maybe<S> existingEntity(MetaClassWithKey<K, S> metaClass, S entity) {
+    private static boolean isConcurrencyException(Throwable error) {
+        return error instanceof ConcurrentModificationException ||
+                (error instanceof CompositeException && ((CompositeException)error)
+                        .getExceptions()
+                        .stream()
+                        .anyMatch(UpdateReferencesFirstQueryProviderDecorator::isConcurrencyException));
+    }
+
+    private <K, S> Single<List<K>> existingKeys(MetaClassWithKey<K, S> metaClass, List<K> keys) {
+        PropertyExpression<S, S, K> keyProperty = PropertyExpression.ofObject(metaClass.keyProperty());
         return query(QueryInfo.<K, S, S>builder()
                 .metaClass(metaClass)
-                .limit(1L)
-                .predicate(PropertyExpression.ofObject(metaClass.keyProperty()).eq(metaClass.keyOf(entity)))
+                .predicate(keyProperty.in(keys))
+                .propertiesAddAll(Collections.<PropertyExpression<S, ?, ?>>singleton(keyProperty))
                 .build())
-                .map(Notification::newValue)
-                .firstElement();
+                .filter(notification -> notification.newValue() != null)
+                .map(notification -> metaClass.keyOf(notification.newValue()))
+                .toList();
     }
 }
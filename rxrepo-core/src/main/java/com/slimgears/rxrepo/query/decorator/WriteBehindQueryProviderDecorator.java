@@ -0,0 +1,222 @@
+package com.slimgears.rxrepo.query.decorator;
+
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.util.AsyncSemaphore;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.SingleSubject;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Coalesces {@link QueryProvider#insertOrUpdate(MetaClassWithKey, Object, boolean)} calls within a time window.
+ * Only the last value per key is written, and each caller's single completes with the value, that was actually
+ * written for its key. Keys, which do not exist yet, are written with a single insert of the underlying provider,
+ * existing ones with insertOrUpdate.
+ * The batch is flushed early once the number of pending calls reaches the buffer size. Number of calls, which are
+ * pending or being flushed, is limited by {@code maxPendingBatches} buffers, further callers wait until earlier
+ * batches are written. Pending batches are flushed on close.
+ */
+public class WriteBehindQueryProviderDecorator extends AbstractQueryProviderDecorator {
+    private final static int defaultMaxPendingBatches = 4;
+    private final static int maxConcurrentWrites = 16;
+    private final Duration window;
+    private final int maxBufferSize;
+    private final Scheduler scheduler;
+    private final AsyncSemaphore pendingCalls;
+    private final Map<Boolean, Map<MetaClassWithKey<?, ?>, Batch<?, ?>>> batches = new HashMap<>();
+    private final Map<MetaClassWithKey<?, ?>, Completable> lastFlushes = new HashMap<>();
+    private boolean closed;
+
+    private WriteBehindQueryProviderDecorator(QueryProvider underlyingProvider, Duration window, int maxBufferSize, int maxPendingBatches, Scheduler scheduler) {
+        super(underlyingProvider);
+        this.window = window;
+        this.maxBufferSize = maxBufferSize;
+        this.scheduler = scheduler;
+        this.pendingCalls = AsyncSemaphore.create(maxBufferSize * maxPendingBatches, true);
+    }
+
+    public static QueryProvider.Decorator create(Duration window, int maxBufferSize) {
+        return create(window, maxBufferSize, Schedulers.computation());
+    }
+
+    public static QueryProvider.Decorator create(Duration window, int maxBufferSize, Scheduler scheduler) {
+        return create(window, maxBufferSize, defaultMaxPendingBatches, scheduler);
+    }
+
+    public static QueryProvider.Decorator create(Duration window, int maxBufferSize, int maxPendingBatches, Scheduler scheduler) {
+        return qp -> new WriteBehindQueryProviderDecorator(qp, window, maxBufferSize, maxPendingBatches, scheduler);
+    }
+
+    @Override
+    public <K, S> Single<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
+        return pendingCalls.asyncLock()
+                .withLock(Single.defer(() -> enqueue(metaClass, entity, recursive)).toObservable())
+                .singleOrError();
+    }
+
+    @Override
+    public void close() {
+        List<Completable> flushes = new ArrayList<>();
+        List<Batch<?, ?>> pendingBatches = new ArrayList<>();
+        synchronized (this) {
+            closed = true;
+            batches.values().forEach(batchesByType -> pendingBatches.addAll(batchesByType.values()));
+        }
+        pendingBatches.forEach(this::flush);
+        synchronized (this) {
+            flushes.addAll(lastFlushes.values());
+        }
+        log.debug("Closing: waiting for {} pending flushes", flushes.size());
+        Completable.mergeDelayError(flushes).onErrorComplete().blockingAwait();
+        super.close();
+    }
+
+    private <K, S> Single<Supplier<S>> enqueue(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
+        Batch<K, S> batch;
+        Single<Supplier<S>> result;
+        boolean full;
+        synchronized (this) {
+            if (closed) {
+                return super.insertOrUpdate(metaClass, entity, recursive);
+            }
+            batch = batchOf(metaClass, recursive);
+            result = batch.add(entity);
+            full = batch.pendingCalls >= maxBufferSize;
+        }
+        if (full) {
+            flush(batch);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, S> Batch<K, S> batchOf(MetaClassWithKey<K, S> metaClass, boolean recursive) {
+        return (Batch<K, S>)batches
+                .computeIfAbsent(recursive, r -> new HashMap<>())
+                .computeIfAbsent(metaClass, mc -> new Batch<>(metaClass, recursive));
+    }
+
+    private <K, S> void flush(Batch<K, S> batch) {
+        Completable flush = detach(batch);
+        if (flush != null) {
+            flush.doFinally(() -> onFlushed(batch.metaClass, flush))
+                    .subscribe(() -> {}, e -> log.warn("Failed to flush {}", batch.metaClass.simpleName(), e));
+        }
+    }
+
+    /**
+     * Removes batch from pending ones and chains its write after previous flush of the same type, so that older
+     * values never overwrite newer ones. Write is subscribed by the caller, outside of the monitor
+     */
+    private synchronized <K, S> Completable detach(Batch<K, S> batch) {
+        Map<MetaClassWithKey<?, ?>, Batch<?, ?>> batchesByType = batches.get(batch.recursive);
+        if (batchesByType == null || !batchesByType.remove(batch.metaClass, batch)) {
+            return null;
+        }
+        batch.timer.dispose();
+
+        Completable flush = lastFlushes.getOrDefault(batch.metaClass, Completable.complete())
+                .onErrorComplete()
+                .andThen(Completable.defer(() -> write(batch)))
+                .cache();
+        lastFlushes.put(batch.metaClass, flush);
+        return flush;
+    }
+
+    private synchronized void onFlushed(MetaClassWithKey<?, ?> metaClass, Completable flush) {
+        lastFlushes.remove(metaClass, flush);
+    }
+
+    /**
+     * Splits the batch by a key-only query into new and existing keys, as {@code EntitySet.bulkWrite} does
+     */
+    private <K, S> Completable write(Batch<K, S> batch) {
+        log.trace("Writing {} of {} (coalesced from {} calls)", batch.entities.size(), batch.metaClass.simpleName(), batch.pendingCalls);
+        return existingKeys(batch.metaClass, new ArrayList<>(batch.entities.keySet()))
+                .map(existing -> batch.entities.keySet().stream().collect(Collectors.partitioningBy(existing::contains)))
+                .flatMapCompletable(keys -> Completable.mergeArray(insert(batch, keys.get(false)), upsert(batch, keys.get(true))))
+                .doOnError(error -> batch.results.values().forEach(result -> result.onError(error)))
+                .onErrorComplete();
+    }
+
+    /**
+     * When the batch insert fails (e.g. some of the keys were inserted concurrently), its keys are upserted one by one
+     */
+    private <K, S> Completable insert(Batch<K, S> batch, List<K> keys) {
+        if (keys.isEmpty()) {
+            return Completable.complete();
+        }
+        List<S> entities = keys.stream().map(batch.entities::get).collect(Collectors.toList());
+        return super.insert(batch.metaClass, entities, batch.recursive)
+                .doOnComplete(() -> keys.forEach(key -> {
+                    S entity = batch.entities.get(key);
+                    batch.results.get(key).onSuccess(() -> entity);
+                }))
+                .onErrorResumeNext(error -> {
+                    log.debug("Batch insert of {} {} failed, falling back to insertOrUpdate", keys.size(), batch.metaClass.simpleName(), error);
+                    return upsert(batch, keys);
+                });
+    }
+
+    private <K, S> Completable upsert(Batch<K, S> batch, List<K> keys) {
+        return Observable.fromIterable(keys)
+                .flatMapCompletable(key -> super.insertOrUpdate(batch.metaClass, batch.entities.get(key), batch.recursive)
+                        .doOnSuccess(batch.results.get(key)::onSuccess)
+                        .doOnError(batch.results.get(key)::onError)
+                        .ignoreElement()
+                        .onErrorComplete(), false, maxConcurrentWrites);
+    }
+
+    private <K, S> Single<Set<K>> existingKeys(MetaClassWithKey<K, S> metaClass, List<K> keys) {
+        PropertyExpression<S, S, K> keyProperty = PropertyExpression.ofObject(metaClass.keyProperty());
+        return super.query(QueryInfo.<K, S, S>builder()
+                        .metaClass(metaClass)
+                        .predicate(keyProperty.in(keys))
+                        .propertiesAddAll(Collections.<PropertyExpression<S, ?, ?>>singleton(keyProperty))
+                        .build())
+                .filter(notification -> notification.newValue() != null)
+                .map(notification -> metaClass.keyOf(notification.newValue()))
+                .collect(HashSet::new, Set::add);
+    }
+
+    private class Batch<K, S> {
+        private final MetaClassWithKey<K, S> metaClass;
+        private final boolean recursive;
+        private final Map<K, S> entities = new LinkedHashMap<>();
+        private final Map<K, SingleSubject<Supplier<S>>> results = new LinkedHashMap<>();
+        private final Disposable timer;
+        private int pendingCalls;
+
+        private Batch(MetaClassWithKey<K, S> metaClass, boolean recursive) {
+            this.metaClass = metaClass;
+            this.recursive = recursive;
+            this.timer = scheduler.scheduleDirect(() -> flush(this), window.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        private Single<Supplier<S>> add(S entity) {
+            K key = metaClass.keyOf(entity);
+            entities.put(key, entity);
+            ++pendingCalls;
+            return results.computeIfAbsent(key, k -> SingleSubject.create());
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -32,11 +33,21 @@ public abstract class AbstractEntityQueryProviderAdapter implements QueryProvide
         return entities(query.metaClass()).query(query);
     }
 
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+        return entities(query.metaClass()).queryFlowable(query);
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
         return entities(query.metaClass()).liveQuery(query);
     }
 
+    @Override
+    public <K, S> Observable<Notification<S>> changesSince(MetaClassWithKey<K, S> metaClass, long sequenceNumber) {
+        return entities(metaClass).changesSince(sequenceNumber);
+    }
+
     @Override
     public <K, S, T, R> Maybe<R> aggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return entities(query.metaClass())
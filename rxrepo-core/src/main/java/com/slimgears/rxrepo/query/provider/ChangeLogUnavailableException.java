@@ -0,0 +1,8 @@
+package com.slimgears.rxrepo.query.provider;
+
+@SuppressWarnings("WeakerAccess")
+public class ChangeLogUnavailableException extends RuntimeException {
+    public ChangeLogUnavailableException(String message) {
+        super(message);
+    }
+}
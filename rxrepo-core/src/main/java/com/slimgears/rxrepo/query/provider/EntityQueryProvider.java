@@ -4,7 +4,9 @@ import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.autovalue.annotations.MetaClasses;
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -37,6 +39,14 @@ public interface EntityQueryProvider<K, S> extends AutoCloseable {
                 .toSingle();
     }
 
+    default <T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+        return query(query).toFlowable(BackpressureStrategy.BUFFER);
+    }
+
+    default Observable<Notification<S>> changesSince(long sequenceNumber) {
+        return Observable.error(() -> new ChangeLogUnavailableException("Change log is not available for " + metaClass().simpleName()));
+    }
+
     default <T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return liveQuery(query).debounce(500, TimeUnit.MILLISECONDS).switchMapMaybe(n -> aggregate(query, aggregator));
     }
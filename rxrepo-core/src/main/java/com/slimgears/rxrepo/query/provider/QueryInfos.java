@@ -8,9 +8,11 @@ import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -44,6 +46,17 @@ public class QueryInfos {
                 .orElseGet(() -> (QueryInfo<K, S, S>)query);
     }
 
+    /**
+     * Returns key function of query results, or null if the results are mapped to another type
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public static <K, S, T> Function<T, K> keyOf(QueryInfo<K, S, T> query) {
+        return query.mapping() == null || query.mapping().type().operationType() == Expression.OperationType.Argument
+                ? object -> query.metaClass().keyOf((S)object)
+                : null;
+    }
+
     public static <K, S, T> QueryInfo<K, S, T> includeMandatoryProperties(QueryInfo<K, S, T> queryInfo) {
         return queryInfo.properties().isEmpty()
                 ? queryInfo
@@ -1,6 +1,7 @@
 package com.slimgears.rxrepo.query.provider;
 
 import com.slimgears.rxrepo.query.Notification;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 
 public class QueryListeners {
@@ -9,6 +10,11 @@ public class QueryListeners {
         public <K, S, T> Observable<Notification<T>> onQuery(QueryInfo<K, S, T> queryInfo, Observable<Notification<T>> queryResult) {
             return queryResult;
         }
+
+        @Override
+        public <K, S, T> Flowable<Notification<T>> onQuery(QueryInfo<K, S, T> queryInfo, Flowable<Notification<T>> queryResult) {
+            return queryResult;
+        }
     };
 
     private static final QueryPublisher.OnLiveQueryListener emptyOnLiveQuery = new QueryPublisher.OnLiveQueryListener() {
@@ -31,6 +37,11 @@ public class QueryListeners {
             public <K, S, T> Observable<Notification<T>> onQuery(QueryInfo<K, S, T> queryInfo, Observable<Notification<T>> queryResult) {
                 return onQueryListener.onQuery(queryInfo, queryResult);
             }
+
+            @Override
+            public <K, S, T> Flowable<Notification<T>> onQuery(QueryInfo<K, S, T> queryInfo, Flowable<Notification<T>> queryResult) {
+                return onQueryListener.onQuery(queryInfo, queryResult);
+            }
         };
     }
 
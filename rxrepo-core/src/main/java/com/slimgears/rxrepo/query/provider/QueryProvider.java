@@ -2,10 +2,13 @@ package com.slimgears.rxrepo.query.provider;
 
 import com.slimgears.rxrepo.expressions.Aggregator;
 import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Notifications;
 import com.slimgears.rxrepo.util.Queries;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.autovalue.annotations.MetaClasses;
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -41,6 +44,14 @@ public interface QueryProvider extends AutoCloseable {
                 .toSingle();
     }
 
+    /**
+     * Backpressured counterpart of {@link #query(QueryInfo)}. Providers, which can pull results from underlying
+     * cursor on demand, should override it. Default implementation buffers results of {@link #query(QueryInfo)}.
+     */
+    default <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+        return query(query).toFlowable(BackpressureStrategy.BUFFER);
+    }
+
     default <K, S, T, R> Observable<R> liveAggregate(QueryInfo<K, S, T> query, Aggregator<T, T, R> aggregator) {
         return liveQuery(query)
             .debounce(500, TimeUnit.MILLISECONDS)
@@ -48,6 +59,26 @@ public interface QueryProvider extends AutoCloseable {
             .distinctUntilChanged();
     }
 
+    /**
+     * Emits logged changes of entities of the given type with sequence number greater than the given one, and completes.
+     * Fails with {@link ChangeLogUnavailableException} if some of those changes are no longer available.
+     */
+    default <K, S> Observable<Notification<S>> changesSince(MetaClassWithKey<K, S> metaClass, long sequenceNumber) {
+        return Observable.error(() -> new ChangeLogUnavailableException("Change log is not available for " + metaClass.simpleName()));
+    }
+
+    /**
+     * Replays changes since the given sequence number, followed by empty notification and live notifications.
+     * If the changes are no longer available, falls back to full resync: emits reset notification (meaning that
+     * previously observed state should be discarded), followed by {@link #queryAndObserve(QueryInfo, QueryInfo)}
+     */
+    default <K, S, T> Observable<Notification<T>> liveQueryFrom(QueryInfo<K, S, T> query, long sequenceNumber) {
+        return Queries.replayAndObserve(
+                changesSince(query.metaClass(), sequenceNumber).compose(Notifications.applyQuery(query)),
+                liveQuery(query),
+                () -> queryAndObserve(query, query));
+    }
+
     default void close() {
     }
 
@@ -69,6 +100,6 @@ public interface QueryProvider extends AutoCloseable {
     }
 
     default <K, S, T> Observable<Notification<T>> queryAndObserve(QueryInfo<K, S, T> queryInfo, QueryInfo<K, S, T> observeInfo) {
-        return Queries.queryAndObserve(this.query(queryInfo), this.liveQuery(observeInfo));
+        return Queries.queryAndObserve(this.query(queryInfo), this.liveQuery(observeInfo), QueryInfos.keyOf(queryInfo));
     }
 }
@@ -1,12 +1,22 @@
 package com.slimgears.rxrepo.query.provider;
 
 import com.slimgears.rxrepo.query.Notification;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.disposables.Disposable;
 
 public interface QueryPublisher {
     interface OnQueryListener {
         <K, S, T> Observable<Notification<T>> onQuery(QueryInfo<K, S, T> queryInfo, Observable<Notification<T>> queryResult);
+
+        /**
+         * Called for backpressured queries. Default implementation applies {@link #onQuery(QueryInfo, Observable)},
+         * which buffers the results, listeners that should preserve backpressure override this method
+         */
+        default <K, S, T> Flowable<Notification<T>> onQuery(QueryInfo<K, S, T> queryInfo, Flowable<Notification<T>> queryResult) {
+            return onQuery(queryInfo, queryResult.toObservable()).toFlowable(BackpressureStrategy.BUFFER);
+        }
     }
 
     interface OnLiveQueryListener {
@@ -0,0 +1,66 @@
+package com.slimgears.rxrepo.util;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.subjects.CompletableSubject;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public interface AsyncLock {
+    <T> Observable<T> withLock(Observable<T> source);
+
+    default <T> Single<T> withLock(Single<T> source) {
+        return withLock(source.toObservable()).singleOrError();
+    }
+
+    default <T> Maybe<T> withLock(Maybe<T> source) {
+        return withLock(source.toObservable()).singleElement();
+    }
+
+    default Completable withLock(Completable source) {
+        return withLock(source.<Object>toObservable()).ignoreElements();
+    }
+
+    /**
+     * Lock is held until the source terminates or is cancelled. Source is subscribed once the lock is acquired,
+     * and requests of the downstream are passed to the source as is
+     */
+    default <T> Flowable<T> withLock(Flowable<T> source) {
+        return Flowable.defer(() -> {
+            CompletableSubject released = CompletableSubject.create();
+            return withLock(Observable.just(true).concatWith(released.toObservable()))
+                    .toFlowable(BackpressureStrategy.BUFFER)
+                    .concatMap(acquired -> source.doFinally(released::onComplete));
+        });
+    }
+
+    static AsyncLock fromBlocking(Callable<AutoCloseable> locker) {
+        return new AsyncLock() {
+            @Override
+            public <T> Observable<T> withLock(Observable<T> source) {
+                return Observable.defer(() -> {
+                    AutoCloseable lock = locker.call();
+                    return source.doFinally(lock::close);
+                });
+            }
+        };
+    }
+
+    static AsyncLock all(List<AsyncLock> locks) {
+        return new AsyncLock() {
+            @Override
+            public <T> Observable<T> withLock(Observable<T> source) {
+                Observable<T> observable = source;
+                for (int i = locks.size() - 1; i >= 0; --i) {
+                    observable = locks.get(i).withLock(observable);
+                }
+                return observable;
+            }
+        };
+    }
+}
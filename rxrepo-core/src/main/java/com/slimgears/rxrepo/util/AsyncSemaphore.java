@@ -0,0 +1,208 @@
+package com.slimgears.rxrepo.util;
+
+import com.slimgears.nanometer.MetricCollector;
+import com.slimgears.nanometer.Metrics;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Semaphore, which does not block threads while waiting for permits.
+ * Waiters are queued and resumed on release. When the semaphore is fair, permits are granted in arrival order,
+ * otherwise arriving waiters take free permits ahead of the queue, and queued waiters, which fit into available
+ * permits, are resumed ahead of the ones which require more permits. Number of queued waiters per operation
+ * can be limited, in which case excessive waiters are rejected with {@link RejectedExecutionException}.
+ */
+public class AsyncSemaphore {
+    private final static MetricCollector metrics = Metrics.collector(AsyncSemaphore.class);
+    private final static String defaultOperation = "default";
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private final Map<String, Integer> queuedByOperation = new HashMap<>();
+    private final Map<String, MetricCollector.Gauge> waitTimeGauges = new ConcurrentHashMap<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final boolean fair;
+    private final int maxQueueSize;
+    private int availablePermits;
+
+    private AsyncSemaphore(int permits, boolean fair, int maxQueueSize) {
+        this.availablePermits = permits;
+        this.fair = fair;
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public static AsyncSemaphore create(int permits) {
+        return create(permits, false);
+    }
+
+    public static AsyncSemaphore create(int permits, boolean fair) {
+        return create(permits, fair, Integer.MAX_VALUE);
+    }
+
+    public static AsyncSemaphore create(int permits, boolean fair, int maxQueueSize) {
+        return new AsyncSemaphore(permits, fair, maxQueueSize);
+    }
+
+    public synchronized int availablePermits() {
+        return availablePermits;
+    }
+
+    public synchronized int queueLength() {
+        return queue.size();
+    }
+
+    public AsyncLock asyncLock() {
+        return asyncLock(defaultOperation);
+    }
+
+    public AsyncLock asyncLock(String operation) {
+        return asyncLock(1, operation);
+    }
+
+    public AsyncLock asyncLock(int permits, String operation) {
+        return new AsyncLock() {
+            @Override
+            public <T> Observable<T> withLock(Observable<T> source) {
+                return withPermits(permits, operation, source);
+            }
+        };
+    }
+
+    public AutoCloseable acquire() {
+        return acquire(1);
+    }
+
+    public AutoCloseable acquire(int permits) {
+        CountDownLatch latch = new CountDownLatch(1);
+        Waiter waiter = new Waiter(permits, defaultOperation, latch::countDown);
+        enqueue(waiter);
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            if (!cancel(waiter)) {
+                release(permits);
+            }
+            throw new RuntimeException(e);
+        }
+        return () -> release(permits);
+    }
+
+    private <T> Observable<T> withPermits(int permits, String operation, Observable<T> source) {
+        return Observable.create(emitter -> {
+            Waiter waiter = new Waiter(permits, operation, () -> subscribe(source, permits, emitter));
+            emitter.setCancellable(() -> cancel(waiter));
+            enqueue(waiter);
+        });
+    }
+
+    private <T> void subscribe(Observable<T> source, int permits, ObservableEmitter<T> emitter) {
+        if (emitter.isDisposed()) {
+            release(permits);
+            return;
+        }
+        emitter.setDisposable(source
+                .doFinally(() -> release(permits))
+                .subscribe(emitter::onNext, emitter::tryOnError, emitter::onComplete));
+    }
+
+    private void enqueue(Waiter waiter) {
+        synchronized (this) {
+            if ((!fair || queue.isEmpty()) && availablePermits >= waiter.permits) {
+                availablePermits -= waiter.permits;
+            } else {
+                int queued = queuedByOperation.getOrDefault(waiter.operation, 0);
+                if (queued >= maxQueueSize) {
+                    throw new RejectedExecutionException("Too many operations are waiting for permits: " + waiter.operation + " (" + queued + ")");
+                }
+                queuedByOperation.put(waiter.operation, queued + 1);
+                queue.add(waiter);
+                waiter.enqueuedNanos = System.nanoTime();
+                return;
+            }
+        }
+        waiter.onGranted.run();
+    }
+
+    private boolean cancel(Waiter waiter) {
+        synchronized (this) {
+            if (!queue.remove(waiter)) {
+                return false;
+            }
+            onDequeued(waiter);
+        }
+        // Waiters behind the cancelled one may fit into the available permits now
+        drain();
+        return true;
+    }
+
+    private void release(int permits) {
+        synchronized (this) {
+            availablePermits += permits;
+        }
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            for (Waiter waiter = poll(); waiter != null; waiter = poll()) {
+                waitTimeGauge(waiter.operation).record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waiter.enqueuedNanos));
+                waiter.onGranted.run();
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private synchronized Waiter poll() {
+        Waiter waiter = fair ? queue.peek() : firstFitting();
+        if (waiter == null || waiter.permits > availablePermits) {
+            return null;
+        }
+        queue.remove(waiter);
+        availablePermits -= waiter.permits;
+        onDequeued(waiter);
+        return waiter;
+    }
+
+    private Waiter firstFitting() {
+        for (Waiter waiter : queue) {
+            if (waiter.permits <= availablePermits) {
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    private void onDequeued(Waiter waiter) {
+        queuedByOperation.computeIfPresent(waiter.operation, (op, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private MetricCollector.Gauge waitTimeGauge(String operation) {
+        return waitTimeGauges.computeIfAbsent(operation, op -> metrics.name(op).gauge("queueWaitTimeMillis"));
+    }
+
+    private static class Waiter {
+        private final int permits;
+        private final String operation;
+        private final Runnable onGranted;
+        private long enqueuedNanos;
+
+        private Waiter(int permits, String operation, Runnable onGranted) {
+            this.permits = permits;
+            this.operation = operation;
+            this.onGranted = onGranted;
+        }
+    }
+}
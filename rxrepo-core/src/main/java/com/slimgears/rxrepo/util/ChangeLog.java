@@ -0,0 +1,92 @@
+package com.slimgears.rxrepo.util;
+
+import com.slimgears.rxrepo.query.Notification;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded log of the most recent notifications, ordered by arrival. Once the log is full, the oldest entries
+ * are evicted, and changes since sequence numbers preceding evicted entries are no longer available.
+ */
+public class ChangeLog<S> {
+    private final int capacity;
+    private final Deque<Notification<S>> entries = new ArrayDeque<>();
+    private boolean started;
+    private long availableSince;
+
+    private ChangeLog(int capacity, boolean started) {
+        this.capacity = capacity;
+        this.started = started;
+        this.availableSince = Long.MIN_VALUE;
+    }
+
+    /**
+     * Creates log, which is appended with all the changes since the beginning of sequence
+     */
+    public static <S> ChangeLog<S> create(int capacity) {
+        return new ChangeLog<>(capacity, true);
+    }
+
+    /**
+     * Creates log, which only covers changes starting from the first appended one
+     */
+    public static <S> ChangeLog<S> createFromFirstChange(int capacity) {
+        return new ChangeLog<>(capacity, false);
+    }
+
+    /**
+     * Appends notification to the log. Reset notification, or change without sequence number can not be replayed,
+     * so the log is restarted from the next change, and changes since earlier sequence numbers become unavailable
+     */
+    public synchronized void append(Notification<S> notification) {
+        if (notification.isEmpty()) {
+            return;
+        }
+
+        Long sequenceNumber = notification.sequenceNumber();
+        if (sequenceNumber == null || notification.isReset()) {
+            entries.clear();
+            started = false;
+            return;
+        }
+
+        if (!started) {
+            started = true;
+            availableSince = sequenceNumber;
+        }
+
+        if (entries.size() >= capacity) {
+            Optional.ofNullable(entries.pollFirst())
+                    .map(Notification::sequenceNumber)
+                    .ifPresent(evicted -> availableSince = Math.max(availableSince, evicted));
+        }
+        entries.addLast(notification);
+    }
+
+    /**
+     * Marks all changes up to the given sequence number as unavailable (e.g. when underlying storage is dropped)
+     */
+    public synchronized void truncate(long sequenceNumber) {
+        entries.clear();
+        started = true;
+        availableSince = Math.max(availableSince, sequenceNumber);
+    }
+
+    /**
+     * Returns changes with sequence number greater than given one, or empty, if some of those changes
+     * are not retained by the log
+     */
+    public synchronized Optional<List<Notification<S>>> changesSince(long sequenceNumber) {
+        if (!started || sequenceNumber < availableSince) {
+            return Optional.empty();
+        }
+
+        return Optional.of(entries.stream()
+                .filter(n -> n.sequenceNumber() > sequenceNumber)
+                .collect(Collectors.toList()));
+    }
+}
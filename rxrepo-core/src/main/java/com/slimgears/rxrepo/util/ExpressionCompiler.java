@@ -0,0 +1,394 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.slimgears.rxrepo.expressions.*;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class ExpressionCompiler {
+    public enum Mode {
+        Closure,
+        Specialized
+    }
+
+    private final static int minHashedCollectionSize = 8;
+    private final static Cache<ObjectExpression<?, ?>, Function<Object, Object>> functionCache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(10000)
+            .build();
+    private final static Cache<ObjectExpression<?, ?>, Predicate<Object>> predicateCache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(10000)
+            .build();
+    private final static Mode mode = Mode.valueOf(System.getProperty("rxrepo.expressions.compiler", Mode.Specialized.name()));
+
+    public static Mode mode() {
+        return mode;
+    }
+
+    public static <S, T> Function<S, T> compile(ObjectExpression<S, T> exp) {
+        if (exp == null || mode == Mode.Closure || containsSequenceNumber(exp)) {
+            return Expressions.compile(exp);
+        }
+        return (Function<S, T>)cached(functionCache, exp, () -> compileValue(exp));
+    }
+
+    public static <S> Predicate<S> compilePredicate(ObjectExpression<S, Boolean> exp) {
+        if (exp == null || mode == Mode.Closure || containsSequenceNumber(exp)) {
+            return Expressions.compilePredicate(exp);
+        }
+        return (Predicate<S>)cached(predicateCache, exp, () -> compileCondition(exp));
+    }
+
+    public static <S> io.reactivex.functions.Predicate<S> compileRxPredicate(ObjectExpression<S, Boolean> exp) {
+        return compilePredicate(exp)::test;
+    }
+
+    public static <S, T> io.reactivex.functions.Function<S, T> compileRx(ObjectExpression<S, T> exp) {
+        return compile(exp)::apply;
+    }
+
+    private static <V> V cached(Cache<ObjectExpression<?, ?>, V> cache, ObjectExpression<?, ?> exp, java.util.concurrent.Callable<V> compiler) {
+        try {
+            return cache.get(exp, compiler);
+        } catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static Function<Object, Object> compileValue(Expression exp) {
+        if (exp instanceof DelegateExpression) {
+            return compileValue(((DelegateExpression<?, ?>)exp).delegate());
+        }
+
+        ObjectExpression<?, ?> expression = (ObjectExpression<?, ?>)exp;
+        if (isCondition(expression.type())) {
+            Predicate<Object> predicate = compileCondition(expression);
+            return val -> predicate.test(val);
+        }
+
+        switch (expression.type().operationType()) {
+            case Argument:
+                return Function.identity();
+            case Constant:
+                Object value = ((ConstantExpression<?, ?>)expression).value();
+                return val -> value;
+            case Property:
+                return compileProperty((PropertyExpression<?, ?, ?>)expression);
+            case Composition:
+                ComposedExpression<?, ?, ?> composed = (ComposedExpression<?, ?, ?>)expression;
+                return compileValue(composed.source()).andThen(compileValue(composed.expression()));
+            default:
+                return (Function)Expressions.compile(expression);
+        }
+    }
+
+    private static Function<Object, Object> compileProperty(PropertyExpression<?, ?, ?> expression) {
+        List<PropertyMeta> path = new ArrayList<>();
+        ObjectExpression<?, ?> target = expression;
+        while (target.type().operationType() == Expression.OperationType.Property) {
+            path.add(((PropertyExpression<?, ?, ?>)target).property());
+            target = ((PropertyExpression<?, ?, ?>)target).target();
+        }
+        Collections.reverse(path);
+
+        PropertyMeta[] properties = path.toArray(new PropertyMeta[0]);
+        Class[] declaringClasses = path.stream()
+                .map(p -> p.declaringType().asClass())
+                .toArray(Class[]::new);
+
+        Function<Object, Object> getter = properties.length == 1
+                ? singlePropertyGetter(properties[0], declaringClasses[0])
+                : val -> {
+                    for (int i = 0; i < properties.length && val != null; ++i) {
+                        val = declaringClasses[i].isInstance(val) ? properties[i].getValue(val) : null;
+                    }
+                    return val;
+                };
+
+        return target.type().operationType() == Expression.OperationType.Argument
+                ? getter
+                : compileValue(target).andThen(getter);
+    }
+
+    private static Function<Object, Object> singlePropertyGetter(PropertyMeta property, Class declaringClass) {
+        return val -> declaringClass.isInstance(val) ? property.getValue(val) : null;
+    }
+
+    private static Predicate<Object> compileCondition(Expression exp) {
+        if (exp instanceof DelegateExpression) {
+            return compileCondition(((DelegateExpression<?, ?>)exp).delegate());
+        }
+
+        ObjectExpression<?, ?> expression = (ObjectExpression<?, ?>)exp;
+        switch (expression.type()) {
+            case And: {
+                Predicate<Object> left = compileCondition(left(expression));
+                Predicate<Object> right = compileCondition(right(expression));
+                return val -> left.test(val) && right.test(val);
+            }
+            case Or: {
+                Predicate<Object> left = compileCondition(left(expression));
+                Predicate<Object> right = compileCondition(right(expression));
+                return val -> left.test(val) || right.test(val);
+            }
+            case Not: {
+                ObjectExpression<?, ?> operand = operand(expression);
+                if (isCondition(operand.type())) {
+                    return compileCondition(operand).negate();
+                }
+                Function<Object, Object> value = compileValue(operand);
+                return val -> Boolean.FALSE.equals(value.apply(val));
+            }
+            case Equals:
+                return compileEquals(left(expression), right(expression));
+            case ValueIn:
+                return compileValueIn(left(expression), right(expression));
+            case LessThan:
+                return compileComparison(left(expression), right(expression), true);
+            case GreaterThan:
+                return compileComparison(left(expression), right(expression), false);
+            case IsNull: {
+                Function<Object, Object> value = compileValue(operand(expression));
+                return val -> value.apply(val) == null;
+            }
+            case IsEmpty: {
+                Function<Object, Object> value = compileValue(operand(expression));
+                return val -> Strings.isNullOrEmpty((String)value.apply(val));
+            }
+            default: {
+                Function<Object, Object> value = isCondition(expression.type())
+                        ? (Function)Expressions.compile(expression)
+                        : compileValue(expression);
+                return val -> Boolean.TRUE.equals(value.apply(val));
+            }
+        }
+    }
+
+    private static Predicate<Object> compileEquals(ObjectExpression<?, ?> left, ObjectExpression<?, ?> right) {
+        if (isConstant(right) || isConstant(left)) {
+            Object constant = isConstant(right) ? constantOf(right) : constantOf(left);
+            ObjectExpression<?, ?> operand = isConstant(right) ? left : right;
+            Predicate<Object> primitiveCondition = compilePrimitiveComparison(operand, constant, result -> result == 0);
+            if (primitiveCondition != null) {
+                return primitiveCondition;
+            }
+            Function<Object, Object> value = compileValue(operand);
+            return val -> constant.equals(value.apply(val));
+        }
+        Function<Object, Object> leftValue = compileValue(left);
+        Function<Object, Object> rightValue = compileValue(right);
+        return val -> java.util.Objects.equals(leftValue.apply(val), rightValue.apply(val));
+    }
+
+    private static Predicate<Object> compileValueIn(ObjectExpression<?, ?> left, ObjectExpression<?, ?> right) {
+        Function<Object, Object> value = compileValue(left);
+        if (isConstant(right)) {
+            Collection<Object> collection = toLookupCollection((Collection<Object>)constantOf(right));
+            return val -> {
+                Object obj = value.apply(val);
+                return obj != null && collection.contains(obj);
+            };
+        }
+        Function<Object, Object> collectionValue = compileValue(right);
+        return val -> {
+            Object obj = value.apply(val);
+            Collection<Object> collection = (Collection<Object>)collectionValue.apply(val);
+            return obj != null && collection != null && collection.contains(obj);
+        };
+    }
+
+    private static Predicate<Object> compileComparison(ObjectExpression<?, ?> left, ObjectExpression<?, ?> right, boolean lessThan) {
+        if (isConstant(right)) {
+            Predicate<Object> primitiveCondition = compilePrimitiveComparison(left, constantOf(right), lessThan
+                    ? result -> result < 0
+                    : result -> result > 0);
+            if (primitiveCondition != null) {
+                return primitiveCondition;
+            }
+        }
+        Function<Object, Object> leftValue = compileValue(left);
+        if (isConstant(right)) {
+            Comparable constant = (Comparable)constantOf(right);
+            return lessThan
+                    ? val -> {
+                        Comparable a = (Comparable)leftValue.apply(val);
+                        return a != null && a.compareTo(constant) < 0;
+                    }
+                    : val -> {
+                        Comparable a = (Comparable)leftValue.apply(val);
+                        return a != null && a.compareTo(constant) > 0;
+                    };
+        }
+        Function<Object, Object> rightValue = compileValue(right);
+        return val -> {
+            Comparable a = (Comparable)leftValue.apply(val);
+            Comparable b = (Comparable)rightValue.apply(val);
+            if (a == null || b == null) {
+                return false;
+            }
+            int result = a.compareTo(b);
+            return lessThan ? result < 0 : result > 0;
+        };
+    }
+
+    // Comparison of primitive property (of the query argument) with constant of the same (boxed) type,
+    // reads property through primitive accessor function, so the value is not boxed
+    private static Predicate<Object> compilePrimitiveComparison(ObjectExpression<?, ?> expression, Object constant, IntPredicate resultTest) {
+        if (expression.type().operationType() != Expression.OperationType.Property ||
+                ((PropertyExpression<?, ?, ?>)expression).target().type().operationType() != Expression.OperationType.Argument) {
+            return null;
+        }
+        PropertyMeta<?, ?> property = ((PropertyExpression<?, ?, ?>)expression).property();
+        Class declaringClass = property.declaringType().asClass();
+        try {
+            Method getter = declaringClass.getMethod(property.name());
+            Class<?> returnType = getter.getReturnType();
+            if (returnType == int.class && constant instanceof Integer) {
+                ToIntFunction<Object> accessor = primitiveAccessor(ToIntFunction.class, "applyAsInt", getter);
+                int value = (Integer)constant;
+                return val -> declaringClass.isInstance(val) && resultTest.test(Integer.compare(accessor.applyAsInt(val), value));
+            } else if (returnType == long.class && constant instanceof Long) {
+                ToLongFunction<Object> accessor = primitiveAccessor(ToLongFunction.class, "applyAsLong", getter);
+                long value = (Long)constant;
+                return val -> declaringClass.isInstance(val) && resultTest.test(Long.compare(accessor.applyAsLong(val), value));
+            } else if (returnType == double.class && constant instanceof Double) {
+                ToDoubleFunction<Object> accessor = primitiveAccessor(ToDoubleFunction.class, "applyAsDouble", getter);
+                double value = (Double)constant;
+                return val -> declaringClass.isInstance(val) && resultTest.test(Double.compare(accessor.applyAsDouble(val), value));
+            }
+            return null;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static <F> F primitiveAccessor(Class<F> functionType, String functionMethod, Method getter) throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle handle = lookup.unreflect(getter);
+        return (F)LambdaMetafactory
+                .metafactory(
+                        lookup,
+                        functionMethod,
+                        MethodType.methodType(functionType),
+                        MethodType.methodType(getter.getReturnType(), Object.class),
+                        handle,
+                        MethodType.methodType(getter.getReturnType(), getter.getDeclaringClass()))
+                .getTarget()
+                .invoke();
+    }
+
+    private static Collection<Object> toLookupCollection(Collection<Object> collection) {
+        if (collection == null) {
+            return Collections.emptySet();
+        }
+        if (collection instanceof Set || collection.size() < minHashedCollectionSize || collection.contains(null)) {
+            return collection;
+        }
+        return ImmutableSet.copyOf(collection);
+    }
+
+    private static boolean isCondition(Expression.Type type) {
+        switch (type) {
+            case And:
+            case Or:
+            case Not:
+            case Equals:
+            case ValueIn:
+            case LessThan:
+            case GreaterThan:
+            case IsNull:
+            case IsEmpty:
+            case Contains:
+            case StartsWith:
+            case EndsWith:
+            case Matches:
+            case SearchText:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isConstant(ObjectExpression<?, ?> expression) {
+        return expression.type().operationType() == Expression.OperationType.Constant &&
+                expression.type() != Expression.Type.NullConstant &&
+                ((ConstantExpression<?, ?>)expression).value() != null;
+    }
+
+    private static Object constantOf(ObjectExpression<?, ?> expression) {
+        return ((ConstantExpression<?, ?>)expression).value();
+    }
+
+    private static ObjectExpression<?, ?> left(ObjectExpression<?, ?> expression) {
+        return ((BinaryOperationExpression<?, ?, ?, ?>)expression).left();
+    }
+
+    private static ObjectExpression<?, ?> right(ObjectExpression<?, ?> expression) {
+        return ((BinaryOperationExpression<?, ?, ?, ?>)expression).right();
+    }
+
+    private static ObjectExpression<?, ?> operand(ObjectExpression<?, ?> expression) {
+        return ((UnaryOperationExpression<?, ?, ?>)expression).operand();
+    }
+
+    private static boolean containsSequenceNumber(ObjectExpression<?, ?> expression) {
+        return new ExpressionVisitor<Void, Boolean>() {
+            @Override
+            protected Boolean reduceBinary(ObjectExpression<?, ?> expression, Expression.Type type, Boolean first, Boolean second) {
+                return first || second;
+            }
+
+            @Override
+            protected Boolean reduceUnary(ObjectExpression<?, ?> expression, Expression.Type type, Boolean first) {
+                return type == Expression.Type.SequenceNumber || first;
+            }
+
+            @Override
+            protected <S, T> Boolean visitOther(ObjectExpression<S, T> expression, Void arg) {
+                return false;
+            }
+
+            @Override
+            protected <T, V> Boolean visitProperty(PropertyMeta<T, V> propertyMeta, Void arg) {
+                return false;
+            }
+
+            @Override
+            protected <V> Boolean visitConstant(Expression.Type type, V value, Void arg) {
+                return false;
+            }
+
+            @Override
+            protected <T> Boolean visitArgument(TypeToken<T> argType, Void arg) {
+                return false;
+            }
+        }.visit(expression, null);
+    }
+}
@@ -0,0 +1,156 @@
+package com.slimgears.rxrepo.util;
+
+import com.slimgears.rxrepo.expressions.Expression;
+
+import javax.annotation.Nullable;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Aggregation state, which is maintained by adding and removing elements, without re-evaluating the whole collection.
+ * Mirrors semantics of in-memory evaluation of the corresponding aggregation expressions, except that
+ * null elements are skipped by sum, average, min and max.
+ */
+public interface IncrementalAggregator<T, R> {
+    void add(@Nullable T element);
+    void remove(@Nullable T element);
+    @Nullable R result();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <T, R> Optional<Supplier<IncrementalAggregator<T, R>>> forType(Expression.Type aggregationType) {
+        switch (aggregationType) {
+            case Count: return Optional.of(() -> (IncrementalAggregator<T, R>)new Count<T>());
+            case Sum: return Optional.of(() -> (IncrementalAggregator<T, R>)new Sum());
+            case Average: return Optional.of(() -> (IncrementalAggregator<T, R>)new Average());
+            case Min: return Optional.of(() -> (IncrementalAggregator<T, R>)new MinMax(false));
+            case Max: return Optional.of(() -> (IncrementalAggregator<T, R>)new MinMax(true));
+            default: return Optional.empty();
+        }
+    }
+
+    class Count<T> implements IncrementalAggregator<T, Long> {
+        private long count;
+
+        public static <T> Count<T> of(long count) {
+            Count<T> aggregator = new Count<>();
+            aggregator.count = count;
+            return aggregator;
+        }
+
+        @Override
+        public void add(T element) {
+            ++count;
+        }
+
+        @Override
+        public void remove(T element) {
+            --count;
+        }
+
+        @Override
+        public Long result() {
+            return count;
+        }
+    }
+
+    class Sum<N extends Number> implements IncrementalAggregator<N, N> {
+        private N sum;
+        private long count;
+
+        /**
+         * Creates sum of {@code count} non-null elements, which add up to {@code sum}
+         */
+        public static <N extends Number> Sum<N> of(@Nullable N sum, long count) {
+            Sum<N> aggregator = new Sum<>();
+            aggregator.sum = count > 0 ? sum : null;
+            aggregator.count = count;
+            return aggregator;
+        }
+
+        @Override
+        public void add(N element) {
+            if (element != null) {
+                sum = sum != null ? GenericMath.add(sum, element) : element;
+                ++count;
+            }
+        }
+
+        @Override
+        public void remove(N element) {
+            if (element != null) {
+                sum = --count > 0 ? GenericMath.subtract(sum, element) : null;
+            }
+        }
+
+        @Override
+        public N result() {
+            return sum;
+        }
+    }
+
+    class Average<N extends Number> implements IncrementalAggregator<N, Double> {
+        private final Sum<N> sum;
+
+        public Average() {
+            this(new Sum<>());
+        }
+
+        private Average(Sum<N> sum) {
+            this.sum = sum;
+        }
+
+        /**
+         * Creates average of {@code count} non-null elements, which add up to {@code sum}
+         */
+        public static <N extends Number> Average<N> of(@Nullable N sum, long count) {
+            return new Average<>(Sum.of(sum, count));
+        }
+
+        @Override
+        public void add(N element) {
+            sum.add(element);
+        }
+
+        @Override
+        public void remove(N element) {
+            sum.remove(element);
+        }
+
+        @Override
+        public Double result() {
+            return sum.count > 0 ? sum.sum.doubleValue() / sum.count : 0.0;
+        }
+    }
+
+    class MinMax<V extends Comparable<V>> implements IncrementalAggregator<V, V> {
+        private final TreeMap<V, Integer> counts = new TreeMap<>();
+        private final boolean max;
+
+        private MinMax(boolean max) {
+            this.max = max;
+        }
+
+        @Override
+        public void add(V element) {
+            if (element != null) {
+                counts.merge(element, 1, Integer::sum);
+            }
+        }
+
+        @Override
+        public void remove(V element) {
+            if (element != null) {
+                counts.computeIfPresent(element, (e, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+
+        @Override
+        public V result() {
+            if (counts.isEmpty()) {
+                return null;
+            }
+            return max ? counts.lastKey() : counts.firstKey();
+        }
+    }
+}
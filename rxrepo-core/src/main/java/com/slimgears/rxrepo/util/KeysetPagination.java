@@ -0,0 +1,143 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Streams;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.BooleanExpression;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.expressions.internal.BooleanBinaryOperationExpression;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.query.provider.SortingInfos;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Builds range predicates for keyset (seek) pagination: instead of skipping already seen items,
+ * next page is requested as items which follow the last seen one in sorting order.
+ * Sorting is extended with key property, so the order of items with equal sorting values is well defined.
+ * Keys, which are not comparable, are represented by their own (comparable) properties.
+ * Sorting values of the cursor item should be non-null.
+ */
+@SuppressWarnings("WeakerAccess")
+public class KeysetPagination {
+    public static <K, S> ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> withKeyTieBreaker(
+            MetaClassWithKey<K, S> metaClass,
+            List<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos) {
+        List<PropertyExpression<S, ?, ?>> tieBreakers = tieBreakersOf(metaClass).stream()
+                .filter(property -> sortingInfos.stream().noneMatch(si -> PropertyExpressions.propertyEquals(si.property(), property)))
+                .collect(Collectors.toList());
+        return ImmutableList.<SortingInfo<S, ?, ? extends Comparable<?>>>builder()
+                .addAll(sortingInfos)
+                .addAll(tieBreakers.stream().map(KeysetPagination::ascending).iterator())
+                .build();
+    }
+
+    /**
+     * Comparator, which orders items the same way as the tie breaker added by {@link #withKeyTieBreaker},
+     * or empty, if the key can not be used as tie breaker
+     */
+    public static <K, S> Optional<Comparator<S>> keyComparator(MetaClassWithKey<K, S> metaClass) {
+        return Optional.of(metaClass)
+                .filter(KeysetPagination::hasOrderedKey)
+                .map(mc -> SortingInfos.toComparator(withKeyTieBreaker(mc, ImmutableList.of())));
+    }
+
+    public static <S> ImmutableList<SortingInfo<S, ?, ? extends Comparable<?>>> reverse(List<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos) {
+        return sortingInfos.stream()
+                .map(KeysetPagination::reverse)
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    public static <S> BooleanExpression<S> after(List<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos, S item) {
+        return seek(sortingInfos, item, true);
+    }
+
+    public static <S> BooleanExpression<S> before(List<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos, S item) {
+        return seek(sortingInfos, item, false);
+    }
+
+    // (s1 > v1) or (s1 = v1 and s2 > v2) or ... (with < for descending sorting or backward direction)
+    private static <S> BooleanExpression<S> seek(List<SortingInfo<S, ?, ? extends Comparable<?>>> sortingInfos, S item, boolean forward) {
+        BooleanExpression<S> result = null;
+        BooleanExpression<S> equalPrefix = null;
+        for (SortingInfo<S, ?, ? extends Comparable<?>> sortingInfo : sortingInfos) {
+            Object value = PropertyExpressions.toGetter(sortingInfo.property()).apply(item);
+            if (value == null) {
+                throw new IllegalArgumentException("Keyset pagination cursor has null value of sorting property " + PropertyExpressions.pathOf(sortingInfo.property()));
+            }
+            BooleanExpression<S> term = compare(sortingInfo, value, sortingInfo.ascending() == forward);
+            term = equalPrefix != null ? BooleanExpression.and(equalPrefix, term) : term;
+            result = result != null ? BooleanExpression.or(result, term) : term;
+            BooleanExpression<S> equals = equal(sortingInfo, value);
+            equalPrefix = equalPrefix != null ? BooleanExpression.and(equalPrefix, equals) : equals;
+        }
+        return result != null ? result : BooleanExpression.ofFalse();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S, V> BooleanExpression<S> compare(SortingInfo<S, ?, ? extends Comparable<?>> sortingInfo, Object value, boolean greater) {
+        PropertyExpression<S, ?, V> property = (PropertyExpression<S, ?, V>)sortingInfo.property();
+        return BooleanBinaryOperationExpression.create(
+                greater ? Expression.Type.GreaterThan : Expression.Type.LessThan,
+                property,
+                ConstantExpression.of((V)value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S, V> BooleanExpression<S> equal(SortingInfo<S, ?, ? extends Comparable<?>> sortingInfo, Object value) {
+        PropertyExpression<S, ?, V> property = (PropertyExpression<S, ?, V>)sortingInfo.property();
+        return property.eq((V)value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S, T, V extends Comparable<V>> SortingInfo<S, ?, ? extends Comparable<?>> reverse(SortingInfo<S, ?, ? extends Comparable<?>> sortingInfo) {
+        SortingInfo<S, T, V> typed = (SortingInfo<S, T, V>)sortingInfo;
+        return SortingInfo.create(typed.property(), !typed.ascending());
+    }
+
+    /**
+     * Key property itself, when comparable, otherwise all properties of the key (which should be comparable)
+     */
+    private static <K, S> List<PropertyExpression<S, ?, ?>> tieBreakersOf(MetaClassWithKey<K, S> metaClass) {
+        PropertyExpression<S, S, K> keyProperty = PropertyExpressions.keyOf(metaClass);
+        if (isComparable(metaClass.keyProperty().type())) {
+            return ImmutableList.of(keyProperty);
+        }
+        if (!PropertyMetas.hasMetaClass(metaClass.keyProperty().type())) {
+            throw new IllegalArgumentException("Keyset pagination requires comparable key, key of " + metaClass.simpleName() + " is " + metaClass.keyProperty().type());
+        }
+        MetaClass<K> keyMetaClass = MetaClasses.forTokenUnchecked(metaClass.keyProperty().type());
+        ImmutableList.Builder<PropertyExpression<S, ?, ?>> properties = ImmutableList.builder();
+        keyMetaClass.properties().forEach(property -> {
+            if (!isComparable(property.type())) {
+                throw new IllegalArgumentException("Keyset pagination requires comparable key properties, " + keyMetaClass.simpleName() + "." + property.name() + " is " + property.type());
+            }
+            properties.add(PropertyExpressions.fromMeta(keyProperty, property));
+        });
+        return properties.build();
+    }
+
+    private static <K, S> boolean hasOrderedKey(MetaClassWithKey<K, S> metaClass) {
+        TypeToken<K> keyType = metaClass.keyProperty().type();
+        return isComparable(keyType) || (PropertyMetas.hasMetaClass(keyType) && Streams
+                .stream(MetaClasses.forTokenUnchecked(keyType).properties())
+                .allMatch(property -> isComparable(property.type())));
+    }
+
+    private static boolean isComparable(TypeToken<?> type) {
+        return type.wrap().isSubtypeOf(Comparable.class);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <S> SortingInfo<S, ?, ? extends Comparable<?>> ascending(PropertyExpression<S, ?, ?> property) {
+        return SortingInfo.create((PropertyExpression)property, true);
+    }
+}
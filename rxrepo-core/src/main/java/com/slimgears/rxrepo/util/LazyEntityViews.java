@@ -0,0 +1,56 @@
+package com.slimgears.rxrepo.util;
+
+import com.google.common.reflect.TypeToken;
+import com.slimgears.util.autovalue.annotations.HasMetaClass;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates lazy views of entities (generated for classes annotated with
+ * {@link com.slimgears.rxrepo.annotations.UseLazyView}), which decode properties from
+ * {@link PropertyResolver} only when accessed. Underlying resolver should remain readable
+ * for the lifetime of the view.
+ */
+public class LazyEntityViews {
+    private final static String lazyViewClassName = "LazyView";
+    private final static Map<Class<?>, Optional<Constructor<?>>> lazyViewConstructors = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public static <T> T toObject(PropertyResolver resolver, TypeToken<T> type) {
+        if (resolver == null) {
+            return null;
+        }
+
+        return type.isSubtypeOf(HasMetaClass.class)
+                ? lazyViewConstructors
+                .computeIfAbsent(type.getRawType(), LazyEntityViews::findLazyViewConstructor)
+                .map(ctor -> {
+                    try {
+                        return (T)ctor.newInstance(resolver);
+                    } catch (ReflectiveOperationException e) {
+                        throw new RuntimeException(e);
+                    }
+                })
+                .orElseGet(() -> resolver.toObject(type))
+                : resolver.toObject(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> V toValue(TypeToken<V> type, Object value) {
+        return (value instanceof PropertyResolver && type.isSubtypeOf(HasMetaClass.class))
+                ? toObject((PropertyResolver)value, type)
+                : PropertyResolvers.toValue(type, value);
+    }
+
+    private static Optional<Constructor<?>> findLazyViewConstructor(Class<?> rawType) {
+        try {
+            Class<?> viewClass = Class.forName(rawType.getName() + "$" + lazyViewClassName, true, rawType.getClassLoader());
+            return Optional.of(viewClass.getConstructor(PropertyResolver.class));
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return Optional.empty();
+        }
+    }
+}
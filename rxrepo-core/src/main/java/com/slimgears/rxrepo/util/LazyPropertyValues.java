@@ -0,0 +1,54 @@
+package com.slimgears.rxrepo.util;
+
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.reflect.TypeTokens;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Property values of lazy entity view, each decoded from underlying {@link PropertyResolver} on first access.
+ * Properties of the {@link PropertyResolvers#withProperties} scope, in which the view was created, are captured,
+ * so that properties, which are not required, are not decoded, even if accessed after the scope is closed
+ */
+public class LazyPropertyValues<T> {
+    private final static Object nullValue = new Object();
+    private final PropertyResolver resolver;
+    private final Set<PropertyMeta<?, ?>> requiredProperties;
+    private Map<String, Object> values;
+
+    private LazyPropertyValues(PropertyResolver resolver, Set<PropertyMeta<?, ?>> requiredProperties) {
+        this.resolver = resolver;
+        this.requiredProperties = requiredProperties;
+    }
+
+    public static <T> LazyPropertyValues<T> create(PropertyResolver resolver) {
+        return new LazyPropertyValues<>(resolver, PropertyResolvers.currentProperties());
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized <V> V get(PropertyMeta<T, V> propertyMeta) {
+        if (values == null) {
+            values = new HashMap<>();
+        }
+
+        Object value = values.get(propertyMeta.name());
+        if (value == null) {
+            value = resolve(propertyMeta);
+            values.put(propertyMeta.name(), value != null ? value : nullValue);
+        }
+        return value != nullValue ? (V)value : null;
+    }
+
+    private <V> V resolve(PropertyMeta<T, V> propertyMeta) {
+        if (!PropertyResolvers.isRequiredProperty(requiredProperties, propertyMeta)) {
+            return null;
+        }
+        Object value = resolver.getProperty(propertyMeta.name(), TypeTokens.asClass(propertyMeta.type()));
+        // Nested values are decoded within the captured scope as well
+        return requiredProperties != null
+                ? PropertyResolvers.withProperties(requiredProperties, () -> LazyEntityViews.toValue(propertyMeta.type(), value))
+                : LazyEntityViews.toValue(propertyMeta.type(), value);
+    }
+}
@@ -1,13 +1,44 @@
 package com.slimgears.rxrepo.util;
 
+import com.slimgears.util.autovalue.annotations.MetaClass;
 import io.reactivex.Observable;
 import io.reactivex.ObservableTransformer;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.Callable;
 
 public interface LockProvider {
     AutoCloseable lock();
 
+    default AutoCloseable lock(MetaClass<?> metaClass) {
+        return lock(Collections.singleton(metaClass));
+    }
+
+    default AutoCloseable lock(Collection<? extends MetaClass<?>> metaClasses) {
+        return lock();
+    }
+
+    default AutoCloseable lock(MetaClass<?> metaClass, Object key) {
+        return lock(metaClass);
+    }
+
+    default AsyncLock asyncLock() {
+        return AsyncLock.fromBlocking(this::lock);
+    }
+
+    default AsyncLock asyncLock(MetaClass<?> metaClass) {
+        return asyncLock(Collections.singleton(metaClass));
+    }
+
+    default AsyncLock asyncLock(Collection<? extends MetaClass<?>> metaClasses) {
+        return AsyncLock.fromBlocking(() -> lock(metaClasses));
+    }
+
+    default AsyncLock asyncLock(MetaClass<?> metaClass, Object key) {
+        return AsyncLock.fromBlocking(() -> lock(metaClass, key));
+    }
+
     default void withLock(Runnable runnable) {
         this.<Void>withLock(() -> {
             runnable.run();
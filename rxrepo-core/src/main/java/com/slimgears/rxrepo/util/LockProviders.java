@@ -4,30 +4,38 @@ import io.reactivex.*;
 
 public class LockProviders {
     public static <T> ObservableTransformer<T, T> forObservable(LockProvider lockProvider) {
-        return src -> Observable.defer(() -> {
-            AutoCloseable lock = lockProvider.lock();
-            return src.doFinally(lock::close);
-        });
+        return forObservable(lockProvider.asyncLock());
     }
 
     public static <T> MaybeTransformer<T, T> forMaybe(LockProvider lockProvider) {
-        return src -> Maybe.defer(() -> {
-            AutoCloseable lock = lockProvider.lock();
-            return src.doFinally(lock::close);
-        });
+        return forMaybe(lockProvider.asyncLock());
     }
 
     public static <T> SingleTransformer<T, T> forSingle(LockProvider lockProvider) {
-        return src -> Single.defer(() -> {
-            AutoCloseable lock = lockProvider.lock();
-            return src.doFinally(lock::close);
-        });
+        return forSingle(lockProvider.asyncLock());
     }
 
     public static CompletableTransformer forCompletable(LockProvider lockProvider) {
-        return src -> Completable.defer(() -> {
-            AutoCloseable lock = lockProvider.lock();
-            return src.doFinally(lock::close);
-        });
+        return forCompletable(lockProvider.asyncLock());
+    }
+
+    public static <T> ObservableTransformer<T, T> forObservable(AsyncLock lock) {
+        return lock::withLock;
+    }
+
+    public static <T> MaybeTransformer<T, T> forMaybe(AsyncLock lock) {
+        return lock::withLock;
+    }
+
+    public static <T> SingleTransformer<T, T> forSingle(AsyncLock lock) {
+        return lock::withLock;
+    }
+
+    public static <T> FlowableTransformer<T, T> forFlowable(AsyncLock lock) {
+        return lock::withLock;
+    }
+
+    public static CompletableTransformer forCompletable(AsyncLock lock) {
+        return lock::withLock;
     }
 }
@@ -0,0 +1,314 @@
+package com.slimgears.rxrepo.util;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sorted collection of distinct elements with O(log n) insertion, removal, rank and positional access.
+ * Implemented as a persistent treap, where each node keeps the size of its subtree: modifications copy
+ * the affected path instead of changing nodes in place, so {@link #snapshot()} takes O(1).
+ */
+public class OrderStatisticTree<T> extends AbstractList<T> {
+    private final Comparator<? super T> comparator;
+    private Node<T> root;
+
+    private OrderStatisticTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    public static <T> OrderStatisticTree<T> create(Comparator<? super T> comparator) {
+        return new OrderStatisticTree<>(comparator);
+    }
+
+    @Override
+    public int size() {
+        return sizeOf(root);
+    }
+
+    @Override
+    public T get(int index) {
+        return get(root, index);
+    }
+
+    /**
+     * Immutable view of current elements, which is not affected by further modifications
+     */
+    public List<T> snapshot() {
+        return new Snapshot<>(root);
+    }
+
+    @Override
+    public boolean add(T value) {
+        if (contains(value)) {
+            return false;
+        }
+        root = insert(root, new Node<>(value));
+        ++modCount;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean remove(Object value) {
+        int sizeBefore = size();
+        root = delete(root, (T)value);
+        if (size() == sizeBefore) {
+            return false;
+        }
+        ++modCount;
+        return true;
+    }
+
+    @Override
+    public T remove(int index) {
+        T value = get(index);
+        remove(value);
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        ++modCount;
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return indexOf(value) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public int indexOf(Object value) {
+        Node<T> node = root;
+        int index = 0;
+        while (node != null) {
+            int cmp = comparator.compare((T)value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                index += sizeOf(node.left) + 1;
+                node = node.right;
+            } else {
+                return index + sizeOf(node.left);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object value) {
+        return indexOf(value);
+    }
+
+    /**
+     * Number of elements which are strictly less than the given value (the value does not have to be present)
+     */
+    public int rank(T value) {
+        Node<T> node = root;
+        int index = 0;
+        while (node != null) {
+            if (comparator.compare(value, node.value) <= 0) {
+                node = node.left;
+            } else {
+                index += sizeOf(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return index;
+    }
+
+    public T first() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        Node<T> node = root;
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.value;
+    }
+
+    public T last() {
+        if (root == null) {
+            throw new NoSuchElementException();
+        }
+        Node<T> node = root;
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.value;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        Iterator<T> iterator = iterator(root);
+        int expectedModCount = modCount;
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (expectedModCount != modCount) {
+                    throw new ConcurrentModificationException();
+                }
+                return iterator.next();
+            }
+        };
+    }
+
+    private Node<T> insert(Node<T> node, Node<T> newNode) {
+        if (node == null) {
+            return newNode;
+        }
+        if (comparator.compare(newNode.value, node.value) < 0) {
+            Node<T> left = insert(node.left, newNode);
+            return left.priority > node.priority
+                    ? left.with(left.left, node.with(left.right, node.right))
+                    : node.with(left, node.right);
+        }
+        Node<T> right = insert(node.right, newNode);
+        return right.priority > node.priority
+                ? right.with(node.with(node.left, right.left), right.right)
+                : node.with(node.left, right);
+    }
+
+    private Node<T> delete(Node<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = comparator.compare(value, node.value);
+        if (cmp < 0) {
+            Node<T> left = delete(node.left, value);
+            return left != node.left ? node.with(left, node.right) : node;
+        }
+        if (cmp > 0) {
+            Node<T> right = delete(node.right, value);
+            return right != node.right ? node.with(node.left, right) : node;
+        }
+        return merge(node.left, node.right);
+    }
+
+    private static <T> Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return left.with(left.left, merge(left.right, right));
+        }
+        return right.with(merge(left, right.left), right.right);
+    }
+
+    private static <T> T get(Node<T> root, int index) {
+        if (index < 0 || index >= sizeOf(root)) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + sizeOf(root));
+        }
+        Node<T> node = root;
+        while (true) {
+            int leftSize = sizeOf(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    private static <T> Iterator<T> iterator(Node<T> root) {
+        return new Iterator<T>() {
+            private final Deque<Node<T>> stack = new ArrayDeque<>();
+
+            {
+                pushLeft(root);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<T> node = stack.pop();
+                pushLeft(node.right);
+                return node.value;
+            }
+
+            private void pushLeft(Node<T> node) {
+                for (; node != null; node = node.left) {
+                    stack.push(node);
+                }
+            }
+        };
+    }
+
+    private static int sizeOf(Node<?> node) {
+        return node != null ? node.size : 0;
+    }
+
+    private static class Snapshot<T> extends AbstractList<T> {
+        private final Node<T> root;
+
+        private Snapshot(Node<T> root) {
+            this.root = root;
+        }
+
+        @Override
+        public T get(int index) {
+            return OrderStatisticTree.get(root, index);
+        }
+
+        @Override
+        public int size() {
+            return sizeOf(root);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return OrderStatisticTree.iterator(root);
+        }
+    }
+
+    private static class Node<T> {
+        private final T value;
+        private final int priority;
+        private final Node<T> left;
+        private final Node<T> right;
+        private final int size;
+
+        private Node(T value) {
+            this(value, ThreadLocalRandom.current().nextInt(), null, null);
+        }
+
+        private Node(T value, int priority, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = sizeOf(left) + sizeOf(right) + 1;
+        }
+
+        private Node<T> with(Node<T> left, Node<T> right) {
+            return new Node<>(value, priority, left, right);
+        }
+    }
+}
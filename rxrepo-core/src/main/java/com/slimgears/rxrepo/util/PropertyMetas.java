@@ -6,8 +6,10 @@ import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
 import com.slimgears.util.autovalue.annotations.HasMetaClass;
 import com.slimgears.util.autovalue.annotations.HasMetaClassWithKey;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
 import com.slimgears.util.autovalue.annotations.PropertyMeta;
 import com.slimgears.util.stream.Optionals;
+import com.slimgears.util.stream.Streams;
 
 import javax.annotation.Nullable;
 import java.util.*;
@@ -20,6 +22,7 @@ public class PropertyMetas {
     private final static Map<PropertyMeta<?, ?>, Boolean> embeddedPropertiesCache = new ConcurrentHashMap<>();
     private final static Map<PropertyMeta<?, ?>, Boolean> mandatoryPropertiesCache = new ConcurrentHashMap<>();
     private final static Map<PropertyMeta<?, ?>, Boolean> keyPropertiesCache = new ConcurrentHashMap<>();
+    private final static Map<MetaClassWithKey<?, ?>, Collection<MetaClassWithKey<?, ?>>> referencedMetaClassesCache = new ConcurrentHashMap<>();
 
     public static boolean isReference(PropertyMeta<?, ?> propertyMeta) {
         return referencePropertiesCache.computeIfAbsent(propertyMeta, pm -> isReference(pm.type()) && !pm.hasAnnotation(Embedded.class));
@@ -73,4 +76,25 @@ public class PropertyMetas {
     public static boolean isMandatory(PropertyMeta<?, ?> propertyMeta) {
         return mandatoryPropertiesCache.computeIfAbsent(propertyMeta, pm -> !pm.hasAnnotation(Nullable.class));
     }
+
+    /**
+     * Meta class itself, followed by all meta classes it references, directly or transitively
+     */
+    public static Collection<MetaClassWithKey<?, ?>> referencedMetaClasses(MetaClassWithKey<?, ?> metaClass) {
+        return referencedMetaClassesCache.computeIfAbsent(metaClass, mc -> {
+            Set<MetaClassWithKey<?, ?>> metaClasses = new LinkedHashSet<>();
+            collectReferencedMetaClasses(mc, metaClasses);
+            return Collections.unmodifiableSet(metaClasses);
+        });
+    }
+
+    private static void collectReferencedMetaClasses(MetaClassWithKey<?, ?> metaClass, Set<MetaClassWithKey<?, ?>> metaClasses) {
+        if (!metaClasses.add(metaClass)) {
+            return;
+        }
+        Streams.fromIterable(metaClass.properties())
+                .filter(PropertyMetas::isReference)
+                .map(p -> MetaClasses.forTokenWithKeyUnchecked(p.type()))
+                .forEach(mc -> collectReferencedMetaClasses(mc, metaClasses));
+    }
 }
@@ -45,9 +45,18 @@ public class PropertyResolvers {
     }
 
     private static boolean isRequiredProperty(PropertyMeta<?, ?> prop) {
-        return Optional.ofNullable(requiredProperties.current())
-                .map(set -> set.contains(prop) || PropertyMetas.isMandatory(prop))
-                .orElse(true);
+        return isRequiredProperty(requiredProperties.current(), prop);
+    }
+
+    static boolean isRequiredProperty(Set<PropertyMeta<?, ?>> properties, PropertyMeta<?, ?> prop) {
+        return properties == null || properties.contains(prop) || PropertyMetas.isMandatory(prop);
+    }
+
+    /**
+     * Properties of the current {@link #withProperties} scope, or null if all properties are required
+     */
+    static Set<PropertyMeta<?, ?>> currentProperties() {
+        return requiredProperties.current();
     }
 
     static PropertyResolver empty() {
@@ -147,7 +156,7 @@ public class PropertyResolvers {
     }
 
     @SuppressWarnings({"unchecked", "rawtypes"})
-    private static <V> V toValue(TypeToken<V> type, Object value) {
+    static <V> V toValue(TypeToken<V> type, Object value) {
         if (value == null) {
             return null;
         } else if (value instanceof Iterable && type.isSubtypeOf(Iterable.class)) {
@@ -2,26 +2,36 @@ package com.slimgears.rxrepo.util;
 
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.*;
+import com.slimgears.util.stream.Optionals;
 import io.reactivex.*;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.exceptions.MissingBackpressureException;
 import io.reactivex.internal.functions.Functions;
 import io.reactivex.subjects.CompletableSubject;
-import io.reactivex.subjects.MaybeSubject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @SuppressWarnings("WeakerAccess")
 public class Queries {
     private final static Logger log = LoggerFactory.getLogger(Queries.class);
+    public final static int defaultMaxBufferSize = 10_000;
 
     public static <T> Comparator<T> toComparator(HasSortingInfo<T> sortingInfo) {
         return sortingInfo.sorting()
@@ -32,13 +42,13 @@ public class Queries {
     }
 
     public static <T> Predicate<T> toPredicate(HasPredicate<T> predicate) {
-        return Expressions.compilePredicate(predicate.predicate());
+        return ExpressionCompiler.compilePredicate(predicate.predicate());
     }
 
     public static <T> ObservableTransformer<T, T> applyFilter(HasPredicate<T> hasPredicate) {
         io.reactivex.functions.Predicate<T> predicate = Optional
                 .ofNullable(hasPredicate.predicate())
-                .map(Expressions::compileRxPredicate)
+                .map(ExpressionCompiler::compileRxPredicate)
                 .orElse(t -> true);
 
         return source -> source.filter(predicate);
@@ -48,7 +58,7 @@ public class Queries {
         //noinspection unchecked
         io.reactivex.functions.Function<T, R> mapper = Optional
                 .ofNullable(hasMapping.mapping())
-                .map(Expressions::compileRx)
+                .map(ExpressionCompiler::compileRx)
                 .orElse(t -> (R)t);
         return source -> source.map(mapper);
     }
@@ -87,64 +97,76 @@ public class Queries {
     }
 
     public static <T> Observable<Notification<T>> queryAndObserve(Observable<Notification<T>> query, Observable<Notification<T>> liveQuery) {
-        AtomicReference<Long> lastSeqNum = new AtomicReference<>();
-        MaybeSubject<Long> queryFinished = MaybeSubject.create();
-        return Observable.just(
-                query.doOnNext(n -> Optional
-                        .ofNullable(n.sequenceNumber())
-                        .ifPresent(sn -> lastSeqNum.updateAndGet(_sn -> Optional
-                                .ofNullable(_sn)
-                                .map(__sn -> Math.max(__sn, sn))
-                                .orElse(sn))))
-                        .concatWith(Observable
-                                .just(Notification.<T>create())
-                                .doOnSubscribe(d -> {
-                                    Long seqNum = lastSeqNum.get();
-                                    if (seqNum != null) {
-                                        queryFinished.onSuccess(seqNum);
-                                    } else {
-                                        queryFinished.onComplete();
-                                    }
-                                })),
-                liveQuery.compose(bufferUntil(queryFinished)))
-                        .concatMapEager(Functions.identity());
+        return queryAndObserve(query, liveQuery, defaultMaxBufferSize);
+    }
+
+    public static <T> Observable<Notification<T>> queryAndObserve(Observable<Notification<T>> query, Observable<Notification<T>> liveQuery, int maxBufferSize) {
+        return queryAndObserve(query, liveQuery, null, maxBufferSize);
+    }
+
+    public static <T> Observable<Notification<T>> queryAndObserve(Observable<Notification<T>> query, Observable<Notification<T>> liveQuery, Function<T, ?> keyOf) {
+        return queryAndObserve(query, liveQuery, keyOf, defaultMaxBufferSize);
+    }
+
+    /**
+     * Emits query results, followed by empty notification and live notifications. Live notifications, received
+     * while query is in progress, are buffered, and those already reflected in query results (according to
+     * sequence number) are dropped. If the number of buffered notifications exceeds maxBufferSize,
+     * the resulting observable fails with {@link MissingBackpressureException}.
+     * <p>
+     * With key function, sequence numbers are compared per object, so changes may be committed out of sequence
+     * number order (e.g. when sequence numbers are reserved before the write). Without it, the greatest
+     * retrieved sequence number is used as the watermark, which assumes that changes are committed in order.
+     */
+    public static <T> Observable<Notification<T>> queryAndObserve(Observable<Notification<T>> query, Observable<Notification<T>> liveQuery, @Nullable Function<T, ?> keyOf, int maxBufferSize) {
+        return Observable.defer(() -> {
+            Watermark<T> watermark = new Watermark<>(keyOf);
+            CompletableSubject queryFinished = CompletableSubject.create();
+            return Observable.just(
+                    query.doOnNext(watermark::onRetrieved)
+                            .concatWith(Observable
+                                    .just(Notification.<T>create())
+                                    .doOnSubscribe(d -> queryFinished.onComplete())),
+                    liveQuery.compose(bufferUntil(queryFinished, watermark, maxBufferSize)))
+                    .concatMapEager(Functions.identity());
+        });
+    }
+
+    public static <T> Observable<Notification<T>> replayAndObserve(Observable<Notification<T>> changes, Observable<Notification<T>> liveQuery, Supplier<Observable<Notification<T>>> resync) {
+        return queryAndObserve(changes, liveQuery)
+                .onErrorResumeNext((Throwable e) -> {
+                    if (!(e instanceof ChangeLogUnavailableException)) {
+                        return Observable.error(e);
+                    }
+                    log.debug("Could not replay changes, falling back to full resync: {}", e.getMessage());
+                    return Observable.just(Notification.<T>ofReset()).concatWith(Observable.defer(resync::get));
+                });
     }
 
     private static <T, V extends Comparable<V>> Comparator<T> toComparator(SortingInfo<T, ?, V> sortingInfo) {
-        Comparator<T> comparator = Comparator.comparing(Expressions.compile(sortingInfo.property()));
+        Comparator<T> comparator = Comparator.comparing(ExpressionCompiler.compile(sortingInfo.property()));
         return sortingInfo.ascending()
                 ? comparator
                 : comparator.reversed();
     }
 
-    private static <T> ObservableTransformer<Notification<T>, Notification<T>> bufferUntil(Maybe<Long> releaseBufferTrigger) {
+    private static <T> ObservableTransformer<Notification<T>, Notification<T>> bufferUntil(Completable releaseBufferTrigger, Watermark<T> watermark, int maxBufferSize) {
         return src -> Observable.create(emitter -> {
-            List<Notification<T>> buffer = new ArrayList<>();
+            Deque<Notification<T>> buffer = new ArrayDeque<>();
             AtomicBoolean triggered = new AtomicBoolean();
-            Disposable triggerDisposable = releaseBufferTrigger.subscribe(seqNum -> {
+            Disposable triggerDisposable = releaseBufferTrigger.subscribe(() -> {
                 synchronized (buffer) {
                     triggered.set(true);
-                    buffer.stream()
-                            .filter(n -> Optional
-                                    .ofNullable(n.sequenceNumber())
-                                    .map(nn -> seqNum < nn)
-                                    .orElse(true))
-                            .forEach(emitter::onNext);
+                    watermark.release(buffer).forEach(emitter::onNext);
                     buffer.clear();
                 }
-            }, emitter::onError, () -> {
-                synchronized (buffer) {
-                    triggered.set(true);
-                    buffer.forEach(emitter::onNext);
-                    buffer.clear();
-                }
-            });
+            }, emitter::onError);
             Disposable sourceDisposable = src.subscribe(
                     next -> {
                         if (!triggered.get()) {
                             synchronized (buffer) {
                                 if (!triggered.get()) {
-                                    buffer.add(next);
+                                    addToBuffer(buffer, next, watermark, maxBufferSize, emitter);
                                 } else {
                                     emitter.onNext(next);
                                 }
@@ -161,4 +183,90 @@ public class Queries {
             });
         });
     }
+
+    private static <T> void addToBuffer(Deque<Notification<T>> buffer, Notification<T> notification, Watermark<T> watermark, int maxBufferSize, ObservableEmitter<Notification<T>> emitter) {
+        // Notifications, already reflected in retrieved query results, will be filtered out on release anyway
+        if (watermark.isCovered(notification)) {
+            return;
+        }
+        if (buffer.size() >= maxBufferSize) {
+            buffer.removeIf(watermark::isCovered);
+            if (buffer.size() >= maxBufferSize) {
+                log.warn("Live notifications buffer exceeded {} notifications while query is in progress", maxBufferSize);
+                buffer.clear();
+                emitter.tryOnError(new MissingBackpressureException("Too many live notifications buffered while query is in progress: " + maxBufferSize));
+                return;
+            }
+        }
+        buffer.add(notification);
+    }
+
+    /**
+     * Sequence numbers of retrieved query results. Notification is covered by the results, if its object was
+     * retrieved with the same or greater sequence number (or, without key function, if any object was).
+     * Notifications of objects, which were not retrieved, are released on query completion, except those preceding
+     * the last deletion of the object: query has observed the object deleted, so the net effect of those is none.
+     */
+    private static class Watermark<T> {
+        private final @Nullable Function<T, ?> keyOf;
+        private final Map<Object, Long> retrievedSequenceNumbers = new ConcurrentHashMap<>();
+        private final AtomicReference<Long> lastSequenceNumber = new AtomicReference<>();
+
+        private Watermark(@Nullable Function<T, ?> keyOf) {
+            this.keyOf = keyOf;
+        }
+
+        void onRetrieved(Notification<T> notification) {
+            Long sequenceNumber = notification.sequenceNumber();
+            if (sequenceNumber != null) {
+                lastSequenceNumber.updateAndGet(sn -> sn != null ? Math.max(sn, sequenceNumber) : sequenceNumber);
+            }
+            Object key = keyOf(notification);
+            if (key != null) {
+                retrievedSequenceNumbers.merge(key, Optional.ofNullable(sequenceNumber).orElse(Long.MIN_VALUE), Math::max);
+            }
+        }
+
+        boolean isCovered(Notification<T> notification) {
+            Long sequenceNumber = notification.sequenceNumber();
+            if (sequenceNumber == null) {
+                return false;
+            }
+            if (keyOf == null) {
+                Long watermark = lastSequenceNumber.get();
+                return watermark != null && sequenceNumber <= watermark;
+            }
+            Long retrieved = Optional.ofNullable(keyOf(notification)).map(retrievedSequenceNumbers::get).orElse(null);
+            return retrieved != null && sequenceNumber <= retrieved;
+        }
+
+        List<Notification<T>> release(Collection<Notification<T>> buffer) {
+            Map<Object, Long> lastDeletions = new HashMap<>();
+            if (keyOf != null) {
+                buffer.stream()
+                        .filter(n -> n.isDelete() && n.sequenceNumber() != null)
+                        .filter(n -> !retrievedSequenceNumbers.containsKey(keyOf(n)))
+                        .forEach(n -> lastDeletions.merge(keyOf(n), n.sequenceNumber(), Math::max));
+            }
+            return buffer.stream()
+                    .filter(n -> !isCovered(n))
+                    .filter(n -> n.sequenceNumber() == null ||
+                            Optional.ofNullable(keyOf(n))
+                                    .map(lastDeletions::get)
+                                    .map(sn -> n.sequenceNumber() > sn)
+                                    .orElse(true))
+                    .collect(Collectors.toList());
+        }
+
+        private @Nullable Object keyOf(Notification<T> notification) {
+            if (keyOf == null) {
+                return null;
+            }
+            return Optionals.or(
+                    () -> Optional.ofNullable(notification.newValue()),
+                    () -> Optional.ofNullable(notification.oldValue()))
+                    .map(keyOf)
+                    .orElse(null);
+        }
+    }
 }
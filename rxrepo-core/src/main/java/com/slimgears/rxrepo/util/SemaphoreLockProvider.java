@@ -1,25 +1,27 @@
 package com.slimgears.rxrepo.util;
 
-import java.util.concurrent.Semaphore;
-
 public class SemaphoreLockProvider implements LockProvider {
-    private final Semaphore semaphore = new Semaphore(1);
-
-    private SemaphoreLockProvider() {
+    private final AsyncSemaphore semaphore;
 
+    private SemaphoreLockProvider(boolean fair) {
+        this.semaphore = AsyncSemaphore.create(1, fair);
     }
 
     public static LockProvider create() {
-        return new SemaphoreLockProvider();
+        return create(false);
+    }
+
+    public static LockProvider create(boolean fair) {
+        return new SemaphoreLockProvider(fair);
     }
 
     @Override
     public AutoCloseable lock() {
-        try {
-            semaphore.acquire();
-            return semaphore::release;
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        return semaphore.acquire();
+    }
+
+    @Override
+    public AsyncLock asyncLock() {
+        return semaphore.asyncLock();
     }
 }
@@ -0,0 +1,134 @@
+package com.slimgears.rxrepo.util;
+
+import com.slimgears.util.autovalue.annotations.MetaClass;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Lock provider, which keeps a separate set of lock stripes per meta class.
+ * Operations on a whole meta class acquire all of its stripes, operations on a single key acquire
+ * only the stripe of the key hash. Locks of several meta classes are always acquired in the order of
+ * meta class names, which prevents lock ordering deadlocks.
+ * {@link #lock()} is exclusive with respect to all other locks. Global semaphore is fair, so once an exclusive
+ * lock is requested, new shared locks wait behind it, and the exclusive lock is not starved.
+ * Locks are not reentrant: a lock should not be requested while another one is held by the same operation.
+ */
+public class StripedLockProvider implements LockProvider {
+    private final static int maxPermits = Integer.MAX_VALUE;
+    private final static Comparator<MetaClass<?>> metaClassOrder = Comparator.comparing(metaClass -> metaClass.asClass().getName());
+    private final AsyncSemaphore globalSemaphore = AsyncSemaphore.create(maxPermits, true);
+    private final Map<MetaClass<?>, List<AsyncSemaphore>> stripes = new ConcurrentHashMap<>();
+    private final int stripeCount;
+    private final boolean fair;
+
+    private StripedLockProvider(int stripeCount, boolean fair) {
+        this.stripeCount = stripeCount;
+        this.fair = fair;
+    }
+
+    public static LockProvider create() {
+        return create(1);
+    }
+
+    public static LockProvider create(int stripeCount) {
+        return create(stripeCount, false);
+    }
+
+    public static LockProvider create(int stripeCount, boolean fair) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Stripe count should be positive: " + stripeCount);
+        }
+        return new StripedLockProvider(stripeCount, fair);
+    }
+
+    @Override
+    public AutoCloseable lock() {
+        return globalSemaphore.acquire(maxPermits);
+    }
+
+    @Override
+    public AutoCloseable lock(Collection<? extends MetaClass<?>> metaClasses) {
+        return lockAll(stripesOf(metaClasses));
+    }
+
+    @Override
+    public AutoCloseable lock(MetaClass<?> metaClass, Object key) {
+        return lockAll(stripeOf(metaClass, key));
+    }
+
+    @Override
+    public AsyncLock asyncLock() {
+        return globalSemaphore.asyncLock(maxPermits, "exclusive");
+    }
+
+    @Override
+    public AsyncLock asyncLock(Collection<? extends MetaClass<?>> metaClasses) {
+        return asyncLockAll(stripesOf(metaClasses));
+    }
+
+    @Override
+    public AsyncLock asyncLock(MetaClass<?> metaClass, Object key) {
+        return asyncLockAll(stripeOf(metaClass, key));
+    }
+
+    private List<AsyncSemaphore> stripesOf(Collection<? extends MetaClass<?>> metaClasses) {
+        return metaClasses
+                .stream()
+                .distinct()
+                .sorted(metaClassOrder)
+                .map(this::stripesOf)
+                .flatMap(Collection::stream)
+                .collect(Collectors.toList());
+    }
+
+    private List<AsyncSemaphore> stripeOf(MetaClass<?> metaClass, Object key) {
+        List<AsyncSemaphore> stripes = stripesOf(metaClass);
+        return Collections.singletonList(stripes.get(Math.floorMod(key.hashCode(), stripes.size())));
+    }
+
+    private List<AsyncSemaphore> stripesOf(MetaClass<?> metaClass) {
+        return stripes.computeIfAbsent(metaClass, mc -> IntStream
+                .range(0, stripeCount)
+                .mapToObj(i -> AsyncSemaphore.create(1, fair))
+                .collect(Collectors.toList()));
+    }
+
+    private AutoCloseable lockAll(List<AsyncSemaphore> semaphores) {
+        List<AutoCloseable> locks = new ArrayList<>(semaphores.size() + 1);
+        try {
+            locks.add(globalSemaphore.acquire());
+            for (AsyncSemaphore semaphore : semaphores) {
+                locks.add(semaphore.acquire());
+            }
+            return () -> unlockAll(locks);
+        } catch (RuntimeException e) {
+            unlockAll(locks);
+            throw e;
+        }
+    }
+
+    private AsyncLock asyncLockAll(List<AsyncSemaphore> semaphores) {
+        List<AsyncLock> locks = new ArrayList<>(semaphores.size() + 1);
+        locks.add(globalSemaphore.asyncLock("shared"));
+        semaphores.forEach(semaphore -> locks.add(semaphore.asyncLock()));
+        return AsyncLock.all(locks);
+    }
+
+    private static void unlockAll(List<AutoCloseable> locks) {
+        for (int i = locks.size() - 1; i >= 0; --i) {
+            try {
+                locks.get(i).close();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.slimgears.rxrepo.encoding.*;
+import com.slimgears.rxrepo.encoding.adapter.BinaryAdapter;
 import com.slimgears.rxrepo.encoding.adapter.JacksonAdapter;
 import com.slimgears.rxrepo.encoding.codecs.MetaDocumentCodec;
 import com.slimgears.rxrepo.encoding.codecs.StandardCodecModule;
@@ -12,6 +13,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 
 public class MetaReaderWriterTest {
     @Test
@@ -43,4 +45,41 @@ public class MetaReaderWriterTest {
             Assert.assertEquals(doc.toString(), doc2.toString());
         }
     }
+
+    @Test
+    public void testWriteToBinaryAndRead() {
+        MetaCodecProvider codecProvider = MetaCodecs.builder()
+                .add(new StandardCodecModule())
+                .add(new MetaDocumentCodec.Provider())
+                .build();
+        MetaCodec<MetaDocument> codec = codecProvider.resolve(MetaDocument.class);
+        MetaContext context = MetaContexts.create(codecProvider);
+        MetaDocument doc = MetaDocuments.create(context)
+                .set("id", 1)
+                .set("name", "Document 1")
+                .set("nestedDoc", MetaDocument.create()
+                        .set("nestedId", -2L)
+                        .set("nestedName", "Document 1.2"));
+        BinaryAdapter.FieldNames fieldNames = BinaryAdapter.FieldNames.of("id", "name");
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024);
+        codec.encode(context.ofWriter(BinaryAdapter.writer(buffer, fieldNames)), doc);
+        buffer.flip();
+
+        MetaDocument doc2 = codec.decode(context.ofReader(BinaryAdapter.reader(buffer.duplicate(), fieldNames)));
+        Assert.assertEquals(doc.toString(), doc2.toString());
+
+        MetaReader reader = BinaryAdapter.reader(buffer.duplicate(), fieldNames);
+        reader.readBeginObject();
+        while (!reader.isAt(MetaElementType.EndObject)) {
+            String name = reader.readName();
+            if (name.equals("id")) {
+                Assert.assertEquals(1, reader.readInt());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndObject();
+        Assert.assertTrue(reader.isFinished());
+    }
 }
@@ -0,0 +1,116 @@
+package com.slimgears.rxrepo.util;
+
+import io.reactivex.Flowable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.CompletableSubject;
+import io.reactivex.subscribers.TestSubscriber;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+public class AsyncSemaphoreTest {
+    @Test
+    public void testWaitersAreResumedOnRelease() {
+        AsyncSemaphore semaphore = AsyncSemaphore.create(2, true);
+        List<CompletableSubject> operations = new ArrayList<>();
+        List<TestObserver<Void>> observers = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            CompletableSubject operation = CompletableSubject.create();
+            operations.add(operation);
+            observers.add(operation.compose(LockProviders.forCompletable(semaphore.asyncLock())).test());
+        }
+
+        Assert.assertTrue(operations.get(0).hasObservers());
+        Assert.assertTrue(operations.get(1).hasObservers());
+        Assert.assertFalse(operations.get(2).hasObservers());
+        Assert.assertEquals(3, semaphore.queueLength());
+
+        operations.get(1).onComplete();
+        observers.get(1).assertComplete();
+        Assert.assertTrue(operations.get(2).hasObservers());
+        Assert.assertFalse(operations.get(3).hasObservers());
+
+        observers.get(3).dispose();
+        operations.get(0).onComplete();
+        Assert.assertFalse(operations.get(3).hasObservers());
+        Assert.assertTrue(operations.get(4).hasObservers());
+        Assert.assertEquals(0, semaphore.queueLength());
+
+        operations.get(2).onComplete();
+        operations.get(4).onComplete();
+        Assert.assertEquals(2, semaphore.availablePermits());
+    }
+
+    @Test
+    public void testQueueLimitIsAppliedPerOperation() {
+        AsyncSemaphore semaphore = AsyncSemaphore.create(1, false, 1);
+        CompletableSubject operation = CompletableSubject.create();
+        operation.compose(LockProviders.forCompletable(semaphore.asyncLock("update"))).test();
+
+        CompletableSubject.create().compose(LockProviders.forCompletable(semaphore.asyncLock("update"))).test().assertNotTerminated();
+        CompletableSubject.create().compose(LockProviders.forCompletable(semaphore.asyncLock("query"))).test().assertNotTerminated();
+        CompletableSubject.create().compose(LockProviders.forCompletable(semaphore.asyncLock("update"))).test().assertError(RejectedExecutionException.class);
+        Assert.assertEquals(2, semaphore.queueLength());
+    }
+
+    @Test
+    public void testDisposeWhileActiveReleasesPermit() {
+        AsyncSemaphore semaphore = AsyncSemaphore.create(1);
+        Disposable disposable = CompletableSubject.create()
+                .compose(LockProviders.forCompletable(semaphore.asyncLock()))
+                .subscribe();
+        Assert.assertEquals(0, semaphore.availablePermits());
+        disposable.dispose();
+        Assert.assertEquals(1, semaphore.availablePermits());
+
+        try (AutoCloseable ignored = semaphore.acquire()) {
+            Assert.assertEquals(0, semaphore.availablePermits());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        Assert.assertEquals(1, semaphore.availablePermits());
+    }
+
+    @Test
+    public void testFlowableHoldsPermitAndPassesRequests() {
+        AsyncSemaphore semaphore = AsyncSemaphore.create(1);
+        TestSubscriber<Integer> subscriber = Flowable.range(0, 10)
+                .compose(LockProviders.forFlowable(semaphore.asyncLock()))
+                .test(2);
+
+        subscriber.assertValues(0, 1).assertNotComplete();
+        Assert.assertEquals(0, semaphore.availablePermits());
+
+        subscriber.requestMore(8);
+        subscriber.assertValueCount(10).assertComplete();
+        Assert.assertEquals(1, semaphore.availablePermits());
+    }
+
+    @Test
+    public void testNonFairWaiterIsNotBlockedByLargerWaiterAhead() {
+        AsyncSemaphore semaphore = AsyncSemaphore.create(2);
+        CompletableSubject first = CompletableSubject.create();
+        CompletableSubject second = CompletableSubject.create();
+        first.compose(LockProviders.forCompletable(semaphore.asyncLock())).test();
+        second.compose(LockProviders.forCompletable(semaphore.asyncLock())).test();
+
+        CompletableSubject large = CompletableSubject.create();
+        CompletableSubject small = CompletableSubject.create();
+        large.compose(LockProviders.forCompletable(semaphore.asyncLock(2, "large"))).test();
+        small.compose(LockProviders.forCompletable(semaphore.asyncLock(1, "small"))).test();
+        Assert.assertEquals(2, semaphore.queueLength());
+
+        first.onComplete();
+        Assert.assertTrue(small.hasObservers());
+        Assert.assertFalse(large.hasObservers());
+
+        second.onComplete();
+        small.onComplete();
+        Assert.assertTrue(large.hasObservers());
+        Assert.assertEquals(0, semaphore.queueLength());
+    }
+}
@@ -0,0 +1,70 @@
+package com.slimgears.rxrepo.util;
+
+import com.slimgears.rxrepo.query.Notification;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ChangeLogTest {
+    @Test
+    public void testChangesSinceWithinCapacity() {
+        ChangeLog<String> changeLog = ChangeLog.create(10);
+        for (long i = 1; i <= 5; ++i) {
+            changeLog.append(Notification.ofCreated("Item " + i, i));
+        }
+
+        Assert.assertEquals(Arrays.asList(4L, 5L), sequenceNumbers(changeLog.changesSince(3).get()));
+        Assert.assertTrue(changeLog.changesSince(5).get().isEmpty());
+        Assert.assertEquals(5, changeLog.changesSince(0).get().size());
+    }
+
+    @Test
+    public void testEvictedChangesAreUnavailable() {
+        ChangeLog<String> changeLog = ChangeLog.create(3);
+        for (long i = 1; i <= 5; ++i) {
+            changeLog.append(Notification.ofCreated("Item " + i, i));
+        }
+
+        Assert.assertFalse(changeLog.changesSince(1).isPresent());
+        Assert.assertEquals(Arrays.asList(3L, 4L, 5L), sequenceNumbers(changeLog.changesSince(2).get()));
+    }
+
+    @Test
+    public void testLogFromFirstChange() {
+        ChangeLog<String> changeLog = ChangeLog.createFromFirstChange(10);
+        Assert.assertFalse(changeLog.changesSince(0).isPresent());
+
+        changeLog.append(Notification.ofCreated("Item 7", 7L));
+        changeLog.append(Notification.ofCreated("Item 8", 8L));
+
+        Assert.assertFalse(changeLog.changesSince(6).isPresent());
+        Assert.assertEquals(Arrays.asList(8L), sequenceNumbers(changeLog.changesSince(7).get()));
+
+        changeLog.truncate(8L);
+        Assert.assertFalse(changeLog.changesSince(7).isPresent());
+        Assert.assertTrue(changeLog.changesSince(8).get().isEmpty());
+    }
+
+    @Test
+    public void testLogIsRestartedOnChangeWithoutSequenceNumber() {
+        ChangeLog<String> changeLog = ChangeLog.create(10);
+        changeLog.append(Notification.ofCreated("Item 1", 1L));
+        changeLog.append(Notification.ofCreated("Item 2", null));
+        Assert.assertFalse(changeLog.changesSince(1).isPresent());
+
+        changeLog.append(Notification.ofCreated("Item 3", 3L));
+        changeLog.append(Notification.ofCreated("Item 4", 4L));
+        Assert.assertFalse(changeLog.changesSince(1).isPresent());
+        Assert.assertEquals(Arrays.asList(4L), sequenceNumbers(changeLog.changesSince(3).get()));
+
+        changeLog.append(Notification.ofReset());
+        Assert.assertFalse(changeLog.changesSince(4).isPresent());
+    }
+
+    private static List<Long> sequenceNumbers(List<Notification<String>> notifications) {
+        return notifications.stream().map(Notification::sequenceNumber).collect(Collectors.toList());
+    }
+}
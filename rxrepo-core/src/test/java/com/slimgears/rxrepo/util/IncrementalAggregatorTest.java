@@ -0,0 +1,82 @@
+package com.slimgears.rxrepo.util;
+
+import com.slimgears.rxrepo.expressions.Expression;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IncrementalAggregatorTest {
+    @Test
+    public void testCountSumAndAverage() {
+        IncrementalAggregator<Integer, Long> count = IncrementalAggregator.<Integer, Long>forType(Expression.Type.Count).get().get();
+        IncrementalAggregator<Integer, Integer> sum = IncrementalAggregator.<Integer, Integer>forType(Expression.Type.Sum).get().get();
+        IncrementalAggregator<Integer, Double> average = IncrementalAggregator.<Integer, Double>forType(Expression.Type.Average).get().get();
+
+        Assert.assertNull(sum.result());
+        Assert.assertEquals(Double.valueOf(0.0), average.result());
+
+        for (int i = 1; i <= 4; ++i) {
+            count.add(i);
+            sum.add(i);
+            average.add(i);
+        }
+        count.remove(4);
+        sum.remove(4);
+        average.remove(4);
+
+        Assert.assertEquals(Long.valueOf(3), count.result());
+        Assert.assertEquals(Integer.valueOf(6), sum.result());
+        Assert.assertEquals(Double.valueOf(2.0), average.result());
+    }
+
+    @Test
+    public void testSeededCountSumAndAverage() {
+        IncrementalAggregator<Integer, Long> count = IncrementalAggregator.Count.of(4);
+        IncrementalAggregator<Integer, Integer> sum = IncrementalAggregator.Sum.of(10, 4);
+        IncrementalAggregator<Integer, Double> average = IncrementalAggregator.Average.of(10, 4);
+
+        count.add(5);
+        sum.add(5);
+        average.add(5);
+        Assert.assertEquals(Long.valueOf(5), count.result());
+        Assert.assertEquals(Integer.valueOf(15), sum.result());
+        Assert.assertEquals(Double.valueOf(3.0), average.result());
+
+        for (int i = 1; i <= 5; ++i) {
+            sum.remove(i);
+            average.remove(i);
+        }
+        Assert.assertNull(sum.result());
+        Assert.assertEquals(Double.valueOf(0.0), average.result());
+        Assert.assertNull(IncrementalAggregator.Sum.<Integer>of(null, 0).result());
+    }
+
+    @Test
+    public void testMinMaxWithDuplicates() {
+        IncrementalAggregator<Integer, Integer> min = IncrementalAggregator.<Integer, Integer>forType(Expression.Type.Min).get().get();
+        IncrementalAggregator<Integer, Integer> max = IncrementalAggregator.<Integer, Integer>forType(Expression.Type.Max).get().get();
+
+        for (int value : new int[] {5, 1, 9, 1, 9}) {
+            min.add(value);
+            max.add(value);
+        }
+        min.remove(1);
+        max.remove(9);
+        Assert.assertEquals(Integer.valueOf(1), min.result());
+        Assert.assertEquals(Integer.valueOf(9), max.result());
+
+        min.remove(1);
+        max.remove(9);
+        Assert.assertEquals(Integer.valueOf(5), min.result());
+        Assert.assertEquals(Integer.valueOf(5), max.result());
+
+        min.remove(5);
+        min.remove(9);
+        min.remove(9);
+        Assert.assertNull(min.result());
+    }
+
+    @Test
+    public void testUnsupportedAggregation() {
+        Assert.assertFalse(IncrementalAggregator.forType(Expression.Type.Add).isPresent());
+    }
+}
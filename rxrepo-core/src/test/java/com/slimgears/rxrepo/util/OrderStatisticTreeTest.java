@@ -0,0 +1,70 @@
+package com.slimgears.rxrepo.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class OrderStatisticTreeTest {
+    @Test
+    public void testPositionalAccess() {
+        OrderStatisticTree<Integer> tree = OrderStatisticTree.create(Comparator.naturalOrder());
+        tree.add(30);
+        tree.add(10);
+        tree.add(20);
+        Assert.assertFalse(tree.add(20));
+
+        Assert.assertEquals(3, tree.size());
+        Assert.assertEquals(Integer.valueOf(20), tree.get(1));
+        Assert.assertEquals(2, tree.indexOf(30));
+        Assert.assertEquals(-1, tree.indexOf(25));
+        Assert.assertEquals(2, tree.rank(25));
+        Assert.assertEquals(Integer.valueOf(10), tree.first());
+        Assert.assertEquals(Integer.valueOf(30), tree.last());
+
+        Assert.assertTrue(tree.remove((Object)10));
+        Assert.assertEquals(Integer.valueOf(20), tree.first());
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByModifications() {
+        OrderStatisticTree<Integer> tree = OrderStatisticTree.create(Comparator.naturalOrder());
+        tree.add(10);
+        tree.add(20);
+        List<Integer> snapshot = tree.snapshot();
+
+        tree.add(15);
+        tree.remove((Object)10);
+
+        Assert.assertEquals(Arrays.asList(10, 20), snapshot);
+        Assert.assertEquals(Integer.valueOf(20), snapshot.get(1));
+        Assert.assertEquals(Arrays.asList(15, 20), tree.snapshot());
+    }
+
+    @Test
+    public void testRandomOperationsMatchTreeSet() {
+        Random random = new Random(1);
+        OrderStatisticTree<Integer> tree = OrderStatisticTree.create(Comparator.naturalOrder());
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 20000; ++i) {
+            int value = random.nextInt(500);
+            if (random.nextBoolean()) {
+                Assert.assertEquals(expected.add(value), tree.add(value));
+            } else {
+                Assert.assertEquals(expected.remove(value), tree.remove((Object)value));
+            }
+        }
+        Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(tree));
+        int index = 0;
+        for (Integer value : expected) {
+            Assert.assertEquals(value, tree.get(index));
+            Assert.assertEquals(index, tree.indexOf(value));
+            ++index;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.slimgears.rxrepo.util;
+
+import com.slimgears.rxrepo.query.Notification;
+import io.reactivex.exceptions.MissingBackpressureException;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.function.Function;
+
+public class QueriesTest {
+    private final static Function<String, String> keyOf = value -> value.split(":")[0];
+    private PublishSubject<Notification<String>> query;
+    private PublishSubject<Notification<String>> liveQuery;
+
+    @Before
+    public void setUp() {
+        query = PublishSubject.create();
+        liveQuery = PublishSubject.create();
+    }
+
+    @Test
+    public void testNotificationCommittedOutOfOrderIsReleased() {
+        TestObserver<Notification<String>> observer = Queries.queryAndObserve(query, liveQuery, keyOf).test();
+
+        liveQuery.onNext(Notification.ofCreated("a:1", 5L));
+        query.onNext(Notification.ofCreated("b:1", 6L));
+        query.onComplete();
+
+        observer.assertValues(
+                Notification.ofCreated("b:1", 6L),
+                Notification.create(),
+                Notification.ofCreated("a:1", 5L));
+    }
+
+    @Test
+    public void testNotificationOfRetrievedObjectIsCoveredBySequenceNumber() {
+        TestObserver<Notification<String>> observer = Queries.queryAndObserve(query, liveQuery, keyOf).test();
+
+        liveQuery.onNext(Notification.ofModified("b:0", "b:1", 4L));
+        query.onNext(Notification.ofCreated("b:2", 6L));
+        liveQuery.onNext(Notification.ofModified("b:1", "b:2", 6L));
+        liveQuery.onNext(Notification.ofModified("b:2", "b:3", 7L));
+        query.onComplete();
+
+        observer.assertValues(
+                Notification.ofCreated("b:2", 6L),
+                Notification.create(),
+                Notification.ofModified("b:2", "b:3", 7L));
+    }
+
+    @Test
+    public void testChangesBeforeDeletionOfNotRetrievedObjectAreDropped() {
+        TestObserver<Notification<String>> observer = Queries.queryAndObserve(query, liveQuery, keyOf).test();
+
+        liveQuery.onNext(Notification.ofCreated("a:1", 3L));
+        liveQuery.onNext(Notification.ofDeleted("a:1", 4L));
+        liveQuery.onNext(Notification.ofCreated("c:1", 8L));
+        query.onComplete();
+
+        observer.assertValues(
+                Notification.create(),
+                Notification.ofCreated("c:1", 8L));
+    }
+
+    @Test
+    public void testWithoutKeyGreatestSequenceNumberIsWatermark() {
+        TestObserver<Notification<String>> observer = Queries.queryAndObserve(query, liveQuery).test();
+
+        liveQuery.onNext(Notification.ofCreated("a:1", 5L));
+        query.onNext(Notification.ofCreated("b:1", 6L));
+        liveQuery.onNext(Notification.ofCreated("c:1", 7L));
+        query.onComplete();
+
+        observer.assertValues(
+                Notification.ofCreated("b:1", 6L),
+                Notification.create(),
+                Notification.ofCreated("c:1", 7L));
+    }
+
+    @Test
+    public void testBufferOverflowFails() {
+        TestObserver<Notification<String>> observer = Queries.queryAndObserve(query, liveQuery, keyOf, 2).test();
+
+        liveQuery.onNext(Notification.ofCreated("a:1", 1L));
+        liveQuery.onNext(Notification.ofCreated("b:1", 2L));
+        liveQuery.onNext(Notification.ofCreated("c:1", 3L));
+
+        observer.assertError(MissingBackpressureException.class);
+    }
+
+    @Test
+    public void testCoveredNotificationsAreRemovedFromFullBuffer() {
+        TestObserver<Notification<String>> observer = Queries.queryAndObserve(query, liveQuery, keyOf, 2).test();
+
+        liveQuery.onNext(Notification.ofCreated("a:1", 1L));
+        liveQuery.onNext(Notification.ofModified("a:1", "a:2", 2L));
+        query.onNext(Notification.ofCreated("a:2", 2L));
+        liveQuery.onNext(Notification.ofCreated("c:1", 3L));
+        query.onComplete();
+
+        observer
+                .assertNoErrors()
+                .assertValues(
+                        Notification.ofCreated("a:2", 2L),
+                        Notification.create(),
+                        Notification.ofCreated("c:1", 3L));
+    }
+}
@@ -0,0 +1,179 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.encoding.MetaCodecs;
+import com.slimgears.rxrepo.encoding.MetaContext;
+import com.slimgears.rxrepo.encoding.MetaContexts;
+import com.slimgears.rxrepo.encoding.adapter.JacksonAdapter;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.HasMetaClass;
+import com.slimgears.util.autovalue.annotations.HasMetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Lazy;
+import com.slimgears.util.stream.Streams;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+class JdbcColumns {
+    final static String asStringSuffix = "AsString";
+    private final static JsonFactory jsonFactory = new JsonFactory();
+    private final static Lazy<MetaContext> metaContext = Lazy.of(() -> MetaContexts.create(MetaCodecs.discover()));
+    private final static Map<MetaClass<?>, List<Column>> columnsCache = new ConcurrentHashMap<>();
+    private final static ImmutableMap<Class<?>, String> sqlTypes = ImmutableMap.<Class<?>, String>builder()
+            .put(Integer.class, "INT")
+            .put(Long.class, "BIGINT")
+            .put(Short.class, "SMALLINT")
+            .put(Byte.class, "TINYINT")
+            .put(Double.class, "DOUBLE")
+            .put(Float.class, "REAL")
+            .put(Boolean.class, "BOOLEAN")
+            .put(String.class, "VARCHAR")
+            .put(BigDecimal.class, "DECIMAL")
+            .put(Date.class, "TIMESTAMP")
+            .put(byte[].class, "VARBINARY")
+            .build();
+
+    static class Column {
+        private final String name;
+        private final String sqlType;
+
+        private Column(String name, String sqlType) {
+            this.name = name;
+            this.sqlType = sqlType;
+        }
+
+        String name() {
+            return name;
+        }
+
+        String sqlType() {
+            return sqlType;
+        }
+    }
+
+    static String quote(String identifier) {
+        return "\"" + identifier + "\"";
+    }
+
+    static String tableName(TypeToken<?> type) {
+        return quote(type.getRawType().getSimpleName());
+    }
+
+    static List<Column> columnsOf(MetaClass<?> metaClass) {
+        return columnsCache.computeIfAbsent(metaClass, mc -> Streams
+                .fromIterable(mc.properties())
+                .flatMap(p -> columnsOf(p.name(), p))
+                .collect(ImmutableList.toImmutableList()));
+    }
+
+    static Stream<Column> columnsOf(String path, PropertyMeta<?, ?> property) {
+        if (PropertyMetas.isReference(property)) {
+            PropertyMeta<?, ?> keyProperty = MetaClasses.forTokenWithKeyUnchecked(property.type()).keyProperty();
+            return columnsOf(path + "." + keyProperty.name(), keyProperty);
+        }
+        return columnsOf(path, property.type());
+    }
+
+    static String keyColumnOf(MetaClassWithKey<?, ?> metaClass) {
+        return PropertyMetas.hasMetaClass(metaClass.keyProperty())
+                ? metaClass.keyProperty().name() + asStringSuffix
+                : metaClass.keyProperty().name();
+    }
+
+    static <S> Map<String, Object> valuesOf(MetaClass<S> metaClass, S entity) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        metaClass.properties().forEach(p -> putValues(p.name(), p, p.getValue(entity), values));
+        return values;
+    }
+
+    static Object toColumnValue(Object value) {
+        if (value instanceof HasMetaClassWithKey) {
+            return toColumnValue(keyOf(value));
+        }
+        if (value instanceof HasMetaClass) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    static boolean isScalar(TypeToken<?> type) {
+        return type.getRawType().isEnum() || sqlTypes.containsKey(type.wrap().getRawType());
+    }
+
+    static String toJson(TypeToken<?> type, Object value) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            encode(metaContext.get(), type, generator, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    static Object fromJson(TypeToken<?> type, String json) {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return metaContext.get().read(JacksonAdapter.reader(parser), type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void encode(MetaContext context, TypeToken<T> type, JsonGenerator generator, Object value) {
+        context.codecProvider().resolve(type).encode(context.ofWriter(JacksonAdapter.writer(generator)), (T)value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, S> K keyOf(Object entity) {
+        return ((HasMetaClassWithKey<K, S>)entity).metaClass().keyOf((S)entity);
+    }
+
+    private static Stream<Column> columnsOf(String path, TypeToken<?> type) {
+        if (PropertyMetas.hasMetaClass(type)) {
+            MetaClass<?> metaClass = MetaClasses.forTokenUnchecked(type);
+            return Stream.concat(
+                    Stream.of(new Column(path + asStringSuffix, sqlTypes.get(String.class))),
+                    Streams.fromIterable(metaClass.properties()).flatMap(p -> columnsOf(path + "." + p.name(), p)));
+        }
+        return Stream.of(new Column(path, sqlTypeOf(type)));
+    }
+
+    private static String sqlTypeOf(TypeToken<?> type) {
+        return Optional.ofNullable(sqlTypes.get(type.wrap().getRawType()))
+                .orElse(sqlTypes.get(String.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void putValues(String path, PropertyMeta<?, ?> property, Object value, Map<String, Object> values) {
+        if (PropertyMetas.isReference(property)) {
+            PropertyMeta<Object, ?> keyProperty = (PropertyMeta<Object, ?>)MetaClasses.forTokenWithKeyUnchecked(property.type()).keyProperty();
+            putValues(path + "." + keyProperty.name(), keyProperty, value != null ? keyProperty.getValue(value) : null, values);
+        } else if (PropertyMetas.hasMetaClass(property.type())) {
+            MetaClass<Object> metaClass = (MetaClass<Object>)MetaClasses.forTokenUnchecked(property.type());
+            values.put(path + asStringSuffix, value != null ? value.toString() : null);
+            metaClass.properties().forEach(p -> putValues(path + "." + p.name(), p, value != null ? p.getValue(value) : null, values));
+        } else if (value == null || isScalar(property.type())) {
+            values.put(path, value);
+        } else {
+            values.put(path, toJson(property.type(), value));
+        }
+    }
+}
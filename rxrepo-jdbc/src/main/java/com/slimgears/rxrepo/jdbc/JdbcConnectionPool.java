@@ -0,0 +1,298 @@
+package com.slimgears.rxrepo.jdbc;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class JdbcConnectionPool implements DataSource, AutoCloseable {
+    private final static Logger log = LoggerFactory.getLogger(JdbcConnectionPool.class);
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Duration acquireTimeout;
+    private final int statementCacheSize;
+    private final Semaphore permits;
+    private final BlockingQueue<PooledConnection> idleConnections = new LinkedBlockingQueue<>();
+    private volatile boolean closed;
+    private PrintWriter logWriter;
+    private int loginTimeout;
+
+    private JdbcConnectionPool(String url, String user, String password, int maxConnections, Duration acquireTimeout, int statementCacheSize) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.acquireTimeout = acquireTimeout;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    public static JdbcConnectionPool create(String url, String user, String password, int maxConnections) {
+        return create(url, user, password, maxConnections, Duration.ofSeconds(30));
+    }
+
+    public static JdbcConnectionPool create(String url, String user, String password, int maxConnections, Duration acquireTimeout) {
+        return create(url, user, password, maxConnections, acquireTimeout, 64);
+    }
+
+    public static JdbcConnectionPool create(String url, String user, String password, int maxConnections, Duration acquireTimeout, int statementCacheSize) {
+        return new JdbcConnectionPool(url, user, password, maxConnections, acquireTimeout, statementCacheSize);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out waiting for connection: " + url);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        }
+
+        try {
+            return wrap(acquire());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Connection pool does not support per-connection credentials");
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    private PooledConnection acquire() throws SQLException {
+        PooledConnection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            if (!connection.connection.isClosed()) {
+                return connection;
+            }
+            connection.close();
+        }
+        log.debug("Opening new connection to {}", url);
+        return new PooledConnection(DriverManager.getConnection(url, user, password));
+    }
+
+    private void release(PooledConnection pooledConnection) {
+        Connection connection = pooledConnection.connection;
+        try {
+            if (connection.isClosed()) {
+                pooledConnection.close();
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (closed || !idleConnections.offer(pooledConnection)) {
+                pooledConnection.close();
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to return connection to pool", e);
+            pooledConnection.close();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Connection wrap(PooledConnection pooledConnection) {
+        AtomicBoolean released = new AtomicBoolean();
+        Connection connection = pooledConnection.connection;
+        return (Connection)Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!released.getAndSet(true)) {
+                                release(pooledConnection);
+                            }
+                            return null;
+                        case "isClosed":
+                            return released.get() || connection.isClosed();
+                        default:
+                            if (released.get()) {
+                                throw new SQLException("Connection is closed");
+                            }
+                            if (statementCacheSize > 0 && "prepareStatement".equals(method.getName()) && args.length == 1) {
+                                return pooledConnection.prepareStatement((String)args[0]);
+                            }
+                            return invoke(connection, method, args);
+                    }
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("Failed to close {}", closeable, e);
+        }
+    }
+
+    private class PooledConnection {
+        private final Connection connection;
+        private final Map<String, CachedStatement> statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        private PreparedStatement prepareStatement(String sql) throws SQLException {
+            CachedStatement cachedStatement = statements.get(sql);
+            if (cachedStatement != null && cachedStatement.inUse) {
+                return connection.prepareStatement(sql);
+            }
+            if (cachedStatement == null) {
+                cachedStatement = new CachedStatement(connection.prepareStatement(sql));
+                statements.put(sql, cachedStatement);
+            }
+            return cachedStatement.acquire();
+        }
+
+        private void close() {
+            statements.values().forEach(CachedStatement::evict);
+            statements.clear();
+            closeQuietly(connection);
+        }
+    }
+
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        private PreparedStatement acquire() {
+            inUse = true;
+            AtomicBoolean released = new AtomicBoolean();
+            return (PreparedStatement)Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                if (!released.getAndSet(true)) {
+                                    release();
+                                }
+                                return null;
+                            case "isClosed":
+                                return released.get() || statement.isClosed();
+                            default:
+                                if (released.get()) {
+                                    throw new SQLException("Statement is closed");
+                                }
+                                return invoke(statement, method, args);
+                        }
+                    });
+        }
+
+        private void release() throws SQLException {
+            inUse = false;
+            if (evicted) {
+                statement.close();
+                return;
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                closeQuietly(statement);
+            }
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        this.loginTimeout = seconds;
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return loginTimeout;
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return Optional.of(this)
+                .filter(iface::isInstance)
+                .map(iface::cast)
+                .orElseThrow(() -> new SQLException("Not a wrapper for " + iface.getName()));
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -2,15 +2,19 @@ package com.slimgears.rxrepo.jdbc;
 
 import com.slimgears.rxrepo.sql.SqlStatement;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Spliterators;
@@ -22,7 +26,8 @@ import java.util.stream.StreamSupport;
 public class JdbcHelper {
     private final static Map<Class, ParamSetter<?>> paramSettersByClass = new HashMap<>();
     private final static Map<Integer, ColumnGetter<?>> columnGettersByType = new HashMap<>();
-    private final static ParamSetter<?> defaultSetter = JdbcHelper::setSerializedParam;
+    private final static ParamSetter<?> defaultSetter = JdbcHelper::setObjectParam;
+    private final static ColumnGetter<?> defaultGetter = ResultSet::getObject;
 
     interface ParamSetter<T> {
         void setParam(PreparedStatement preparedStatement, int index, T val) throws SQLException;
@@ -39,22 +44,36 @@ public class JdbcHelper {
         registerType(Types.REAL, PreparedStatement::setFloat, ResultSet::getFloat);
         registerType(Types.SMALLINT, PreparedStatement::setShort, ResultSet::getShort, Short.class, short.class);
         registerType(Types.TINYINT, PreparedStatement::setByte, ResultSet::getByte, Byte.class, byte.class);
+        registerType(Types.BOOLEAN, PreparedStatement::setBoolean, ResultSet::getBoolean, Boolean.class, boolean.class);
+        registerType(Types.DECIMAL, PreparedStatement::setBigDecimal, ResultSet::getBigDecimal, BigDecimal.class);
         registerType(Types.NVARCHAR, PreparedStatement::setString, ResultSet::getString, String.class);
         registerType(Types.VARCHAR, PreparedStatement::setString, ResultSet::getString);
         registerType(Types.NCHAR, PreparedStatement::setString, ResultSet::getString);
         registerType(Types.CHAR, PreparedStatement::setString, ResultSet::getString);
+        registerType(Types.CLOB, PreparedStatement::setString, ResultSet::getString);
         registerType(Types.BLOB, PreparedStatement::setBytes, ResultSet::getBytes, byte[].class);
+        registerType(Types.VARBINARY, PreparedStatement::setBytes, ResultSet::getBytes);
         registerType(Types.DATE, PreparedStatement::setDate, ResultSet::getDate, Date.class);
+        registerType(Types.TIMESTAMP, PreparedStatement::setTimestamp, ResultSet::getTimestamp, Timestamp.class);
+        registerType(Types.TIMESTAMP, JdbcHelper::setDateParam, ResultSet::getTimestamp, java.util.Date.class);
     }
 
     @SafeVarargs
-    private static <T> void registerType(int type, ParamSetter<T> setter, ColumnGetter<T> getter, Class<T>... classes) {
+    private static <T> void registerType(int type, ParamSetter<? super T> setter, ColumnGetter<? extends T> getter, Class<? extends T>... classes) {
         columnGettersByType.put(type, getter);
         Arrays.asList(classes).forEach(cls -> paramSettersByClass.put(cls, setter));
     }
 
-    private static void setSerializedParam(PreparedStatement preparedStatement, int index, Object val) {
-        throw new RuntimeException("Type is not supported: " + val.getClass());
+    private static void setObjectParam(PreparedStatement preparedStatement, int index, Object val) throws SQLException {
+        if (val instanceof Enum) {
+            preparedStatement.setString(index, ((Enum<?>)val).name());
+        } else {
+            preparedStatement.setObject(index, val);
+        }
+    }
+
+    private static void setDateParam(PreparedStatement preparedStatement, int index, java.util.Date val) throws SQLException {
+        preparedStatement.setTimestamp(index, new Timestamp(val.getTime()));
     }
 
     public static PreparedStatement prepareStatement(Connection connection, SqlStatement statement) {
@@ -72,9 +91,13 @@ public class JdbcHelper {
     }
 
     @SuppressWarnings("unchecked")
-    private static void setParams(PreparedStatement preparedStatement, Object[] params) throws SQLException {
+    static void setParams(PreparedStatement preparedStatement, Object[] params) throws SQLException {
         for (int i = 0; i < params.length; ++i) {
-            Object param = Optional.ofNullable(params[i]).orElse("NULL");
+            Object param = JdbcColumns.toColumnValue(params[i]);
+            if (param == null) {
+                preparedStatement.setNull(i + 1, Types.NULL);
+                continue;
+            }
             Class paramClass = param.getClass();
             ParamSetter<Object> setter = Optional
                     .ofNullable(paramSettersByClass.get(paramClass))
@@ -110,15 +133,25 @@ public class JdbcHelper {
                     return false;
                 }
             } catch (SQLException e) {
-                return false;
+                throw new RuntimeException(e);
             }
         }
     }
 
     @SuppressWarnings("unchecked")
     public static <T> T getColumnValue(ResultSet resultSet, int columnType, int columnIndex) throws SQLException {
-        return (T)Optional.ofNullable(columnGettersByType.get(columnType))
-                .orElseThrow(() -> new RuntimeException("Not supported type: " + columnType))
+        T value = (T)Optional.ofNullable(columnGettersByType.get(columnType))
+                .orElse(defaultGetter)
                 .getValue(resultSet, columnIndex);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    public static Map<String, Object> readRow(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 1; i <= metaData.getColumnCount(); ++i) {
+            row.put(metaData.getColumnLabel(i), getColumnValue(resultSet, metaData.getColumnType(i), i));
+        }
+        return row;
     }
 }
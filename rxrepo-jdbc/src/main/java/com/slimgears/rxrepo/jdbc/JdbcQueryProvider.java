@@ -0,0 +1,257 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.rxrepo.sql.ReferenceResolver;
+import com.slimgears.rxrepo.sql.SchemaProvider;
+import com.slimgears.rxrepo.sql.SqlQueryProvider;
+import com.slimgears.rxrepo.sql.SqlServiceFactory;
+import com.slimgears.rxrepo.sql.SqlStatementExecutor;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.rxrepo.util.SchedulingProvider;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+public class JdbcQueryProvider extends SqlQueryProvider {
+    private final static Logger log = LoggerFactory.getLogger(JdbcQueryProvider.class);
+    private final JdbcSqlStatementProvider jdbcStatementProvider;
+    private final SqlStatementExecutor statementExecutor;
+    private final ReferenceResolver referenceResolver;
+    private final SchedulingProvider schedulingProvider;
+    private final AtomicLong sequenceNumber;
+    private final AutoCloseable onClose;
+    private final Map<MetaClass<?>, Subject<Notification<?>>> notificationSubjects = new ConcurrentHashMap<>();
+
+    private JdbcQueryProvider(JdbcSqlStatementProvider statementProvider,
+                              SqlStatementExecutor statementExecutor,
+                              SchemaProvider schemaProvider,
+                              ReferenceResolver referenceResolver,
+                              SchedulingProvider schedulingProvider,
+                              AtomicLong sequenceNumber,
+                              int insertBatchSize,
+                              AutoCloseable onClose) {
+        super(statementProvider, statementExecutor, schemaProvider, referenceResolver, schedulingProvider, insertBatchSize);
+        this.jdbcStatementProvider = statementProvider;
+        this.statementExecutor = statementExecutor;
+        this.referenceResolver = referenceResolver;
+        this.schedulingProvider = schedulingProvider;
+        this.sequenceNumber = sequenceNumber;
+        this.onClose = onClose;
+    }
+
+    static JdbcQueryProvider create(SqlServiceFactory serviceFactory, AtomicLong sequenceNumber, int insertBatchSize, AutoCloseable onClose) {
+        return new JdbcQueryProvider(
+                (JdbcSqlStatementProvider)serviceFactory.statementProvider(),
+                serviceFactory.statementExecutor(),
+                serviceFactory.schemaProvider(),
+                serviceFactory.referenceResolver(),
+                serviceFactory.schedulingProvider(),
+                sequenceNumber,
+                insertBatchSize,
+                onClose);
+    }
+
+    @Override
+    public <K, S> Single<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
+        return insertOrUpdate(metaClass, metaClass.keyOf(entity), recursive, current -> Maybe.just(entity))
+                .toSingle();
+    }
+
+    /**
+     * Entity is written only if it was not modified since it was read (compared by sequence number), and inserted
+     * only if it still does not exist. Otherwise {@link ConcurrentModificationException} is raised, so the caller
+     * retries the update with the current value
+     */
+    @Override
+    public <K, S> Maybe<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, K key, boolean recursive, Function<Maybe<S>, Maybe<S>> entityUpdater) {
+        return schemaProvider.createOrUpdate(metaClass)
+                .andThen(statementExecutor
+                        .executeQuery(referenceResolver.toReferenceValue(metaClass, key))
+                        .firstElement()
+                        .map(Optional::of)
+                        .toSingle(Optional.empty())
+                        .flatMapMaybe(current -> {
+                            S oldValue = current.map(pr -> pr.toObject(metaClass)).orElse(null);
+                            Long oldSeqNum = current.map(pr -> (Long)pr.getProperty(sequenceNumField, Long.class)).orElse(null);
+                            return entityUpdater
+                                    .apply(Optional.ofNullable(oldValue).map(Maybe::just).orElseGet(Maybe::empty))
+                                    .flatMap(newValue -> Objects.equals(oldValue, newValue)
+                                            ? Maybe.<Supplier<S>>just(() -> newValue)
+                                            : compareAndWrite(metaClass, oldValue, oldSeqNum, newValue).toMaybe());
+                        }));
+    }
+
+    @Override
+    public <K, S> Single<Integer> update(UpdateInfo<K, S> update) {
+        MetaClassWithKey<K, S> metaClass = update.metaClass();
+        QueryInfo<K, S, S> query = QueryInfo.<K, S, S>builder()
+                .metaClass(metaClass)
+                .predicate(update.predicate())
+                .limit(update.limit())
+                .build();
+
+        return affectedEntities(query)
+                .flatMap(oldValues -> super.update(update)
+                        .flatMap(count -> Observable.fromIterable(oldValues)
+                                .concatMapMaybe(oldValue -> find(metaClass, metaClass.keyOf(oldValue))
+                                        .filter(newValue -> !newValue.equals(oldValue))
+                                        .flatMap(newValue -> write(metaClass, oldValue, newValue).toMaybe()))
+                                .ignoreElements()
+                                .toSingleDefault(count)));
+    }
+
+    @Override
+    public <K, S> Single<Integer> delete(DeleteInfo<K, S> deleteInfo) {
+        MetaClassWithKey<K, S> metaClass = deleteInfo.metaClass();
+        QueryInfo<K, S, S> query = QueryInfo.<K, S, S>builder()
+                .metaClass(metaClass)
+                .predicate(deleteInfo.predicate())
+                .limit(deleteInfo.limit())
+                .build();
+
+        return affectedEntities(query)
+                .flatMap(oldValues -> super.delete(deleteInfo)
+                        .doOnSuccess(count -> oldValues.forEach(oldValue -> publish(metaClass, Notification.ofDeleted(oldValue, sequenceNumber.incrementAndGet())))));
+    }
+
+    /**
+     * Notifications are published in-process by the writes of this provider only: changes, made to the
+     * database from another process or connection, are not observed (see {@link JdbcRepository})
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K, S, T> Observable<Notification<T>> liveQuery(QueryInfo<K, S, T> query) {
+        return notificationsOf(query.metaClass())
+                .compose(src -> Optional.ofNullable(query.mapping())
+                        .map(ExpressionCompiler::compile)
+                        .map(mapper -> src.map(notification -> notification.map(mapper)))
+                        .orElse((Observable<Notification<T>>)(Observable<?>)src))
+                .observeOn(schedulingProvider.scheduler());
+    }
+
+    @Override
+    public <K, S> Completable drop(MetaClassWithKey<K, S> metaClass) {
+        return super.drop(metaClass).doOnComplete(schemaProvider::clear);
+    }
+
+    @Override
+    public void close() {
+        try {
+            onClose.close();
+        } catch (Exception e) {
+            log.warn("Failed to close data source", e);
+        }
+    }
+
+    private <K, S> Single<List<S>> affectedEntities(QueryInfo<K, S, S> query) {
+        return schemaProvider.createOrUpdate(query.metaClass())
+                .andThen(statementExecutor.executeQuery(statementProvider.forQuery(query))
+                        .map(pr -> pr.toObject(query.metaClass()))
+                        .toList());
+    }
+
+    private <K, S> Maybe<S> find(MetaClassWithKey<K, S> metaClass, K key) {
+        return statementExecutor
+                .executeQuery(referenceResolver.toReferenceValue(metaClass, key))
+                .firstElement()
+                .map(pr -> pr.toObject(metaClass));
+    }
+
+    private <K, S> Single<Supplier<S>> write(MetaClassWithKey<K, S> metaClass, S oldValue, S newValue) {
+        return Single.defer(() -> {
+            long seqNum = sequenceNumber.incrementAndGet();
+            PropertyResolver propertyResolver = withSequenceNumber(PropertyResolver.fromObject(metaClass, newValue), seqNum);
+            return statementExecutor
+                    .executeCommand(oldValue != null
+                            ? statementProvider.forUpdate(metaClass, propertyResolver, referenceResolver)
+                            : statementProvider.forInsert(metaClass, propertyResolver, referenceResolver))
+                    .doOnComplete(() -> publish(metaClass, Notification.ofModified(oldValue, newValue, seqNum)))
+                    .toSingleDefault(() -> newValue);
+        });
+    }
+
+    private <K, S> Single<Supplier<S>> compareAndWrite(MetaClassWithKey<K, S> metaClass, S oldValue, Long oldSeqNum, S newValue) {
+        if (oldValue == null) {
+            return write(metaClass, null, newValue);
+        }
+        return Single.defer(() -> {
+            long seqNum = sequenceNumber.incrementAndGet();
+            PropertyResolver propertyResolver = withSequenceNumber(PropertyResolver.fromObject(metaClass, newValue), seqNum);
+            return statementExecutor
+                    .executeCommandReturnCount(jdbcStatementProvider.forUpdate(metaClass, propertyResolver, referenceResolver, oldSeqNum))
+                    .flatMap(count -> count > 0
+                            ? Single.just(count)
+                            : Single.<Integer>error(new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected")))
+                    .doOnSuccess(count -> publish(metaClass, Notification.ofModified(oldValue, newValue, seqNum)))
+                    .<Supplier<S>>map(count -> () -> newValue);
+        });
+    }
+
+    @Override
+    protected <K, S> Completable insertBatch(MetaClassWithKey<K, S> metaClass, List<S> entities) {
+        return Completable.defer(() -> {
+            long seqNum = sequenceNumber.incrementAndGet();
+            List<PropertyResolver> propertyResolvers = entities.stream()
+                    .map(entity -> withSequenceNumber(PropertyResolver.fromObject(metaClass, entity), seqNum))
+                    .collect(Collectors.toList());
+            return statementExecutor
+                    .executeBatch(statementProvider.forInsertBatch(metaClass, propertyResolvers, referenceResolver))
+                    .doOnSuccess(count -> entities.forEach(entity -> publish(metaClass, Notification.ofCreated(entity, seqNum))))
+                    .ignoreElement();
+        });
+    }
+
+    private <S> void publish(MetaClass<S> metaClass, Notification<S> notification) {
+        log.trace("Publishing notification: {}", notification);
+        notificationSubjects
+                .computeIfAbsent(metaClass, mc -> PublishSubject.<Notification<?>>create().toSerialized())
+                .onNext(notification);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <S> Observable<Notification<S>> notificationsOf(MetaClass<S> metaClass) {
+        return (Observable<Notification<S>>)(Observable<?>)notificationSubjects
+                .computeIfAbsent(metaClass, mc -> PublishSubject.<Notification<?>>create().toSerialized());
+    }
+
+    private static PropertyResolver withSequenceNumber(PropertyResolver propertyResolver, long seqNum) {
+        return new PropertyResolver() {
+            @Override
+            public Iterable<String> propertyNames() {
+                return propertyResolver.propertyNames();
+            }
+
+            @Override
+            public Object getProperty(String name, Class<?> type) {
+                return sequenceNumField.equals(name) ? seqNum : propertyResolver.getProperty(name, type);
+            }
+
+            @Override
+            public <T> T toObject(MetaClass<T> metaClass) {
+                return propertyResolver.toObject(metaClass);
+            }
+        };
+    }
+}
@@ -0,0 +1,99 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+/**
+ * Query statement which knows reference columns of its result rows, so that referenced entities
+ * can be loaded in batches, rather than one by one for each row
+ */
+class JdbcQueryStatement implements SqlStatement {
+    private final SqlStatement statement;
+    private final ImmutableList<ReferenceColumn<?, ?>> references;
+
+    static class ReferenceColumn<K, S> {
+        private final String column;
+        private final MetaClassWithKey<K, S> metaClass;
+
+        private ReferenceColumn(String column, MetaClassWithKey<K, S> metaClass) {
+            this.column = column;
+            this.metaClass = metaClass;
+        }
+
+        String column() {
+            return column;
+        }
+
+        MetaClassWithKey<K, S> metaClass() {
+            return metaClass;
+        }
+    }
+
+    private JdbcQueryStatement(SqlStatement statement, ImmutableList<ReferenceColumn<?, ?>> references) {
+        this.statement = statement;
+        this.references = references;
+    }
+
+    static <K, S, T> SqlStatement create(SqlStatement statement, QueryInfo<K, S, T> queryInfo) {
+        ImmutableList.Builder<ReferenceColumn<?, ?>> references = ImmutableList.builder();
+        addReferences(references, queryInfo.metaClass(), queryInfo.mapping());
+        ImmutableList<ReferenceColumn<?, ?>> referenceList = references.build();
+        return !referenceList.isEmpty() ? new JdbcQueryStatement(statement, referenceList) : statement;
+    }
+
+    static ImmutableList<ReferenceColumn<?, ?>> referencesOf(SqlStatement statement) {
+        return statement instanceof JdbcQueryStatement
+                ? ((JdbcQueryStatement)statement).references
+                : ImmutableList.of();
+    }
+
+    @Override
+    public String statement() {
+        return statement.statement();
+    }
+
+    @Override
+    public Object[] args() {
+        return statement.args();
+    }
+
+    @Override
+    public int hashCode() {
+        return statement.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return statement.equals(obj);
+    }
+
+    private static void addReferences(ImmutableList.Builder<ReferenceColumn<?, ?>> references, MetaClass<?> metaClass, ObjectExpression<?, ?> mapping) {
+        if (mapping == null || mapping.type().operationType() == Expression.OperationType.Argument) {
+            addReferences(references, "", metaClass);
+        } else if (mapping.type().operationType() == Expression.OperationType.Property) {
+            PropertyExpression<?, ?, ?> property = (PropertyExpression<?, ?, ?>)mapping;
+            addReferences(references, property.path(), property.property());
+        }
+    }
+
+    private static void addReferences(ImmutableList.Builder<ReferenceColumn<?, ?>> references, String prefix, MetaClass<?> metaClass) {
+        metaClass.properties().forEach(property -> addReferences(references, prefix + property.name(), property));
+    }
+
+    private static void addReferences(ImmutableList.Builder<ReferenceColumn<?, ?>> references, String column, PropertyMeta<?, ?> property) {
+        if (PropertyMetas.isReference(property)) {
+            references.add(new ReferenceColumn<>(column, MetaClasses.forTokenWithKeyUnchecked(property.type())));
+        } else if (PropertyMetas.hasMetaClass(property.type())) {
+            addReferences(references, column + ".", MetaClasses.forTokenUnchecked(property.type()));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.nanometer.MetricCollector;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.RepositoryConfig;
+import com.slimgears.rxrepo.query.RepositoryConfigModelBuilder;
+import com.slimgears.rxrepo.query.decorator.EntityCacheQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.LiveQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.LockQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.MetricsQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.ObserveOnSchedulingQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.WriteBehindQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.sql.DefaultSqlAssignmentGenerator;
+import com.slimgears.rxrepo.sql.SqlQueryProvider;
+import com.slimgears.rxrepo.sql.SqlServiceFactory;
+import com.slimgears.rxrepo.util.CachedRoundRobinSchedulingProvider;
+import com.slimgears.rxrepo.util.Queries;
+import com.slimgears.rxrepo.util.SchedulingProvider;
+import com.slimgears.rxrepo.util.StripedLockProvider;
+
+import javax.annotation.Nonnull;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-process repository backend: live queries are emulated from the writes, made through the repository
+ * itself, and sequence numbers are allocated in memory (starting from the greatest stored one). Writes made by
+ * other processes or connections to the same database are not notified to live queries, and must not be mixed
+ * with writes made through the repository
+ */
+public class JdbcRepository {
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder implements RepositoryConfigModelBuilder<Builder> {
+        private String url = "jdbc:h2:mem:repository";
+        private String user = "sa";
+        private String password = "";
+        private DataSource dataSource;
+        private int maxConnections = 10;
+        private int fetchSize = 1000;
+        private int statementCacheSize = 64;
+        private int insertBatchSize = SqlQueryProvider.defaultInsertBatchSize;
+        private int maxNotificationQueues = 10;
+        private Duration maxQueueIdleTime = Duration.ofSeconds(120);
+        private QueryProvider.Decorator decorator = QueryProvider.Decorator.identity();
+        private Supplier<SchedulingProvider> schedulingProvider = () -> CachedRoundRobinSchedulingProvider.create(maxNotificationQueues, maxQueueIdleTime);
+        private RepositoryConfig.Builder configBuilder = RepositoryConfig
+                .builder()
+                .retryCount(10)
+                .retryInitialDurationMillis(10)
+                .bufferDebounceTimeoutMillis(100)
+                .aggregationDebounceTimeMillis(2000)
+                .liveQueryBufferSize(Queries.defaultMaxBufferSize);
+
+        public final Builder url(@Nonnull String url) {
+            this.url = url;
+            return this;
+        }
+
+        public final Builder user(@Nonnull String user) {
+            this.user = user;
+            return this;
+        }
+
+        public final Builder password(@Nonnull String password) {
+            this.password = password;
+            return this;
+        }
+
+        public final Builder dataSource(@Nonnull DataSource dataSource) {
+            this.dataSource = dataSource;
+            return this;
+        }
+
+        public final Builder maxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public final Builder statementCacheSize(int statementCacheSize) {
+            this.statementCacheSize = statementCacheSize;
+            return this;
+        }
+
+        public final Builder fetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        public final Builder insertBatchSize(int insertBatchSize) {
+            this.insertBatchSize = insertBatchSize;
+            return this;
+        }
+
+        public final Builder maxNotificationQueues(int maxNotificationQueues) {
+            this.maxNotificationQueues = maxNotificationQueues;
+            return this;
+        }
+
+        public final Builder maxQueueIdleTime(Duration duration) {
+            this.maxQueueIdleTime = duration;
+            return this;
+        }
+
+        public final Builder schedulingProvider(SchedulingProvider schedulingProvider) {
+            this.schedulingProvider = () -> schedulingProvider;
+            return this;
+        }
+
+        public final Builder decorate(@Nonnull QueryProvider.Decorator... decorators) {
+            this.decorator = this.decorator.andThen(QueryProvider.Decorator.of(decorators));
+            return this;
+        }
+
+        public Builder enableMetrics(MetricCollector metricCollector) {
+            return decorate(MetricsQueryProviderDecorator.create(metricCollector));
+        }
+
+        public Builder enableWriteBehind(Duration window, int maxBufferSize) {
+            return decorate(WriteBehindQueryProviderDecorator.create(window, maxBufferSize));
+        }
+
+        public Builder enableEntityCache(long maxSize) {
+            return decorate(EntityCacheQueryProviderDecorator.create(maxSize));
+        }
+
+        @Override
+        public Builder retryCount(int value) {
+            configBuilder.retryCount(value);
+            return this;
+        }
+
+        @Override
+        public Builder bufferDebounceTimeoutMillis(int value) {
+            configBuilder.bufferDebounceTimeoutMillis(value);
+            return this;
+        }
+
+        @Override
+        public Builder aggregationDebounceTimeMillis(int value) {
+            configBuilder.aggregationDebounceTimeMillis(value);
+            return this;
+        }
+
+        @Override
+        public Builder retryInitialDurationMillis(int value) {
+            configBuilder.retryInitialDurationMillis(value);
+            return this;
+        }
+
+        @Override
+        public Builder liveQueryBufferSize(int value) {
+            configBuilder.liveQueryBufferSize(value);
+            return this;
+        }
+
+        public final Repository build() {
+            DataSource dataSource = this.dataSource != null
+                    ? this.dataSource
+                    : JdbcConnectionPool.create(Objects.requireNonNull(url), user, password, maxConnections, Duration.ofSeconds(30), statementCacheSize);
+            AutoCloseable onClose = this.dataSource != null ? () -> {} : (JdbcConnectionPool)dataSource;
+            AtomicLong sequenceNumber = new AtomicLong();
+            JdbcSqlExpressionGenerator expressionGenerator = new JdbcSqlExpressionGenerator();
+            SchedulingProvider schedulingProvider = this.schedulingProvider.get();
+            RepositoryConfig config = configBuilder.build();
+
+            return SqlServiceFactory.builder()
+                    .schemaProvider(svc -> new JdbcSchemaProvider(svc.statementExecutor(), sequenceNumber))
+                    .statementExecutor(svc -> new JdbcSqlStatementExecutor(dataSource, fetchSize, svc::statementProvider))
+                    .expressionGenerator(() -> expressionGenerator)
+                    .assignmentGenerator(svc -> new DefaultSqlAssignmentGenerator(svc.expressionGenerator()))
+                    .statementProvider(svc -> new JdbcSqlStatementProvider(expressionGenerator, svc.assignmentGenerator(), svc.schemaProvider()))
+                    .referenceResolver(svc -> new JdbcReferenceResolver(svc.statementProvider()))
+                    .queryProviderGenerator(svc -> JdbcQueryProvider.create(svc, sequenceNumber, insertBatchSize, onClose))
+                    .schedulingProvider(() -> schedulingProvider)
+                    .decorate(
+                            LockQueryProviderDecorator.create(StripedLockProvider.create()),
+                            LiveQueryProviderDecorator.create(Duration.ofMillis(config.aggregationDebounceTimeMillis()), config.liveQueryBufferSize()),
+                            ObserveOnSchedulingQueryProviderDecorator.create(schedulingProvider),
+                            UpdateReferencesFirstQueryProviderDecorator.create(),
+                            decorator)
+                    .buildRepository(config);
+        }
+    }
+}
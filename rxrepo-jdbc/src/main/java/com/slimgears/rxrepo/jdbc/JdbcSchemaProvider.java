@@ -0,0 +1,123 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.sql.SchemaProvider;
+import com.slimgears.rxrepo.sql.SqlQueryProvider;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.sql.SqlStatementExecutor;
+import com.slimgears.util.autovalue.annotations.Key;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Streams;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.slimgears.rxrepo.jdbc.JdbcColumns.quote;
+
+class JdbcSchemaProvider implements SchemaProvider {
+    private final static Logger log = LoggerFactory.getLogger(JdbcSchemaProvider.class);
+    private final static String maxSequenceNumField = "maxSequenceNum";
+    private final SqlStatementExecutor statementExecutor;
+    private final AtomicLong sequenceNumber;
+
+    JdbcSchemaProvider(SqlStatementExecutor statementExecutor, AtomicLong sequenceNumber) {
+        this.statementExecutor = statementExecutor;
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    @Override
+    public String databaseName() {
+        return statementExecutor
+                .executeQuery(SqlStatement.of("select database() as " + quote("name")))
+                .map(pr -> (String)pr.getProperty("name", String.class))
+                .blockingFirst();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> Completable createOrUpdate(MetaClass<T> metaClass) {
+        if (!(metaClass instanceof MetaClassWithKey)) {
+            return Completable.complete();
+        }
+        MetaClassWithKey<?, T> metaClassWithKey = (MetaClassWithKey<?, T>)metaClass;
+        String tableName = tableName(metaClass);
+        return Observable.fromIterable(createTableStatements(metaClassWithKey))
+                .concatMapCompletable(statementExecutor::executeCommand)
+                .andThen(statementExecutor
+                        .executeQuery(SqlStatement.of(
+                                "select max(" + quote(SqlQueryProvider.sequenceNumField) + ") as " + quote(maxSequenceNumField),
+                                "from " + tableName))
+                        .flatMapMaybe(pr -> Optional
+                                .ofNullable((Long)pr.getProperty(maxSequenceNumField, Long.class))
+                                .map(Maybe::just)
+                                .orElseGet(Maybe::empty))
+                        .doOnNext(seqNum -> sequenceNumber.accumulateAndGet(seqNum, Math::max))
+                        .ignoreElements())
+                .doOnSubscribe(d -> log.debug("Creating table: {}", tableName));
+    }
+
+    @Override
+    public <T> String tableName(MetaClass<T> metaClass) {
+        return JdbcColumns.tableName(metaClass.asType());
+    }
+
+    @Override
+    public void clear() {
+
+    }
+
+    private <K, T> List<SqlStatement> createTableStatements(MetaClassWithKey<K, T> metaClass) {
+        String tableName = tableName(metaClass);
+        List<JdbcColumns.Column> columns = JdbcColumns.columnsOf(metaClass);
+
+        return Stream
+                .concat(
+                        Stream.of(
+                                SqlStatement.of(
+                                        "create table if not exists",
+                                        tableName,
+                                        "(" + Stream
+                                                .concat(
+                                                        columns.stream().map(JdbcSchemaProvider::toColumnDefinition),
+                                                        Stream.of(quote(SqlQueryProvider.sequenceNumField) + " BIGINT",
+                                                                "primary key (" + quote(JdbcColumns.keyColumnOf(metaClass)) + ")"))
+                                                .collect(Collectors.joining(", ")) + ")")),
+                        Stream.concat(
+                                columns.stream().map(c -> SqlStatement.of("alter table", tableName, "add column if not exists", toColumnDefinition(c))),
+                                Streams.fromIterable(metaClass.properties())
+                                        .filter(p -> p.hasAnnotation(Indexable.class) && !p.hasAnnotation(Key.class))
+                                        .map(p -> createIndex(metaClass, p))))
+                .collect(Collectors.toList());
+    }
+
+    private static SqlStatement createIndex(MetaClass<?> metaClass, PropertyMeta<?, ?> propertyMeta) {
+        String column = JdbcColumns.columnsOf(propertyMeta.name(), propertyMeta)
+                .findFirst()
+                .map(JdbcColumns.Column::name)
+                .orElse(propertyMeta.name());
+        return createIndex(metaClass, column, propertyMeta.getAnnotation(Indexable.class).unique());
+    }
+
+    private static SqlStatement createIndex(MetaClass<?> metaClass, String column, boolean unique) {
+        return SqlStatement.of(
+                unique ? "create unique index if not exists" : "create index if not exists",
+                quote(metaClass.simpleName() + "." + column + "Index"),
+                "on",
+                JdbcColumns.tableName(metaClass.asType()),
+                "(" + quote(column) + ")");
+    }
+
+    private static String toColumnDefinition(JdbcColumns.Column column) {
+        return quote(column.name()) + " " + column.sqlType();
+    }
+}
@@ -0,0 +1,156 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.expressions.*;
+import com.slimgears.rxrepo.expressions.internal.BooleanBinaryOperationExpression;
+import com.slimgears.rxrepo.sql.DefaultSqlExpressionGenerator;
+import com.slimgears.rxrepo.util.ExpressionTextGenerator;
+import com.slimgears.rxrepo.util.PropertyExpressions;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.slimgears.rxrepo.jdbc.JdbcColumns.quote;
+
+public class JdbcSqlExpressionGenerator extends DefaultSqlExpressionGenerator {
+    private final ExpressionTextGenerator.Interceptor interceptor = ExpressionTextGenerator.Interceptor.builder()
+            .intercept(Expression.OperationType.Property, ExpressionTextGenerator.Interceptor.ofType(PropertyExpression.class, this::onVisitPropertyExpression))
+            .intercept(Expression.OperationType.Binary, ExpressionTextGenerator.Interceptor.ofType(BooleanBinaryOperationExpression.class, this::onVisitBinaryExpression))
+            .intercept(Expression.Type.SearchText, ExpressionTextGenerator.Interceptor.ofType(BooleanBinaryOperationExpression.class, this::onVisitSearchTextExpression))
+            .build();
+
+    @Override
+    protected ExpressionTextGenerator.Builder createBuilder() {
+        return super.createBuilder()
+                .add(Expression.Type.Contains, "(%s like concat('%%', %s, '%%'))")
+                .add(Expression.Type.StartsWith, "(%s like concat(%s, '%%'))")
+                .add(Expression.Type.EndsWith, "(%s like concat('%%', %s))")
+                .add(Expression.Type.Length, "LENGTH(%s)")
+                .add(Expression.Type.Concat, "CONCAT(%s, %s)")
+                .add(Expression.Type.AsString, "CAST(%s AS VARCHAR)")
+                .add(Expression.Type.Average, "AVG(CAST(%s AS DOUBLE))")
+                .add(Expression.Type.Count, (exp, parts) -> parts[0].isEmpty() ? "COUNT(*)" : "COUNT(" + parts[0] + ")");
+    }
+
+    @Override
+    protected ExpressionTextGenerator.Interceptor createInterceptor() {
+        return interceptor;
+    }
+
+    String toColumnExpression(PropertyExpression<?, ?, ?> expression, String columnSuffix) {
+        return propertyChain(expression)
+                .map(chain -> toColumn(tableOf(expression), chain, columnSuffix, 1))
+                .orElseThrow(() -> new IllegalArgumentException("Not supported property expression: " + expression));
+    }
+
+    private String onVisitPropertyExpression(Function<? super ObjectExpression<?, ?>, String> visitor, PropertyExpression<?, ?, ?> expression, Supplier<String> visitedExpression) {
+        return propertyChain(expression)
+                .map(chain -> toColumn(tableOf(expression), chain, null, 1))
+                .orElseGet(visitedExpression);
+    }
+
+    private String onVisitBinaryExpression(Function<? super ObjectExpression<?, ?>, String> visitor, BooleanBinaryOperationExpression<?, ?, ?> expression, Supplier<String> visitedExpression) {
+        if (!requiresCollectionExpansion(expression)) {
+            return visitedExpression.get();
+        }
+
+        String left = visitor.apply(expression.left());
+        String right = Optional.of(((Collection<?>)((ConstantExpression<?, ?>)expression.right()).value())
+                .stream()
+                .map(val -> visitor.apply(ConstantExpression.of(val)))
+                .collect(Collectors.joining(", ")))
+                .filter(values -> !values.isEmpty())
+                .orElse("null");
+
+        return super.reduce(expression, left, right);
+    }
+
+    @SuppressWarnings("unchecked")
+    private String onVisitSearchTextExpression(Function<? super ObjectExpression<?, ?>, String> visitor, BooleanBinaryOperationExpression<?, ?, String> expression, Supplier<String> visitedExpression) {
+        String searchText = ((ConstantExpression<?, String>)expression.right()).value()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+
+        String concat = PropertyExpressions.searchableProperties(expression.left())
+                .map(PropertyExpression::asString)
+                .map(visitor)
+                .collect(Collectors.joining(", "));
+
+        return "(concat_ws(' ', " + concat + ") like " + visitor.apply(ConstantExpression.of("%" + searchText + "%")) + " escape '\\')";
+    }
+
+    private boolean requiresCollectionExpansion(BooleanBinaryOperationExpression<?, ?, ?> expression) {
+        return expression.type() == Expression.Type.ValueIn &&
+                expression.right().type().operationType() == Expression.OperationType.Constant &&
+                ((ConstantExpression<?, ?>)expression.right()).value() instanceof Collection;
+    }
+
+    private String toColumn(String qualifier, List<PropertyMeta<?, ?>> chain, String columnSuffix, int depth) {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < chain.size(); ++i) {
+            PropertyMeta<?, ?> property = chain.get(i);
+            path.append(property.name());
+            if (i == chain.size() - 1) {
+                break;
+            }
+            if (PropertyMetas.isReference(property)) {
+                MetaClassWithKey<?, ?> metaClass = MetaClasses.forTokenWithKeyUnchecked(property.type());
+                if (!PropertyMetas.isKey(chain.get(i + 1))) {
+                    String alias = "__r" + depth;
+                    return "(select " + toColumn(quote(alias), chain.subList(i + 1, chain.size()), columnSuffix, depth + 1) +
+                            " from " + JdbcColumns.tableName(metaClass.asType()) + " " + quote(alias) +
+                            " where " + quote(alias) + "." + quote(JdbcColumns.keyColumnOf(metaClass)) +
+                            " = " + qualifier + "." + quote(path + "." + JdbcColumns.keyColumnOf(metaClass)) + ")";
+                }
+            }
+            path.append(".");
+        }
+
+        PropertyMeta<?, ?> property = chain.get(chain.size() - 1);
+        if (columnSuffix != null) {
+            path.append(columnSuffix);
+        } else if (PropertyMetas.isReference(property)) {
+            path.append(".").append(JdbcColumns.keyColumnOf(MetaClasses.forTokenWithKeyUnchecked(property.type())));
+        } else if (PropertyMetas.hasMetaClass(property.type())) {
+            path.append(JdbcColumns.asStringSuffix);
+        }
+
+        return depth > 1
+                ? qualifier + "." + quote(path.toString())
+                : quote(path.toString());
+    }
+
+    private static Optional<List<PropertyMeta<?, ?>>> propertyChain(PropertyExpression<?, ?, ?> expression) {
+        List<PropertyMeta<?, ?>> chain = new ArrayList<>();
+        ObjectExpression<?, ?> target = expression;
+        while (target.type().operationType() == Expression.OperationType.Property) {
+            chain.add(((PropertyExpression<?, ?, ?>)target).property());
+            target = ((PropertyExpression<?, ?, ?>)target).target();
+        }
+        if (target.type().operationType() != Expression.OperationType.Argument) {
+            return Optional.empty();
+        }
+        Collections.reverse(chain);
+        return Optional.of(chain);
+    }
+
+    private static String tableOf(PropertyExpression<?, ?, ?> expression) {
+        ObjectExpression<?, ?> target = expression;
+        while (target.type().operationType() == Expression.OperationType.Property) {
+            target = ((PropertyExpression<?, ?, ?>)target).target();
+        }
+        TypeToken<?> rootType = target.reflect().objectType();
+        return JdbcColumns.tableName(rootType);
+    }
+}
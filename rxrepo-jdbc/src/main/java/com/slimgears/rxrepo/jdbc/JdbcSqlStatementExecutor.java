@@ -1,52 +1,340 @@
 package com.slimgears.rxrepo.jdbc;
 
+import com.google.common.collect.Lists;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.sql.SqlStatement;
 import com.slimgears.rxrepo.sql.SqlStatementExecutor;
+import com.slimgears.rxrepo.sql.SqlStatementProvider;
 import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
 import io.reactivex.Single;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.slimgears.util.generic.LazyString.lazy;
 
 public class JdbcSqlStatementExecutor implements SqlStatementExecutor {
-    private final Connection connection;
+    private final static Logger log = LoggerFactory.getLogger(JdbcSqlStatementExecutor.class);
+    private final static String uniqueViolationState = "23505";
+    private final DataSource dataSource;
+    private final int fetchSize;
+    private final Supplier<SqlStatementProvider> statementProvider;
+
+    public JdbcSqlStatementExecutor(DataSource dataSource, int fetchSize, Supplier<SqlStatementProvider> statementProvider) {
+        this.dataSource = dataSource;
+        this.fetchSize = fetchSize;
+        this.statementProvider = statementProvider;
+    }
 
-    public JdbcSqlStatementExecutor(Connection connection) {
-        this.connection = connection;
+    interface StatementFunction<T> {
+        T apply(PreparedStatement statement) throws SQLException;
     }
 
     @Override
     public Observable<PropertyResolver> executeQuery(SqlStatement statement) {
         return Observable.create(emitter -> {
-            PreparedStatement preparedStatement = JdbcHelper.prepareStatement(connection, statement);
-            JdbcHelper.toStream(preparedStatement.executeQuery());
+            logStatement("Querying", statement);
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement preparedStatement = JdbcHelper.prepareStatement(connection, statement)) {
+                preparedStatement.setFetchSize(fetchSize);
+                try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                    emitRows(connection, statement, resultSet, emitter);
+                }
+            } catch (SQLException e) {
+                emitter.tryOnError(toException(statement, e));
+            }
         });
     }
 
+    /**
+     * Reads next chunk of rows from open result set only when requested, so that no more than fetch size rows are held in memory
+     */
+    @Override
+    public Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement) {
+        return Flowable.generate(
+                () -> openCursor(statement),
+                (cursor, emitter) -> {
+                    try {
+                        PropertyResolver next = cursor.next();
+                        if (next != null) {
+                            emitter.onNext(next);
+                        } else {
+                            emitter.onComplete();
+                        }
+                    } catch (SQLException e) {
+                        emitter.onError(toException(statement, e));
+                    }
+                },
+                QueryCursor::close);
+    }
+
     @Override
     public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
-        return notImplemented();
+        return Observable.create(emitter -> {
+            logStatement("Executing command", statement);
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement preparedStatement = JdbcHelper.prepareStatement(
+                         () -> connection.prepareStatement(statement.statement(), Statement.RETURN_GENERATED_KEYS),
+                         statement.args())) {
+                preparedStatement.executeUpdate();
+                try (ResultSet resultSet = preparedStatement.getGeneratedKeys()) {
+                    emitRows(connection, statement, resultSet, emitter);
+                }
+            } catch (SQLException e) {
+                emitter.tryOnError(toException(statement, e));
+            }
+        });
     }
 
     @Override
     public Single<Integer> executeCommandReturnCount(SqlStatement statement) {
-        return notImplemented();
+        return Single.fromCallable(() -> execute(statement, PreparedStatement::executeUpdate));
     }
 
     @Override
     public Completable executeCommand(SqlStatement statement) {
-        return notImplemented();
+        return Completable.fromAction(() -> execute(statement, PreparedStatement::execute));
+    }
+
+    @Override
+    public Single<Integer> executeBatch(List<SqlStatement> statements) {
+        return Single.fromCallable(() -> {
+            try (Connection connection = dataSource.getConnection()) {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    int count = executeBatch(connection, statements);
+                    connection.commit();
+                    return count;
+                } catch (Exception e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+        });
     }
 
     @Override
     public Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement) {
-        return notImplemented();
+        return Observable.error(new UnsupportedOperationException("Live queries are provided by JdbcQueryProvider"));
+    }
+
+    private <T> T execute(SqlStatement statement, StatementFunction<T> function) throws Exception {
+        logStatement("Executing command", statement);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement preparedStatement = JdbcHelper.prepareStatement(connection, statement)) {
+            return function.apply(preparedStatement);
+        } catch (SQLException e) {
+            throw toException(statement, e);
+        }
+    }
+
+    private int executeBatch(Connection connection, List<SqlStatement> statements) throws Exception {
+        int count = 0;
+        int index = 0;
+        while (index < statements.size()) {
+            SqlStatement statement = statements.get(index);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(statement.statement())) {
+                for (; index < statements.size() && statement.statement().equals(statements.get(index).statement()); ++index) {
+                    logStatement("Adding to batch", statements.get(index));
+                    JdbcHelper.setParams(preparedStatement, statements.get(index).args());
+                    preparedStatement.addBatch();
+                }
+                count += Arrays.stream(preparedStatement.executeBatch()).map(JdbcSqlStatementExecutor::toUpdateCount).sum();
+            } catch (SQLException e) {
+                throw toException(statement, e);
+            }
+        }
+        return count;
+    }
+
+    private void emitRows(Connection connection, SqlStatement statement, ResultSet resultSet, ObservableEmitter<PropertyResolver> emitter) throws SQLException {
+        List<Map<String, Object>> rows = new ArrayList<>(fetchSize);
+        while (!emitter.isDisposed() && readRows(resultSet, rows)) {
+            ResultSetPropertyResolver.ReferenceLoader referenceLoader = loadReferences(connection, statement, rows);
+            for (Map<String, Object> row : rows) {
+                emitter.onNext(ResultSetPropertyResolver.create(row, referenceLoader));
+            }
+            rows.clear();
+        }
+        emitter.onComplete();
+    }
+
+    private boolean readRows(ResultSet resultSet, List<Map<String, Object>> rows) throws SQLException {
+        while (rows.size() < fetchSize && resultSet.next()) {
+            rows.add(JdbcHelper.readRow(resultSet));
+        }
+        return !rows.isEmpty();
+    }
+
+    /**
+     * Loads entities, referenced by given rows, with a single query per reference column and per fetch size keys.
+     * Queries are executed on the connection of the outer query, so resolving references never waits for another
+     * pooled connection. Referenced entities are loaded recursively, so resolved references are never loaded lazily.
+     */
+    private ResultSetPropertyResolver.ReferenceLoader loadReferences(Connection connection, SqlStatement statement, List<Map<String, Object>> rows) throws SQLException {
+        LoadedReferences references = new LoadedReferences();
+        loadReferences(connection, statement, rows, references);
+        return references;
+    }
+
+    private void loadReferences(Connection connection, SqlStatement statement, List<Map<String, Object>> rows, LoadedReferences references) throws SQLException {
+        for (JdbcQueryStatement.ReferenceColumn<?, ?> column : JdbcQueryStatement.referencesOf(statement)) {
+            loadReferences(connection, column, rows, references);
+        }
+    }
+
+    private <K, S> void loadReferences(Connection connection, JdbcQueryStatement.ReferenceColumn<K, S> column, List<Map<String, Object>> rows, LoadedReferences references) throws SQLException {
+        MetaClassWithKey<K, S> metaClass = column.metaClass();
+        List<K> keys = rows.stream()
+                .map(row -> ResultSetPropertyResolver.referenceKeyOf(row, column.column(), metaClass))
+                .filter(Objects::nonNull)
+                .filter(key -> references.request(metaClass, key))
+                .collect(Collectors.toList());
+
+        for (List<K> batch : Lists.partition(keys, fetchSize)) {
+            SqlStatement statement = statementProvider.get().forQuery(QueryInfo.<K, S, S>builder()
+                    .metaClass(metaClass)
+                    .predicate(PropertyExpression.ofObject(metaClass.keyProperty()).in(batch))
+                    .build());
+            List<Map<String, Object>> referencedRows = queryRows(connection, statement);
+            referencedRows.forEach(row -> references.add(
+                    metaClass,
+                    ResultSetPropertyResolver.create(row, references).getProperty(metaClass.keyProperty()),
+                    row));
+            loadReferences(connection, statement, referencedRows, references);
+        }
+    }
+
+    private List<Map<String, Object>> queryRows(Connection connection, SqlStatement statement) throws SQLException {
+        logStatement("Querying references", statement);
+        try (PreparedStatement preparedStatement = JdbcHelper.prepareStatement(connection, statement);
+             ResultSet resultSet = preparedStatement.executeQuery()) {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            while (resultSet.next()) {
+                rows.add(JdbcHelper.readRow(resultSet));
+            }
+            return rows;
+        }
+    }
+
+    private static class LoadedReferences implements ResultSetPropertyResolver.ReferenceLoader {
+        private final Map<MetaClassWithKey<?, ?>, Map<Object, Map<String, Object>>> rows = new HashMap<>();
+        private final Map<MetaClassWithKey<?, ?>, Set<Object>> requestedKeys = new HashMap<>();
+
+        private boolean request(MetaClassWithKey<?, ?> metaClass, Object key) {
+            return requestedKeys.computeIfAbsent(metaClass, mc -> new HashSet<>()).add(key);
+        }
+
+        private void add(MetaClassWithKey<?, ?> metaClass, Object key, Map<String, Object> row) {
+            rows.computeIfAbsent(metaClass, mc -> new HashMap<>()).put(key, row);
+        }
+
+        @Override
+        public <K, S> S load(MetaClassWithKey<K, S> metaClass, K key) {
+            return Optional.ofNullable(rows.get(metaClass))
+                    .map(rowsByKey -> rowsByKey.get(key))
+                    .map(row -> ResultSetPropertyResolver.create(row, this).toObject(metaClass))
+                    .orElse(null);
+        }
+    }
+
+    private QueryCursor openCursor(SqlStatement statement) throws Exception {
+        logStatement("Querying", statement);
+        Connection connection = dataSource.getConnection();
+        try {
+            PreparedStatement preparedStatement = JdbcHelper.prepareStatement(connection, statement);
+            preparedStatement.setFetchSize(fetchSize);
+            return new QueryCursor(statement, connection, preparedStatement, preparedStatement.executeQuery());
+        } catch (Exception e) {
+            connection.close();
+            throw (e instanceof SQLException) ? toException(statement, (SQLException)e) : e;
+        }
+    }
+
+    private class QueryCursor implements AutoCloseable {
+        private final SqlStatement statement;
+        private final Connection connection;
+        private final PreparedStatement preparedStatement;
+        private final ResultSet resultSet;
+        private final List<Map<String, Object>> rows = new ArrayList<>(fetchSize);
+        private ResultSetPropertyResolver.ReferenceLoader referenceLoader;
+        private int position;
+
+        private QueryCursor(SqlStatement statement, Connection connection, PreparedStatement preparedStatement, ResultSet resultSet) {
+            this.statement = statement;
+            this.connection = connection;
+            this.preparedStatement = preparedStatement;
+            this.resultSet = resultSet;
+        }
+
+        private PropertyResolver next() throws SQLException {
+            if (position == rows.size()) {
+                rows.clear();
+                position = 0;
+                if (!readRows(resultSet, rows)) {
+                    return null;
+                }
+                referenceLoader = loadReferences(connection, statement, rows);
+            }
+            return ResultSetPropertyResolver.create(rows.get(position++), referenceLoader);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try (Connection ignored = connection; PreparedStatement ignoredStatement = preparedStatement) {
+                resultSet.close();
+            }
+        }
+    }
+
+    // Statement, which succeeded without reporting its row count (SUCCESS_NO_INFO), is counted as one affected row
+    private static int toUpdateCount(int count) {
+        return count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+    }
+
+    // Only unique constraint violation may succeed when retried with the current value, other integrity
+    // violations (not null, foreign key, check) are reported as is
+    private static Exception toException(SqlStatement statement, SQLException exception) {
+        log.debug("Error when executing {}", lazy(() -> toString(statement)), exception);
+        return Optional.ofNullable(exception.getSQLState())
+                .filter(uniqueViolationState::equals)
+                .<Exception>map(state -> new ConcurrentModificationException(exception.getMessage(), exception))
+                .orElse(exception);
+    }
+
+    private static void logStatement(String title, SqlStatement statement) {
+        log.trace("{}: {}", title, lazy(() -> toString(statement)));
     }
 
-    private static <T> T notImplemented() {
-        throw new UnsupportedOperationException("Not implemented yet");
+    private static String toString(SqlStatement statement) {
+        return statement.statement() + " (" + Arrays.toString(statement.args()) + ")";
     }
 }
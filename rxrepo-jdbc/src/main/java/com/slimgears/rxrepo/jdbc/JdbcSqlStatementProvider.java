@@ -0,0 +1,186 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.query.provider.HasPagination;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.sql.DefaultSqlStatementProvider;
+import com.slimgears.rxrepo.sql.ReferenceResolver;
+import com.slimgears.rxrepo.sql.SchemaProvider;
+import com.slimgears.rxrepo.sql.SqlAssignmentGenerator;
+import com.slimgears.rxrepo.sql.SqlQueryProvider;
+import com.slimgears.rxrepo.sql.SqlStatement;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.slimgears.rxrepo.jdbc.JdbcColumns.quote;
+import static com.slimgears.rxrepo.sql.StatementUtils.concat;
+
+public class JdbcSqlStatementProvider extends DefaultSqlStatementProvider {
+    private final JdbcSqlExpressionGenerator sqlExpressionGenerator;
+    private final SchemaProvider schemaProvider;
+
+    public JdbcSqlStatementProvider(JdbcSqlExpressionGenerator sqlExpressionGenerator,
+                                    SqlAssignmentGenerator sqlAssignmentGenerator,
+                                    SchemaProvider schemaProvider) {
+        super(sqlExpressionGenerator, sqlAssignmentGenerator, schemaProvider);
+        this.sqlExpressionGenerator = sqlExpressionGenerator;
+        this.schemaProvider = schemaProvider;
+    }
+
+    @Override
+    public <K, S, T> SqlStatement forQuery(QueryInfo<K, S, T> queryInfo) {
+        return JdbcQueryStatement.create(super.forQuery(queryInfo), queryInfo);
+    }
+
+    @Override
+    public <K, S, T, R> SqlStatement forAggregation(QueryInfo<K, S, T> queryInfo, ObjectExpression<T, R> aggregation, String projectedName) {
+        return super.forAggregation(queryInfo, aggregation, quote(projectedName));
+    }
+
+    @Override
+    public <K, S> SqlStatement forInsert(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, ReferenceResolver resolver) {
+        Map<String, Object> values = valuesOf(metaClass, propertyResolver);
+        return SqlStatement.create(
+                concat(
+                        "insert into",
+                        schemaProvider.tableName(metaClass),
+                        "(" + toColumnList(values) + ")",
+                        "values",
+                        "(" + toParamList(values) + ")"),
+                values.values().toArray());
+    }
+
+    @Override
+    public <K, S> List<SqlStatement> forInsertBatch(MetaClassWithKey<K, S> metaClass, List<PropertyResolver> propertyResolvers, ReferenceResolver referenceResolver) {
+        if (propertyResolvers.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Object>> rows = propertyResolvers.stream()
+                .map(pr -> valuesOf(metaClass, pr))
+                .collect(Collectors.toList());
+        String paramList = "(" + toParamList(rows.get(0)) + ")";
+        return Collections.singletonList(SqlStatement.create(
+                concat(
+                        "insert into",
+                        schemaProvider.tableName(metaClass),
+                        "(" + toColumnList(rows.get(0)) + ")",
+                        "values",
+                        rows.stream().map(row -> paramList).collect(Collectors.joining(", "))),
+                rows.stream().flatMap(row -> row.values().stream()).toArray()));
+    }
+
+    @Override
+    public <K, S> SqlStatement forInsertOrUpdate(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, ReferenceResolver resolver) {
+        Map<String, Object> values = valuesOf(metaClass, propertyResolver);
+        return SqlStatement.create(
+                concat(
+                        "merge into",
+                        schemaProvider.tableName(metaClass),
+                        "(" + toColumnList(values) + ")",
+                        "key (" + quote(JdbcColumns.keyColumnOf(metaClass)) + ")",
+                        "values",
+                        "(" + toParamList(values) + ")"),
+                values.values().toArray());
+    }
+
+    @Override
+    public <K, S> SqlStatement forUpdate(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, ReferenceResolver resolver) {
+        Map<String, Object> values = valuesOf(metaClass, propertyResolver);
+        String keyColumn = JdbcColumns.keyColumnOf(metaClass);
+        return SqlStatement.create(
+                concat(
+                        "update",
+                        schemaProvider.tableName(metaClass),
+                        "set",
+                        values.keySet().stream().map(column -> quote(column) + " = ?").collect(Collectors.joining(", ")),
+                        "where",
+                        quote(keyColumn) + " = ?"),
+                appendArg(values.values().toArray(), values.get(keyColumn)));
+    }
+
+    /**
+     * Updates entity only if it was not modified since it was read with given sequence number
+     */
+    <K, S> SqlStatement forUpdate(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver, ReferenceResolver resolver, Long expectedSequenceNumber) {
+        SqlStatement statement = forUpdate(metaClass, propertyResolver, resolver);
+        String sequenceNumColumn = quote(SqlQueryProvider.sequenceNumField);
+        return expectedSequenceNumber != null
+                ? SqlStatement.create(concat(statement.statement(), "and", sequenceNumColumn, "= ?"), appendArg(statement.args(), expectedSequenceNumber))
+                : SqlStatement.create(concat(statement.statement(), "and", sequenceNumColumn, "is null"), statement.args());
+    }
+
+    @Override
+    public <K, S> SqlStatement forDrop(MetaClassWithKey<K, S> metaClass) {
+        return SqlStatement.of("drop table if exists", schemaProvider.tableName(metaClass));
+    }
+
+    @Override
+    public SqlStatement forDrop() {
+        return SqlStatement.of("drop all objects");
+    }
+
+    @Override
+    protected SqlStatement statement(Supplier<SqlStatement> statementSupplier) {
+        SqlStatement statement = super.statement(statementSupplier);
+        return SqlStatement.create(statement.statement().replace('`', '"'), statement.args());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected <S, T> String toMappingClause(ObjectExpression<S, T> expression, Collection<PropertyExpression<T, ?, ?>> properties) {
+        switch (expression.type().operationType()) {
+            case Argument:
+                return "*";
+            case Property:
+                return toPropertyMappingClause((PropertyExpression<S, ?, T>)expression);
+            default:
+                return super.toMappingClause(expression, properties);
+        }
+    }
+
+    @Override
+    protected <Q extends HasPagination> String skipClause(Q statement) {
+        return Optional.ofNullable(statement.skip())
+                .map(count -> statement.limit() != null ? "offset " + count : "offset " + count + " rows")
+                .orElse("");
+    }
+
+    private <S, T> String toPropertyMappingClause(PropertyExpression<S, ?, T> expression) {
+        String path = expression.path();
+        return JdbcColumns.columnsOf("", expression.property())
+                .map(JdbcColumns.Column::name)
+                .map(suffix -> sqlExpressionGenerator.toColumnExpression(expression, suffix) + " as " + quote(path + suffix))
+                .collect(Collectors.joining(", "));
+    }
+
+    private static <K, S> Map<String, Object> valuesOf(MetaClassWithKey<K, S> metaClass, PropertyResolver propertyResolver) {
+        Map<String, Object> values = JdbcColumns.valuesOf(metaClass, propertyResolver.toObject(metaClass));
+        Optional.ofNullable(propertyResolver.getProperty(SqlQueryProvider.sequenceNumField, Long.class))
+                .ifPresent(seqNum -> values.put(SqlQueryProvider.sequenceNumField, seqNum));
+        return values;
+    }
+
+    private static String toColumnList(Map<String, Object> values) {
+        return values.keySet().stream().map(JdbcColumns::quote).collect(Collectors.joining(", "));
+    }
+
+    private static String toParamList(Map<String, Object> values) {
+        return values.keySet().stream().map(column -> "?").collect(Collectors.joining(", "));
+    }
+
+    private static Object[] appendArg(Object[] args, Object arg) {
+        Object[] result = Arrays.copyOf(args, args.length + 1);
+        result[args.length] = arg;
+        return result;
+    }
+}
@@ -0,0 +1,148 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.rxrepo.util.PropertyMetas;
+import com.slimgears.rxrepo.util.PropertyResolver;
+import com.slimgears.util.autovalue.annotations.HasMetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.MetaClasses;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Lazy;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+class ResultSetPropertyResolver implements PropertyResolver {
+    private final Map<String, Object> row;
+    private final String prefix;
+    private final ReferenceLoader referenceLoader;
+    private final Lazy<Set<String>> propertyNames;
+
+    interface ReferenceLoader {
+        <K, S> S load(MetaClassWithKey<K, S> metaClass, K key);
+    }
+
+    private ResultSetPropertyResolver(Map<String, Object> row, String prefix, ReferenceLoader referenceLoader) {
+        this.row = row;
+        this.prefix = prefix;
+        this.referenceLoader = referenceLoader;
+        this.propertyNames = Lazy.of(() -> row.entrySet()
+                .stream()
+                .filter(entry -> entry.getValue() != null)
+                .map(Map.Entry::getKey)
+                .filter(name -> name.startsWith(prefix))
+                .map(name -> name.substring(prefix.length()))
+                .map(name -> name.contains(".") ? name.substring(0, name.indexOf('.')) : name)
+                .filter(name -> !name.endsWith(JdbcColumns.asStringSuffix))
+                .collect(ImmutableSet.toImmutableSet()));
+    }
+
+    static PropertyResolver create(Map<String, Object> row, ReferenceLoader referenceLoader) {
+        return new ResultSetPropertyResolver(row, "", referenceLoader);
+    }
+
+    static <K, S> K referenceKeyOf(Map<String, Object> row, String column, MetaClassWithKey<K, S> metaClass) {
+        return new ResultSetPropertyResolver(row, "", null).referenceKey(column, metaClass);
+    }
+
+    @Override
+    public Iterable<String> propertyNames() {
+        return propertyNames.get();
+    }
+
+    @Override
+    public Object getProperty(String name, Class<?> type) {
+        String column = prefix + name;
+        if (row.containsKey(column)) {
+            return toValue(row.get(column), type);
+        }
+        if (HasMetaClassWithKey.class.isAssignableFrom(type)) {
+            return resolveReference(column, MetaClasses.forTokenWithKeyUnchecked(TypeToken.of(type)));
+        }
+        return hasNestedValues(column) ? nested(column) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <V> V getProperty(PropertyMeta<?, V> propertyMeta) {
+        String column = prefix + propertyMeta.name();
+        if (PropertyMetas.isReference(propertyMeta)) {
+            return (V)resolveReference(column, MetaClasses.forTokenWithKeyUnchecked(propertyMeta.type()));
+        }
+        if (PropertyMetas.hasMetaClass(propertyMeta.type())) {
+            return row.get(column + JdbcColumns.asStringSuffix) != null
+                    ? nested(column).toObject(propertyMeta.type())
+                    : null;
+        }
+        Object value = row.get(column);
+        if (value instanceof String && !JdbcColumns.isScalar(propertyMeta.type())) {
+            return (V)JdbcColumns.fromJson(propertyMeta.type(), (String)value);
+        }
+        return (V)toValue(value, propertyMeta.type().getRawType());
+    }
+
+    private ResultSetPropertyResolver nested(String column) {
+        return new ResultSetPropertyResolver(row, column + ".", referenceLoader);
+    }
+
+    private boolean hasNestedValues(String column) {
+        String nestedPrefix = column + ".";
+        return row.entrySet()
+                .stream()
+                .anyMatch(entry -> entry.getValue() != null && entry.getKey().startsWith(nestedPrefix));
+    }
+
+    private <K, S> S resolveReference(String column, MetaClassWithKey<K, S> metaClass) {
+        K key = referenceKey(column, metaClass);
+        return key != null ? referenceLoader.load(metaClass, key) : null;
+    }
+
+    private <K, S> K referenceKey(String column, MetaClassWithKey<K, S> metaClass) {
+        return nested(column).getProperty(metaClass.keyProperty());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object toValue(Object value, Class<?> type) {
+        if (value == null) {
+            return null;
+        }
+        Class<?> wrappedType = Primitives.wrap(type);
+        if (wrappedType.isInstance(value) && !(value instanceof Timestamp && wrappedType == Date.class)) {
+            return value;
+        }
+        if (type.isEnum() && value instanceof String) {
+            return Enum.valueOf((Class<Enum>)type, (String)value);
+        }
+        if (value instanceof Date && wrappedType == Date.class) {
+            return new Date(((Date)value).getTime());
+        }
+        if (value instanceof Number) {
+            return toNumber((Number)value, wrappedType);
+        }
+        return value;
+    }
+
+    private static Object toNumber(Number value, Class<?> type) {
+        if (type == Integer.class) {
+            return value.intValue();
+        } else if (type == Long.class) {
+            return value.longValue();
+        } else if (type == Double.class) {
+            return value.doubleValue();
+        } else if (type == Float.class) {
+            return value.floatValue();
+        } else if (type == Short.class) {
+            return value.shortValue();
+        } else if (type == Byte.class) {
+            return value.byteValue();
+        } else if (type == BigDecimal.class) {
+            return new BigDecimal(value.toString());
+        }
+        return value;
+    }
+}
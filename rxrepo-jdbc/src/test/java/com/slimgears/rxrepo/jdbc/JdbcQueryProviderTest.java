@@ -0,0 +1,126 @@
+package com.slimgears.rxrepo.jdbc;
+
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.Repository;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.test.Manufacturer;
+import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.rxrepo.util.SchedulingProvider;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class JdbcQueryProviderTest extends AbstractRepositoryTest {
+    private static final String dbUrl = "jdbc:h2:mem:repository";
+    private static final QueryInfo<UniqueId, Manufacturer, Manufacturer> allManufacturers = QueryInfo.<UniqueId, Manufacturer, Manufacturer>builder()
+            .metaClass(Manufacturer.metaClass)
+            .build();
+
+    @Override
+    protected Repository createRepository(SchedulingProvider schedulingProvider) {
+        return JdbcRepository.builder()
+                .url(dbUrl)
+                .schedulingProvider(schedulingProvider)
+                .build();
+    }
+
+    @Test
+    public void testReferencesAreResolvedWithinSingleConnection() {
+        try (Repository repository = JdbcRepository.builder()
+                .url("jdbc:h2:mem:single-connection")
+                .maxConnections(1)
+                .fetchSize(7)
+                .build()) {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            products.update(Products.createMany(100)).blockingAwait();
+
+            List<Product> retrieved = products.query().retrieve().toList().blockingGet();
+            Assert.assertEquals(100, retrieved.size());
+            Assert.assertTrue(retrieved.stream().allMatch(p -> p.inventory() != null && p.inventory().manufacturer() != null));
+
+            List<Product> streamed = products.query().retrieveFlowable().toList().blockingGet();
+            Assert.assertEquals(retrieved, streamed);
+        }
+    }
+
+    @Test
+    public void testConcurrentInsertOrUpdateDoesNotLoseUpdates() {
+        Product product = Products.createOne(1);
+        products.update(product).ignoreElement().blockingAwait();
+
+        Observable.range(0, 10)
+                .flatMapMaybe(i -> products
+                        .update(product.key(), current -> current.map(p -> p.toBuilder().price(p.price() + 1).build()))
+                        .subscribeOn(Schedulers.io()))
+                .ignoreElements()
+                .blockingAwait();
+
+        Assert.assertEquals(
+                product.price() + 10,
+                products.find(product.key()).map(Product::price).blockingGet().intValue());
+    }
+
+    @Test
+    public void testInsertIsWrittenInBatches() {
+        AtomicReference<QueryProvider> queryProvider = new AtomicReference<>();
+        try (Repository ignored = createBatchingRepository("jdbc:h2:mem:batch-insert", queryProvider)) {
+            TestObserver<Notification<Manufacturer>> notifications = queryProvider.get()
+                    .liveQuery(allManufacturers)
+                    .test();
+
+            queryProvider.get().insert(Manufacturer.metaClass, manufacturers(0, 20), false).blockingAwait();
+
+            notifications.awaitCount(20).assertValueCount(20);
+            Assert.assertEquals(3, notifications.values().stream().map(Notification::sequenceNumber).distinct().count());
+            Assert.assertEquals(20, queryProvider.get().query(allManufacturers).count().blockingGet().intValue());
+            notifications.dispose();
+        }
+    }
+
+    @Test
+    public void testFailedBatchIsRolledBack() {
+        AtomicReference<QueryProvider> queryProvider = new AtomicReference<>();
+        try (Repository ignored = createBatchingRepository("jdbc:h2:mem:batch-rollback", queryProvider)) {
+            List<Manufacturer> manufacturers = new ArrayList<>(manufacturers(0, 10));
+            manufacturers.add(9, Manufacturer.create(UniqueId.manufacturerId(8), "Duplicate"));
+
+            queryProvider.get().insert(Manufacturer.metaClass, manufacturers, false)
+                    .test()
+                    .awaitDone(10, TimeUnit.SECONDS)
+                    .assertError(Throwable.class);
+
+            Assert.assertEquals(7, queryProvider.get().query(allManufacturers).count().blockingGet().intValue());
+        }
+    }
+
+    private static Repository createBatchingRepository(String url, AtomicReference<QueryProvider> queryProvider) {
+        return JdbcRepository.builder()
+                .url(url)
+                .insertBatchSize(7)
+                .decorate(qp -> {
+                    queryProvider.set(qp);
+                    return qp;
+                })
+                .build();
+    }
+
+    private static List<Manufacturer> manufacturers(int startingId, int count) {
+        return IntStream.range(startingId, startingId + count)
+                .mapToObj(i -> Manufacturer.create(UniqueId.manufacturerId(i), "Manufacturer " + i))
+                .collect(Collectors.toList());
+    }
+}
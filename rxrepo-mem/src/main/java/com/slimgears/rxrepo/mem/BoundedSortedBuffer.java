@@ -0,0 +1,59 @@
+package com.slimgears.rxrepo.mem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Retains first {@code capacity} items (in sorting order) out of all added ones, so selecting top K of N items
+ * takes O(N log K) time and O(K) memory. Items which compare equal retain their insertion order.
+ */
+class BoundedSortedBuffer<T> {
+    private final Comparator<Entry<T>> comparator;
+    private final PriorityQueue<Entry<T>> heap;
+    private final long capacity;
+    private long nextIndex;
+
+    private static class Entry<T> {
+        private final T item;
+        private final long index;
+
+        private Entry(T item, long index) {
+            this.item = item;
+            this.index = index;
+        }
+    }
+
+    private BoundedSortedBuffer(Comparator<T> comparator, long capacity) {
+        this.comparator = Comparator
+                .<Entry<T>, T>comparing(e -> e.item, comparator)
+                .thenComparingLong(e -> e.index);
+        this.heap = new PriorityQueue<>(this.comparator.reversed());
+        this.capacity = capacity;
+    }
+
+    static <T> BoundedSortedBuffer<T> create(Comparator<T> comparator, long capacity) {
+        return new BoundedSortedBuffer<>(comparator, capacity);
+    }
+
+    void add(T item) {
+        if (capacity <= 0) {
+            return;
+        }
+        Entry<T> entry = new Entry<>(item, nextIndex++);
+        if (heap.size() < capacity) {
+            heap.add(entry);
+        } else if (comparator.compare(entry, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(entry);
+        }
+    }
+
+    List<T> toSortedList() {
+        List<Entry<T>> entries = new ArrayList<>(heap);
+        entries.sort(comparator);
+        return entries.stream().map(e -> e.item).collect(Collectors.toList());
+    }
+}
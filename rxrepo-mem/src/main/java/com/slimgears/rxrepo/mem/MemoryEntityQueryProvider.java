@@ -6,6 +6,8 @@ import com.slimgears.rxrepo.encoding.MetaObjectResolver;
 import com.slimgears.rxrepo.expressions.*;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.*;
+import com.slimgears.rxrepo.util.ChangeLog;
+import com.slimgears.rxrepo.util.ExpressionCompiler;
 import com.slimgears.rxrepo.util.Expressions;
 import com.slimgears.rxrepo.util.PropertyExpressions;
 import com.slimgears.rxrepo.util.PropertyMetas;
@@ -40,6 +42,8 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
     private final Map<K, ObjectReference<S>> objects = new ConcurrentHashMap<>();
     private final Subject<Notification<S>> notificationSubject = PublishSubject.create();
     private final Lazy<List<PropertyMeta<S, ?>>> referenceProperties;
+    private final MemoryIndexes<K, S> indexes;
+    private final ChangeLog<S> changeLog;
 
     private static class ObjectReference<S> {
         private final AtomicReference<S> reference = new AtomicReference<>();
@@ -66,7 +70,8 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
 
     private MemoryEntityQueryProvider(MetaClassWithKey<K, S> metaClass,
                                       MetaObjectResolver objectResolver,
-                                      AtomicLong sequenceNumber) {
+                                      AtomicLong sequenceNumber,
+                                      int changeLogCapacity) {
         this.sequenceNumber = sequenceNumber;
         this.metaClass = metaClass;
         this.objectResolver = objectResolver;
@@ -74,13 +79,16 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
                 .fromIterable(metaClass.properties())
                 .filter(PropertyMetas::isReference)
                 .collect(ImmutableList.toImmutableList()));
+        this.indexes = MemoryIndexes.create(metaClass);
+        this.changeLog = changeLogCapacity > 0 ? ChangeLog.create(changeLogCapacity) : null;
     }
 
     static <K, S> MemoryEntityQueryProvider<K, S> create(
             MetaClassWithKey<K, S> metaClass,
             MetaObjectResolver objectResolver,
-            AtomicLong sequenceNumber) {
-        return new MemoryEntityQueryProvider<>(metaClass, objectResolver, sequenceNumber);
+            AtomicLong sequenceNumber,
+            int changeLogCapacity) {
+        return new MemoryEntityQueryProvider<>(metaClass, objectResolver, sequenceNumber, changeLogCapacity);
     }
 
     @Override
@@ -97,13 +105,13 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
                 S oldValue = referenceResolver.get().get();
                 return entityUpdater
                         .apply(Optional.ofNullable(referenceResolver.get().get()).map(Maybe::just).orElseGet(Maybe::empty))
-                        .flatMap(e -> referenceResolver.get().compareAndSet(oldValue, e)
+                        .flatMap(e -> swap(referenceResolver.get(), oldValue, e)
                                 ? (e != null ? Maybe.just(e): Maybe.empty())
                                 : Maybe.error(new ConcurrentModificationException("Concurrent modification of " + metaClass.simpleName() + " detected")))
                         .doOnSuccess(e -> {
                             if (!Objects.equals(oldValue, e)) {
                                 Notification<S> notification = Notification.ofModified(oldValue, e, seqNum);
-                                notificationSubject.onNext(notification);
+                                publish(notification);
                                 log.debug("Published notification: {}", notification);
                             }
                         })
@@ -112,18 +120,27 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
         });
     }
 
+    // Entity updater may complete asynchronously, so reference swap and index update take the lock again,
+    // to keep indexes consistent with the order of object writes
+    private boolean swap(ObjectReference<S> reference, S oldValue, S newValue) {
+        synchronized (metaClass) {
+            if (!reference.compareAndSet(oldValue, newValue)) {
+                return false;
+            }
+            if (!Objects.equals(oldValue, newValue)) {
+                indexes.update(oldValue, newValue);
+            }
+            return true;
+        }
+    }
+
     @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
     @Override
     public <T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
         log.trace("Querying {}", query);
-        Predicate<S> predicate = Expressions.compileRxPredicate(query.predicate());
-        java.util.function.Function<S, T> mapper = Expressions.compile(query.mapping());
-        return Observable.fromIterable(objects.values())
-                .flatMapMaybe(ref -> Maybe.fromCallable(ref::get)
-                        .doOnSuccess(ob -> Expressions.sequenceNumber().set(ref.modificationSequenceNum.get()))
-                        .filter(predicate)
-                        .map(o -> Notification.ofCreated(o, ref.modificationSequenceNum.get())))
-                .compose(ob -> Optional.ofNullable(query.sorting()).map(this::toNotificationComparator).map(ob::sorted).orElse(ob))
+        Predicate<S> predicate = ExpressionCompiler.compileRxPredicate(query.predicate());
+        java.util.function.Function<S, T> mapper = ExpressionCompiler.compile(query.mapping());
+        return retrieve(query, predicate)
                 .compose(ob -> Optional.ofNullable(query.skip()).map(ob::skip).orElse(ob))
                 .compose(ob -> Optional.ofNullable(query.limit()).map(ob::take).orElse(ob))
                 .doOnNext(val -> log.trace("Object without references: {}", val))
@@ -146,6 +163,55 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
                 .doOnNext(val -> log.trace("Emitting object: {}", val));
     }
 
+    // Sorting with limit retains only first (skip + limit) items instead of sorting all of them, or walks
+    // sorted index of the leading sort property, when there is one and the predicate cannot be looked up in indexes.
+    // An object moved to another group while the index is walked may be reached twice, so emitted keys are skipped
+    private Observable<Notification<S>> retrieve(QueryInfo<K, S, ?> query, Predicate<S> predicate) {
+        Comparator<Notification<S>> comparator = Optional.ofNullable(query.sorting()).map(this::toNotificationComparator).orElse(null);
+        if (comparator == null) {
+            return filter(candidates(query.predicate()), predicate);
+        }
+        if (query.limit() == null) {
+            return filter(candidates(query.predicate()), predicate).sorted(comparator);
+        }
+        long count = Optional.ofNullable(query.skip()).orElse(0L) + query.limit();
+        return Observable.defer(() -> {
+            Optional<Collection<K>> keys = indexes.lookup(query.predicate());
+            SortingInfo<S, ?, ? extends Comparable<?>> leadingSorting = query.sorting().get(0);
+            return keys.isPresent()
+                    ? topOf(filter(candidatesOf(keys.get()), predicate), comparator, count)
+                    : indexes.sortedIndexOf(leadingSorting.property())
+                    .map(index -> walkSortedIndex(index, leadingSorting.ascending(), predicate, comparator, count))
+                    .orElseGet(() -> topOf(filter(allCandidates(), predicate), comparator, count));
+        });
+    }
+
+    private Observable<Notification<S>> walkSortedIndex(MemoryIndex<K, S, ?> index, boolean ascending, Predicate<S> predicate, Comparator<Notification<S>> comparator, long count) {
+        Set<K> emittedKeys = new HashSet<>();
+        return Observable
+                .fromIterable(index.sortedKeyGroups(ascending))
+                .concatMap(group -> topOf(
+                        filter(candidatesOf(group), predicate).filter(n -> !emittedKeys.contains(metaClass.keyOf(n.newValue()))),
+                        comparator,
+                        count - emittedKeys.size()))
+                .doOnNext(n -> emittedKeys.add(metaClass.keyOf(n.newValue())))
+                .take(count);
+    }
+
+    private static <T> Observable<T> topOf(Observable<T> source, Comparator<T> comparator, long count) {
+        return source
+                .collect(() -> BoundedSortedBuffer.create(comparator, count), BoundedSortedBuffer::add)
+                .flattenAsObservable(BoundedSortedBuffer::toSortedList);
+    }
+
+    private Observable<Notification<S>> filter(Observable<ObjectReference<S>> candidates, Predicate<S> predicate) {
+        return candidates
+                .flatMapMaybe(ref -> Maybe.fromCallable(ref::get)
+                        .doOnSuccess(ob -> Expressions.sequenceNumber().set(ref.modificationSequenceNum.get()))
+                        .filter(predicate)
+                        .map(o -> Notification.ofCreated(o, ref.modificationSequenceNum.get())));
+    }
+
     private <T> Comparator<Notification<T>> toNotificationComparator(Iterable<SortingInfo<T, ?, ? extends Comparable<?>>> sortingInfos) {
         return Optional.ofNullable(SortingInfos.toComparator(sortingInfos))
                 .map(c -> Comparator.<Notification<T>, T>comparing(Notification::newValue, c))
@@ -237,19 +303,19 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
 
     @Override
     public Single<Integer> delete(DeleteInfo<K, S> delete) {
-        Predicate<S> predicate = Expressions.compileRxPredicate(delete.predicate());
-        return Observable
-                .fromIterable(objects.values())
-                .doOnSubscribe(d -> sequenceNumber.incrementAndGet())
+        Predicate<S> predicate = ExpressionCompiler.compileRxPredicate(delete.predicate());
+        AtomicLong seqNum = new AtomicLong();
+        return candidates(delete.predicate())
+                .doOnSubscribe(d -> seqNum.set(sequenceNumber.incrementAndGet()))
                 .map(ObjectReference::get)
                 .filter(predicate)
                 .compose(ob -> Optional.ofNullable(delete.limit()).map(ob::take).orElse(ob))
                 .map(metaClass::keyOf)
                 .filter(key -> Optional
-                        .ofNullable(objects.remove(key))
-                        .map(ref -> Notification.ofDeleted(ref.get(), ref.modificationSequenceNum.get()))
+                        .ofNullable(remove(key))
+                        .map(ref -> Notification.ofDeleted(ref.get(), seqNum.get()))
                         .map(n -> {
-                            notificationSubject.onNext(n);
+                            publish(n);
                             return true;
                         })
                         .orElse(false)
@@ -258,9 +324,51 @@ public class MemoryEntityQueryProvider<K, S> implements EntityQueryProvider<K, S
                 .map(Long::intValue);
     }
 
+    private ObjectReference<S> remove(K key) {
+        synchronized (metaClass) {
+            ObjectReference<S> reference = objects.remove(key);
+            if (reference != null) {
+                indexes.update(reference.get(), null);
+            }
+            return reference;
+        }
+    }
+
+    @Override
+    public Observable<Notification<S>> changesSince(long sequenceNumber) {
+        return Observable.defer(() -> Optional.ofNullable(changeLog)
+                .flatMap(cl -> cl.changesSince(sequenceNumber))
+                .map(Observable::fromIterable)
+                .orElseGet(() -> Observable.error(new ChangeLogUnavailableException("Changes of " + metaClass.simpleName() + " since " + sequenceNumber + " are no longer available"))));
+    }
+
     @Override
     public Completable drop() {
-        return Completable.fromAction(objects::clear);
+        return Completable.fromAction(() -> {
+            objects.clear();
+            indexes.clear();
+            long seqNum = sequenceNumber.incrementAndGet();
+            Optional.ofNullable(changeLog).ifPresent(cl -> cl.truncate(seqNum));
+        });
+    }
+
+    private void publish(Notification<S> notification) {
+        Optional.ofNullable(changeLog).ifPresent(cl -> cl.append(notification));
+        notificationSubject.onNext(notification);
+    }
+
+    private Observable<ObjectReference<S>> candidates(ObjectExpression<S, Boolean> predicate) {
+        return Observable.defer(() -> indexes.lookup(predicate)
+                .map(this::candidatesOf)
+                .orElseGet(this::allCandidates));
+    }
+
+    private Observable<ObjectReference<S>> candidatesOf(Iterable<K> keys) {
+        return Observable.fromIterable(keys).concatMapMaybe(key -> Maybe.fromCallable(() -> objects.get(key)));
+    }
+
+    private Observable<ObjectReference<S>> allCandidates() {
+        return Observable.fromIterable(objects.values());
     }
 
     @SuppressWarnings("unchecked")
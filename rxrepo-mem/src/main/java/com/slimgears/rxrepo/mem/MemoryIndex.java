@@ -0,0 +1,140 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+class MemoryIndex<K, S, V> {
+    private final MetaClassWithKey<K, S> metaClass;
+    private final PropertyMeta<S, V> property;
+    private final Class<?> valueClass;
+    private final Map<V, Set<K>> hashIndex = new ConcurrentHashMap<>();
+    private final NavigableMap<V, Set<K>> sortedIndex;
+    private final Set<K> nullKeys = ConcurrentHashMap.newKeySet();
+
+    private MemoryIndex(MetaClassWithKey<K, S> metaClass, PropertyMeta<S, V> property) {
+        this.metaClass = metaClass;
+        this.property = property;
+        this.valueClass = property.type().wrap().getRawType();
+        this.sortedIndex = Comparable.class.isAssignableFrom(valueClass)
+                ? new ConcurrentSkipListMap<>()
+                : null;
+    }
+
+    static <K, S, V> MemoryIndex<K, S, V> create(MetaClassWithKey<K, S> metaClass, PropertyMeta<S, V> property) {
+        return new MemoryIndex<>(metaClass, property);
+    }
+
+    PropertyMeta<S, V> property() {
+        return property;
+    }
+
+    boolean isSorted() {
+        return sortedIndex != null;
+    }
+
+    boolean accepts(Object value) {
+        return valueClass.isInstance(value);
+    }
+
+    void update(S oldValue, S newValue) {
+        V oldIndexValue = Optional.ofNullable(oldValue).map(property::getValue).orElse(null);
+        V newIndexValue = Optional.ofNullable(newValue).map(property::getValue).orElse(null);
+        if (oldValue != null && newValue != null && Objects.equals(oldIndexValue, newIndexValue)) {
+            return;
+        }
+        Optional.ofNullable(oldValue).ifPresent(this::remove);
+        Optional.ofNullable(newValue).ifPresent(this::add);
+    }
+
+    synchronized void clear() {
+        hashIndex.clear();
+        nullKeys.clear();
+        Optional.ofNullable(sortedIndex).ifPresent(Map::clear);
+    }
+
+    Collection<K> lookup(Object value) {
+        Set<K> keys = valueClass.isInstance(value) ? hashIndex.get(value) : null;
+        return keys != null ? ImmutableSet.copyOf(keys) : Collections.emptySet();
+    }
+
+    Collection<K> lookupIn(Collection<?> values) {
+        return values.stream()
+                .map(this::lookup)
+                .flatMap(Collection::stream)
+                .collect(ImmutableSet.toImmutableSet());
+    }
+
+    @SuppressWarnings("unchecked")
+    Collection<K> lookupRange(Object from, boolean fromInclusive, Object to, boolean toInclusive, boolean includeNulls) {
+        NavigableMap<V, Set<K>> range = sortedIndex;
+        if (from != null && to != null) {
+            range = range.subMap((V)from, fromInclusive, (V)to, toInclusive);
+        } else if (from != null) {
+            range = range.tailMap((V)from, fromInclusive);
+        } else if (to != null) {
+            range = range.headMap((V)to, toInclusive);
+        }
+        return Stream
+                .concat(
+                        range.values().stream().flatMap(Collection::stream),
+                        includeNulls ? nullKeys.stream() : Stream.empty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Groups of keys with equal property values, in the property sorting order (nulls last when ascending).
+     * Each group is copied when reached, as the index may be updated while the groups are iterated
+     */
+    Iterable<Collection<K>> sortedKeyGroups(boolean ascending) {
+        return Iterables.transform(ascending
+                ? Iterables.concat(sortedIndex.values(), Collections.singleton(nullKeys))
+                : Iterables.concat(Collections.singleton(nullKeys), sortedIndex.descendingMap().values()),
+                ImmutableList::copyOf);
+    }
+
+    private synchronized void add(S entity) {
+        V value = property.getValue(entity);
+        if (value == null) {
+            nullKeys.add(metaClass.keyOf(entity));
+            return;
+        }
+        Set<K> keys = hashIndex.computeIfAbsent(value, v -> {
+            Set<K> newKeys = ConcurrentHashMap.newKeySet();
+            Optional.ofNullable(sortedIndex).ifPresent(index -> index.put(v, newKeys));
+            return newKeys;
+        });
+        keys.add(metaClass.keyOf(entity));
+    }
+
+    private synchronized void remove(S entity) {
+        V value = property.getValue(entity);
+        if (value == null) {
+            nullKeys.remove(metaClass.keyOf(entity));
+            return;
+        }
+        Set<K> keys = hashIndex.get(value);
+        if (keys == null) {
+            return;
+        }
+        keys.remove(metaClass.keyOf(entity));
+        if (keys.isEmpty()) {
+            hashIndex.remove(value);
+            Optional.ofNullable(sortedIndex).ifPresent(index -> index.remove(value));
+        }
+    }
+}
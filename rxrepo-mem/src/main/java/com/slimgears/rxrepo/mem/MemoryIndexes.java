@@ -0,0 +1,180 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.slimgears.rxrepo.annotations.Indexable;
+import com.slimgears.rxrepo.expressions.ConstantExpression;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.expressions.UnaryOperationExpression;
+import com.slimgears.rxrepo.expressions.internal.BooleanBinaryOperationExpression;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import com.slimgears.util.stream.Streams;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+class MemoryIndexes<K, S> {
+    private final MetaClassWithKey<K, S> metaClass;
+    private final Map<String, MemoryIndex<K, S, ?>> indexes;
+
+    private MemoryIndexes(MetaClassWithKey<K, S> metaClass) {
+        this.metaClass = metaClass;
+        this.indexes = Streams
+                .fromIterable(metaClass.properties())
+                .filter(p -> p.hasAnnotation(Indexable.class))
+                .filter(p -> !isKeyProperty(p))
+                .collect(ImmutableMap.toImmutableMap(PropertyMeta::name, p -> MemoryIndex.create(metaClass, p)));
+    }
+
+    static <K, S> MemoryIndexes<K, S> create(MetaClassWithKey<K, S> metaClass) {
+        return new MemoryIndexes<>(metaClass);
+    }
+
+    void update(S oldValue, S newValue) {
+        indexes.values().forEach(index -> index.update(oldValue, newValue));
+    }
+
+    void clear() {
+        indexes.values().forEach(MemoryIndex::clear);
+    }
+
+    Optional<Collection<K>> lookup(ObjectExpression<S, Boolean> predicate) {
+        return Optional.ofNullable(predicate).flatMap(this::lookupPredicate);
+    }
+
+    Optional<MemoryIndex<K, S, ?>> sortedIndexOf(ObjectExpression<S, ?> property) {
+        return indexOf(property).filter(MemoryIndex::isSorted);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Collection<K>> lookupPredicate(ObjectExpression<S, ?> predicate) {
+        switch (predicate.type()) {
+            case And:
+                return narrowest(lookupPredicate(asBinary(predicate).left()), lookupPredicate(asBinary(predicate).right()));
+            case Or:
+                return union(lookupPredicate(asBinary(predicate).left()), lookupPredicate(asBinary(predicate).right()));
+            case Not:
+                return lookupNegated(((UnaryOperationExpression<S, ?, Boolean>)predicate).operand());
+            case Equals:
+                return lookupEquals(asBinary(predicate));
+            case ValueIn:
+                return lookupValueIn(asBinary(predicate));
+            case LessThan:
+            case GreaterThan:
+                return lookupRange(asBinary(predicate), false);
+            default:
+                return Optional.empty();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Collection<K>> lookupNegated(ObjectExpression<S, ?> predicate) {
+        switch (predicate.type()) {
+            case Not:
+                return lookupPredicate(((UnaryOperationExpression<S, ?, Boolean>)predicate).operand());
+            case And:
+                return union(lookupNegated(asBinary(predicate).left()), lookupNegated(asBinary(predicate).right()));
+            case Or:
+                return narrowest(lookupNegated(asBinary(predicate).left()), lookupNegated(asBinary(predicate).right()));
+            case LessThan:
+            case GreaterThan:
+                return lookupRange(asBinary(predicate), true);
+            default:
+                return Optional.empty();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Collection<K>> lookupEquals(BooleanBinaryOperationExpression<S, ?, ?> expression) {
+        boolean propertyOnLeft = isProperty(expression.left());
+        ObjectExpression<S, ?> property = propertyOnLeft ? expression.left() : expression.right();
+        ObjectExpression<S, ?> constant = propertyOnLeft ? expression.right() : expression.left();
+        if (!isConstant(constant)) {
+            return Optional.empty();
+        }
+        Object value = ((ConstantExpression<S, ?>)constant).value();
+        if (isKeyProperty(property)) {
+            return Optional.of(Collections.singleton((K)value));
+        }
+        return indexOf(property).map(index -> index.lookup(value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Collection<K>> lookupValueIn(BooleanBinaryOperationExpression<S, ?, ?> expression) {
+        if (!isConstant(expression.right())) {
+            return Optional.empty();
+        }
+        Collection<?> values = ((ConstantExpression<S, Collection<?>>)expression.right()).value();
+        if (isKeyProperty(expression.left())) {
+            return Optional.of(ImmutableSet.copyOf((Collection<K>)values));
+        }
+        return indexOf(expression.left()).map(index -> index.lookupIn(values));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<Collection<K>> lookupRange(BooleanBinaryOperationExpression<S, ?, ?> expression, boolean negated) {
+        boolean propertyOnLeft = isProperty(expression.left());
+        ObjectExpression<S, ?> property = propertyOnLeft ? expression.left() : expression.right();
+        ObjectExpression<S, ?> constant = propertyOnLeft ? expression.right() : expression.left();
+        if (!isConstant(constant)) {
+            return Optional.empty();
+        }
+        Object value = ((ConstantExpression<S, ?>)constant).value();
+        boolean upperBound = (expression.type() == Expression.Type.LessThan) == propertyOnLeft;
+        return indexOf(property)
+                .filter(MemoryIndex::isSorted)
+                .filter(index -> index.accepts(value))
+                .map(index -> (upperBound != negated)
+                        ? index.lookupRange(null, false, value, negated, negated)
+                        : index.lookupRange(value, negated, null, false, negated));
+    }
+
+    private Optional<MemoryIndex<K, S, ?>> indexOf(ObjectExpression<S, ?> expression) {
+        return Optional.of(expression)
+                .filter(this::isProperty)
+                .map(exp -> ((PropertyExpression<S, ?, ?>)exp).property())
+                .map(p -> indexes.get(p.name()));
+    }
+
+    private boolean isKeyProperty(ObjectExpression<S, ?> expression) {
+        return isProperty(expression) && isKeyProperty(((PropertyExpression<S, ?, ?>)expression).property());
+    }
+
+    private boolean isKeyProperty(PropertyMeta<?, ?> property) {
+        return metaClass.keyProperty().name().equals(property.name());
+    }
+
+    private boolean isProperty(ObjectExpression<S, ?> expression) {
+        return expression.type().operationType() == Expression.OperationType.Property &&
+                ((PropertyExpression<S, ?, ?>)expression).target().type().operationType() == Expression.OperationType.Argument;
+    }
+
+    private static boolean isConstant(ObjectExpression<?, ?> expression) {
+        return expression.type().operationType() == Expression.OperationType.Constant &&
+                expression.type() != Expression.Type.NullConstant;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S> BooleanBinaryOperationExpression<S, ?, ?> asBinary(ObjectExpression<S, ?> expression) {
+        return (BooleanBinaryOperationExpression<S, ?, ?>)expression;
+    }
+
+    private static <K> Optional<Collection<K>> narrowest(Optional<Collection<K>> first, Optional<Collection<K>> second) {
+        if (first.isPresent() && second.isPresent()) {
+            return first.get().size() <= second.get().size() ? first : second;
+        }
+        return first.isPresent() ? first : second;
+    }
+
+    private static <K> Optional<Collection<K>> union(Optional<Collection<K>> first, Optional<Collection<K>> second) {
+        if (first.isPresent() && second.isPresent()) {
+            return Optional.of(ImmutableSet.<K>builder().addAll(first.get()).addAll(second.get()).build());
+        }
+        return Optional.empty();
+    }
+}
@@ -21,13 +21,23 @@ public class MemoryQueryProvider extends AbstractEntityQueryProviderAdapter impl
     private final List<AutoCloseable> closeableList = Collections.synchronizedList(new ArrayList<>());
     private final AtomicLong sequenceNumber = new AtomicLong();
     private final SchedulingProvider schedulingProvider;
+    private final int changeLogCapacity;
 
-    private MemoryQueryProvider(SchedulingProvider schedulingProvider) {
+    private MemoryQueryProvider(SchedulingProvider schedulingProvider, int changeLogCapacity) {
         this.schedulingProvider = schedulingProvider;
+        this.changeLogCapacity = changeLogCapacity;
     }
 
     public static MemoryQueryProvider create(SchedulingProvider schedulingProvider) {
-        return new MemoryQueryProvider(schedulingProvider);
+        return create(schedulingProvider, 0);
+    }
+
+    /**
+     * Creates provider, which retains up to changeLogCapacity latest changes per entity type, so that live queries
+     * can be resumed from a sequence number without full resync. Zero capacity disables change log
+     */
+    public static MemoryQueryProvider create(SchedulingProvider schedulingProvider, int changeLogCapacity) {
+        return new MemoryQueryProvider(schedulingProvider, changeLogCapacity);
     }
 
     @Override
@@ -44,7 +54,7 @@ public class MemoryQueryProvider extends AbstractEntityQueryProviderAdapter impl
 
     @Override
     protected <K, S> EntityQueryProvider<K, S> createProvider(MetaClassWithKey<K, S> metaClass) {
-        MemoryEntityQueryProvider<K, S> provider = MemoryEntityQueryProvider.create(metaClass, this, sequenceNumber);
+        MemoryEntityQueryProvider<K, S> provider = MemoryEntityQueryProvider.create(metaClass, this, sequenceNumber, changeLogCapacity);
         closeableList.add(provider);
         return provider;
     }
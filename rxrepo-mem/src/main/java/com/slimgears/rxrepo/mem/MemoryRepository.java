@@ -13,10 +13,14 @@ import java.time.Duration;
 
 public class MemoryRepository {
     public static Repository create(QueryProvider.Decorator... decorators) {
+        return createWithChangeLog(0, decorators);
+    }
+
+    public static Repository createWithChangeLog(int changeLogCapacity, QueryProvider.Decorator... decorators) {
         SchedulingProvider schedulingProvider = CachedRoundRobinSchedulingProvider.create(10, Duration.ofMinutes(1));
         return Repository
                 .fromProvider(
-                        MemoryQueryProvider.create(schedulingProvider),
+                        MemoryQueryProvider.create(schedulingProvider, changeLogCapacity),
                         //LockQueryProviderDecorator.create(SemaphoreLockProvider.create()),
                         LiveQueryProviderDecorator.create(Duration.ofMillis(2000)),
                         ObserveOnSchedulingQueryProviderDecorator.create(schedulingProvider),
@@ -0,0 +1,23 @@
+package com.slimgears.rxrepo.mem;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class BoundedSortedBufferTest {
+    @Test
+    public void testRetainsFirstItems() {
+        BoundedSortedBuffer<Integer> buffer = BoundedSortedBuffer.create(Comparator.naturalOrder(), 3);
+        Arrays.asList(7, 3, 9, 1, 8, 2, 5).forEach(buffer::add);
+        Assert.assertEquals(Arrays.asList(1, 2, 3), buffer.toSortedList());
+    }
+
+    @Test
+    public void testEqualItemsRetainInsertionOrder() {
+        BoundedSortedBuffer<String> buffer = BoundedSortedBuffer.create(Comparator.comparing(String::length), 3);
+        Arrays.asList("ccc", "a1", "b", "a2", "a3").forEach(buffer::add);
+        Assert.assertEquals(Arrays.asList("b", "a1", "a2"), buffer.toSortedList());
+    }
+}
@@ -0,0 +1,138 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.decorator.AbstractQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.EntityCacheQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.test.Inventory;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.rxrepo.util.CachedRoundRobinSchedulingProvider;
+import io.reactivex.Observable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EntityCacheQueryProviderDecoratorTest {
+    private final AtomicInteger queryCount = new AtomicInteger();
+    private MemoryQueryProvider memoryQueryProvider;
+    private QueryProvider queryProvider;
+
+    @Before
+    public void setUp() {
+        memoryQueryProvider = MemoryQueryProvider.create(CachedRoundRobinSchedulingProvider.create(1, Duration.ofMinutes(1)));
+        memoryQueryProvider.insert(Product.metaClass, Products.createMany(10), false).blockingAwait();
+        queryProvider = QueryProvider.Decorator
+                .of(CountingQueryProviderDecorator::new, EntityCacheQueryProviderDecorator.create(100))
+                .apply(memoryQueryProvider);
+    }
+
+    @After
+    public void tearDown() {
+        queryProvider.close();
+    }
+
+    @Test
+    public void testRepeatedKeyQueryIsServedFromCacheWithSequenceNumber() {
+        List<Notification<Product>> first = retrieve(queryProvider.query(byKey(1)));
+        List<Notification<Product>> second = retrieve(queryProvider.query(byKey(1)));
+        List<Notification<Product>> streamed = retrieve(queryProvider.queryFlowable(byKey(1)).toObservable());
+
+        Assert.assertEquals(1, first.size());
+        Assert.assertEquals(Products.createOne(1), first.get(0).newValue());
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(first, streamed);
+        Assert.assertEquals(1, queryCount.get());
+    }
+
+    @Test
+    public void testMissingEntityIsCached() {
+        Assert.assertTrue(retrieve(queryProvider.query(byKey(20))).isEmpty());
+        Assert.assertTrue(retrieve(queryProvider.query(byKey(20))).isEmpty());
+        Assert.assertEquals(1, queryCount.get());
+    }
+
+    @Test
+    public void testWriteInvalidatesCachedEntity() {
+        retrieve(queryProvider.query(byKey(1)));
+        queryProvider.insertOrUpdate(Product.metaClass, Products.createOne(1).toBuilder().price(1000).build(), false).blockingGet();
+
+        List<Notification<Product>> updated = retrieve(queryProvider.query(byKey(1)));
+        Assert.assertEquals(1000, updated.get(0).newValue().price());
+        Assert.assertEquals(2, queryCount.get());
+    }
+
+    @Test
+    public void testCachedEntityIsUpdatedByLiveQuery() throws InterruptedException {
+        retrieve(queryProvider.query(byKey(1)));
+        memoryQueryProvider.insertOrUpdate(Product.metaClass, Products.createOne(1).toBuilder().price(1000).build(), false).blockingGet();
+
+        int price = 0;
+        for (int i = 0; i < 50 && price != 1000; ++i) {
+            Thread.sleep(100);
+            price = retrieve(queryProvider.query(byKey(1))).get(0).newValue().price();
+        }
+
+        Assert.assertEquals(1000, price);
+        Assert.assertEquals(1, queryCount.get());
+    }
+
+    @Test
+    public void testCachedEntityIsInvalidatedByChangeOfReferencedEntity() throws InterruptedException {
+        Inventory inventory = Products.createOne(1).inventory();
+        memoryQueryProvider.insert(Inventory.metaClass, Collections.singleton(inventory), false).blockingAwait();
+        retrieve(queryProvider.query(byKey(1)));
+        memoryQueryProvider.insertOrUpdate(Inventory.metaClass, inventory.toBuilder().name("Updated inventory").build(), false).blockingGet();
+
+        String inventoryName = null;
+        for (int i = 0; i < 50 && !"Updated inventory".equals(inventoryName); ++i) {
+            Thread.sleep(100);
+            inventoryName = retrieve(queryProvider.query(byKey(1))).get(0).newValue().inventory().name();
+        }
+
+        Assert.assertEquals("Updated inventory", inventoryName);
+    }
+
+    @Test
+    public void testNonKeyQueryIsNotCached() {
+        QueryInfo<UniqueId, Product, Product> query = QueryInfo.<UniqueId, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.name.eq("Product 1"))
+                .build();
+
+        retrieve(queryProvider.query(query));
+        retrieve(queryProvider.query(query));
+        Assert.assertEquals(2, queryCount.get());
+    }
+
+    private static QueryInfo<UniqueId, Product, Product> byKey(int id) {
+        return QueryInfo.<UniqueId, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.key.eq(UniqueId.productId(id)))
+                .build();
+    }
+
+    private static List<Notification<Product>> retrieve(Observable<Notification<Product>> notifications) {
+        return notifications.toList().blockingGet();
+    }
+
+    private class CountingQueryProviderDecorator extends AbstractQueryProviderDecorator {
+        private CountingQueryProviderDecorator(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+        }
+
+        @Override
+        public <K, S, T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
+            queryCount.incrementAndGet();
+            return super.query(query);
+        }
+    }
+}
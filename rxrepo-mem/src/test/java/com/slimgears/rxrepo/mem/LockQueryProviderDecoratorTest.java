@@ -0,0 +1,88 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.decorator.LockQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.test.Inventory;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.rxrepo.util.CachedRoundRobinSchedulingProvider;
+import com.slimgears.rxrepo.util.StripedLockProvider;
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class LockQueryProviderDecoratorTest {
+    private QueryProvider queryProvider;
+
+    @Before
+    public void setUp() {
+        queryProvider = QueryProvider.Decorator
+                .of(LockQueryProviderDecorator.create(StripedLockProvider.create()),
+                        UpdateReferencesFirstQueryProviderDecorator.create())
+                .apply(MemoryQueryProvider.create(CachedRoundRobinSchedulingProvider.create(1, Duration.ofMinutes(1))));
+    }
+
+    @After
+    public void tearDown() {
+        queryProvider.close();
+    }
+
+    @Test
+    public void testUpdateOfSelfReferencingEntityDoesNotDeadlock() {
+        Inventory child = inventory(2, null);
+        Inventory parent = inventory(1, child);
+
+        queryProvider.insertOrUpdate(Inventory.metaClass, parent.id(), true, current -> Maybe.just(parent))
+                .test()
+                .awaitDone(5, TimeUnit.SECONDS)
+                .assertValue(supplier -> supplier.get().equals(parent));
+
+        Assert.assertEquals(child, find(child.id()));
+    }
+
+    @Test
+    public void testConcurrentUpdatesOfReferencingTypesDoNotDeadlock() {
+        Completable keyedUpdates = Observable.range(0, 20)
+                .flatMapMaybe(i -> queryProvider
+                        .insertOrUpdate(Product.metaClass, UniqueId.productId(i), true, current -> Maybe.just(Products.createOne(i)))
+                        .subscribeOn(Schedulers.io()))
+                .ignoreElements();
+        Completable recursiveWrites = Observable.range(0, 20)
+                .flatMapCompletable(i -> queryProvider
+                        .insert(Inventory.metaClass, Collections.singleton(inventory(100 + i, inventory(50 + i, null))), true)
+                        .subscribeOn(Schedulers.io()));
+
+        Assert.assertTrue(Completable.mergeArray(keyedUpdates, recursiveWrites)
+                .blockingAwait(10, TimeUnit.SECONDS));
+    }
+
+    private Inventory find(UniqueId id) {
+        return queryProvider.query(QueryInfo.<UniqueId, Inventory, Inventory>builder()
+                        .metaClass(Inventory.metaClass)
+                        .predicate(Inventory.$.id.eq(id))
+                        .build())
+                .map(Notification::newValue)
+                .blockingFirst();
+    }
+
+    private static Inventory inventory(int id, Inventory child) {
+        return Inventory.builder()
+                .id(UniqueId.inventoryId(id))
+                .name("Inventory " + id)
+                .inventory(child)
+                .build();
+    }
+}
@@ -0,0 +1,82 @@
+package com.slimgears.rxrepo.mem;
+
+import com.google.common.collect.ImmutableList;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.SortingInfo;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.rxrepo.util.CachedRoundRobinSchedulingProvider;
+import com.slimgears.util.stream.Streams;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class MemoryEntityQueryProviderTest {
+    private MemoryQueryProvider queryProvider;
+
+    @Before
+    public void setUp() {
+        queryProvider = MemoryQueryProvider.create(CachedRoundRobinSchedulingProvider.create(1, Duration.ofMinutes(1)));
+        queryProvider.insert(Product.metaClass, Products.createMany(200), false).blockingAwait();
+    }
+
+    @After
+    public void tearDown() {
+        queryProvider.close();
+    }
+
+    @Test
+    public void testSortingByIndexedPropertyWithSkipAndLimit() {
+        List<Product> products = retrieve(
+                Product.$.name.contains("1"),
+                ImmutableList.of(SortingInfo.create(Product.$.price, false), SortingInfo.create(Product.$.name, true)));
+
+        Assert.assertEquals(expected(
+                product -> product.name().contains("1"),
+                Comparator.comparing(Product::price, Comparator.reverseOrder()).thenComparing(Product::name)),
+                products);
+    }
+
+    @Test
+    public void testSortingByNonIndexedPropertyWithSkipAndLimit() {
+        List<Product> products = retrieve(
+                null,
+                ImmutableList.of(SortingInfo.create(Product.$.name, false)));
+
+        Assert.assertEquals(expected(
+                product -> true,
+                Comparator.comparing(Product::name, Comparator.reverseOrder())),
+                products);
+    }
+
+    private List<Product> retrieve(ObjectExpression<Product, Boolean> predicate, ImmutableList<SortingInfo<Product, ?, ? extends Comparable<?>>> sorting) {
+        return queryProvider.query(QueryInfo.<UniqueId, Product, Product>builder()
+                        .metaClass(Product.metaClass)
+                        .predicate(predicate)
+                        .sorting(sorting)
+                        .skip(5L)
+                        .limit(10L)
+                        .build())
+                .map(Notification::newValue)
+                .toList()
+                .blockingGet();
+    }
+
+    private static List<Product> expected(java.util.function.Predicate<Product> predicate, Comparator<Product> comparator) {
+        return Streams.fromIterable(Products.createMany(200))
+                .filter(predicate)
+                .sorted(comparator)
+                .skip(5)
+                .limit(10)
+                .collect(Collectors.toList());
+    }
+}
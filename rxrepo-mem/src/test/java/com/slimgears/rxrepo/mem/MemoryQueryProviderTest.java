@@ -1,12 +1,75 @@
 package com.slimgears.rxrepo.mem;
 
+import com.slimgears.rxrepo.query.EntitySet;
+import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.Repository;
 import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
 import com.slimgears.rxrepo.util.SchedulingProvider;
+import io.reactivex.observers.TestObserver;
+import org.junit.Test;
+
+import java.util.Objects;
+
+import static com.slimgears.rxrepo.test.TestUtils.countAtLeast;
 
 public class MemoryQueryProviderTest extends AbstractRepositoryTest {
     @Override
     protected Repository createRepository(SchedulingProvider schedulingProvider) {
         return MemoryRepository.create();
     }
+
+    @Test
+    public void testObserveFromReplaysRetainedChanges() {
+        try (Repository repository = MemoryRepository.createWithChangeLog(100)) {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            long sequenceNumber = insertAndGetLastSequenceNumber(products);
+            products.update(Products.createMany(10, 5)).blockingAwait();
+
+            products.query()
+                    .liveSelect()
+                    .observeFrom(sequenceNumber)
+                    .test()
+                    .assertOf(countAtLeast(6))
+                    .assertValueAt(0, Notification::isCreate)
+                    .assertValueAt(4, Notification::isCreate)
+                    .assertValueAt(5, Notification::isEmpty)
+                    .dispose();
+        }
+    }
+
+    @Test
+    public void testObserveFromResyncsWhenChangesAreEvicted() {
+        try (Repository repository = MemoryRepository.createWithChangeLog(3)) {
+            EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
+            long sequenceNumber = insertAndGetLastSequenceNumber(products);
+            products.update(Products.createMany(10, 5)).blockingAwait();
+
+            products.query()
+                    .liveSelect()
+                    .observeFrom(sequenceNumber)
+                    .test()
+                    .assertOf(countAtLeast(17))
+                    .assertValueAt(0, Notification::isReset)
+                    .assertValueAt(1, Notification::isCreate)
+                    .assertValueAt(16, Notification::isEmpty)
+                    .dispose();
+        }
+    }
+
+    private static long insertAndGetLastSequenceNumber(EntitySet<UniqueId, Product> products) {
+        TestObserver<Notification<Product>> liveObserver = products.query()
+                .liveSelect()
+                .observe()
+                .test();
+        products.update(Products.createMany(0, 10)).blockingAwait();
+        liveObserver.assertOf(countAtLeast(10)).dispose();
+        return liveObserver.values().stream()
+                .map(Notification::sequenceNumber)
+                .filter(Objects::nonNull)
+                .max(Long::compare)
+                .orElse(0L);
+    }
 }
@@ -0,0 +1,111 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.decorator.AbstractQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.ResultCacheQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.rxrepo.util.CachedRoundRobinSchedulingProvider;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ResultCacheQueryProviderDecoratorTest {
+    private final static QueryInfo<UniqueId, Product, Product> allProducts = QueryInfo.<UniqueId, Product, Product>builder()
+            .metaClass(Product.metaClass)
+            .build();
+    private final AtomicInteger queryCount = new AtomicInteger();
+    private final AtomicReference<Runnable> beforeQueryComplete = new AtomicReference<>(() -> {});
+    private QueryProvider queryProvider;
+
+    @After
+    public void tearDown() {
+        queryProvider.close();
+    }
+
+    @Test
+    public void testRepeatedQueryIsServedFromCache() {
+        createProvider(100);
+        List<Product> first = retrieve(queryProvider.query(allProducts));
+        List<Product> second = retrieve(queryProvider.query(allProducts));
+        List<Product> streamed = retrieve(queryProvider.queryFlowable(allProducts).toObservable());
+
+        Assert.assertEquals(10, first.size());
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(first, streamed);
+        Assert.assertEquals(1, queryCount.get());
+    }
+
+    @Test
+    public void testWriteInvalidatesCachedResult() {
+        createProvider(100);
+        retrieve(queryProvider.query(allProducts));
+        queryProvider.insertOrUpdate(Product.metaClass, Products.createOne(20), false).blockingGet();
+
+        Assert.assertEquals(11, retrieve(queryProvider.query(allProducts)).size());
+        Assert.assertEquals(2, queryCount.get());
+    }
+
+    @Test
+    public void testResultExceedingMaxSizeIsStreamedAndNotCached() {
+        createProvider(5);
+        Assert.assertEquals(10, retrieve(queryProvider.query(allProducts)).size());
+        Assert.assertEquals(10, retrieve(queryProvider.queryFlowable(allProducts).toObservable()).size());
+        Assert.assertEquals(2, queryCount.get());
+    }
+
+    @Test
+    public void testResultChangedWhileRetrievedIsNotCached() {
+        createProvider(100);
+        beforeQueryComplete.set(() -> {
+            beforeQueryComplete.set(() -> {});
+            queryProvider.insertOrUpdate(Product.metaClass, Products.createOne(20), false).blockingGet();
+        });
+
+        Assert.assertEquals(10, retrieve(queryProvider.query(allProducts)).size());
+        Assert.assertEquals(11, retrieve(queryProvider.query(allProducts)).size());
+        Assert.assertEquals(2, queryCount.get());
+    }
+
+    private void createProvider(int maxResultSize) {
+        MemoryQueryProvider memoryQueryProvider = MemoryQueryProvider.create(CachedRoundRobinSchedulingProvider.create(1, Duration.ofMinutes(1)));
+        memoryQueryProvider.insert(Product.metaClass, Products.createMany(10), false).blockingAwait();
+        queryProvider = QueryProvider.Decorator
+                .of(CountingQueryProviderDecorator::new,
+                        ResultCacheQueryProviderDecorator.create(Duration.ofMinutes(1), 1000, maxResultSize))
+                .apply(memoryQueryProvider);
+    }
+
+    private static List<Product> retrieve(Observable<Notification<Product>> notifications) {
+        return notifications.map(Notification::newValue).toList().blockingGet();
+    }
+
+    private class CountingQueryProviderDecorator extends AbstractQueryProviderDecorator {
+        private CountingQueryProviderDecorator(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+        }
+
+        @Override
+        public <K, S, T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
+            queryCount.incrementAndGet();
+            return super.query(query).concatWith(Completable.fromAction(() -> beforeQueryComplete.get().run()));
+        }
+
+        @Override
+        public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+            queryCount.incrementAndGet();
+            return super.queryFlowable(query);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.test.Inventory;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.util.LockProvider;
+import com.slimgears.rxrepo.util.LockProviders;
+import com.slimgears.rxrepo.util.StripedLockProvider;
+import com.slimgears.util.autovalue.annotations.MetaClass;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.CompletableSubject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class StripedLockProviderTest {
+    @Test
+    public void testExclusiveLockIsNotStarvedBySharedLocks() {
+        LockProvider lockProvider = StripedLockProvider.create(4);
+        CompletableSubject shared = CompletableSubject.create();
+        shared.compose(LockProviders.forCompletable(lockProvider.asyncLock(Product.metaClass, 1))).test();
+
+        CompletableSubject exclusive = CompletableSubject.create();
+        exclusive.compose(LockProviders.forCompletable(lockProvider.asyncLock())).test();
+        Assert.assertFalse(exclusive.hasObservers());
+
+        CompletableSubject sharedAfterExclusive = CompletableSubject.create();
+        sharedAfterExclusive.compose(LockProviders.forCompletable(lockProvider.asyncLock(Product.metaClass, 2))).test();
+        Assert.assertFalse(sharedAfterExclusive.hasObservers());
+
+        shared.onComplete();
+        Assert.assertTrue(exclusive.hasObservers());
+        Assert.assertFalse(sharedAfterExclusive.hasObservers());
+
+        exclusive.onComplete();
+        Assert.assertTrue(sharedAfterExclusive.hasObservers());
+    }
+
+    @Test
+    public void testKeysOfDifferentStripesAreLockedIndependently() {
+        LockProvider lockProvider = StripedLockProvider.create(4);
+        CompletableSubject first = CompletableSubject.create();
+        first.compose(LockProviders.forCompletable(lockProvider.asyncLock(Product.metaClass, 0))).test();
+
+        CompletableSubject otherStripe = CompletableSubject.create();
+        otherStripe.compose(LockProviders.forCompletable(lockProvider.asyncLock(Product.metaClass, 1))).test();
+        Assert.assertTrue(otherStripe.hasObservers());
+
+        CompletableSubject sameStripe = CompletableSubject.create();
+        sameStripe.compose(LockProviders.forCompletable(lockProvider.asyncLock(Product.metaClass, 4))).test();
+        Assert.assertFalse(sameStripe.hasObservers());
+
+        first.onComplete();
+        Assert.assertTrue(sameStripe.hasObservers());
+    }
+
+    @Test
+    public void testTypeLockWaitsForKeyLocksOfSameTypeOnly() {
+        LockProvider lockProvider = StripedLockProvider.create(4);
+        CompletableSubject keyLock = CompletableSubject.create();
+        keyLock.compose(LockProviders.forCompletable(lockProvider.asyncLock(Product.metaClass, 1))).test();
+
+        CompletableSubject otherType = CompletableSubject.create();
+        otherType.compose(LockProviders.forCompletable(lockProvider.asyncLock(Collections.singleton(Inventory.metaClass)))).test();
+        Assert.assertTrue(otherType.hasObservers());
+
+        CompletableSubject sameType = CompletableSubject.create();
+        sameType.compose(LockProviders.forCompletable(lockProvider.asyncLock(Collections.singleton(Product.metaClass)))).test();
+        Assert.assertFalse(sameType.hasObservers());
+
+        keyLock.onComplete();
+        Assert.assertTrue(sameType.hasObservers());
+    }
+
+    @Test
+    public void testTypesAreLockedInFixedOrder() {
+        LockProvider lockProvider = StripedLockProvider.create(1);
+        CompletableSubject first = CompletableSubject.create();
+        first.compose(LockProviders.forCompletable(lockProvider.asyncLock(Arrays.<MetaClass<?>>asList(Product.metaClass, Inventory.metaClass)))).test();
+
+        CompletableSubject reversed = CompletableSubject.create();
+        TestObserver<Void> reversedObserver = reversed
+                .compose(LockProviders.forCompletable(lockProvider.asyncLock(Arrays.<MetaClass<?>>asList(Inventory.metaClass, Product.metaClass))))
+                .test();
+        Assert.assertFalse(reversed.hasObservers());
+
+        first.onComplete();
+        Assert.assertTrue(reversed.hasObservers());
+
+        reversed.onComplete();
+        reversedObserver.assertComplete();
+    }
+}
@@ -0,0 +1,162 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.expressions.PropertyExpression;
+import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.decorator.AbstractQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.UpdateReferencesFirstQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.test.Inventory;
+import com.slimgears.rxrepo.test.Manufacturer;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
+import com.slimgears.rxrepo.util.CachedRoundRobinSchedulingProvider;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class UpdateReferencesFirstQueryProviderDecoratorTest {
+    private final List<MetaClassWithKey<?, ?>> insertedTypes = new CopyOnWriteArrayList<>();
+    private final List<QueryInfo<?, ?, ?>> queries = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Completable> writeAfterInventoryQuery = new AtomicReference<>(Completable.complete());
+    private MemoryQueryProvider memoryQueryProvider;
+    private QueryProvider queryProvider;
+
+    @Before
+    public void setUp() {
+        memoryQueryProvider = MemoryQueryProvider.create(CachedRoundRobinSchedulingProvider.create(1, Duration.ofMinutes(1)));
+        queryProvider = QueryProvider.Decorator
+                .of(RecordingQueryProviderDecorator::new, UpdateReferencesFirstQueryProviderDecorator.create())
+                .apply(memoryQueryProvider);
+    }
+
+    @After
+    public void tearDown() {
+        queryProvider.close();
+    }
+
+    @Test
+    public void testMissingReferencesAreInsertedBeforeEntities() {
+        queryProvider.insert(Product.metaClass, Products.createMany(20), true).blockingAwait();
+
+        Assert.assertEquals(20, count(Product.metaClass));
+        Assert.assertEquals(2, count(Inventory.metaClass));
+        Assert.assertEquals(1, count(Manufacturer.metaClass));
+        Assert.assertTrue(insertedTypes.indexOf(Manufacturer.metaClass) < insertedTypes.indexOf(Inventory.metaClass));
+        Assert.assertTrue(insertedTypes.indexOf(Inventory.metaClass) < insertedTypes.indexOf(Product.metaClass));
+    }
+
+    @Test
+    public void testReferenceChainIsInsertedAtAllLevels() {
+        Manufacturer manufacturer = Manufacturer.create(UniqueId.manufacturerId(1), "Manufacturer 1");
+        Inventory inventory = inventory(1, inventory(2, inventory(3, null, manufacturer), null), null);
+        Product product = Products.createOne(1).toBuilder().inventory(inventory).build();
+
+        queryProvider.insert(Product.metaClass, Collections.singleton(product), true).blockingAwait();
+
+        Assert.assertEquals(3, count(Inventory.metaClass));
+        Assert.assertEquals(1, count(Manufacturer.metaClass));
+        Assert.assertEquals(product, first(Product.metaClass));
+    }
+
+    @Test
+    public void testExistingReferencesAreCheckedByKeyOnly() {
+        Product product = Products.createOne(1);
+        memoryQueryProvider.insert(Manufacturer.metaClass, Collections.singleton(product.inventory().manufacturer()), false).blockingAwait();
+        memoryQueryProvider.insert(Inventory.metaClass, Collections.singleton(product.inventory()), false).blockingAwait();
+
+        queryProvider.insert(Product.metaClass, Collections.singleton(product), true).blockingAwait();
+
+        Assert.assertEquals(Collections.singletonList(Product.metaClass), insertedTypes);
+        QueryInfo<?, ?, ?> existenceQuery = queries.stream()
+                .filter(query -> query.metaClass().equals(Inventory.metaClass))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        Assert.assertEquals(1, existenceQuery.properties().size());
+    }
+
+    @Test
+    public void testReferenceInsertedConcurrentlyAfterExistenceCheckIsSkipped() {
+        Product product = Products.createOne(1);
+        Product otherProduct = Products.createOne(2);
+        Assert.assertEquals(product.inventory(), otherProduct.inventory());
+
+        writeAfterInventoryQuery.set(queryProvider.insert(Product.metaClass, Collections.singleton(otherProduct), true));
+        queryProvider.insert(Product.metaClass, Collections.singleton(product), true).blockingAwait();
+
+        Assert.assertEquals(2, count(Product.metaClass));
+        Assert.assertEquals(1, count(Inventory.metaClass));
+        Assert.assertEquals(1, count(Manufacturer.metaClass));
+        Assert.assertEquals(product, find(Product.metaClass, product.key()).blockingFirst());
+    }
+
+    private <K, S> long count(MetaClassWithKey<K, S> metaClass) {
+        return memoryQueryProvider.query(QueryInfo.<K, S, S>builder().metaClass(metaClass).build())
+                .filter(notification -> notification.newValue() != null)
+                .count()
+                .blockingGet();
+    }
+
+    private <K, S> S first(MetaClassWithKey<K, S> metaClass) {
+        return memoryQueryProvider.query(QueryInfo.<K, S, S>builder().metaClass(metaClass).build())
+                .map(Notification::newValue)
+                .blockingFirst();
+    }
+
+    private <K, S> Observable<S> find(MetaClassWithKey<K, S> metaClass, K key) {
+        return memoryQueryProvider.query(QueryInfo.<K, S, S>builder()
+                        .metaClass(metaClass)
+                        .predicate(PropertyExpression.ofObject(metaClass.keyProperty()).eq(key))
+                        .build())
+                .filter(notification -> notification.newValue() != null)
+                .map(Notification::newValue);
+    }
+
+    private static Inventory inventory(int id, Inventory child, Manufacturer manufacturer) {
+        return Inventory.builder()
+                .id(UniqueId.inventoryId(id))
+                .name("Inventory " + id)
+                .inventory(child)
+                .manufacturer(manufacturer)
+                .build();
+    }
+
+    private class RecordingQueryProviderDecorator extends AbstractQueryProviderDecorator {
+        private RecordingQueryProviderDecorator(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+        }
+
+        // Rejects insert of existing entities with ConcurrentModificationException, as backends with unique keys do
+        @Override
+        public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+            insertedTypes.add(metaClass);
+            return Observable.fromIterable(entities)
+                    .concatMap(entity -> find(metaClass, metaClass.keyOf(entity)))
+                    .isEmpty()
+                    .flatMapCompletable(noneExists -> noneExists
+                            ? super.insert(metaClass, entities, recursive)
+                            : Completable.error(new ConcurrentModificationException("Duplicate key of " + metaClass.simpleName())));
+        }
+
+        // Another writer may be run right after the first existence check of referenced inventories
+        @Override
+        public <K, S, T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
+            queries.add(query);
+            return query.metaClass().equals(Inventory.metaClass)
+                    ? super.query(query).concatWith(Completable.defer(() -> writeAfterInventoryQuery.getAndSet(Completable.complete())))
+                    : super.query(query);
+        }
+    }
+}
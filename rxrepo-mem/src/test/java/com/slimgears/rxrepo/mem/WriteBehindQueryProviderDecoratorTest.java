@@ -0,0 +1,161 @@
+package com.slimgears.rxrepo.mem;
+
+import com.slimgears.rxrepo.query.decorator.AbstractQueryProviderDecorator;
+import com.slimgears.rxrepo.query.decorator.WriteBehindQueryProviderDecorator;
+import com.slimgears.rxrepo.query.provider.QueryProvider;
+import com.slimgears.rxrepo.test.Product;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.util.CachedRoundRobinSchedulingProvider;
+import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public class WriteBehindQueryProviderDecoratorTest {
+    private final TestScheduler scheduler = new TestScheduler();
+    private final AtomicInteger writeCount = new AtomicInteger();
+    private final AtomicInteger insertCount = new AtomicInteger();
+    private final AtomicInteger insertedCount = new AtomicInteger();
+    private QueryProvider queryProvider;
+
+    @Before
+    public void setUp() {
+        writeCount.set(0);
+        insertCount.set(0);
+        insertedCount.set(0);
+        queryProvider = QueryProvider.Decorator
+                .of(CountingQueryProviderDecorator::new,
+                        WriteBehindQueryProviderDecorator.create(Duration.ofMillis(100), 10, 2, scheduler))
+                .apply(MemoryQueryProvider.create(CachedRoundRobinSchedulingProvider.create(1, Duration.ofMinutes(1))));
+    }
+
+    @After
+    public void tearDown() {
+        queryProvider.close();
+    }
+
+    @Test
+    public void testUpdatesOfSameKeyAreCoalesced() {
+        Product product = Products.createOne(1);
+        TestObserver<Supplier<Product>> first = insertOrUpdate(product.toBuilder().price(1).build());
+        TestObserver<Supplier<Product>> second = insertOrUpdate(product.toBuilder().price(2).build());
+        TestObserver<Supplier<Product>> third = insertOrUpdate(product.toBuilder().price(3).build());
+
+        first.assertNotComplete();
+        Assert.assertEquals(0, insertedCount.get());
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        first.awaitCount(1).assertValue(s -> s.get().price() == 3);
+        second.awaitCount(1).assertValue(s -> s.get().price() == 3);
+        third.awaitCount(1).assertValue(s -> s.get().price() == 3);
+        Assert.assertEquals(1, insertedCount.get());
+        Assert.assertEquals(0, writeCount.get());
+    }
+
+    @Test
+    public void testFullBufferIsFlushedBeforeWindowElapses() {
+        TestObserver<Supplier<Product>> last = null;
+        for (Product product : Products.createMany(10)) {
+            last = insertOrUpdate(product);
+        }
+
+        Assert.assertNotNull(last);
+        last.awaitCount(1).assertValueCount(1);
+        Assert.assertEquals(1, insertCount.get());
+        Assert.assertEquals(10, insertedCount.get());
+        Assert.assertEquals(0, writeCount.get());
+    }
+
+    @Test
+    public void testNewKeysAreInsertedInBatchAndExistingOnesAreUpdated() {
+        Product existing = Products.createOne(1);
+        TestObserver<Supplier<Product>> initial = insertOrUpdate(existing);
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        initial.awaitCount(1).assertValueCount(1);
+        insertCount.set(0);
+        insertedCount.set(0);
+        writeCount.set(0);
+
+        TestObserver<Supplier<Product>> updated = insertOrUpdate(existing.toBuilder().price(1).build());
+        TestObserver<Supplier<Product>> inserted = insertOrUpdate(Products.createOne(2));
+        TestObserver<Supplier<Product>> otherInserted = insertOrUpdate(Products.createOne(3));
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        updated.awaitCount(1).assertValue(s -> s.get().price() == 1);
+        inserted.awaitCount(1).assertValue(s -> s.get().equals(Products.createOne(2)));
+        otherInserted.awaitCount(1).assertValue(s -> s.get().equals(Products.createOne(3)));
+        Assert.assertEquals(1, insertCount.get());
+        Assert.assertEquals(2, insertedCount.get());
+        Assert.assertEquals(1, writeCount.get());
+    }
+
+    @Test
+    public void testPendingWritesAreFlushedOnClose() {
+        TestObserver<Supplier<Product>> observer = insertOrUpdate(Products.createOne(1));
+        observer.assertNotComplete();
+
+        queryProvider.close();
+
+        observer.awaitCount(1).assertValue(s -> s.get().key().equals(Products.createOne(1).key()));
+        Assert.assertEquals(1, insertedCount.get());
+    }
+
+    @Test
+    public void testWriteErrorIsPropagatedToCallersOfFailedKeyOnly() {
+        Product failing = Products.createOne(1).toBuilder().name("fail").build();
+        Product succeeding = Products.createOne(2);
+        TestObserver<Supplier<Product>> failed = insertOrUpdate(failing);
+        TestObserver<Supplier<Product>> succeeded = insertOrUpdate(succeeding);
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+        failed.awaitDone(1, TimeUnit.SECONDS).assertError(IllegalStateException.class);
+        succeeded.awaitCount(1).assertValue(s -> s.get().equals(succeeding));
+    }
+
+    private TestObserver<Supplier<Product>> insertOrUpdate(Product product) {
+        return queryProvider.insertOrUpdate(Product.metaClass, product, false).test();
+    }
+
+    private class CountingQueryProviderDecorator extends AbstractQueryProviderDecorator {
+        private CountingQueryProviderDecorator(QueryProvider underlyingProvider) {
+            super(underlyingProvider);
+        }
+
+        @Override
+        public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
+            insertCount.incrementAndGet();
+            for (S entity : entities) {
+                if (isFailing(entity)) {
+                    return Completable.error(new IllegalStateException("Write failed"));
+                }
+                insertedCount.incrementAndGet();
+            }
+            return super.insert(metaClass, entities, recursive);
+        }
+
+        @Override
+        public <K, S> Single<Supplier<S>> insertOrUpdate(MetaClassWithKey<K, S> metaClass, S entity, boolean recursive) {
+            writeCount.incrementAndGet();
+            if (isFailing(entity)) {
+                return Single.error(new IllegalStateException("Write failed"));
+            }
+            return super.insertOrUpdate(metaClass, entity, recursive);
+        }
+
+        private boolean isFailing(Object entity) {
+            return entity instanceof Product && "fail".equals(((Product)entity).name());
+        }
+    }
+}
@@ -6,6 +6,11 @@ import com.mongodb.ErrorCategory;
 import com.mongodb.MongoBulkWriteException;
 import com.mongodb.MongoWriteException;
 import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
 import com.mongodb.client.model.changestream.ChangeStreamDocument;
 import com.mongodb.client.model.changestream.OperationType;
 import com.mongodb.client.result.DeleteResult;
@@ -20,6 +25,7 @@ import com.slimgears.rxrepo.expressions.CollectionExpression;
 import com.slimgears.rxrepo.expressions.Expression;
 import com.slimgears.rxrepo.expressions.ObjectExpression;
 import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.query.provider.ChangeLogUnavailableException;
 import com.slimgears.rxrepo.query.provider.DeleteInfo;
 import com.slimgears.rxrepo.query.provider.EntityQueryProvider;
 import com.slimgears.rxrepo.query.provider.QueryInfo;
@@ -32,9 +38,11 @@ import com.slimgears.util.stream.Lazy;
 import com.slimgears.util.stream.Optionals;
 import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
 import io.reactivex.functions.Function;
 import org.bson.*;
 import org.bson.codecs.Codec;
@@ -46,21 +54,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoCloseable {
     private final static Logger log = LoggerFactory.getLogger(MongoEntityQueryProvider.class);
+    private final static String sequenceCollectionName = "__sequence";
+    private final static String sequenceValueField = "value";
+    private final static String changesAvailableSinceField = "changesAvailableSince";
+    private final static int queryBatchSize = 1000;
     private final MetaClassWithKey<K, S> metaClass;
     private final Lazy<MongoCollection<Document>> objectCollection;
     private final Lazy<MongoCollection<Document>> notificationCollection;
+    private final Lazy<MongoCollection<Document>> sequenceCollection;
     private final Lazy<Codec<S>> codec;
     private final MongoDatabase database;
     private final Lazy<Codec<Document>> docCodec;
     private final CodecRegistry codecRegistry;
     private final MetaClassFieldMapper fieldMapper;
+    private final SequenceAllocator sequenceAllocator = new SequenceAllocator();
 
     MongoEntityQueryProvider(MetaClassWithKey<K, S> metaClass, MongoDatabase database, MetaClassFieldMapper fieldMapper) {
         this.metaClass = metaClass;
@@ -71,6 +87,7 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
         this.fieldMapper = fieldMapper;
         this.objectCollection = Lazy.of(() -> database.getCollection(metaClass.simpleName()));
         this.notificationCollection = Lazy.of(() -> database.getCollection(metaClass.simpleName() + ".updates"));
+        this.sequenceCollection = Lazy.of(() -> database.getCollection(sequenceCollectionName));
     }
 
     private Maybe<Document> findDocument(K key) {
@@ -85,15 +102,26 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
 
     @Override
     public Completable insert(Iterable<S> entities, boolean recursive) {
-        List<Document> documents = Streams
+        List<S> objects = Streams
                 .fromIterable(entities)
-                .map(e -> objectToDocument(e, 0))
                 .collect(Collectors.toList());
 
-        return Completable
-                .fromPublisher(objectCollection.get().insertMany(documents))
-                .doOnSubscribe(d -> log.debug("Inserting {} documents", documents.size()))
-                .doOnComplete(() -> log.debug("Insert of {} documents complete", documents.size()))
+        if (objects.isEmpty()) {
+            return Completable.complete();
+        }
+
+        return nextSequenceNumbers(objects.size())
+                .map(firstSeqNum -> {
+                    List<Document> documents = new ArrayList<>(objects.size());
+                    for (int i = 0; i < objects.size(); ++i) {
+                        documents.add(objectToDocument(objects.get(i), 0, firstSeqNum + i));
+                    }
+                    return documents;
+                })
+                .flatMapCompletable(documents -> Completable
+                        .fromPublisher(objectCollection.get().insertMany(documents))
+                        .doOnSubscribe(d -> log.debug("Inserting {} documents", documents.size()))
+                        .doOnComplete(() -> log.debug("Insert of {} documents complete", documents.size())))
                 .onErrorResumeNext(e -> Completable.error(convertError(e)));
     }
 
@@ -119,8 +147,9 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                 .doOnSuccess(newObject::set)
                 .flatMap(newObj -> Objects.equals(newObj, oldObject.get())
                         ? Maybe.just(oldObject.get())
-                        : Maybe.just(newObj)
-                        .map(obj -> objectToDocument(obj, version.get() + 1))
+                        : nextSequenceNumbers(1)
+                        .map(seqNum -> objectToDocument(newObj, version.get() + 1, seqNum))
+                        .toMaybe()
                         .doOnSuccess(newDoc::set)
                         .doOnSuccess(doc -> log.trace("Updating object: {}", doc))
                         .flatMap(doc -> Single
@@ -142,7 +171,7 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                         .defer(() -> update.apply(Maybe.empty()))
                         .doOnSuccess(newObject::set)
                         .doOnSuccess(doc -> log.trace("Creating new object: {}", doc))
-                        .map(obj -> objectToDocument(obj, version.get()))
+                        .flatMapSingleElement(obj -> nextSequenceNumbers(1).map(seqNum -> objectToDocument(obj, version.get(), seqNum)))
                         .flatMap(doc -> Single.fromPublisher(objectCollection.get()
                                 .insertOne(doc))
                                 .doOnSuccess(res -> log.trace("Insert result: {}", res))
@@ -158,8 +187,17 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
     public <T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
         return queryDocuments(query)
                 .doOnNext(doc -> log.debug("Retrieved document: {}", doc))
-                .map(doc -> objectFromDocument(doc, query.objectType()))
-                .map(obj -> Notification.ofCreated(obj, 0L));
+                .map(doc -> Notification.ofCreated(objectFromDocument(doc, query.objectType()), sequenceNumberOf(doc)));
+    }
+
+    @Override
+    public <T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+        return Flowable
+                .fromPublisher(objectCollection.get()
+                        .aggregate(MongoPipeline.aggregationPipeline(query))
+                        .batchSize(queryBatchSize))
+                .doOnNext(doc -> log.debug("Retrieved document: {}", doc))
+                .map(doc -> Notification.ofCreated(objectFromDocument(doc, query.objectType()), sequenceNumberOf(doc)));
     }
 
     @SuppressWarnings("unchecked")
@@ -210,12 +248,90 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                 .map(n -> n.map(mapper));
     }
 
+    /**
+     * Modifications and deletions are replayed from notification collection. Creations are not published
+     * to notification collection, so they are retrieved from object collection (objects, which were
+     * not modified since creation, still have initial version). Both are read in pages of
+     * {@link #queryBatchSize} documents, sorted by sequence number, and merged page by page.
+     * Changes before the last drop, or since a sequence number which was never allocated
+     * (e.g. the database was recreated), are not available.
+     */
+    @Override
+    public Observable<Notification<S>> changesSince(long sequenceNumber) {
+        return Observable
+                .fromPublisher(sequenceCollection.get().find(Filters.eq("_id", metaClass.simpleName())).first())
+                .first(new Document())
+                .flatMapObservable(sequenceDoc -> {
+                    long lastSequenceNumber = Optional.ofNullable(sequenceDoc.getLong(sequenceValueField)).orElse(0L);
+                    long availableSince = Optional.ofNullable(sequenceDoc.getLong(changesAvailableSinceField)).orElse(0L);
+                    if (sequenceNumber < availableSince || sequenceNumber > lastSequenceNumber) {
+                        return Observable.<Notification<S>>error(new ChangeLogUnavailableException("Changes of " + metaClass.simpleName() + " since " + sequenceNumber + " are no longer available"));
+                    }
+                    AtomicLong position = new AtomicLong(sequenceNumber);
+                    AtomicBoolean complete = new AtomicBoolean();
+                    return Observable
+                            .defer(() -> changesPage(position, complete))
+                            .repeatUntil(complete::get);
+                });
+    }
+
+    private Observable<Notification<S>> changesPage(AtomicLong position, AtomicBoolean complete) {
+        long sequenceNumber = position.get();
+        Single<List<Notification<S>>> modifications = Observable
+                .fromPublisher(notificationCollection.get()
+                        .find(Filters.gt(fieldMapper.sequenceNumberField(), sequenceNumber))
+                        .sort(Sorts.ascending(fieldMapper.sequenceNumberField()))
+                        .limit(queryBatchSize))
+                .map(this::changeFromNotificationDocument)
+                .toList();
+
+        Single<List<Notification<S>>> creations = Observable
+                .fromPublisher(objectCollection.get()
+                        .aggregate(MongoPipeline.builder()
+                                .match(new Document(fieldMapper.sequenceNumberField(), new Document("$gt", sequenceNumber))
+                                        .append(fieldMapper.versionField(), 0L))
+                                .sort(new Document(fieldMapper.sequenceNumberField(), 1))
+                                .limit((long)queryBatchSize)
+                                .lookupAndUnwindReferences(metaClass)
+                                .build()))
+                .map(doc -> Notification.ofCreated(objectFromDocument(doc), sequenceNumberOf(doc)))
+                .toList();
+
+        return Single
+                .zip(modifications, creations, (m, c) -> {
+                    // Items beyond the last one of a full page may be preceded by not yet read items of the other page
+                    long lastSequenceNumber = Math.min(lastSequenceNumberOf(m), lastSequenceNumberOf(c));
+                    complete.set(lastSequenceNumber == Long.MAX_VALUE);
+                    position.set(lastSequenceNumber);
+                    return Stream
+                            .concat(m.stream(), c.stream())
+                            .filter(n -> n.sequenceNumber() <= lastSequenceNumber)
+                            .sorted(Comparator.comparing(Notification::sequenceNumber))
+                            .collect(Collectors.toList());
+                })
+                .flatMapObservable(Observable::fromIterable);
+    }
+
+    private static <S> long lastSequenceNumberOf(List<Notification<S>> page) {
+        return page.size() < queryBatchSize
+                ? Long.MAX_VALUE
+                : Objects.requireNonNull(page.get(page.size() - 1).sequenceNumber());
+    }
+
+    private Notification<S> changeFromNotificationDocument(Document document) {
+        Notification<S> notification = notificationFromDocument(document);
+        // Deletions are published with the same old and new values
+        return Objects.equals(notification.oldValue(), notification.newValue())
+                ? Notification.ofDeleted(notification.oldValue(), notification.sequenceNumber())
+                : notification;
+    }
+
     private Completable publish(Document oldDoc, Document newDoc) {
         return Completable.fromPublisher(notificationCollection.get()
-                .insertOne(createNotification(oldDoc, newDoc)));
+                .insertOne(createNotification(oldDoc, newDoc, sequenceNumberOf(newDoc))));
     }
 
-    private Document createNotification(Document oldDoc, Document newDoc) {
+    private Document createNotification(Document oldDoc, Document newDoc, Long sequenceNumber) {
         Object id = Optionals.or(
                 () -> Optional.ofNullable(newDoc),
                 () -> Optional.ofNullable(oldDoc))
@@ -224,7 +340,36 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
 
         return new Document("key", id)
                 .append("oldValue", oldDoc)
-                .append("newValue", newDoc);
+                .append("newValue", newDoc)
+                .append(fieldMapper.sequenceNumberField(), sequenceNumber);
+    }
+
+    /**
+     * Reserves a range of sequence numbers, using per-collection counter document.
+     * Returns the first number of the reserved range.
+     */
+    private Single<Long> nextSequenceNumbers(int count) {
+        return sequenceAllocator.reserve(count);
+    }
+
+    private Single<Long> reserveSequenceNumbers(long count) {
+        return Single
+                .fromPublisher(sequenceCollection.get()
+                        .findOneAndUpdate(
+                                Filters.eq("_id", metaClass.simpleName()),
+                                Updates.inc(sequenceValueField, count),
+                                new FindOneAndUpdateOptions()
+                                        .upsert(true)
+                                        .returnDocument(ReturnDocument.AFTER)))
+                .map(doc -> doc.getLong(sequenceValueField) - count + 1);
+    }
+
+    private Long sequenceNumberOf(Document document) {
+        return Optional.ofNullable(document)
+                .map(doc -> doc.get(fieldMapper.sequenceNumberField()))
+                .filter(Number.class::isInstance)
+                .map(seqNum -> ((Number)seqNum).longValue())
+                .orElse(null);
     }
 
     private Completable publishNotification(Document notificationDocument) {
@@ -254,8 +399,14 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                 .predicate(deleteInfo.predicate())
                 .limit(deleteInfo.limit())
                 .build())
-                .map(doc -> createNotification(doc, doc))
-                .flatMapCompletable(this::publishNotification)
+                .toList()
+                .flatMapCompletable(docs -> docs.isEmpty()
+                        ? Completable.complete()
+                        : nextSequenceNumbers(docs.size())
+                        .flatMapCompletable(firstSeqNum -> Observable
+                                .range(0, docs.size())
+                                .map(i -> createNotification(docs.get(i), docs.get(i), firstSeqNum + i))
+                                .concatMapCompletable(this::publishNotification)))
                 .andThen(Observable.fromPublisher(objectCollection.get()
                         .deleteMany(MongoPipeline.expr(deleteInfo.predicate())))
                         .map(DeleteResult::getDeletedCount)
@@ -264,9 +415,18 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                         .toSingle(0));
     }
 
+    /**
+     * Notifications of dropped objects are dropped as well, so changes before the drop are marked as not available
+     */
     @Override
     public Completable drop() {
-        return Completable.fromPublisher(objectCollection.get().drop());
+        return Completable.fromPublisher(objectCollection.get().drop())
+                .andThen(Completable.fromPublisher(notificationCollection.get().drop()))
+                .andThen(nextSequenceNumbers(1))
+                .flatMapCompletable(seqNum -> Completable.fromPublisher(sequenceCollection.get()
+                        .updateOne(
+                                Filters.eq("_id", metaClass.simpleName()),
+                                Updates.max(changesAvailableSinceField, seqNum))));
     }
 
     private static Throwable convertError(Throwable e) {
@@ -289,7 +449,7 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
         return Notification.ofModified(
                 toObject(document.get("oldValue"), metaClass.asType()),
                 toObject(document.get("newValue"), metaClass.asType()),
-                sequenceNumber());
+                sequenceNumberOf(document));
     }
 
     private <T> T toObject(Object object, TypeToken<T> type) {
@@ -317,7 +477,7 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
                     .ofNullable(changeDoc.getFullDocument())
                     .map(this::objectFromDocument)
                     .orElse(null);
-            return Maybe.just(Notification.ofCreated(object, sequenceNumber()));
+            return Maybe.just(Notification.ofCreated(object, sequenceNumberOf(changeDoc.getFullDocument())));
         } else if (changeDoc.getOperationType() == OperationType.DELETE) {
             Object key = Optional.of(changeDoc.getDocumentKey())
                     .map(doc -> doc.get("_id"))
@@ -326,21 +486,22 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
             return Observable.fromPublisher(notificationCollection.get()
                     .aggregate(MongoPipeline.builder()
                             .match(MongoPipeline.filterForField("key", key))
-                            .replaceRoot("$newValue")
-                            .sort(new Document(fieldMapper.versionField(), -1))
+                            .sort(new Document(fieldMapper.sequenceNumberField(), -1))
                             .limit(1L)
                             .build()))
                     .firstElement()
-                    .map(this::objectFromDocument)
-                    .map(obj -> Notification.ofDeleted(obj, sequenceNumber()));
+                    .map(doc -> Notification.ofDeleted(
+                            objectFromDocument(doc.get("newValue", Document.class)),
+                            sequenceNumberOf(doc)));
         }
         return Maybe.empty();
     }
 
-    private Document objectToDocument(S obj, long version) {
+    private Document objectToDocument(S obj, long version, long sequenceNumber) {
         BsonDocument bson = new BsonDocument();
         codec.get().encode(new BsonDocumentWriter(bson), obj, EncoderContext.builder().build());
         bson.append(fieldMapper.versionField(), new BsonInt64(version));
+        bson.append(fieldMapper.sequenceNumberField(), new BsonInt64(sequenceNumber));
         return fromBson(bson);
     }
 
@@ -376,6 +537,70 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
     public void close() {
         this.notificationCollection.close();
         this.objectCollection.close();
+        this.sequenceCollection.close();
+    }
+
+    /**
+     * Coalesces concurrent reservations, so that the counter document is updated once per group of requests,
+     * rather than once per write: while a counter update is in flight, requests are queued, and then served
+     * by a single update, which reserves the total count, split into consecutive ranges in request order.
+     * Writers of other processes still contend on the counter document, so sequence numbers are not committed
+     * in order, which is tolerated by per-object watermark of {@link com.slimgears.rxrepo.util.Queries#queryAndObserve}
+     */
+    private class SequenceAllocator {
+        private final Deque<Reservation> pendingReservations = new ArrayDeque<>();
+        private boolean inFlight;
+
+        Single<Long> reserve(int count) {
+            return Single.create(emitter -> {
+                synchronized (this) {
+                    pendingReservations.add(new Reservation(count, emitter));
+                    if (inFlight) {
+                        return;
+                    }
+                    inFlight = true;
+                }
+                reservePending();
+            });
+        }
+
+        private void reservePending() {
+            List<Reservation> reservations;
+            synchronized (this) {
+                if (pendingReservations.isEmpty()) {
+                    inFlight = false;
+                    return;
+                }
+                reservations = new ArrayList<>(pendingReservations);
+                pendingReservations.clear();
+            }
+
+            long totalCount = reservations.stream().mapToLong(r -> r.count).sum();
+            log.trace("Reserving {} sequence numbers for {} requests", totalCount, reservations.size());
+            reserveSequenceNumbers(totalCount).subscribe(
+                    firstSeqNum -> {
+                        long seqNum = firstSeqNum;
+                        for (Reservation reservation : reservations) {
+                            reservation.emitter.onSuccess(seqNum);
+                            seqNum += reservation.count;
+                        }
+                        reservePending();
+                    },
+                    error -> {
+                        reservations.forEach(reservation -> reservation.emitter.tryOnError(error));
+                        reservePending();
+                    });
+        }
+    }
+
+    private static class Reservation {
+        private final int count;
+        private final SingleEmitter<Long> emitter;
+
+        private Reservation(int count, SingleEmitter<Long> emitter) {
+            this.count = count;
+            this.emitter = emitter;
+        }
     }
 
     static class AggregationResultDecoder<T> implements Decoder<T>  {
@@ -404,8 +629,4 @@ class MongoEntityQueryProvider<K, S> implements EntityQueryProvider<K, S>, AutoC
         }
 
     }
-
-    private long sequenceNumber() {
-        return 0L;
-    }
 }
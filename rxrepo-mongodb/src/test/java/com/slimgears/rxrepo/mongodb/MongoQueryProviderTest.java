@@ -1,15 +1,26 @@
 package com.slimgears.rxrepo.mongodb;
 
+import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.Repository;
 import com.slimgears.rxrepo.query.decorator.SubscribeOnSchedulingQueryProviderDecorator;
 import com.slimgears.rxrepo.test.AbstractRepositoryTest;
+import com.slimgears.rxrepo.test.Products;
+import com.slimgears.rxrepo.test.UniqueId;
 import com.slimgears.rxrepo.util.SchedulingProvider;
 import com.slimgears.util.test.logging.LogLevel;
 import com.slimgears.util.test.logging.UseLogLevel;
 import com.slimgears.util.test.logging.UseLogLevels;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
 import org.junit.AfterClass;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
 
 @UseLogLevels(
         @UseLogLevel(logger = "org.mongodb.driver", value = LogLevel.INFO)
@@ -38,4 +49,41 @@ public class MongoQueryProviderTest extends AbstractRepositoryTest {
                 .decorate(SubscribeOnSchedulingQueryProviderDecorator.createDefault())
                 .build();
     }
+
+    @Test
+    public void testConcurrentWritesHaveDistinctSequenceNumbers() {
+        products.update(Products.createMany(100)).blockingAwait();
+        Observable.fromIterable(Products.createMany(100, 100))
+                .flatMapSingle(product -> products.update(product).subscribeOn(Schedulers.io()))
+                .ignoreElements()
+                .blockingAwait();
+
+        List<Long> sequenceNumbers = products.queryAndObserve()
+                .takeWhile(notification -> !notification.isEmpty())
+                .map(Notification::sequenceNumber)
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(200, sequenceNumbers.size());
+        Assert.assertEquals(200, new HashSet<>(sequenceNumbers).size());
+    }
+
+    @Test
+    public void testQueryAndObserveReceivesAllConcurrentWrites() {
+        products.update(Products.createMany(100)).blockingAwait();
+        TestObserver<UniqueId> observer = products.queryAndObserve()
+                .filter(notification -> notification.newValue() != null)
+                .map(notification -> notification.newValue().key())
+                .distinct()
+                .test();
+
+        Observable.fromIterable(Products.createMany(100, 100))
+                .flatMapSingle(product -> products.update(product).subscribeOn(Schedulers.io()))
+                .ignoreElements()
+                .blockingAwait();
+
+        observer.awaitCount(200)
+                .assertNoErrors()
+                .assertValueCount(200);
+    }
 }
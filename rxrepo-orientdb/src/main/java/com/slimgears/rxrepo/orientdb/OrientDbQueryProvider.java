@@ -2,7 +2,6 @@ package com.slimgears.rxrepo.orientdb;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Table;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
 import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
@@ -21,7 +20,6 @@ import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
 import com.slimgears.util.stream.Optionals;
 import com.slimgears.util.stream.Streams;
 import io.reactivex.Completable;
-import io.reactivex.Observable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,7 +33,6 @@ import java.util.stream.Collectors;
 public class OrientDbQueryProvider extends SqlQueryProvider {
     private final static Logger log = LoggerFactory.getLogger(OrientDbQueryProvider.class);
     private final OrientDbSessionProvider dbSessionProvider;
-    private final int bufferSize;
 
     OrientDbQueryProvider(SqlStatementProvider statementProvider,
                           SqlStatementExecutor statementExecutor,
@@ -43,13 +40,13 @@ public class OrientDbQueryProvider extends SqlQueryProvider {
                           ReferenceResolver referenceResolver,
                           SchedulingProvider schedulingProvider,
                           OrientDbSessionProvider dbSessionProvider,
-                          int bufferSize) {
-        super(statementProvider, statementExecutor, schemaProvider, referenceResolver, schedulingProvider);
+                          int bufferSize,
+                          boolean lazyEntities) {
+        super(statementProvider, statementExecutor, schemaProvider, referenceResolver, schedulingProvider, bufferSize, lazyEntities);
         this.dbSessionProvider = dbSessionProvider;
-        this.bufferSize = bufferSize;
     }
 
-    static OrientDbQueryProvider create(SqlServiceFactory serviceFactory, OrientDbSessionProvider sessionProvider, int bufferSize) {
+    static OrientDbQueryProvider create(SqlServiceFactory serviceFactory, OrientDbSessionProvider sessionProvider, int bufferSize, boolean lazyEntities) {
         return new OrientDbQueryProvider(
                 serviceFactory.statementProvider(),
                 serviceFactory.statementExecutor(),
@@ -57,21 +54,17 @@ public class OrientDbQueryProvider extends SqlQueryProvider {
                 serviceFactory.referenceResolver(),
                 serviceFactory.schedulingProvider(),
                 sessionProvider,
-                bufferSize);
+                bufferSize,
+                lazyEntities);
     }
 
     @Override
-    public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
-        if (entities == null || Iterables.isEmpty(entities)) {
-            return Completable.complete();
-        }
-
-        Stopwatch stopwatch = Stopwatch.createStarted();
-        return schemaProvider.createOrUpdate(metaClass)
-                .andThen(Observable.fromIterable(entities)
-                        .buffer(bufferSize)
-                        .concatMapCompletable(buffer -> Completable.fromAction(() -> createAndSaveElements(metaClass, buffer))))
-                .doOnComplete(() -> log.debug("Total insert time: {}s", stopwatch.elapsed(TimeUnit.SECONDS)));
+    protected <K, S> Completable insertBatch(MetaClassWithKey<K, S> metaClass, List<S> entities) {
+        return Completable.fromAction(() -> {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            createAndSaveElements(metaClass, entities);
+            log.debug("Inserted {} {} in {}ms", entities.size(), metaClass.simpleName(), stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        });
     }
 
     private <S> void createAndSaveElements(MetaClass<S> metaClass, Iterable<S> entities) {
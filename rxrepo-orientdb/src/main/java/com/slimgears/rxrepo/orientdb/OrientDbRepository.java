@@ -15,8 +15,9 @@ import com.slimgears.rxrepo.sql.DefaultSqlStatementProvider;
 import com.slimgears.rxrepo.sql.SqlQueryProvider;
 import com.slimgears.rxrepo.sql.SqlServiceFactory;
 import com.slimgears.rxrepo.util.CachedRoundRobinSchedulingProvider;
-import com.slimgears.rxrepo.util.SemaphoreLockProvider;
+import com.slimgears.rxrepo.util.Queries;
 import com.slimgears.rxrepo.util.SchedulingProvider;
+import com.slimgears.rxrepo.util.StripedLockProvider;
 import com.slimgears.util.stream.Lazy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,6 +63,7 @@ public class OrientDbRepository {
         private String serverPassword = "root";
         private boolean batchSupport = false;
         private int batchBufferSize = 20000;
+        private boolean lazyEntities = false;
         private int maxNotificationQueues = 10;
         private Duration maxQueueIdleTime = Duration.ofSeconds(120);
         private QueryProvider.Decorator decorator = QueryProvider.Decorator.identity();
@@ -73,7 +75,8 @@ public class OrientDbRepository {
                 .retryCount(10)
                 .retryInitialDurationMillis(10)
                 .bufferDebounceTimeoutMillis(100)
-                .aggregationDebounceTimeMillis(2000);
+                .aggregationDebounceTimeMillis(2000)
+                .liveQueryBufferSize(Queries.defaultMaxBufferSize);
 
         private final Map<OGlobalConfiguration, Object> customConfig = new HashMap<>();
 
@@ -92,6 +95,15 @@ public class OrientDbRepository {
             return this;
         }
 
+        public final Builder enableLazyEntities() {
+            return enableLazyEntities(true);
+        }
+
+        public final Builder enableLazyEntities(boolean enable) {
+            this.lazyEntities = enable;
+            return this;
+        }
+
         public final Builder maxNotificationQueues(int maxNotificationQueues) {
             this.maxNotificationQueues = maxNotificationQueues;
             return this;
@@ -107,6 +119,15 @@ public class OrientDbRepository {
             return this;
         }
 
+        /**
+         * Size of OrientDB cache of parsed statements. Statement text itself is reused by
+         * {@link DefaultSqlStatementProvider} template cache, which reports its hits and misses as metrics
+         */
+        public final Builder statementCacheSize(int statementCacheSize) {
+            this.customConfig.put(OGlobalConfiguration.STATEMENT_CACHE_SIZE, statementCacheSize);
+            return this;
+        }
+
         public final Builder maxNonHeapMemory(int maxNonHeapMemoryBytes) {
             this.customConfig.put(OGlobalConfiguration.DIRECT_MEMORY_POOL_LIMIT, maxNonHeapMemoryBytes / pageSize);
             return this;
@@ -203,8 +224,8 @@ public class OrientDbRepository {
             RepositoryConfig config = configBuilder.build();
             return serviceFactoryBuilder(dbSessionProvider)
                     .decorate(
-                            LockQueryProviderDecorator.create(SemaphoreLockProvider.create()),
-                            LiveQueryProviderDecorator.create(Duration.ofMillis(config.aggregationDebounceTimeMillis())),
+                            LockQueryProviderDecorator.create(StripedLockProvider.create()),
+                            LiveQueryProviderDecorator.create(Duration.ofMillis(config.aggregationDebounceTimeMillis()), config.liveQueryBufferSize()),
                             ObserveOnSchedulingQueryProviderDecorator.create(schedulingProvider.get()),
                             batchSupport ? OrientDbUpdateReferencesFirstQueryProviderDecorator.create() : UpdateReferencesFirstQueryProviderDecorator.create(),
                             OrientDbDropDatabaseQueryProviderDecorator.create(dbClient, dbName),
@@ -250,6 +271,12 @@ public class OrientDbRepository {
             return this;
         }
 
+        @Override
+        public Builder liveQueryBufferSize(int value) {
+            configBuilder.liveQueryBufferSize(value);
+            return this;
+        }
+
         public Builder enableMetrics(MetricCollector metricCollector) {
             MetricsQueryProviderDecorator decorator = MetricsQueryProviderDecorator.create(metricCollector);
             decorate(decorator);
@@ -257,6 +284,16 @@ public class OrientDbRepository {
             return this;
         }
 
+        public Builder enableWriteBehind(Duration window, int maxBufferSize) {
+            decorate(WriteBehindQueryProviderDecorator.create(window, maxBufferSize));
+            return this;
+        }
+
+        public Builder enableEntityCache(long maxSize) {
+            decorate(EntityCacheQueryProviderDecorator.create(maxSize));
+            return this;
+        }
+
         private SqlServiceFactory.Builder serviceFactoryBuilder(OrientDbSessionProvider dbSessionProvider) {
             return SqlServiceFactory.builder()
                     .schemaProvider(svc -> new OrientDbSchemaProvider(dbSessionProvider))
@@ -265,7 +302,7 @@ public class OrientDbRepository {
                     .assignmentGenerator(svc -> new OrientDbAssignmentGenerator(svc.expressionGenerator()))
                     .statementProvider(svc -> new DefaultSqlStatementProvider(svc.expressionGenerator(), svc.assignmentGenerator(), svc.schemaProvider()))
                     .referenceResolver(svc -> new OrientDbReferenceResolver(svc.statementProvider()))
-                    .queryProviderGenerator(svc -> batchSupport ? OrientDbQueryProvider.create(svc, dbSessionProvider, batchBufferSize) : SqlQueryProvider.create(svc))
+                    .queryProviderGenerator(svc -> batchSupport ? OrientDbQueryProvider.create(svc, dbSessionProvider, batchBufferSize, lazyEntities) : SqlQueryProvider.create(svc, lazyEntities))
                     .schedulingProvider(() -> schedulingProviderDecorator.apply(schedulingProvider.get()));
         }
     }
@@ -9,9 +9,13 @@ import java.util.function.Supplier;
 
 class OrientDbSessionProvider {
     private final RecurrentThreadLocal<ODatabaseDocument> databaseSessionProvider;
+    private final Supplier<ODatabaseDocument> sessionSupplier;
+    private final Consumer<ODatabaseDocument> onRelease;
 
     private OrientDbSessionProvider(Supplier<ODatabaseDocument> databaseSessionProvider,
                                     Consumer<ODatabaseDocument> onRelease) {
+        this.sessionSupplier = databaseSessionProvider;
+        this.onRelease = onRelease;
         this.databaseSessionProvider = RecurrentThreadLocal
                 .of(databaseSessionProvider)
                 .onRelease(onRelease);
@@ -44,4 +48,16 @@ class OrientDbSessionProvider {
             return null;
         });
     }
+
+    /**
+     * Opens session, which is not bound to the calling thread, so that it can be used across several calls
+     * (each activating it on its own thread). Session should be released with {@link #releaseDetachedSession}
+     */
+    ODatabaseDocument openDetachedSession() {
+        return sessionSupplier.get();
+    }
+
+    void releaseDetachedSession(ODatabaseDocument session) {
+        onRelease.accept(session);
+    }
 }
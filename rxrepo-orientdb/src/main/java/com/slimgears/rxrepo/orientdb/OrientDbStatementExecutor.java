@@ -1,5 +1,7 @@
 package com.slimgears.rxrepo.orientdb;
 
+import com.orientechnologies.orient.core.db.ODatabaseDocumentInternal;
+import com.orientechnologies.orient.core.db.ODatabaseRecordThreadLocal;
 import com.orientechnologies.orient.core.db.OLiveQueryMonitor;
 import com.orientechnologies.orient.core.db.document.ODatabaseDocument;
 import com.orientechnologies.orient.core.exception.OConcurrentModificationException;
@@ -8,17 +10,20 @@ import com.orientechnologies.orient.core.sql.executor.OResult;
 import com.orientechnologies.orient.core.sql.executor.OResultSet;
 import com.orientechnologies.orient.core.storage.ORecordDuplicatedException;
 import com.slimgears.rxrepo.query.Notification;
+import com.slimgears.rxrepo.sql.SqlQueryProvider;
 import com.slimgears.rxrepo.sql.SqlStatement;
 import com.slimgears.rxrepo.sql.SqlStatementExecutor;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.generic.MoreStrings;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ConcurrentModificationException;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
@@ -46,6 +51,26 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
                 });
     }
 
+    /**
+     * Reads next result from the open result set only when requested. Result set is held by the detached session,
+     * which is activated on the requesting thread for each read, so no thread is held while waiting for demand
+     */
+    @Override
+    public Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement) {
+        return Flowable.<OResult, QueryCursor>generate(
+                () -> new QueryCursor(statement),
+                (cursor, emitter) -> {
+                    OResult next = cursor.next();
+                    if (next != null) {
+                        emitter.onNext(next);
+                    } else {
+                        emitter.onComplete();
+                    }
+                },
+                QueryCursor::close)
+                .map(res -> OResultPropertyResolver.create(sessionProvider, res));
+    }
+
     @Override
     public Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement) {
         return toObservable(
@@ -72,6 +97,34 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
                 .first(0);
     }
 
+    /**
+     * Executes all statements within single transaction, so the batch is either applied or rolled back as a whole.
+     * Single sequence number is allocated for the batch, and records written by its statements are stamped with it
+     */
+    @Override
+    public Single<Integer> executeBatch(List<SqlStatement> statements) {
+        return Single.fromCallable(() -> sessionProvider.withSession(session -> {
+            try {
+                session.begin();
+                long sequenceNumber = session.getMetadata()
+                        .getSequenceLibrary()
+                        .getSequence(OrientDbSchemaProvider.sequenceName)
+                        .next();
+                int count = statements.stream()
+                        .mapToInt(statement -> executeCountingResults(session, statement, sequenceNumber))
+                        .sum();
+                session.commit();
+                return count;
+            } catch (OConcurrentModificationException | ORecordDuplicatedException e) {
+                session.rollback();
+                throw new ConcurrentModificationException(e.getMessage(), e);
+            } catch (RuntimeException e) {
+                session.rollback();
+                throw e;
+            }
+        }));
+    }
+
     @Override
     public Completable executeCommand(SqlStatement statement) {
         return toObservable(session -> session.command(statement.statement(), statement.args()))
@@ -115,6 +168,77 @@ class OrientDbStatementExecutor implements SqlStatementExecutor {
                 .map(res -> OResultPropertyResolver.create(sessionProvider, res));
     }
 
+    private class QueryCursor {
+        private final long id = operationCounter.incrementAndGet();
+        private final ODatabaseDocument dbSession;
+        private final OResultSet resultSet;
+
+        private QueryCursor(SqlStatement statement) {
+            this.dbSession = sessionProvider.openDetachedSession();
+            ODatabaseDocumentInternal previousSession = activate();
+            try {
+                logStatement("Querying", statement);
+                this.resultSet = dbSession.query(statement.statement(), statement.args());
+            } catch (RuntimeException e) {
+                sessionProvider.releaseDetachedSession(dbSession);
+                throw e;
+            } finally {
+                restore(previousSession);
+            }
+        }
+
+        private OResult next() {
+            ODatabaseDocumentInternal previousSession = activate();
+            try {
+                if (!resultSet.hasNext()) {
+                    return null;
+                }
+                OResult res = resultSet.next();
+                log.trace("[{}] Received: {}", id, res);
+                return res;
+            } finally {
+                restore(previousSession);
+            }
+        }
+
+        private void close() {
+            ODatabaseDocumentInternal previousSession = activate();
+            try {
+                resultSet.close();
+            } finally {
+                sessionProvider.releaseDetachedSession(dbSession);
+                restore(previousSession);
+            }
+        }
+
+        private ODatabaseDocumentInternal activate() {
+            ODatabaseDocumentInternal previousSession = ODatabaseRecordThreadLocal.instance().getIfDefined();
+            dbSession.activateOnCurrentThread();
+            return previousSession;
+        }
+
+        private void restore(ODatabaseDocumentInternal previousSession) {
+            if (previousSession != null && previousSession != dbSession && !previousSession.isClosed()) {
+                previousSession.activateOnCurrentThread();
+            } else if (previousSession == null) {
+                ODatabaseRecordThreadLocal.instance().remove();
+            }
+        }
+    }
+
+    private int executeCountingResults(ODatabaseDocument session, SqlStatement statement, long sequenceNumber) {
+        logStatement("Executing batch command", statement);
+        try (OResultSet resultSet = session.command(statement.statement(), statement.args())) {
+            return resultSet.stream()
+                    .peek(res -> res.getElement().ifPresent(element -> {
+                        element.setProperty(SqlQueryProvider.sequenceNumField, sequenceNumber);
+                        element.save();
+                    }))
+                    .mapToInt(res -> res.hasProperty("count") ? ((Number)res.getProperty("count")).intValue() : 1)
+                    .sum();
+        }
+    }
+
     private void logStatement(String title, SqlStatement statement) {
         log.trace("[{}] {}: {}", operationCounter.get(), title, lazy(() -> toString(statement)));
     }
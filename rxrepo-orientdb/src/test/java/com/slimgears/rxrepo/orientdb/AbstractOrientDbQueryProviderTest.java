@@ -61,10 +61,15 @@ public abstract class AbstractOrientDbQueryProviderTest extends AbstractReposito
                         SubscribeOnSchedulingQueryProviderDecorator.create(updateScheduler, queryScheduler, Schedulers.from(Runnable::run)),
                         OperationTimeoutQueryProviderDecorator.create(Duration.ofSeconds(20), Duration.ofSeconds(60)))
                 .enableBatchSupport()
+                .enableLazyEntities(lazyEntities())
                 .maxConnections(10)
                 .build();
     }
 
+    protected boolean lazyEntities() {
+        return false;
+    }
+
     @Test
     @UseLogLevel(LogLevel.TRACE)
     public void testInsertThenUpdate() throws InterruptedException {
@@ -0,0 +1,8 @@
+package com.slimgears.rxrepo.orientdb;
+
+public class OrientDbLazyEntitiesQueryProviderTest extends OrientDbQueryProviderTest {
+    @Override
+    protected boolean lazyEntities() {
+        return true;
+    }
+}
@@ -29,6 +29,7 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
     private final SqlExpressionGenerator sqlExpressionGenerator;
     private final SqlAssignmentGenerator sqlAssignmentGenerator;
     private final SchemaProvider schemaProvider;
+    private final SqlStatementCache statementCache = SqlStatementCache.create();
 
     public DefaultSqlStatementProvider(SqlExpressionGenerator sqlExpressionGenerator,
                                        SqlAssignmentGenerator sqlAssignmentGenerator,
@@ -38,15 +39,19 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
         this.schemaProvider = schemaProvider;
     }
 
+    public SqlStatementCache statementCache() {
+        return statementCache;
+    }
+
     @Override
     public <K, S, T> SqlStatement forQuery(QueryInfo<K, S, T> queryInfo) {
-        return statement(() -> of(
+        return statementCache.forQuery(queryInfo, () -> statement(() -> of(
                 selectClause(queryInfo),
                 fromClause(queryInfo),
                 whereClause(queryInfo),
                 orderClause(queryInfo),
                 limitClause(queryInfo),
-                skipClause(queryInfo)));
+                skipClause(queryInfo))));
     }
 
     @Override
@@ -59,7 +64,7 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
 
     @Override
     public <K, S> SqlStatement forUpdate(UpdateInfo<K, S> updateInfo) {
-        return statement(() -> of(
+        return statementCache.forUpdate(updateInfo, () -> statement(() -> of(
                 "update",
                 schemaProvider.tableName(updateInfo.metaClass()),
                 "set",
@@ -68,16 +73,16 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
                         .map(pu -> concat(sqlExpressionGenerator.toSqlExpression(pu.property()), "=", sqlExpressionGenerator.toSqlExpression(pu.updater())))
                         .collect(Collectors.joining(", ")),
                 whereClause(updateInfo),
-                limitClause(updateInfo)));
+                limitClause(updateInfo))));
     }
 
     @Override
     public <K, S> SqlStatement forDelete(DeleteInfo<K, S> deleteInfo) {
-        return statement(() -> of(
+        return statementCache.forDelete(deleteInfo, () -> statement(() -> of(
                 "delete",
                 fromClause(deleteInfo),
                 whereClause(deleteInfo),
-                limitClause(deleteInfo)));
+                limitClause(deleteInfo))));
     }
 
     @Override
@@ -132,7 +137,7 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
                 ));
     }
 
-    private SqlStatement statement(Supplier<SqlStatement> statementSupplier) {
+    protected SqlStatement statement(Supplier<SqlStatement> statementSupplier) {
         List<Object> params = new ArrayList<>();
         SqlStatement statement = sqlExpressionGenerator.withParams(params, statementSupplier::get);
         return statement.withArgs(params.toArray());
@@ -162,7 +167,7 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
                 projectedName);
     }
 
-    private <S, T> String toMappingClause(ObjectExpression<S, T> expression, Collection<PropertyExpression<T, ?, ?>> properties) {
+    protected <S, T> String toMappingClause(ObjectExpression<S, T> expression, Collection<PropertyExpression<T, ?, ?>> properties) {
         return Optionals.or(
                 () -> Optional.ofNullable(properties)
                         .filter(p -> !p.isEmpty())
@@ -177,11 +182,11 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
                 .orElse("");
     }
 
-    private <K, S, Q extends HasEntityMeta<K, S>> String fromClause(Q statement) {
+    protected <K, S, Q extends HasEntityMeta<K, S>> String fromClause(Q statement) {
         return "from " + schemaProvider.tableName(statement.metaClass());
     }
 
-    private <S, Q extends HasPredicate<S>> String whereClause(Q statement) {
+    protected <S, Q extends HasPredicate<S>> String whereClause(Q statement) {
         return Optional
                 .ofNullable(statement.predicate())
                 .map(this::toConditionClause)
@@ -189,13 +194,13 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
                 .orElse("");
     }
 
-    private <Q extends HasLimit> String limitClause(Q statement) {
+    protected <Q extends HasLimit> String limitClause(Q statement) {
         return Optional.ofNullable(statement.limit())
                 .map(count -> "limit " + count)
                 .orElse("");
     }
 
-    private <Q extends HasPagination> String skipClause(Q statement) {
+    protected <Q extends HasPagination> String skipClause(Q statement) {
         return Optional.ofNullable(statement.skip())
                 .map(count -> "skip " + count)
                 .orElse("");
@@ -222,7 +227,7 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
         return sqlExpressionGenerator.toSqlExpression(sortingInfo.property()) + (sortingInfo.ascending() ? " asc" : " desc");
     }
 
-    private <S> String toConditionClause(ObjectExpression<S, Boolean> condition) {
+    protected <S> String toConditionClause(ObjectExpression<S, Boolean> condition) {
         return sqlExpressionGenerator.toSqlExpression(condition);
     }
 
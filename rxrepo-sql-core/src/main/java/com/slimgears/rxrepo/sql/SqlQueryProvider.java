@@ -10,6 +10,7 @@ import com.slimgears.rxrepo.expressions.PropertyExpression;
 import com.slimgears.rxrepo.expressions.internal.MoreTypeTokens;
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.query.provider.*;
+import com.slimgears.rxrepo.util.LazyEntityViews;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.rxrepo.util.PropertyResolvers;
 import com.slimgears.rxrepo.util.SchedulingProvider;
@@ -21,6 +22,7 @@ import io.reactivex.functions.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -32,11 +34,14 @@ public class SqlQueryProvider implements QueryProvider {
     private final static Logger log = LoggerFactory.getLogger(SqlQueryProvider.class);
     public final static String aggregationField = "__aggregation";
     public final static String sequenceNumField = "__sequenceNum";
+    public final static int defaultInsertBatchSize = 500;
     protected final SqlStatementProvider statementProvider;
     private final SqlStatementExecutor statementExecutor;
     protected final SchemaProvider schemaProvider;
     private final ReferenceResolver referenceResolver;
     private final SchedulingProvider schedulingProvider;
+    protected final int insertBatchSize;
+    private final boolean lazyEntities;
     private final Map<SqlStatement, Observable<Notification<PropertyResolver>>> liveQueriesCache = new ConcurrentHashMap<>();
 
     protected SqlQueryProvider(SqlStatementProvider statementProvider,
@@ -44,11 +49,32 @@ public class SqlQueryProvider implements QueryProvider {
                                SchemaProvider schemaProvider,
                                ReferenceResolver referenceResolver,
                                SchedulingProvider schedulingProvider) {
+        this(statementProvider, statementExecutor, schemaProvider, referenceResolver, schedulingProvider, defaultInsertBatchSize);
+    }
+
+    protected SqlQueryProvider(SqlStatementProvider statementProvider,
+                               SqlStatementExecutor statementExecutor,
+                               SchemaProvider schemaProvider,
+                               ReferenceResolver referenceResolver,
+                               SchedulingProvider schedulingProvider,
+                               int insertBatchSize) {
+        this(statementProvider, statementExecutor, schemaProvider, referenceResolver, schedulingProvider, insertBatchSize, false);
+    }
+
+    protected SqlQueryProvider(SqlStatementProvider statementProvider,
+                               SqlStatementExecutor statementExecutor,
+                               SchemaProvider schemaProvider,
+                               ReferenceResolver referenceResolver,
+                               SchedulingProvider schedulingProvider,
+                               int insertBatchSize,
+                               boolean lazyEntities) {
         this.statementProvider = statementProvider;
         this.statementExecutor = statementExecutor;
         this.schemaProvider = schemaProvider;
         this.referenceResolver = referenceResolver;
         this.schedulingProvider = schedulingProvider;
+        this.insertBatchSize = insertBatchSize;
+        this.lazyEntities = lazyEntities;
     }
 
     public static QueryProvider create(SqlServiceFactory serviceFactory) {
@@ -60,6 +86,21 @@ public class SqlQueryProvider implements QueryProvider {
                 serviceFactory.schedulingProvider());
     }
 
+    /**
+     * Creates provider, which (when {@code lazyEntities} is set) emits lazy entity views, decoding
+     * properties from query results only on first access
+     */
+    public static QueryProvider create(SqlServiceFactory serviceFactory, boolean lazyEntities) {
+        return new SqlQueryProvider(
+                serviceFactory.statementProvider(),
+                serviceFactory.statementExecutor(),
+                serviceFactory.schemaProvider(),
+                serviceFactory.referenceResolver(),
+                serviceFactory.schedulingProvider(),
+                defaultInsertBatchSize,
+                lazyEntities);
+    }
+
     @Override
     public <K, S> Completable insert(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, boolean recursive) {
         return Optional
@@ -69,8 +110,8 @@ public class SqlQueryProvider implements QueryProvider {
                         .doOnSubscribe(d -> log.debug("Beginning creating class {}", lazy(metaClass::simpleName)))
                         .doOnComplete(() -> log.debug("Finished creating class {}", lazy(metaClass::simpleName)))
                         .andThen(Observable.fromIterable(entities)
-                                .flatMapSingle(e -> insert(metaClass, e))
-                                .ignoreElements()))
+                                .buffer(insertBatchSize)
+                                .concatMapCompletable(batch -> insertBatch(metaClass, batch))))
                 .orElseGet(Completable::complete);
     }
 
@@ -136,6 +177,19 @@ public class SqlQueryProvider implements QueryProvider {
         return insertOrUpdate(metaClass, statement);
     }
 
+    /**
+     * Inserts up to {@link #insertBatchSize} entities, called by {@link #insert(MetaClassWithKey, Iterable, boolean)}
+     * for each chunk. Providers, which write batches natively, override this instead of {@code insert}
+     */
+    protected <K, S> Completable insertBatch(MetaClassWithKey<K, S> metaClass, List<S> entities) {
+        List<SqlStatement> statements = statementProvider.forInsertBatch(metaClass, entities, referenceResolver);
+        return statementExecutor
+                .executeBatch(statements)
+                .doOnSubscribe(d -> log.trace("Inserting batch of {} {}", entities.size(), metaClass.simpleName()))
+                .doOnSuccess(count -> log.trace("Inserted {} {}", count, metaClass.simpleName()))
+                .ignoreElement();
+    }
+
     @Override
     public <K, S, T> Observable<Notification<T>> query(QueryInfo<K, S, T> query) {
         log.trace("Preparing query of {}", query.metaClass().simpleName());
@@ -149,26 +203,51 @@ public class SqlQueryProvider implements QueryProvider {
                 .observeOn(scheduler);
     }
 
-    @SuppressWarnings("unchecked")
+    @Override
+    public <K, S, T> Flowable<Notification<T>> queryFlowable(QueryInfo<K, S, T> query) {
+        log.trace("Preparing flowable query of {}", query.metaClass().simpleName());
+        Scheduler scheduler = schedulingProvider.scheduler();
+        TypeToken<? extends T> objectType = HasMapping.objectType(query);
+        return schemaProvider
+                .createOrUpdate(query.metaClass())
+                .andThen(statementExecutor
+                        .executeQueryFlowable(statementProvider.forQuery(query))
+                        .concatMapMaybe(toCreateNotification(objectType, query.mapping(), query.properties())))
+                .observeOn(scheduler);
+    }
+
     private <T> ObservableTransformer<PropertyResolver, Notification<T>> toCreateNotifications(TypeToken<? extends T> objectType,
                                                                      ObjectExpression<?, T> mapping,
                                                                      ImmutableSet<PropertyExpression<T, ?, ?>> properties) {
-        Function<PropertyResolver, Maybe<Notification<T>>> mapper = Optional
+        Function<PropertyResolver, Maybe<Notification<T>>> mapper = toCreateNotification(objectType, mapping, properties);
+        return src -> src.flatMapMaybe(mapper);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Function<PropertyResolver, Maybe<Notification<T>>> toCreateNotification(TypeToken<? extends T> objectType,
+                                                                                        ObjectExpression<?, T> mapping,
+                                                                                        ImmutableSet<PropertyExpression<T, ?, ?>> properties) {
+        return Optional
                 .ofNullable(mapping)
                 .flatMap(Optionals.ofType(PropertyExpression.class))
                 .map(PropertyExpression::path)
                 .<Function<PropertyResolver, Maybe<Notification<T>>>>map(path -> pr -> Optional
                             .ofNullable(pr.getProperty(path, TypeTokens.asClass(objectType)))
                             .map(obj -> obj instanceof PropertyResolver
-                                    ? PropertyResolvers.withProperties(properties, () -> (PropertyResolver) obj).toObject(objectType)
+                                    ? PropertyResolvers.withProperties(properties, () -> toObject((PropertyResolver) obj, objectType))
                                     : (T)obj)
                             .map(obj -> Notification.ofCreated(obj, generationOf(pr)))
                             .map(Maybe::just)
                             .orElseGet(Maybe::empty))
                 .orElse(pr -> Maybe
-                        .fromCallable(() -> PropertyResolvers.withProperties(properties, () -> pr.toObject(objectType)))
+                        .fromCallable(() -> PropertyResolvers.withProperties(properties, () -> toObject(pr, objectType)))
                         .map(obj -> Notification.ofCreated(obj, generationOf(pr))));
-        return src -> src.flatMapMaybe(mapper);
+    }
+
+    private <T> T toObject(PropertyResolver propertyResolver, TypeToken<T> objectType) {
+        return lazyEntities
+                ? LazyEntityViews.toObject(propertyResolver, objectType)
+                : propertyResolver.toObject(objectType);
     }
 
     private Long generationOf(PropertyResolver propertyResolver) {
@@ -184,7 +263,7 @@ public class SqlQueryProvider implements QueryProvider {
         return schemaProvider
                 .createOrUpdate(query.metaClass())
                 .andThen(liveQueryForStatement(statement))
-                .map(notification -> notification.<T>map(pr -> PropertyResolvers.withProperties(query.properties(), () -> pr.toObject(objectType))))
+                .map(notification -> notification.<T>map(pr -> PropertyResolvers.withProperties(query.properties(), () -> toObject(pr, objectType))))
                 .observeOn(scheduler)
                 .doOnNext(n -> log.trace("{}: {} {}",
                         query.metaClass().simpleName(),
@@ -0,0 +1,181 @@
+package com.slimgears.rxrepo.sql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.reflect.TypeToken;
+import com.slimgears.nanometer.MetricCollector;
+import com.slimgears.nanometer.Metrics;
+import com.slimgears.rxrepo.expressions.Expression;
+import com.slimgears.rxrepo.expressions.ExpressionVisitor;
+import com.slimgears.rxrepo.expressions.ObjectExpression;
+import com.slimgears.rxrepo.query.provider.DeleteInfo;
+import com.slimgears.rxrepo.query.provider.QueryInfo;
+import com.slimgears.rxrepo.query.provider.UpdateInfo;
+import com.slimgears.util.autovalue.annotations.PropertyMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class SqlStatementCache {
+    private final static Logger log = LoggerFactory.getLogger(SqlStatementCache.class);
+    private final static MetricCollector metrics = Metrics.collector(SqlStatementCache.class);
+    private final static ShapeVisitor shapeVisitor = new ShapeVisitor();
+    private final Cache<List<Object>, Optional<String>> templates;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final MetricCollector.Counter hits = metrics.counter("hits");
+    private final MetricCollector.Counter misses = metrics.counter("misses");
+    private final MetricCollector.Counter bypasses = metrics.counter("bypasses");
+
+    private SqlStatementCache(int maxSize) {
+        this.templates = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    public static SqlStatementCache create() {
+        return create(1000);
+    }
+
+    public static SqlStatementCache create(int maxSize) {
+        return new SqlStatementCache(maxSize);
+    }
+
+    public long hitCount() {
+        return hitCount.sum();
+    }
+
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    public void clear() {
+        templates.invalidateAll();
+    }
+
+    public <K, S, T> SqlStatement forQuery(QueryInfo<K, S, T> queryInfo, Supplier<SqlStatement> generator) {
+        Shape shape = new Shape();
+        List<Object> key = Arrays.asList(
+                "query",
+                queryInfo.metaClass(),
+                shape.of(queryInfo.mapping()),
+                queryInfo.distinct(),
+                queryInfo.properties(),
+                shape.of(queryInfo.predicate()),
+                queryInfo.sorting(),
+                queryInfo.limit(),
+                queryInfo.skip());
+        return statement(key, shape, generator);
+    }
+
+    public <K, S> SqlStatement forUpdate(UpdateInfo<K, S> updateInfo, Supplier<SqlStatement> generator) {
+        Shape shape = new Shape();
+        List<Object> key = new ArrayList<>();
+        key.add("update");
+        key.add(updateInfo.metaClass());
+        updateInfo.propertyUpdates().forEach(pu -> {
+            key.add(shape.of(pu.property()));
+            key.add(shape.of(pu.updater()));
+        });
+        key.add(shape.of(updateInfo.predicate()));
+        key.add(updateInfo.limit());
+        return statement(key, shape, generator);
+    }
+
+    public <K, S> SqlStatement forDelete(DeleteInfo<K, S> deleteInfo, Supplier<SqlStatement> generator) {
+        Shape shape = new Shape();
+        List<Object> key = Arrays.asList(
+                "delete",
+                deleteInfo.metaClass(),
+                shape.of(deleteInfo.predicate()),
+                deleteInfo.limit());
+        return statement(key, shape, generator);
+    }
+
+    private SqlStatement statement(List<Object> key, Shape shape, Supplier<SqlStatement> generator) {
+        if (!shape.cacheable) {
+            bypasses.inc();
+            return generator.get();
+        }
+
+        Optional<String> template = templates.getIfPresent(key);
+        if (template != null && template.isPresent()) {
+            hitCount.increment();
+            hits.inc();
+            return SqlStatement.create(template.get(), shape.args.toArray());
+        }
+
+        missCount.increment();
+        misses.inc();
+        SqlStatement statement = generator.get();
+        if (template == null) {
+            // Dialects may inline, expand or convert constants. Such shapes cannot be reused by binding
+            // the original constant values, so they are remembered as non-cacheable
+            boolean reusable = Arrays.equals(statement.args(), shape.args.toArray());
+            log.trace("Caching statement template (reusable: {}): {}", reusable, statement.statement());
+            templates.put(key, reusable ? Optional.of(statement.statement()) : Optional.empty());
+        }
+        return statement;
+    }
+
+    // Constant values of the statement, and whether all of its expressions have well defined shape
+    private static class Shape {
+        private final List<Object> args = new ArrayList<>();
+        private boolean cacheable = true;
+
+        private String of(ObjectExpression<?, ?> expression) {
+            return expression != null ? shapeVisitor.visit(expression, this) : "";
+        }
+    }
+
+    private static class ShapeVisitor extends ExpressionVisitor<Shape, String> {
+        @Override
+        protected String reduceBinary(ObjectExpression<?, ?> expression, Expression.Type type, String first, String second) {
+            return type + "(" + first + ", " + second + ")";
+        }
+
+        @Override
+        protected String reduceUnary(ObjectExpression<?, ?> expression, Expression.Type type, String first) {
+            return type + "(" + first + ")";
+        }
+
+        // String representation of unknown expression is not guaranteed to tell apart
+        // expressions producing different statements, so such statements are not cached
+        @Override
+        protected <S, T> String visitOther(ObjectExpression<S, T> expression, Shape shape) {
+            shape.cacheable = false;
+            return "";
+        }
+
+        @Override
+        protected <T, V> String visitProperty(PropertyMeta<T, V> propertyMeta, Shape shape) {
+            return propertyMeta.declaringType().simpleName() + "." + propertyMeta.name();
+        }
+
+        @Override
+        protected <V> String visitConstant(Expression.Type type, V value, Shape shape) {
+            shape.args.add(value);
+            return "?" + type + ":" + valueShapeOf(value);
+        }
+
+        @Override
+        protected <T> String visitArgument(TypeToken<T> argType, Shape shape) {
+            return argType.toString();
+        }
+
+        private static String valueShapeOf(Object value) {
+            if (value == null) {
+                return "null";
+            }
+            if (value instanceof Collection) {
+                return value.getClass().getName() + "[" + ((Collection<?>)value).size() + "]";
+            }
+            return value.getClass().getName();
+        }
+    }
+}
@@ -2,14 +2,32 @@ package com.slimgears.rxrepo.sql;
 
 import com.slimgears.rxrepo.query.Notification;
 import com.slimgears.rxrepo.util.PropertyResolver;
+import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
 import io.reactivex.Single;
 
+import java.util.List;
+
 public interface SqlStatementExecutor {
     Observable<PropertyResolver> executeQuery(SqlStatement statement);
     Observable<PropertyResolver> executeCommandReturnEntries(SqlStatement statement);
     Single<Integer> executeCommandReturnCount(SqlStatement statement);
     Completable executeCommand(SqlStatement statement);
     Observable<Notification<PropertyResolver>> executeLiveQuery(SqlStatement statement);
+
+    default Flowable<PropertyResolver> executeQueryFlowable(SqlStatement statement) {
+        return executeQuery(statement).toFlowable(BackpressureStrategy.BUFFER);
+    }
+
+    /**
+     * Executes statements one by one, so a failure leaves earlier statements applied. Executors, which support
+     * transactions, override it to apply the whole batch atomically
+     */
+    default Single<Integer> executeBatch(List<SqlStatement> statements) {
+        return Observable.fromIterable(statements)
+                .concatMapSingle(this::executeCommandReturnCount)
+                .reduce(0, Integer::sum);
+    }
 }
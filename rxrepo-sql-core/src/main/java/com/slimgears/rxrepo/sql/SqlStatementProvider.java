@@ -6,6 +6,10 @@ import com.slimgears.rxrepo.query.provider.QueryInfo;
 import com.slimgears.rxrepo.query.provider.UpdateInfo;
 import com.slimgears.rxrepo.util.PropertyResolver;
 import com.slimgears.util.autovalue.annotations.MetaClassWithKey;
+import com.slimgears.util.stream.Streams;
+
+import java.util.List;
+import java.util.stream.Collectors;
 
 public interface SqlStatementProvider {
     <K, S, T> SqlStatement forQuery(QueryInfo<K, S, T> queryInfo);
@@ -41,4 +45,21 @@ public interface SqlStatementProvider {
     default <K, S> SqlStatement forInsert(MetaClassWithKey<K, S> metaClass, S entity, ReferenceResolver referenceResolver) {
         return forInsert(metaClass, PropertyResolver.fromObject(metaClass, entity), referenceResolver);
     }
+
+    default <K, S> List<SqlStatement> forInsertBatch(MetaClassWithKey<K, S> metaClass,
+                                                     List<PropertyResolver> propertyResolvers,
+                                                     ReferenceResolver referenceResolver) {
+        return propertyResolvers.stream()
+                .map(pr -> forInsert(metaClass, pr, referenceResolver))
+                .collect(Collectors.toList());
+    }
+
+    default <K, S> List<SqlStatement> forInsertBatch(MetaClassWithKey<K, S> metaClass, Iterable<S> entities, ReferenceResolver referenceResolver) {
+        return forInsertBatch(
+                metaClass,
+                Streams.fromIterable(entities)
+                        .map(entity -> PropertyResolver.fromObject(metaClass, entity))
+                        .collect(Collectors.toList()),
+                referenceResolver);
+    }
 }
@@ -124,4 +124,28 @@ public class SqlStatementProviderTest {
                         "limit 100", statement.statement());
         Assert.assertArrayEquals(new Object[]{"aa", "bbb"}, statement.args());
     }
+
+    @Test
+    public void testQueryStatementTemplateCache() {
+        DefaultSqlStatementProvider provider = (DefaultSqlStatementProvider)statementProvider;
+        SqlStatement first = provider.forQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.name.eq("product1").and(Product.$.price.lessThan(100)))
+                .build());
+        SqlStatement second = provider.forQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.name.eq("product2").and(Product.$.price.lessThan(200)))
+                .build());
+
+        Assert.assertEquals(first.statement(), second.statement());
+        Assert.assertArrayEquals(new Object[]{"product2", 200}, second.args());
+        Assert.assertEquals(1, provider.statementCache().missCount());
+        Assert.assertEquals(1, provider.statementCache().hitCount());
+
+        provider.forQuery(QueryInfo.<Integer, Product, Product>builder()
+                .metaClass(Product.metaClass)
+                .predicate(Product.$.name.eq("product3"))
+                .build());
+        Assert.assertEquals(2, provider.statementCache().missCount());
+    }
 }
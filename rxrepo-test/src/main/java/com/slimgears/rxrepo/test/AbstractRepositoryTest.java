@@ -14,11 +14,13 @@ import com.slimgears.util.stream.Streams;
 import com.slimgears.util.test.AnnotationRulesJUnit;
 import com.slimgears.util.test.logging.LogLevel;
 import com.slimgears.util.test.logging.UseLogLevel;
+import io.reactivex.Flowable;
 import io.reactivex.Maybe;
 import io.reactivex.Observable;
 import io.reactivex.ObservableTransformer;
 import io.reactivex.observers.BaseTestConsumer;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subjects.CompletableSubject;
 import org.junit.*;
 import org.junit.rules.MethodRule;
@@ -35,6 +37,8 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.slimgears.rxrepo.test.TestUtils.*;
 import static java.util.Objects.requireNonNull;
@@ -208,6 +212,151 @@ public abstract class AbstractRepositoryTest {
                 .assertValue(p -> Objects.equals(p.key(), product.key()));
     }
 
+    @Test
+    public void testBulkWriteInBatches() {
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        List<BulkResult<UniqueId>> results = productSet
+                .bulkWrite(Flowable.fromIterable(Products.createMany(95)), BulkOptions.builder().batchSize(10).build())
+                .toList()
+                .blockingGet();
+
+        Assert.assertTrue(results.stream().allMatch(result -> result.size() <= 10));
+        Assert.assertEquals(95, results.stream().mapToInt(result -> result.insertedKeys().size()).sum());
+
+        List<BulkResult<UniqueId>> updateResults = productSet
+                .bulkWrite(Flowable.fromIterable(Products.createMany(20)), BulkOptions.builder().batchSize(10).build())
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(20, updateResults.stream().mapToInt(BulkResult::size).sum());
+        Assert.assertEquals(20, updateResults.stream().mapToInt(result -> result.updatedKeys().size()).sum());
+        Assert.assertTrue(updateResults.stream().allMatch(result -> result.insertedKeys().isEmpty()));
+        Assert.assertTrue(updateResults.stream().allMatch(result -> result.failedKeys().isEmpty()));
+        Assert.assertEquals(Long.valueOf(95), productSet.query().count().blockingGet());
+
+        List<BulkResult<UniqueId>> mixedResults = productSet
+                .bulkWrite(Flowable.fromIterable(Products.createMany(90, 20)), BulkOptions.builder().batchSize(10).build())
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(15, mixedResults.stream().mapToInt(result -> result.insertedKeys().size()).sum());
+        Assert.assertEquals(5, mixedResults.stream().mapToInt(result -> result.updatedKeys().size()).sum());
+        Assert.assertTrue(mixedResults.stream().allMatch(result -> result.failedKeys().isEmpty()));
+        Assert.assertEquals(Long.valueOf(110), productSet.query().count().blockingGet());
+    }
+
+    @Test
+    public void testRetrieveFlowable() throws InterruptedException {
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        productSet.update(Products.createMany(200))
+                .test()
+                .await()
+                .assertNoErrors();
+
+        productSet.query()
+                .select()
+                .retrieveFlowable()
+                .test(10)
+                .awaitCount(10)
+                .assertValueCount(10)
+                .requestMore(190)
+                .awaitCount(200)
+                .assertValueCount(200)
+                .requestMore(1)
+                .await()
+                .assertComplete();
+    }
+
+    @Test
+    public void testKeysetPagination() throws InterruptedException {
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        productSet.update(Products.createMany(100))
+                .test()
+                .await()
+                .assertNoErrors();
+
+        // UniqueId key is not comparable, so items with equal price are ordered by key properties
+        List<Product> pages = new ArrayList<>();
+        List<Product> firstPage = productSet.query()
+                .orderBy(Product.$.price)
+                .orderBy(Product.$.key.id)
+                .limit(30)
+                .retrieveAsList()
+                .blockingGet();
+        List<Product> page = firstPage;
+        while (!page.isEmpty()) {
+            pages.addAll(page);
+            page = productSet.query()
+                    .orderBy(Product.$.price)
+                    .after(page.get(page.size() - 1))
+                    .limit(30)
+                    .retrieveAsList()
+                    .blockingGet();
+        }
+
+        List<Product> expected = productSet.query()
+                .orderBy(Product.$.price)
+                .orderBy(Product.$.key.id)
+                .retrieveAsList()
+                .blockingGet();
+        Assert.assertEquals(100, pages.size());
+        Assert.assertEquals(expected, pages);
+
+        List<Product> previousPage = productSet.query()
+                .orderBy(Product.$.price)
+                .before(pages.get(30))
+                .limit(30)
+                .retrieveAsList()
+                .blockingGet();
+        Assert.assertEquals(firstPage, previousPage);
+    }
+
+    @Test
+    public void testKeysetPaginationRejectsNullCursorValueAndLiveBefore() {
+        Product product = Products.createOne(1);
+        Product unnamed = product.toBuilder().name(null).build();
+        try {
+            products.query().orderBy(Product.$.name).after(unnamed).retrieveAsList();
+            Assert.fail("Null cursor value should be rejected");
+        } catch (IllegalArgumentException ignored) {
+        }
+        try {
+            products.query().orderBy(Product.$.name).before(product).liveSelect();
+            Assert.fail("before() should be rejected for live queries");
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+
+    @Test
+    public void testObserveAsSlidingListAfterCursor() {
+        products.update(Products.createMany(10)).blockingAwait();
+        Product cursor = products.find(UniqueId.productId(2)).blockingGet();
+
+        TestObserver<List<Product>> productTestObserver = products.query()
+                .orderBy(Product.$.name)
+                .after(cursor)
+                .limit(3)
+                .observeAs(Notifications.toSlidingList(cursor))
+                .test()
+                .assertOf(countAtLeast(1))
+                .assertValueAt(0, l -> l.size() == 3)
+                .assertValueAt(0, l -> Objects.equals(l.get(0).name(), "Product 3"))
+                .assertValueAt(0, l -> Objects.equals(l.get(2).name(), "Product 5"));
+
+        products.update(Arrays.asList(
+                Products.createOne(11).toBuilder().name("Product 1-1").build(),
+                Products.createOne(12).toBuilder().name("Product 3-1").build()))
+                .blockingAwait();
+
+        productTestObserver
+                .assertOf(countAtLeast(2))
+                .assertValueAt(1, l -> l.size() == 3)
+                .assertValueAt(1, l -> Objects.equals(l.get(0).name(), "Product 3"))
+                .assertValueAt(1, l -> Objects.equals(l.get(1).name(), "Product 3-1"))
+                .assertValueAt(1, l -> Objects.equals(l.get(2).name(), "Product 4"))
+                .dispose();
+    }
+
     @Test
     public void testAddSameInventory() throws InterruptedException {
         EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
@@ -709,6 +858,68 @@ public abstract class AbstractRepositoryTest {
                 .assertValueCount(2);
     }
 
+    @Test
+    public void testInsertThenQueryByIndexedProperty() throws InterruptedException {
+        repository.entities(Product.metaClass)
+                .update(Products.createMany(100))
+                .test()
+                .await();
+
+        repository.entities(Product.metaClass)
+                .query()
+                .where(Product.$.price.in(100, 101))
+                .retrieve()
+                .test()
+                .await()
+                .assertNoErrors()
+                .assertValueCount(5);
+
+        repository.entities(Product.metaClass)
+                .query()
+                .where(Product.$.price.betweenInclusive(110, 120).and(Product.$.price.eq(115).not()))
+                .retrieve()
+                .test()
+                .await()
+                .assertNoErrors()
+                .assertValueCount(31);
+    }
+
+    @Test
+    public void testConcurrentUpdateThenQueryByIndexedProperty() throws InterruptedException {
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        Product product = Products.createOne();
+        productSet.update(product)
+                .test()
+                .await()
+                .assertNoErrors();
+
+        Observable.range(0, 200)
+                .flatMapCompletable(i -> productSet
+                        .update(product.toBuilder().price(1000 + i).build())
+                        .ignoreElement()
+                        .subscribeOn(Schedulers.io()))
+                .test()
+                .await()
+                .assertNoErrors();
+
+        Product updated = productSet.find(product.key()).blockingGet();
+        productSet.query()
+                .where(Product.$.price.eq(updated.price()))
+                .retrieve()
+                .test()
+                .await()
+                .assertNoErrors()
+                .assertValue(p -> p.key().equals(product.key()));
+
+        productSet.query()
+                .where(Product.$.price.betweenInclusive(1000, 1199))
+                .retrieve()
+                .test()
+                .await()
+                .assertNoErrors()
+                .assertValueCount(1);
+    }
+
     @Test
     public void testFilteredLiveQuery() {
         EntitySet<UniqueId, Product> products = repository.entities(Product.metaClass);
@@ -963,6 +1174,50 @@ public abstract class AbstractRepositoryTest {
         }
     }
 
+    @Test
+    public void testObserveAsListDiff() {
+        products.update(Products.createMany(10)).blockingAwait();
+        List<Product> productList = new ArrayList<>();
+        TestObserver<ListDiff<Product>> diffTestObserver = products.query()
+                .orderBy(Product.$.name)
+                .limit(5)
+                .liveSelect()
+                .asListDiff()
+                .doOnNext(diff -> diff.applyTo(productList))
+                .test()
+                .assertOf(countAtLeast(1))
+                .assertValueAt(0, ListDiff::isSnapshot)
+                .assertValueAt(0, diff -> diff.snapshot().size() == 5);
+
+        products.update(Arrays.asList(
+                Product.builder()
+                        .name("Product 1-1")
+                        .key(UniqueId.productId(11))
+                        .price(100)
+                        .type(ProductEntity.Type.ComputeHardware)
+                        .build(),
+                Product.builder()
+                        .name("Product 9-1")
+                        .key(UniqueId.productId(12))
+                        .price(100)
+                        .type(ProductEntity.Type.ComputeHardware)
+                        .build()))
+                .blockingAwait();
+
+        diffTestObserver
+                .assertOf(countAtLeast(2))
+                .assertValueAt(1, diff -> !diff.isSnapshot());
+
+        List<Product> expectedList = products.query()
+                .orderBy(Product.$.name)
+                .limit(5)
+                .retrieve()
+                .toList()
+                .blockingGet();
+
+        Assert.assertEquals(expectedList, productList);
+    }
+
     @Test
     public void testObserveAsSlidingListCorrectCount() {
         products.update(Products.createMany(100)).blockingAwait();
@@ -1265,6 +1520,54 @@ public abstract class AbstractRepositoryTest {
                 .assertValueAt(1, p -> p.newValue().productionDate().getTime() - p.oldValue().productionDate().getTime() == 1);
     }
 
+    @SuppressWarnings("ConstantConditions")
+    @Test
+    public void testLiveQueriesByKeyReceiveOnlyMatchingNotifications() {
+        EntitySet<UniqueId, Product> productSet = repository.entities(Product.metaClass);
+        productSet.update(Products.createMany(10)).blockingAwait();
+
+        List<TestObserver<Notification<Product>>> productObservers = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            productObservers.add(productSet
+                    .query()
+                    .where(Product.$.key.eq(UniqueId.productId(i)).and(Product.$.price.greaterThan(0)))
+                    .liveSelect()
+                    .observe()
+                    .test()
+                    .assertSubscribed());
+        }
+
+        TestObserver<Notification<Product>> productsInObserver = productSet
+                .query()
+                .where(Product.$.key.in(UniqueId.productId(3), UniqueId.productId(4)))
+                .liveSelect()
+                .observe()
+                .test()
+                .assertSubscribed();
+
+        Product product3 = productSet.find(UniqueId.productId(3)).blockingGet();
+        Product product7 = productSet.find(UniqueId.productId(7)).blockingGet();
+
+        productSet.update(product3.toBuilder().name(product3.name() + " - Updated").build()).ignoreElement().blockingAwait();
+        productSet.update(product7.toBuilder().name(product7.name() + " - Updated").build()).ignoreElement().blockingAwait();
+
+        productObservers.get(3)
+                .assertOf(countExactly(1))
+                .assertValueAt(0, n -> n.newValue().name().equals("Product 3 - Updated"));
+        productObservers.get(7)
+                .assertOf(countExactly(1))
+                .assertValueAt(0, n -> n.newValue().name().equals("Product 7 - Updated"));
+        productsInObserver
+                .assertOf(countExactly(1))
+                .assertValueAt(0, n -> n.newValue().name().equals("Product 3 - Updated"));
+
+        for (int i = 0; i < 10; ++i) {
+            if (i != 3 && i != 7) {
+                productObservers.get(i).assertNoValues();
+            }
+        }
+    }
+
     @SuppressWarnings("ReactiveStreamsNullableInLambdaInTransform")
     @Test
     @UseLogLevel(LogLevel.TRACE)
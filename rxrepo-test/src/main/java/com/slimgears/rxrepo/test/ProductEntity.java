@@ -21,7 +21,7 @@ public interface ProductEntity {
     @Nullable @Filterable @Searchable String name();
     @Nullable @Searchable Type type();
     @Filterable @Nullable @Searchable Inventory inventory();
-    int price();
+    @Indexable int price();
     @Nullable List<String> aliases();
     @Nullable List<UniqueId> relatedIds();
     @Nullable Vendor vendor();